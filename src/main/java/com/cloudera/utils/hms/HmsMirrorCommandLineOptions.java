@@ -64,6 +64,17 @@ public class HmsMirrorCommandLineOptions {
         System.out.println(newCmdLn);
     }
 
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.adaptive-concurrency")
+    CommandLineRunner configAdaptiveConcurrency(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.adaptive-concurrency}") String value) {
+        return args -> {
+            log.info("adaptive-concurrency: {}", value);
+            hmsMirrorConfig.getOptimization().setAdaptiveConcurrency(Boolean.parseBoolean(value));
+        };
+    }
+
     @Bean
     @Order(1)
     @ConditionalOnProperty(
@@ -251,6 +262,17 @@ public class HmsMirrorCommandLineOptions {
         };
     }
 
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.distcp-jobs")
+    CommandLineRunner configDistcpJobs(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.distcp-jobs}") String value) {
+        return args -> {
+            log.info("distcp-jobs: {}", value);
+            hmsMirrorConfig.getTransfer().getStorageMigration().setDistcpJobs(Integer.parseInt(value));
+        };
+    }
+
     @Bean
     @Order(1)
     @ConditionalOnProperty(
@@ -467,6 +489,17 @@ public class HmsMirrorCommandLineOptions {
         };
     }
 
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.largest-first")
+    CommandLineRunner configLargestFirst(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.largest-first}") String value) {
+        return args -> {
+            log.info("largest-first: {}", value);
+            hmsMirrorConfig.getOptimization().setLargestFirst(Boolean.parseBoolean(value));
+        };
+    }
+
     /*
     This is taken care of thru the spring variable 'hms-mirror.config.load-test-data' and the
     construction of the Conversion object.
@@ -621,6 +654,50 @@ public class HmsMirrorCommandLineOptions {
         };
     }
 
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.partition-add-batch")
+    CommandLineRunner configPartitionAddBatch(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.partition-add-batch}") String value) {
+        return args -> {
+            log.info("partition-add-batch: {}", value);
+            hmsMirrorConfig.getOptimization().setPartitionAddBatchSize(Integer.parseInt(value));
+        };
+    }
+
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.partition-transfer-concurrency")
+    CommandLineRunner configPartitionTransferConcurrency(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.partition-transfer-concurrency}") String value) {
+        return args -> {
+            log.info("partition-transfer-concurrency: {}", value);
+            hmsMirrorConfig.getOptimization().setPartitionTransferConcurrency(Integer.parseInt(value));
+        };
+    }
+
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.partition-transfer-range")
+    CommandLineRunner configPartitionTransferRange(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.partition-transfer-range}") String value) {
+        return args -> {
+            log.info("partition-transfer-range: {}", value);
+            hmsMirrorConfig.getOptimization().setPartitionTransferRangeSize(Integer.parseInt(value));
+        };
+    }
+
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.partition-transfer-range-bytes")
+    CommandLineRunner configPartitionTransferRangeBytes(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.partition-transfer-range-bytes}") String value) {
+        return args -> {
+            log.info("partition-transfer-range-bytes: {}", value);
+            hmsMirrorConfig.getOptimization().setPartitionTransferRangeBytes(Long.parseLong(value));
+        };
+    }
+
     @Bean
     @Order(1)
     @ConditionalOnProperty(
@@ -738,6 +815,17 @@ public class HmsMirrorCommandLineOptions {
         };
     }
 
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.resume")
+    CommandLineRunner configResume(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.resume}") String value) {
+        return args -> {
+            log.info("resume: {}", value);
+            hmsMirrorConfig.setResume(Boolean.parseBoolean(value));
+        };
+    }
+
     @Bean
     @Order(1)
     @ConditionalOnProperty(
@@ -821,6 +909,39 @@ public class HmsMirrorCommandLineOptions {
         };
     }
 
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.metastore-direct-catalog")
+    CommandLineRunner configMetastoreDirectCatalog(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.metastore-direct-catalog}") String value) {
+        return args -> {
+            log.info("metastore-direct-catalog: {}", value);
+            hmsMirrorConfig.getOptimization().setMetastoreDirectCatalog(Boolean.parseBoolean(value));
+        };
+    }
+
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.filesystem-stats")
+    CommandLineRunner configFilesystemStats(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.filesystem-stats}") String value) {
+        return args -> {
+            log.info("filesystem-stats: {}", value);
+            hmsMirrorConfig.getOptimization().setFilesystemStats(Boolean.parseBoolean(value));
+        };
+    }
+
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.stats-cache")
+    CommandLineRunner configStatsCache(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.stats-cache}") String value) {
+        return args -> {
+            log.info("stats-cache: {}", value);
+            hmsMirrorConfig.getOptimization().setStatsCache(Boolean.parseBoolean(value));
+        };
+    }
+
     @Bean
     @Order(1)
     @ConditionalOnProperty(
@@ -865,6 +986,17 @@ public class HmsMirrorCommandLineOptions {
         };
     }
 
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(
+            name = "hms-mirror.config.sync-incremental")
+    CommandLineRunner configSyncIncremental(HmsMirrorConfig hmsMirrorConfig, @Value("${hms-mirror.config.sync-incremental}") String value) {
+        return args -> {
+            log.info("sync-incremental: {}", value);
+            hmsMirrorConfig.setSyncIncremental(Boolean.parseBoolean(value));
+        };
+    }
+
     @Bean
     @Order(1)
     @ConditionalOnProperty(
@@ -1031,6 +1163,12 @@ public class HmsMirrorCommandLineOptions {
         resetToDefaultLocation.setRequired(Boolean.FALSE);
         options.addOption(resetToDefaultLocation);
 
+        Option resumeOption = new Option("rs", "resume", false,
+                "Resume the last `-e` run of the same databases and strategy from its journal.  Tables it completed " +
+                        "are skipped and the others pick up after the last SQL statement that completed.");
+        resumeOption.setRequired(Boolean.FALSE);
+        options.addOption(resumeOption);
+
         Option skipLegacyTranslation = new Option("slt", "skip-legacy-translation", false,
                 "Skip Schema Upgrades and Serde Translations");
         skipLegacyTranslation.setRequired(Boolean.FALSE);
@@ -1051,6 +1189,13 @@ public class HmsMirrorCommandLineOptions {
         smDistCpOption.setRequired(Boolean.FALSE);
         options.addOption(smDistCpOption);
 
+        Option distcpJobsOption = new Option("dcj", "distcp-jobs", true,
+                "Along with the 'distcp' workbook, split the sources into this many jobs balanced by the " +
+                        "data size collected for the tables.  Writes a script per job and a plan summary.");
+        distcpJobsOption.setRequired(Boolean.FALSE);
+        distcpJobsOption.setArgName("jobs");
+        options.addOption(distcpJobsOption);
+
         Option metadataStage = new Option("d", "data-strategy", true,
                 "Specify how the data will follow the schema. " + Arrays.deepToString(DataStrategyEnum.visibleValues()));
         metadataStage.setOptionalArg(Boolean.TRUE);
@@ -1089,6 +1234,40 @@ public class HmsMirrorCommandLineOptions {
         propertyRightOverrides.setArgs(100);
         options.addOption(propertyRightOverrides);
 
+        Option metastoreDirectCatalogOption = new Option("mdc", "metastore-direct-catalog", false,
+                "Load the table definitions for each database in bulk from the 'metastore_direct' connection " +
+                        "instead of running 'SHOW CREATE TABLE' through HS2 for each table.  Requires " +
+                        "'metastore_direct' to be configured for the cluster.");
+        metastoreDirectCatalogOption.setRequired(Boolean.FALSE);
+        options.addOption(metastoreDirectCatalogOption);
+
+        Option filesystemStatsOption = new Option("fss", "filesystem-stats", false,
+                "Always count the table locations on the filesystem for stats.  By default, when 'metastore_direct' " +
+                        "is configured, the 'numFiles' and 'totalSize' params are used for the managed tables that " +
+                        "have complete ones Hive marks accurate.");
+        filesystemStatsOption.setRequired(Boolean.FALSE);
+        options.addOption(filesystemStatsOption);
+
+        Option statsCacheOption = new Option("stc", "stats-cache", false,
+                "Reuse the filesystem counts from earlier runs ($HOME/.hms-mirror/cache) for the locations that " +
+                        "haven't been modified since.  Partitioned tables are kept by partition when their partitions are " +
+                        "loaded (-epl), otherwise they're always counted.");
+        statsCacheOption.setRequired(Boolean.FALSE);
+        options.addOption(statsCacheOption);
+
+        Option adaptiveConcurrencyOption = new Option("ac", "adaptive-concurrency", false,
+                "Resize the job and metadata thread pools during the run from the HS2 latency, failures and the " +
+                        "work waiting.  Bounds are 'optimization.adaptiveConcurrencyMin/Max' (default 1 to twice " +
+                        "the transfer concurrency).");
+        adaptiveConcurrencyOption.setRequired(Boolean.FALSE);
+        options.addOption(adaptiveConcurrencyOption);
+
+        Option largestFirstOption = new Option("lf", "largest-first", false,
+                "Run the waiting table transfers largest first, by an estimate from their statistics and the " +
+                        "data strategy.  Set 'optimization.largestFirstFairShare' to spread them over the databases.");
+        largestFirstOption.setRequired(Boolean.FALSE);
+        options.addOption(largestFirstOption);
+
         OptionGroup optimizationsGroup = new OptionGroup();
         optimizationsGroup.setRequired(Boolean.FALSE);
 
@@ -1327,6 +1506,12 @@ public class HmsMirrorCommandLineOptions {
         syncOption.setRequired(Boolean.FALSE);
         options.addOption(syncOption);
 
+        Option syncIncrementalOption = new Option("si", "sync-incremental", false,
+                "With `-s`, skip the tables that haven't changed on the LEFT (definition, partitions, owner and size) " +
+                        "since the last successful `-e` sync.  The report lists what changed.");
+        syncIncrementalOption.setRequired(Boolean.FALSE);
+        options.addOption(syncIncrementalOption);
+
         Option roOption = new Option("ro", "read-only", false,
                 "For SCHEMA_ONLY, COMMON, and LINKED data strategies set RIGHT table to NOT purge on DROP. " +
                         "Intended for use with replication distcp strategies and has restrictions about existing DB's " +
@@ -1481,6 +1666,34 @@ public class HmsMirrorCommandLineOptions {
         expImpPartCountOption.setArgName("limit");
         options.addOption(expImpPartCountOption);
 
+        Option partitionAddBatchOption = new Option("pab", "partition-add-batch", true,
+                "The number of partitions in each 'ALTER TABLE ... ADD PARTITION' statement built with " +
+                        "'-epl'.  Default is 500.  Use 0 to put all of a tables partitions in one statement.");
+        partitionAddBatchOption.setRequired(Boolean.FALSE);
+        partitionAddBatchOption.setArgName("size");
+        options.addOption(partitionAddBatchOption);
+
+        Option partitionTransferRangeOption = new Option("ptr", "partition-transfer-range", true,
+                "Split the SQL data transfer of a partitioned table into ranges of this many partitions, each with " +
+                        "its own INSERT.  Default is 0, one INSERT for all the partitions.");
+        partitionTransferRangeOption.setRequired(Boolean.FALSE);
+        partitionTransferRangeOption.setArgName("partitions");
+        options.addOption(partitionTransferRangeOption);
+
+        Option partitionTransferRangeBytesOption = new Option("ptrb", "partition-transfer-range-bytes", true,
+                "Bound the partition ranges of the SQL data transfer by size, using the table stats.  Can be " +
+                        "used with '-ptr'.");
+        partitionTransferRangeBytesOption.setRequired(Boolean.FALSE);
+        partitionTransferRangeBytesOption.setArgName("bytes");
+        options.addOption(partitionTransferRangeBytesOption);
+
+        Option partitionTransferConcurrencyOption = new Option("ptc", "partition-transfer-concurrency", true,
+                "The number of partition ranges of a table to run at the same time, each on its own connection.  " +
+                        "Default is 4.");
+        partitionTransferConcurrencyOption.setRequired(Boolean.FALSE);
+        partitionTransferConcurrencyOption.setArgName("ranges");
+        options.addOption(partitionTransferConcurrencyOption);
+
         OptionGroup filterGroup = new OptionGroup();
         filterGroup.setRequired(Boolean.FALSE);
 
@@ -1669,7 +1882,7 @@ public class HmsMirrorCommandLineOptions {
                     hs2Envs.add(Environment.LEFT);
                     break;
             }
-            if (hmsMirrorCfgService.loadPartitionMetadata()) {
+            if (hmsMirrorCfgService.useMetastoreDirect()) {
                 if (hmsMirrorConfig.getCluster(Environment.LEFT).getMetastoreDirect() != null) {
                     connectionPoolService.getConnectionPools().addMetastoreDirect(Environment.LEFT, hmsMirrorConfig.getCluster(Environment.LEFT).getMetastoreDirect());
                 }
@@ -21,6 +21,7 @@ import lombok.Getter;
 
 @Getter
 public enum HmsMirrorCommandLineOptionsEnum {
+    ADAPTIVE_CONCURRENCY("ac", "adaptive-concurrency", null, ""),
     ACID_PARTITION_COUNT("ap", "acid-partition-count", "count", ""),
     AVRO_SCHEMA_MIGRATION("asm", "avro-schema-migration", null, ""),
     AUTO_TUNE("at", "auto-tune", null, ""),
@@ -37,6 +38,7 @@ public enum HmsMirrorCommandLineOptionsEnum {
     DATABASE_REGEX("dbRegEx", "database-regex", "regex", ""),
     //TODO: Double check conversion from legacy.
     DISTCP("dc", "distcp", "flow-direction default:PULL", ""),
+    DISTCP_JOBS("dcj", "distcp-jobs", "jobs", ""),
     DECRYPT_PASSWORD("dp", "decrypt-password", "encrypted-password", ""),
     DUMP_SOURCE("ds", "dump-source", "source", ""),
     DUMP_TEST_DATA("dtd", "dump-test-data", null, ""),
@@ -44,6 +46,7 @@ public enum HmsMirrorCommandLineOptionsEnum {
     EXPORT_PARTITION_COUNT("ep", "export-partition-count", "limit", ""),
     EVALUATE_PARTITION_LOCATION("epl", "evaluate-partition-location", null, ""),
     EXTERNAL_WAREHOUSE_DIRECTORY("ewd", "external-warehouse-directory", "path", ""),
+    FILESYSTEM_STATS("fss", "filesystem-stats", null, ""),
     FLIP("f", "flip", null, ""),
     FORCE_EXTERNAL_LOCATION("fel", "force-external-location", null, ""),
     GLOBAL_LOCATION_MAP("glm", "global-location-map", "key=value", ""),
@@ -52,13 +55,19 @@ public enum HmsMirrorCommandLineOptionsEnum {
     INTERMEDIATE_STORAGE("is", "intermediate-storage", "storage-path", ""),
     ICEBERG_TABLE_PROPERTY_OVERRIDES("itpo", "iceberg-table-property-overrides", "key=value", ""),
     ICEBERG_VERSION("iv", "iceberg-version", "version", ""),
+    LARGEST_FIRST("lf", "largest-first", null, ""),
     LOAD_TEST_DATA("ltd", "load-test-data", "file", ""),
     MIGRATE_ACID("ma", "migrate-acid", "bucket-threshold (2)", ""),
     MIGRATE_ACID_ONLY("mao", "migrate-acid-only", "bucket-threshold (2)", ""),
+    METASTORE_DIRECT_CATALOG("mdc", "metastore-direct-catalog", null, ""),
     MIGRATE_NON_NATIVE("mnn", "migrate-non-native", null, ""),
     MIGRATE_NON_NATIVE_ONLY("mnno", "migrate-non-native-only", null, ""),
     NO_PURGE("np", "no-purge", null, ""),
     OUTPUT_DIRECTORY("o", "output-dir", "outputdir", ""),
+    PARTITION_ADD_BATCH("pab", "partition-add-batch", "size", ""),
+    PARTITION_TRANSFER_CONCURRENCY("ptc", "partition-transfer-concurrency", "ranges", ""),
+    PARTITION_TRANSFER_RANGE("ptr", "partition-transfer-range", "partitions", ""),
+    PARTITION_TRANSFER_RANGE_BYTES("ptrb", "partition-transfer-range-bytes", "bytes", ""),
     PASSWORD("p", "password", "password", ""),
     PASSWORD_KEY("pkey", "password-key", "password-key", ""),
     PROPERTY_OVERRIDES("po", "property-overrides", "key=value", ""),
@@ -70,9 +79,11 @@ public enum HmsMirrorCommandLineOptionsEnum {
     RIGHT_IS_DISCONNECTED("rid", "right-is-disconnected", null, ""),
     READ_ONLY("ro", "read-only", null, ""),
     RESET_RIGHT("rr", "reset-right", null, ""),
+    RESUME("rs", "resume", null, ""),
     SYNC("s", "sync", null, ""),
     SORT_DYNAMIC_PARTITION_INSERTS("sdpi", "sort-dynamic-partition-inserts", null, ""),
     SKIP_FEATURES("sf", "skip-features", null, ""),
+    SYNC_INCREMENTAL("si", "sync-incremental", null, ""),
     SKIP_LINK_CHECK("slc", "skip-link-check", null, ""),
     SKIP_LEGACY_TRANSLATION("slt", "skip-legacy-translation", null, ""),
     STORAGE_MIGRATION_NAMESPACE("smn", "storage-migration-namespace", "namespace", ""),
@@ -80,6 +91,7 @@ public enum HmsMirrorCommandLineOptionsEnum {
     SQL_PARTITION_COUNT("sp", "sql-partition-count", "limit", ""),
     SQL_OUTPUT("sql", "sql-output", null, ""),
     SKIP_STATS_COLLECTION("ssc", "skip-stats-collection", null, ""),
+    STATS_CACHE("stc", "stats-cache", null, ""),
     SETUP("su", "setup", null, ""),
     TABLE_EXCLUDE_FILTER("tef", "table-exclude-filter", "regex", ""),
     TABLE_FILTER("tf", "table-filter", "regex", ""),
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import lombok.Getter;
+
+import java.text.DecimalFormat;
+
+/*
+AIMD concurrency limit for a pool, updated once per window of observations.
+
+- Failures above ERROR_THRESHOLD, or a query latency above LATENCY_TOLERANCE times the baseline, cut the limit
+  by BACKOFF.
+- Otherwise, work waiting on the pool adds one.
+
+The baseline is the lowest window latency seen, allowed to drift up by BASELINE_DRIFT a window so it follows a
+server whose normal has moved.
+ */
+@Getter
+public class AdaptiveLimit {
+
+    public static final double ERROR_THRESHOLD = 0.05;
+    public static final double LATENCY_TOLERANCE = 2.0;
+    public static final double BACKOFF = 0.75;
+    public static final double BASELINE_DRIFT = 1.02;
+    // Average wait for a thread that counts as work waiting, even when the queue is empty at the time.
+    public static final double WAIT_THRESHOLD_MS = 1000;
+
+    private final int min;
+    private final int max;
+    private int limit;
+    private double baselineMs = 0;
+
+    public AdaptiveLimit(int initial, int min, int max) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.limit = Math.min(this.max, Math.max(this.min, initial));
+    }
+
+    /*
+    Apply a window: the average query latency (0 with no queries), the share of statements that failed, the average
+    time a task waited for a thread and the tasks queued now.  Returns the reason when the limit changed.
+     */
+    public String update(double latencyMs, double errorRate, double waitMs, int queued) {
+        DecimalFormat df = new DecimalFormat("#,##0.#");
+        String reason = null;
+        int next = limit;
+        if (errorRate > ERROR_THRESHOLD) {
+            next = (int) Math.max(min, Math.floor(limit * BACKOFF));
+            reason = "failures " + df.format(errorRate * 100) + "%";
+        } else if (latencyMs > 0 && baselineMs > 0 && latencyMs > baselineMs * LATENCY_TOLERANCE) {
+            next = (int) Math.max(min, Math.floor(limit * BACKOFF));
+            reason = "latency " + df.format(latencyMs) + "ms against " + df.format(baselineMs) + "ms";
+        } else if (queued > 0 || waitMs > WAIT_THRESHOLD_MS) {
+            next = Math.min(max, limit + 1);
+            reason = queued + " queued, " + df.format(waitMs) + "ms wait";
+        }
+        if (latencyMs > 0) {
+            baselineMs = baselineMs == 0 ? latencyMs : Math.min(latencyMs, baselineMs * BASELINE_DRIFT);
+        }
+        if (next == limit) {
+            return null;
+        }
+        limit = next;
+        return reason;
+    }
+
+}
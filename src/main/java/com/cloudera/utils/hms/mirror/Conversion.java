@@ -46,13 +46,16 @@ public class Conversion {
     private HmsMirrorCfgService hmsMirrorCfgService = null;
     @JsonIgnore
     private Progression progression;
+    @JsonIgnore
+    private RunStatistics runStatistics;
     private Map<String, DBMirror> databases = new TreeMap<>();
 
     public int getUnsuccessfullTableCount() {
         int count = 0;
         for (DBMirror dbMirror : databases.values()) {
             for (TableMirror tableMirror : dbMirror.getTableMirrors().values()) {
-                if (tableMirror.getPhaseState() != PhaseState.SUCCESS) {
+                if (tableMirror.getPhaseState() != PhaseState.SUCCESS &&
+                        tableMirror.getPhaseState() != PhaseState.SYNC_UNCHANGED) {
                     count++;
                 }
             }
@@ -177,6 +180,11 @@ public class Conversion {
         this.progression = progression;
     }
 
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
     public String toReport(String database) throws JsonProcessingException {
         HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
 
@@ -195,6 +203,11 @@ public class Conversion {
 
         sb.append("| ").append(df.format(new Date())).append(" | ").append(elsecStr).append(" secs |\n\n");
 
+        if (runStatistics != null && !runStatistics.isEmpty()) {
+            sb.append("## Run Statistics\n\n");
+            sb.append(runStatistics.toReport()).append("\n");
+        }
+
         sb.append("## Config:\n");
 
         ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
@@ -513,6 +526,16 @@ public class Conversion {
                 sb.append("| ").append(entry.getKey()).append(" | ").append(entry.getValue()).append(" |\n");
             }
         }
+
+        if (!dbMirror.getSyncDelta().isEmpty()) {
+            sb.append("\n## Sync Delta\n\n");
+
+            sb.append("| Table / View | Change |\n");
+            sb.append("|:---|:---|\n");
+            for (Map.Entry<String, String> entry : dbMirror.getSyncDelta().entrySet()) {
+                sb.append("| ").append(entry.getKey()).append(" | ").append(entry.getValue()).append(" |\n");
+            }
+        }
         return sb.toString();
     }
 
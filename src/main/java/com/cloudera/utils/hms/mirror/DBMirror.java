@@ -31,6 +31,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 @Getter
 @Setter
@@ -43,6 +44,10 @@ public class DBMirror {
     table - reason
      */
     private final Map<String, String> filteredOut = new TreeMap<>();
+    /*
+    table - change since the last sync (see SyncFingerprintService)
+     */
+    private final Map<String, String> syncDelta = new ConcurrentSkipListMap<>();
     @JsonIgnore
     private final Map<Environment, List<Pair>> sql = new TreeMap<>();
     private String name;
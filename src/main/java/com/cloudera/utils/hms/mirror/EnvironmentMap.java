@@ -19,22 +19,31 @@ package com.cloudera.utils.hms.mirror;
 
 import lombok.Getter;
 
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class EnvironmentMap {
 
-    private final Map<Environment, Set<TranslationLevel>> environmentMap = new TreeMap<>();
+    private final Map<Environment, Set<TranslationLevel>> environmentMap = new ConcurrentHashMap<>();
 
     public void addTranslationLocation(Environment environment, String original, String target, int level) {
-        Set<TranslationLevel> dbTranslationSet = environmentMap.computeIfAbsent(environment, k -> new HashSet<>());
+        Set<TranslationLevel> dbTranslationSet = environmentMap.computeIfAbsent(environment, k -> ConcurrentHashMap.newKeySet());
         dbTranslationSet.add(new TranslationLevel(original, target, level));
     }
 
+    public void addTranslationLocations(Environment environment, Collection<TranslationLevel> translationLevels) {
+        Set<TranslationLevel> dbTranslationSet = environmentMap.computeIfAbsent(environment, k -> ConcurrentHashMap.newKeySet());
+        dbTranslationSet.addAll(translationLevels);
+    }
+
+    /*
+    The live set for the environment.  Iterating it while others add is safe; it just may or may not see
+    the newest additions.
+     */
     public Set<TranslationLevel> getTranslationSet(Environment environment) {
-        Set<TranslationLevel> dbTranslationSet = environmentMap.computeIfAbsent(environment, k -> new HashSet<>());
+        Set<TranslationLevel> dbTranslationSet = environmentMap.computeIfAbsent(environment, k -> ConcurrentHashMap.newKeySet());
         return dbTranslationSet;
     }
 
@@ -33,13 +33,18 @@ public class EnvironmentTable {
     private String name = null;
     private boolean exists = Boolean.FALSE;
     private CreateStrategy createStrategy = CreateStrategy.NOTHING;
-    private List<String> definition = new ArrayList<>();
+    private List<String> definition = new TableDefinition();
     private String owner = null;
-    private Map<String, String> partitions = new HashMap<>();
+    private Map<String, String> partitions = new PartitionMap();
     private List<String> actions = new ArrayList<>();
     private Map<String, String> addProperties = new TreeMap<>();
     private Map<String, Object> statistics = new HashMap<>();
     private List<String> issues = new ArrayList<>();
+    /*
+    The size of each partition, when we could get it (see TableService.loadPartitionHistogramDirect).
+     */
+    @JsonIgnore
+    private PartitionHistogram partitionHistogram = null;
     @JsonIgnore
     private TableMirror parent = null;
 
@@ -81,6 +86,16 @@ public class EnvironmentTable {
         addSql(pair);
     }
 
+    public void setDefinition(List<String> definition) {
+        this.definition = definition == null || definition instanceof TableDefinition ?
+                definition : new TableDefinition(definition);
+    }
+
+    public void setPartitions(Map<String, String> partitions) {
+        // Keep the partitions in the compact form.
+        this.partitions = partitions instanceof PartitionMap ? partitions : new PartitionMap(partitions);
+    }
+
     @JsonIgnore
     public Boolean getPartitioned() {
         Boolean rtn = Boolean.FALSE;
@@ -48,8 +48,11 @@ import static com.cloudera.utils.hms.mirror.connections.ConnectionPoolTypes.HYBR
 @JsonIgnoreProperties({"featureList"})
 public class HmsMirrorConfig {
 
+    /*
+    Taken back from the journal when resuming (see CheckpointJournalService).
+     */
     @JsonIgnore
-    private final String runMarker = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+    private String runMarker = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
     @JsonIgnore
     private final List<String> flags = new LinkedList<>();
     @JsonIgnore
@@ -136,6 +139,11 @@ public class HmsMirrorConfig {
     @JsonIgnore
     private boolean replay = Boolean.FALSE;
     private boolean resetRight = Boolean.FALSE;
+    /*
+    Pick up the last 'execute' run of the same databases and strategy from its journal, skipping what it completed.
+     */
+    @JsonIgnore
+    private boolean resume = Boolean.FALSE;
     private boolean resetToDefaultLocation = Boolean.FALSE;
     private boolean skipFeatures = Boolean.FALSE;
     private boolean skipLegacyTranslation = Boolean.FALSE;
@@ -160,6 +168,11 @@ public class HmsMirrorConfig {
     Transactional tables are NOT considered in this process.
      */
     private boolean sync = Boolean.FALSE;
+    /*
+    With 'sync', skip the tables that haven't changed on the LEFT since the last successful sync (see
+    SyncFingerprintService).
+     */
+    private boolean syncIncremental = Boolean.FALSE;
 
     //    @Autowired
     private TransferConfig transfer = new TransferConfig();
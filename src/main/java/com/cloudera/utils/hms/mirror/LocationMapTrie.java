@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+The global location map ('glm') as a trie of path segments, used to find the longest 'from' entry that
+the location starts with.
+
+Matching is the same as the ordered map it replaces: a plain string prefix, so the last segment of a 'from'
+only needs to be the start of the location segment (IE: '/data/my' matches '/data/mydir/x').  Each node keeps
+the 'from' entries that end at that depth by their last (partial) segment, longest first, so a lookup is one
+walk down the location's segments.
+
+Partition locations share their parent directory, so the walk for the parent is cached and only the last
+segment is checked per location.
+ */
+public class LocationMapTrie {
+
+    // Don't let the parent cache grow without bounds on very large runs.
+    private static final int MAX_CACHED_PARENTS = 100000;
+
+    private final Node root = new Node();
+    @Getter
+    private final int size;
+    private final Map<String, Walk> parentCache = new ConcurrentHashMap<>();
+
+    public LocationMapTrie(Map<String, String> globalLocationMap) {
+        if (globalLocationMap != null) {
+            for (Map.Entry<String, String> entry : globalLocationMap.entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    add(entry.getKey(), entry.getValue());
+                }
+            }
+            this.size = globalLocationMap.size();
+        } else {
+            this.size = 0;
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void add(String from, String to) {
+        Node node = root;
+        int start = 0;
+        int slash;
+        while ((slash = from.indexOf('/', start)) != -1) {
+            node = node.children.computeIfAbsent(from.substring(start, slash), k -> new Node());
+            start = slash + 1;
+        }
+        node.addEnd(new Match(from.substring(start), from, to));
+    }
+
+    /*
+    The longest 'from' entry that the location starts with, null when none match.
+     */
+    public Match find(String location) {
+        if (location == null || size == 0) {
+            return null;
+        }
+        int lastSlash = location.lastIndexOf('/');
+        Walk walk;
+        if (lastSlash == -1) {
+            walk = new Walk(null, root);
+        } else {
+            String parent = location.substring(0, lastSlash);
+            walk = parentCache.get(parent);
+            if (walk == null) {
+                walk = walk(parent);
+                if (parentCache.size() >= MAX_CACHED_PARENTS) {
+                    parentCache.clear();
+                }
+                parentCache.put(parent, walk);
+            }
+        }
+        Match rtn = walk.match;
+        if (walk.next != null) {
+            Match last = walk.next.longestEnd(location, lastSlash + 1);
+            if (last != null) {
+                rtn = last;
+            }
+        }
+        return rtn;
+    }
+
+    /*
+    Replace the matched 'from' prefix of the location with its 'to'.  Returns null when there's no match.
+     */
+    public String translate(String location) {
+        Match match = find(location);
+        if (match == null) {
+            return null;
+        }
+        return match.getTo() + location.substring(match.getFrom().length());
+    }
+
+    /*
+    Walk the full segments of a directory.  'next' is the node for whatever segment follows the directory, null
+    when no 'from' goes that deep.
+     */
+    private Walk walk(String dir) {
+        Node node = root;
+        Match match = null;
+        int start = 0;
+        while (node != null) {
+            int slash = dir.indexOf('/', start);
+            int end = slash == -1 ? dir.length() : slash;
+            Match candidate = node.longestEnd(dir, start);
+            if (candidate != null) {
+                match = candidate;
+            }
+            node = node.children.get(dir.substring(start, end));
+            if (slash == -1) {
+                break;
+            }
+            start = slash + 1;
+        }
+        return new Walk(match, node);
+    }
+
+    @Getter
+    public static class Match {
+        private final String segment;
+        private final String from;
+        private final String to;
+
+        Match(String segment, String from, String to) {
+            this.segment = segment;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static class Walk {
+        private final Match match;
+        private final Node next;
+
+        Walk(Match match, Node next) {
+            this.match = match;
+            this.next = next;
+        }
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        // The entries that end at this depth, longest (partial) segment first.
+        private final List<Match> ends = new ArrayList<>();
+
+        void addEnd(Match match) {
+            int i = 0;
+            while (i < ends.size() && ends.get(i).segment.length() >= match.segment.length()) {
+                i++;
+            }
+            ends.add(i, match);
+        }
+
+        /*
+        The longest entry ending here whose last segment starts the path at 'offset'.
+         */
+        Match longestEnd(String path, int offset) {
+            for (Match match : ends) {
+                if (path.startsWith(match.segment, offset)) {
+                    return match;
+                }
+            }
+            return null;
+        }
+    }
+
+}
@@ -98,6 +98,8 @@ public interface MirrorConf {
     String SQL_DATA_TRANSFER_OVERWRITE = "FROM {0} INSERT OVERWRITE TABLE {1} SELECT *";
     String SQL_DATA_TRANSFER_WITH_PARTITIONS_PRESCRIPTIVE = "FROM {0} INSERT OVERWRITE TABLE {1} PARTITION ({2}) SELECT * DISTRIBUTE BY {3}";
     String SQL_DATA_TRANSFER_WITH_PARTITIONS_DECLARATIVE = "FROM {0} INSERT OVERWRITE TABLE {1} PARTITION ({2}) SELECT * ";
+    String SQL_DATA_TRANSFER_WITH_PARTITION_RANGE_PRESCRIPTIVE = "FROM {0} INSERT OVERWRITE TABLE {1} PARTITION ({2}) SELECT * WHERE {4} DISTRIBUTE BY {3}";
+    String SQL_DATA_TRANSFER_WITH_PARTITION_RANGE_DECLARATIVE = "FROM {0} INSERT OVERWRITE TABLE {1} PARTITION ({2}) SELECT * WHERE {3}";
 
     String DB_LOCATION = "LOCATION";
     String DB_MANAGED_LOCATION = "MANAGEDLOCATION";
@@ -106,9 +108,12 @@ public interface MirrorConf {
     String FILE_COUNT = "file.count";
     String DIR_COUNT = "dir.count";
     String DATA_SIZE = "data.size";
+    String ROW_COUNT = "row.count";
     String AVG_FILE_SIZE = "avg.file.size";
     String TABLE_EMPTY = "table.empty";
     String PARTITION_COUNT = "partition.count";
+    String PARTITION_SIZE_CLASSES = "partition.size.classes";
+    String STATS_SOURCE = "stats.source";
     String NOT_SET = "NOT_SET";
 
     //    String CONVERT_TO_ICEBERG_V1 = "ALTER TABLE {0} SET TBLPROPERTIES ('storage_handler'='org.apache.iceberg.mr.hive.HiveIcebergStorageHandler')";
@@ -39,8 +39,121 @@ public class Optimization {
     private boolean autoTune = Boolean.FALSE;
     private boolean compressTextOutput = Boolean.FALSE;
     private boolean skipStatsCollection = Boolean.FALSE;
+    /*
+    Always count the table locations on the filesystem for stats.  Otherwise, when there's a 'metastore_direct'
+    connection, the metastore params are used for the managed tables that have complete ones Hive marks accurate.
+     */
+    private boolean filesystemStats = Boolean.FALSE;
+    /*
+    Keep the filesystem counts between runs (see StatsCacheService).  A count is reused while the locations
+    modification time hasn't changed and it's younger than 'statsCacheTtlMinutes'.  The modification time of a
+    directory only moves when its direct children change, so partitioned tables are kept by partition location when
+    the partitions are loaded ('evaluatePartitionLocation'), and are always counted otherwise.
+     */
+    private boolean statsCache = Boolean.FALSE;
+    private int statsCacheTtlMinutes = 1440;
+    private int statsCacheMaxEntries = 100000;
 
     private Overrides overrides = new Overrides();
     private boolean buildShadowStatistics = Boolean.FALSE;
+    /*
+    Load the table definitions for a database in bulk from the 'metastore_direct' connection, instead of a
+    'SHOW CREATE TABLE' per table through HS2.
+     */
+    private boolean metastoreDirectCatalog = Boolean.FALSE;
+    /*
+    The number of partitions in each 'ALTER TABLE ... ADD PARTITION' statement.  0 puts them all in one statement.
+     */
+    private int partitionAddBatchSize = 500;
+    /*
+    Split the SQL transfer of a partitioned table into ranges of at most this many partitions, each with its own
+    INSERT.  0 (the default) moves all the partitions in one INSERT, unless 'partitionTransferRangeBytes' is set.
+     */
+    private int partitionTransferRangeSize = 0;
+    /*
+    Bound the ranges by bytes instead (or as well), using the tables data size spread over its partitions.
+     */
+    private long partitionTransferRangeBytes = 0L;
+    /*
+    How many ranges of a table (or steps of a 'parallelDdl' group) to run at the same time, each on its own HS2
+    connection.
+     */
+    private int partitionTransferConcurrency = 4;
+    /*
+    How many times a failed range is run again before the table fails.
+     */
+    private int partitionTransferRetries = 2;
+    /*
+    Resize the job and metadata pools as the run goes, from the HS2 latency and failures seen by each pool and the
+    work waiting on it (see AdaptiveConcurrencyService).  Both start at the transfer concurrency and stay within
+    the min and max.  A max of 0 is twice the transfer concurrency.
+     */
+    private boolean adaptiveConcurrency = Boolean.FALSE;
+    private int adaptiveConcurrencyMin = 1;
+    private int adaptiveConcurrencyMax = 0;
+    private int adaptiveConcurrencyIntervalSeconds = 30;
+    /*
+    The most tables between discovery and the end of their transfer at once (see WorkflowService).  New tables wait
+    for room, which keeps the queued work, and what it holds, to the size of the pipeline.  0 gives four tables for
+    each thread the pools can grow to.
+     */
+    private int pipelineCapacity = 0;
+    /*
+    Run the waiting transfers largest first by their estimated cost (see TransferCost), so a big table doesn't
+    start last and set the end of the run.  The transfers to choose from are the ones waiting for a thread, up to
+    'pipelineCapacity'.  With 'largestFirstFairShare', a table's cost is divided by the transfers its database
+    already has scheduled and not done, so one database of big tables doesn't take every thread.
+     */
+    private boolean largestFirst = Boolean.FALSE;
+    private boolean largestFirstFairShare = Boolean.FALSE;
+    /*
+    Run the LEFT and RIGHT SQL of the transfers on a pool for each cluster (see TableService.runTableSql), with
+    'leftConcurrency' and 'rightConcurrency' threads and HS2 connections (0 is the transfer concurrency).  The job
+    pool is sized to both together, so while some tables wait on a slow cluster the other keeps working on the
+    tables that are through.
+     */
+    private boolean environmentPools = Boolean.FALSE;
+    private int leftConcurrency = 0;
+    private int rightConcurrency = 0;
+    /*
+    The EXPORT_IMPORT tables exported and not yet imported at once, by count and by their data size (see
+    ExportImportPipelineService).  0 tables is twice the RIGHT concurrency, so each importer has the next table
+    waiting for it, and 0 bytes is no limit.
+     */
+    private int exportImportInFlight = 0;
+    private long exportImportInFlightBytes = 0L;
+    /*
+    Run a table's independent DDL steps, like its batches of partition adds, on parallel connections (see
+    SqlStepPlan).  The latency of every step is recorded by its kind either way.
+     */
+    private boolean parallelDdl = Boolean.FALSE;
+
+    public int adaptiveConcurrencyCeiling(int concurrency) {
+        return Math.max(adaptiveConcurrencyMin, adaptiveConcurrencyMax > 0 ? adaptiveConcurrencyMax : concurrency * 2);
+    }
+
+    public int environmentConcurrency(Environment environment, int concurrency) {
+        int rtn = environment == Environment.RIGHT ? rightConcurrency : leftConcurrency;
+        return rtn > 0 ? rtn : concurrency;
+    }
+
+    public int exportImportInFlight(int concurrency) {
+        return exportImportInFlight > 0 ? exportImportInFlight : 2 * environmentConcurrency(Environment.RIGHT, concurrency);
+    }
+
+    /*
+    The threads for the job pool.  With 'environmentPools', enough to keep both clusters busy.
+     */
+    public int jobConcurrency(int concurrency) {
+        if (!environmentPools) {
+            return concurrency;
+        }
+        return environmentConcurrency(Environment.LEFT, concurrency) + environmentConcurrency(Environment.RIGHT, concurrency);
+    }
+
+    public int pipelineCapacity(int concurrency) {
+        int jobs = jobConcurrency(concurrency);
+        return pipelineCapacity > 0 ? pipelineCapacity : 4 * Math.max(jobs, adaptiveConcurrencyCeiling(jobs));
+    }
 
 }
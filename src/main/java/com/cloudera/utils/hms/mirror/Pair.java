@@ -17,6 +17,7 @@
 
 package com.cloudera.utils.hms.mirror;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -27,6 +28,11 @@ import lombok.ToString;
 public class Pair {
     private String description;
     private String action;
+    /*
+    Consecutive pairs in the same group don't depend on each other, so they can be run at the same time.
+     */
+    @JsonIgnore
+    private String group = null;
 
     public Pair() {
     }
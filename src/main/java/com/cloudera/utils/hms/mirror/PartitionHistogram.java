@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import java.util.*;
+
+/*
+The size (bytes and files) of each partition of a table, from the partition params ('totalSize', 'numFiles').
+
+The partitions are put in classes by 'spread': the number of reducers (and so files) a partition should be written
+with to land near the target file size of its format.  Spreads are powers of 2, so a table with thousands of
+partitions ends up with a handful of classes.
+ */
+public class PartitionHistogram {
+
+    public static final int MAX_SPREAD = 1024;
+
+    private final Map<String, long[]> sizes = new LinkedHashMap<>();
+    private long totalBytes = 0L;
+    private long totalFiles = 0L;
+
+    public void add(String partition, long bytes, long files) {
+        long[] size = sizes.computeIfAbsent(partition, k -> new long[2]);
+        totalBytes += bytes - size[0];
+        totalFiles += files - size[1];
+        size[0] = bytes;
+        size[1] = files;
+    }
+
+    public int size() {
+        return sizes.size();
+    }
+
+    public boolean isEmpty() {
+        return sizes.isEmpty();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getTotalFiles() {
+        return totalFiles;
+    }
+
+    public long getBytes(String partition) {
+        long[] size = sizes.get(partition);
+        return size == null ? 0L : size[0];
+    }
+
+    /*
+    Smallest power of 2 that keeps the partitions files at or under the target size.
+     */
+    public static int spread(long bytes, long targetSize) {
+        if (targetSize <= 0 || bytes <= targetSize) {
+            return 1;
+        }
+        long files = (bytes + targetSize - 1) / targetSize;
+        int rtn = Integer.highestOneBit((int) Math.min(files, MAX_SPREAD));
+        return rtn < files ? Math.min(rtn << 1, MAX_SPREAD) : rtn;
+    }
+
+    /*
+    The number of partitions in each spread class, for reporting.
+     */
+    public SortedMap<Integer, Integer> getClassCounts(long targetSize) {
+        SortedMap<Integer, Integer> rtn = new TreeMap<>();
+        for (long[] size : sizes.values()) {
+            rtn.merge(spread(size[0], targetSize), 1, Integer::sum);
+        }
+        return rtn;
+    }
+
+    /*
+    The partitions that need more than one reducer, by spread class (largest first).  Only the 'limit' largest
+    partitions are listed, the rest are left to the caller.
+     */
+    public SortedMap<Integer, List<String>> getSpreadClasses(long targetSize, int limit) {
+        List<Map.Entry<String, long[]>> large = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : sizes.entrySet()) {
+            if (spread(entry.getValue()[0], targetSize) > 1) {
+                large.add(entry);
+            }
+        }
+        large.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        SortedMap<Integer, List<String>> rtn = new TreeMap<>(Comparator.reverseOrder());
+        for (int i = 0; i < large.size() && i < limit; i++) {
+            rtn.computeIfAbsent(spread(large.get(i).getValue()[0], targetSize), k -> new ArrayList<>())
+                    .add(large.get(i).getKey());
+        }
+        return rtn;
+    }
+
+    /*
+    The spread for the partitions past the 'limit' largest that getSpreadClasses lists, based on their average size.
+     */
+    public int getRemainderSpread(long targetSize, int limit) {
+        List<Long> large = new ArrayList<>();
+        for (long[] size : sizes.values()) {
+            if (spread(size[0], targetSize) > 1) {
+                large.add(size[0]);
+            }
+        }
+        if (large.size() <= limit) {
+            return 1;
+        }
+        large.sort(Comparator.reverseOrder());
+        long bytes = 0L;
+        for (int i = limit; i < large.size(); i++) {
+            bytes += large.get(i);
+        }
+        return spread(bytes / (large.size() - limit), targetSize);
+    }
+
+    /*
+    The reducers needed to write every partition at its spread.
+     */
+    public long getReducers(long targetSize) {
+        long rtn = 0L;
+        for (long[] size : sizes.values()) {
+            rtn += spread(size[0], targetSize);
+        }
+        return rtn;
+    }
+
+}
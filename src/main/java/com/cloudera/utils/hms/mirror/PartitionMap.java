@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/*
+Partition name -> location map for tables with a large number of partitions.
+
+Partition names are split into their 'key=value' segments, and each segment is stored once in a dictionary.  A
+name is kept as the packed (varint) segment ids.  Locations are kept relative to the table location, which is
+stored once: the usual '<table location>/<partition name>' location costs nothing, other locations under the
+table only store what follows the table location.  A few other table locations are tracked the same way, so
+translated (RIGHT) locations stay compact too.
+
+Iteration is in insertion order.  Values can be replaced with 'put' or 'Map.Entry.setValue', but entries can't
+be removed individually (only 'clear').  Not thread safe, same as the HashMap it replaces.
+ */
+public class PartitionMap extends AbstractMap<String, String> {
+
+    private static final byte[] DEFAULT_LOCATION = new byte[0];
+    // Location tags: the prefix index, or ABSOLUTE.  With DEFAULT set, '<prefix>/<partition name>'.
+    private static final byte ABSOLUTE = 0x3F;
+    private static final byte DEFAULT = 0x40;
+    private static final int MAX_PREFIXES = 0x3F;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Shared with copies, it only grows.
+    private Dictionary dictionary;
+    // Table locations, the first is the one from the first partition added.
+    private List<String> prefixes = new ArrayList<>();
+
+    // The encoded names, back to back.  Name 'i' is nameBytes[nameOffsets[i] .. nameOffsets[i + 1]).
+    private byte[] nameBytes = new byte[INITIAL_CAPACITY * 4];
+    private int[] nameOffsets = new int[INITIAL_CAPACITY + 1];
+    private byte[][] locations = new byte[INITIAL_CAPACITY][];
+    // Open addressing index into the names/locations (index + 1, 0 is empty).
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private int size = 0;
+    private String lastAbsoluteValue = null;
+    private byte[] lastAbsolute = null;
+
+    private transient Set<Map.Entry<String, String>> entrySet = null;
+
+    public PartitionMap() {
+        this.dictionary = new Dictionary();
+    }
+
+    public PartitionMap(Map<String, String> partitions) {
+        if (partitions instanceof PartitionMap) {
+            // The encoded locations are never modified in place, so they can be shared.
+            PartitionMap source = (PartitionMap) partitions;
+            this.dictionary = source.dictionary;
+            this.prefixes = new ArrayList<>(source.prefixes);
+            this.nameBytes = Arrays.copyOf(source.nameBytes, source.nameOffsets[source.size]);
+            this.nameOffsets = Arrays.copyOf(source.nameOffsets, source.size + 1);
+            this.locations = Arrays.copyOf(source.locations, source.size);
+            this.slots = Arrays.copyOf(source.slots, source.slots.length);
+            this.size = source.size;
+        } else {
+            this.dictionary = new Dictionary();
+            if (partitions != null) {
+                putAll(partitions);
+            }
+        }
+    }
+
+    public String getTableLocation() {
+        return prefixes.isEmpty() ? null : prefixes.get(0);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int idx = indexOf((String) key);
+        return idx >= 0 ? decodeLocation(idx) : null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        Objects.requireNonNull(key, "Partition name can't be null");
+        int idx = indexOf(key);
+        if (idx >= 0) {
+            String previous = decodeLocation(idx);
+            locations[idx] = encodeLocation(key, value);
+            return previous;
+        }
+        byte[] name = encodeName(key, true);
+        if (size == locations.length) {
+            locations = Arrays.copyOf(locations, Math.max(INITIAL_CAPACITY, size * 2));
+            nameOffsets = Arrays.copyOf(nameOffsets, locations.length + 1);
+        }
+        int offset = nameOffsets[size];
+        if (offset + name.length > nameBytes.length) {
+            nameBytes = Arrays.copyOf(nameBytes, Math.max(offset + name.length, nameBytes.length * 2));
+        }
+        System.arraycopy(name, 0, nameBytes, offset, name.length);
+        nameOffsets[size + 1] = offset + name.length;
+        locations[size] = encodeLocation(key, value);
+        size++;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            insertSlot(size - 1);
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        nameBytes = new byte[INITIAL_CAPACITY * 4];
+        nameOffsets = new int[INITIAL_CAPACITY + 1];
+        locations = new byte[INITIAL_CAPACITY][];
+        slots = new int[INITIAL_CAPACITY * 2];
+        size = 0;
+        prefixes.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new Iterator<Map.Entry<String, String>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next() {
+                            if (next >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            return new Entry(next++);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private int indexOf(String key) {
+        byte[] name = encodeName(key, false);
+        if (name == null) {
+            return -1;
+        }
+        int mask = slots.length - 1;
+        int slot = hash(name, 0, name.length) & mask;
+        while (slots[slot] != 0) {
+            int idx = slots[slot] - 1;
+            if (nameEquals(idx, name)) {
+                return idx;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertSlot(int idx) {
+        int mask = slots.length - 1;
+        int slot = hash(nameBytes, nameOffsets[idx], nameOffsets[idx + 1]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = idx + 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            insertSlot(i);
+        }
+    }
+
+    /*
+    The encoded names are short and made of small ids, so they need a better spread than Arrays.hashCode (FNV-1a
+    with the murmur3 finalizer).
+     */
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private boolean nameEquals(int idx, byte[] name) {
+        int offset = nameOffsets[idx];
+        if (nameOffsets[idx + 1] - offset != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (nameBytes[offset + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+    Pack the segment ids of the name.  Returns null when 'add' is false and a segment isn't in the dictionary.
+     */
+    private byte[] encodeName(String name, boolean add) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8);
+        int start = 0;
+        while (true) {
+            int end = name.indexOf('/', start);
+            String segment = end < 0 ? name.substring(start) : name.substring(start, end);
+            int id = add ? dictionary.add(segment) : dictionary.id(segment);
+            if (id < 0) {
+                return null;
+            }
+            while ((id & ~0x7F) != 0) {
+                out.write((id & 0x7F) | 0x80);
+                id >>>= 7;
+            }
+            out.write(id);
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+        return out.toByteArray();
+    }
+
+    private String decodeName(int idx) {
+        StringBuilder sb = new StringBuilder();
+        int pos = nameOffsets[idx];
+        int end = nameOffsets[idx + 1];
+        while (pos < end) {
+            int id = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = nameBytes[pos++];
+                id |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(dictionary.segment(id));
+        }
+        return sb.toString();
+    }
+
+    private byte[] encodeLocation(String name, String location) {
+        if (location == null) {
+            return null;
+        }
+        int prefix = -1;
+        for (int i = 0; i < prefixes.size(); i++) {
+            if (location.startsWith(prefixes.get(i))) {
+                prefix = i;
+                break;
+            }
+        }
+        if (prefix < 0 && prefixes.size() < MAX_PREFIXES) {
+            // Take the table location from the partition location.
+            if (location.endsWith("/" + name)) {
+                prefixes.add(location.substring(0, location.length() - name.length() - 1));
+                prefix = prefixes.size() - 1;
+            } else {
+                int last = location.lastIndexOf('/');
+                if (last > 0) {
+                    prefixes.add(location.substring(0, last));
+                    prefix = prefixes.size() - 1;
+                }
+            }
+        }
+        if (prefix < 0) {
+            // Placeholders (NOT_SET) repeat for every partition, share them.
+            if (lastAbsolute != null && location.equals(lastAbsoluteValue)) {
+                return lastAbsolute;
+            }
+            lastAbsoluteValue = location;
+            lastAbsolute = tagged(ABSOLUTE, location);
+            return lastAbsolute;
+        }
+        String tableLocation = prefixes.get(prefix);
+        if (location.length() == tableLocation.length() + name.length() + 1
+                && location.charAt(tableLocation.length()) == '/' && location.endsWith(name)) {
+            return prefix == 0 ? DEFAULT_LOCATION : new byte[]{(byte) (DEFAULT | prefix)};
+        }
+        return tagged((byte) prefix, location.substring(tableLocation.length()));
+    }
+
+    private static byte[] tagged(byte tag, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        byte[] rtn = new byte[bytes.length + 1];
+        rtn[0] = tag;
+        System.arraycopy(bytes, 0, rtn, 1, bytes.length);
+        return rtn;
+    }
+
+    private String decodeLocation(int idx) {
+        byte[] location = locations[idx];
+        if (location == null) {
+            return null;
+        }
+        if (location == DEFAULT_LOCATION) {
+            return prefixes.get(0) + "/" + decodeName(idx);
+        }
+        byte tag = location[0];
+        if ((tag & DEFAULT) != 0) {
+            return prefixes.get(tag & ~DEFAULT) + "/" + decodeName(idx);
+        }
+        String value = new String(location, 1, location.length - 1, StandardCharsets.UTF_8);
+        return tag == ABSOLUTE ? value : prefixes.get(tag) + value;
+    }
+
+    private class Entry implements Map.Entry<String, String> {
+        private final int idx;
+
+        Entry(int idx) {
+            this.idx = idx;
+        }
+
+        @Override
+        public String getKey() {
+            return decodeName(idx);
+        }
+
+        @Override
+        public String getValue() {
+            return decodeLocation(idx);
+        }
+
+        @Override
+        public String setValue(String value) {
+            String previous = decodeLocation(idx);
+            locations[idx] = encodeLocation(getKey(), value);
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    /*
+    The 'key=value' segments of the partition names.
+     */
+    private static class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> segments = new ArrayList<>();
+
+        synchronized int add(String segment) {
+            Integer id = ids.get(segment);
+            if (id == null) {
+                id = segments.size();
+                segments.add(segment);
+                ids.put(segment, id);
+            }
+            return id;
+        }
+
+        synchronized int id(String segment) {
+            Integer id = ids.get(segment);
+            return id == null ? -1 : id;
+        }
+
+        synchronized String segment(int id) {
+            return segments.get(id);
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import lombok.Getter;
+
+import java.util.*;
+
+/*
+A slice of a tables partitions (by name, IE: 'dt=2024-01-01/hr=1'), moved with its own
+'INSERT OVERWRITE ... SELECT * WHERE ...'.
+
+A dynamic partition insert only overwrites the partitions it writes, so a range can be run (and rerun) without
+touching the partitions of the other ranges.
+ */
+@Getter
+public class PartitionRange {
+
+    public static final String DEFAULT_PARTITION = "__HIVE_DEFAULT_PARTITION__";
+
+    // 1 based, for the 'n of m' descriptions.
+    private final int range;
+    private final List<String> partitions;
+
+    public PartitionRange(int range, List<String> partitions) {
+        this.range = range;
+        this.partitions = partitions;
+    }
+
+    /*
+    The number of partitions to put in each range, 0 when the partitions shouldn't be split.
+
+    Without partition level stats, the tables data size is spread evenly over its partitions to work out how many
+    fit in 'maxBytes'.
+     */
+    public static int partitionsPerRange(int partitionCount, long dataSize, int maxPartitions, long maxBytes) {
+        int rtn = Math.max(maxPartitions, 0);
+        if (maxBytes > 0 && dataSize > 0 && partitionCount > 0) {
+            long avgBytes = Math.max(1L, dataSize / partitionCount);
+            int byBytes = (int) Math.min(Integer.MAX_VALUE, Math.max(1L, maxBytes / avgBytes));
+            rtn = rtn > 0 ? Math.min(rtn, byBytes) : byBytes;
+        }
+        return rtn;
+    }
+
+    /*
+    Split the partitions, in order, into ranges of 'partitionsPerRange'.  A single range when that's 0 or covers them
+    all.
+     */
+    public static List<PartitionRange> split(Collection<String> partitionNames, int partitionsPerRange) {
+        List<PartitionRange> rtn = new ArrayList<>();
+        if (partitionNames == null || partitionNames.isEmpty()) {
+            return rtn;
+        }
+        int size = partitionsPerRange > 0 ? partitionsPerRange : partitionNames.size();
+        List<String> current = new ArrayList<>(Math.min(size, partitionNames.size()));
+        for (String name : partitionNames) {
+            if (current.size() == size) {
+                rtn.add(new PartitionRange(rtn.size() + 1, current));
+                current = new ArrayList<>(size);
+            }
+            current.add(name);
+        }
+        rtn.add(new PartitionRange(rtn.size() + 1, current));
+        return rtn;
+    }
+
+    /*
+    The filter for the partitions in the range.  An 'IN' list when the table has a single partition column,
+    otherwise each partition spec OR'd together.
+     */
+    public String getWhereClause() {
+        List<List<String[]>> specs = new ArrayList<>(partitions.size());
+        boolean singleColumn = true;
+        String column = null;
+        for (String name : partitions) {
+            List<String[]> spec = parse(name);
+            specs.add(spec);
+            if (spec.size() != 1 || (column != null && !column.equals(spec.get(0)[0]))) {
+                singleColumn = false;
+            } else {
+                column = spec.get(0)[0];
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if (singleColumn) {
+            boolean nulls = false;
+            StringBuilder in = new StringBuilder();
+            for (List<String[]> spec : specs) {
+                String value = spec.get(0)[1];
+                if (value == null) {
+                    nulls = true;
+                } else {
+                    if (in.length() > 0) {
+                        in.append(",");
+                    }
+                    in.append(quote(value));
+                }
+            }
+            if (in.length() > 0) {
+                sb.append("`").append(column).append("` IN (").append(in).append(")");
+            }
+            if (nulls) {
+                if (sb.length() > 0) {
+                    sb.append(" OR ");
+                }
+                sb.append("`").append(column).append("` IS NULL");
+            }
+        } else {
+            for (List<String[]> spec : specs) {
+                if (sb.length() > 0) {
+                    sb.append(" OR ");
+                }
+                sb.append("(");
+                for (int i = 0; i < spec.size(); i++) {
+                    if (i > 0) {
+                        sb.append(" AND ");
+                    }
+                    sb.append("`").append(spec.get(i)[0]).append("`");
+                    if (spec.get(i)[1] == null) {
+                        sb.append(" IS NULL");
+                    } else {
+                        sb.append("=").append(quote(spec.get(i)[1]));
+                    }
+                }
+                sb.append(")");
+            }
+        }
+        return sb.toString();
+    }
+
+    /*
+    The (column, value) pairs of the partition name.  The value is null for the default (null) partition.
+     */
+    protected static List<String[]> parse(String name) {
+        List<String[]> rtn = new ArrayList<>();
+        for (String element : name.split("/")) {
+            int eq = element.indexOf('=');
+            if (eq == -1) {
+                throw new IllegalArgumentException("Invalid partition spec: " + name);
+            }
+            String value = unescape(element.substring(eq + 1));
+            rtn.add(new String[]{unescape(element.substring(0, eq)), DEFAULT_PARTITION.equals(value) ? null : value});
+        }
+        return rtn;
+    }
+
+    /*
+    Undo the '%XX' escaping the metastore applies to partition names.
+     */
+    protected static String unescape(String path) {
+        if (path.indexOf('%') == -1) {
+            return path;
+        }
+        StringBuilder sb = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '%' && i + 2 < path.length()) {
+                int high = Character.digit(path.charAt(i + 1), 16);
+                int low = Character.digit(path.charAt(i + 2), 16);
+                if (high >= 0 && low >= 0) {
+                    sb.append((char) (high * 16 + low));
+                    i += 2;
+                    continue;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+}
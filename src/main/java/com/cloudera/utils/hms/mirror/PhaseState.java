@@ -21,5 +21,7 @@ public enum PhaseState {
     INIT, STARTED, ERROR,
     SUCCESS,
     // This happens on RETRY only when it was previously SUCCESS.
-    RETRY_SKIPPED_PAST_SUCCESS
+    RETRY_SKIPPED_PAST_SUCCESS,
+    // A 'sync-incremental' table that hasn't changed since the last sync.
+    SYNC_UNCHANGED
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Run wide counters that are collected by the various services while the process runs.  Keys are
+free-form, dot separated names (IE: 'stage.metadata.completed') and are reported in key order.
+
+Decisions the process makes along the way (IE: a pool resized) are kept as events, the last MAX_EVENTS of them.
+ */
+@Component
+@Slf4j
+public class RunStatistics {
+
+    protected static final int MAX_EVENTS = 200;
+
+    private final Map<String, AtomicLong> counters = new ConcurrentSkipListMap<>();
+    private final Deque<String[]> events = new ConcurrentLinkedDeque<>();
+
+    public long add(String key, long delta) {
+        return counters.computeIfAbsent(key, k -> new AtomicLong(0)).addAndGet(delta);
+    }
+
+    public void event(String message) {
+        events.addLast(new String[]{new SimpleDateFormat("HH:mm:ss").format(new Date()), message});
+        while (events.size() > MAX_EVENTS) {
+            events.pollFirst();
+        }
+    }
+
+    public List<String> getEvents() {
+        List<String> rtn = new ArrayList<>();
+        for (String[] event : events) {
+            rtn.add(event[0] + " " + event[1]);
+        }
+        return rtn;
+    }
+
+    public long get(String key) {
+        AtomicLong counter = counters.get(key);
+        return counter == null ? 0L : counter.get();
+    }
+
+    public long increment(String key) {
+        return add(key, 1L);
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    /*
+    Keep the highest value seen for the key.  Used for 'peak' type measurements.
+     */
+    public long max(String key, long value) {
+        return counters.computeIfAbsent(key, k -> new AtomicLong(value)).accumulateAndGet(value, Math::max);
+    }
+
+    public void set(String key, long value) {
+        counters.computeIfAbsent(key, k -> new AtomicLong(0)).set(value);
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> rtn = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            rtn.put(entry.getKey(), entry.getValue().get());
+        }
+        return rtn;
+    }
+
+    public String toReport() {
+        StringBuilder sb = new StringBuilder();
+        DecimalFormat lngdecf = new DecimalFormat("#,###");
+        sb.append("| Statistic | Value |\n");
+        sb.append("|:---|---:|\n");
+        for (Map.Entry<String, Long> entry : snapshot().entrySet()) {
+            sb.append("| ").append(entry.getKey()).append(" | ").append(lngdecf.format(entry.getValue())).append(" |\n");
+        }
+        if (!events.isEmpty()) {
+            sb.append("\n| Time | Event |\n");
+            sb.append("|:---|:---|\n");
+            for (String[] event : events) {
+                sb.append("| ").append(event[0]).append(" | ").append(event[1]).append(" |\n");
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+The dependencies between the SQL steps of a table (see TableService.runTableSql).  A step depends on every step
+before it, except those in its run of independent steps: consecutive steps with the same group.  A run can go on
+parallel connections, each one first replaying the session steps ('set' and 'use') that came before it, so the
+session a step was built for goes with it.
+
+Groups are set on the pairs where they're built (IE: the partition ranges of a transfer).  With
+'optimization.parallelDdl', these are found as well:
+
+- the batches of 'ALTER TABLE ... ADD IF NOT EXISTS PARTITION' for a table,
+- the 'ALTER TABLE ... PARTITION (...) SET LOCATION' for a table's partitions.
+
+Each of those touches its own partitions and can be run again, so they don't depend on each other.
+
+On a resume, the steps the journal has as completed are left out of their step or run (see steps).
+ */
+public final class SqlStepPlan {
+
+    private static final Pattern ADD_PARTITIONS = Pattern.compile(
+            "^ALTER\\s+TABLE\\s+(\\S+)\\s+ADD\\s+IF\\s+NOT\\s+EXISTS\\s+PARTITION", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PARTITION_LOCATION = Pattern.compile(
+            "^ALTER\\s+TABLE\\s+(\\S+)\\s+PARTITION\\s*\\(.*\\)\\s*SET\\s+LOCATION", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private SqlStepPlan() {
+    }
+
+    /*
+    The group of each step, null for a step that runs alone.  A group of one is dropped.
+     */
+    public static String[] groups(List<Pair> sqlList, boolean inferred) {
+        String[] rtn = new String[sqlList.size()];
+        for (int i = 0; i < sqlList.size(); i++) {
+            Pair pair = sqlList.get(i);
+            rtn[i] = pair.getGroup() != null ? pair.getGroup() : inferred ? inferGroup(pair) : null;
+        }
+        for (int i = 0; i < rtn.length; i++) {
+            if (rtn[i] != null && sqlList.get(i).getGroup() == null
+                    && (i == 0 || !rtn[i].equals(rtn[i - 1]))
+                    && (i == rtn.length - 1 || !rtn[i].equals(rtn[i + 1]))) {
+                rtn[i] = null;
+            }
+        }
+        return rtn;
+    }
+
+    /*
+    The steps to run, in order: a run of a group, or a step on its own.  The steps 'completed' by the run being
+    resumed are left out (kept as resumed), except the session steps, which are always needed.
+     */
+    public static List<Step> steps(List<Pair> sqlList, boolean inferred, Predicate<Pair> completed) {
+        List<Step> rtn = new ArrayList<>();
+        String[] groups = groups(sqlList, inferred);
+        for (int i = 0; i < sqlList.size(); i++) {
+            int end = i + 1;
+            if (groups[i] != null) {
+                while (end < sqlList.size() && groups[i].equals(groups[end])) {
+                    end++;
+                }
+            }
+            Step step = new Step(groups[i]);
+            for (Pair pair : sqlList.subList(i, end)) {
+                if ((step.getGroup() != null || !isSession(pair)) && completed.test(pair)) {
+                    step.getResumed().add(pair);
+                } else {
+                    step.getPairs().add(pair);
+                }
+            }
+            rtn.add(step);
+            i = end - 1;
+        }
+        return rtn;
+    }
+
+    protected static String inferGroup(Pair pair) {
+        String action = pair.getAction() == null ? "" : pair.getAction().trim();
+        Matcher matcher = ADD_PARTITIONS.matcher(action);
+        if (matcher.find()) {
+            return "add partitions " + matcher.group(1);
+        }
+        matcher = PARTITION_LOCATION.matcher(action);
+        if (matcher.find()) {
+            return "partition locations " + matcher.group(1);
+        }
+        return null;
+    }
+
+    public static boolean isSession(Pair pair) {
+        String action = pair.getAction() == null ? "" : pair.getAction().trim();
+        return action.regionMatches(true, 0, "set ", 0, 4) || action.regionMatches(true, 0, "use ", 0, 4);
+    }
+
+    /*
+    What the step is, from its first word (IE: 'alter', 'insert'), for the latency counters.
+     */
+    public static String kind(Pair pair) {
+        String action = pair.getAction() == null ? "" : pair.getAction().trim();
+        int end = 0;
+        while (end < action.length() && Character.isLetter(action.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? "other" : action.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    /*
+    A step on its own (no group), or a run of a group's steps.
+     */
+    @Getter
+    public static final class Step {
+        private final String group;
+        private final List<Pair> pairs = new ArrayList<>();
+        private final List<Pair> resumed = new ArrayList<>();
+
+        Step(String group) {
+            this.group = group;
+        }
+    }
+
+}
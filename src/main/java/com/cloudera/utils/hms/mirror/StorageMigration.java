@@ -28,6 +28,10 @@ public class StorageMigration {
     private DataStrategyEnum strategy = DataStrategyEnum.SQL;
     private boolean distcp = Boolean.FALSE;
     private DistcpFlow dataFlow = DistcpFlow.PULL;
+    /*
+    When set, also split the distcp sources into this many jobs balanced by the collected data sizes.
+     */
+    private int distcpJobs = 0;
 
     public void setStrategy(DataStrategyEnum strategy) {
         switch (strategy) {
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import java.util.*;
+
+import static com.cloudera.utils.hms.util.TableUtils.*;
+
+/*
+The 'SHOW CREATE TABLE' lines for a table.
+
+The lines are still the definition (that's what gets rendered, saved and compared), but the parts we check over
+and over (create type, partitions, buckets, the clause markers and the table properties) are parsed in a single
+pass the first time they're needed and kept until the lines change.  Any change through the List interface drops
+the parsed state, so the TableUtils edits (makeExternal, stripLocation, upsertTblProperty, ...) work as before.
+ */
+public class TableDefinition extends AbstractList<String> implements RandomAccess {
+
+    private final ArrayList<String> lines;
+    private Parsed parsed = null;
+
+    public TableDefinition() {
+        this.lines = new ArrayList<>();
+    }
+
+    public TableDefinition(Collection<String> lines) {
+        this.lines = lines == null ? new ArrayList<>() : new ArrayList<>(lines);
+    }
+
+    /*
+    The definition as a TableDefinition.  Plain lists are copied, so only use the result to read.
+     */
+    public static TableDefinition of(List<String> definition) {
+        return definition instanceof TableDefinition ? (TableDefinition) definition : new TableDefinition(definition);
+    }
+
+    @Override
+    public String get(int index) {
+        return lines.get(index);
+    }
+
+    @Override
+    public int size() {
+        return lines.size();
+    }
+
+    @Override
+    public String set(int index, String element) {
+        parsed = null;
+        return lines.set(index, element);
+    }
+
+    @Override
+    public void add(int index, String element) {
+        parsed = null;
+        modCount++;
+        lines.add(index, element);
+    }
+
+    @Override
+    public String remove(int index) {
+        parsed = null;
+        modCount++;
+        return lines.remove(index);
+    }
+
+    @Override
+    public void clear() {
+        parsed = null;
+        modCount++;
+        lines.clear();
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        // The clause markers ('LOCATION', 'TBLPROPERTIES (', ...) are looked up by value all the time.
+        if (o instanceof String && !isColumnOrProperty((String) o)) {
+            Integer idx = parsed().markers.get(o);
+            return idx == null ? -1 : idx;
+        }
+        return lines.indexOf(o);
+    }
+
+    public String render() {
+        return String.join("\n", lines);
+    }
+
+    public boolean isExternal() {
+        return parsed().external;
+    }
+
+    public boolean isManaged() {
+        return parsed().managed;
+    }
+
+    public boolean isView() {
+        return parsed().view;
+    }
+
+    public boolean isPartitioned() {
+        return parsed().partitioned;
+    }
+
+    /*
+    Has a 'LOCATION' clause, which the connector (non-native) tables don't.
+     */
+    public boolean hasLocation() {
+        return parsed().location;
+    }
+
+    /*
+    The 'INTO n BUCKETS' line, null when the table isn't bucketed.
+     */
+    public String getBucketsLine() {
+        return parsed().bucketsLine;
+    }
+
+    /*
+    The index of the first table property line for the key (case insensitive), -1 when missing.
+     */
+    public int getTblPropertyIndex(String key) {
+        Integer idx = parsed().properties.get(key.toLowerCase());
+        return idx == null ? -1 : idx;
+    }
+
+    /*
+    The first (trimmed) quoted line that starts with the prefix (case insensitive), null when there's none.
+     */
+    public String getQuotedLine(String prefix) {
+        for (int idx : parsed().quoted) {
+            String tline = lines.get(idx).trim();
+            if (tline.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                return tline;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isColumnOrProperty(String line) {
+        String tline = line.trim();
+        return tline.startsWith("`") || tline.startsWith("'");
+    }
+
+    private Parsed parsed() {
+        Parsed rtn = parsed;
+        if (rtn == null) {
+            rtn = new Parsed(lines);
+            parsed = rtn;
+        }
+        return rtn;
+    }
+
+    private static class Parsed {
+        private boolean external = false;
+        private boolean managed = false;
+        private boolean view = false;
+        private boolean partitioned = false;
+        private boolean location = false;
+        private String bucketsLine = null;
+        private final Map<String, Integer> markers = new HashMap<>();
+        private final Map<String, Integer> properties = new HashMap<>();
+        private final List<Integer> quoted = new ArrayList<>();
+
+        Parsed(List<String> lines) {
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line == null) {
+                    continue;
+                }
+                String tline = line.trim();
+                if (line.startsWith(CREATE_EXTERNAL_TABLE)) {
+                    external = true;
+                } else if (line.startsWith(CREATE_TABLE)) {
+                    managed = true;
+                }
+                if (tline.startsWith(CREATE_VIEW)) {
+                    view = true;
+                }
+                if (line.startsWith(PARTITIONED_BY)) {
+                    partitioned = true;
+                }
+                if (tline.startsWith(LOCATION)) {
+                    location = true;
+                }
+                if (bucketsLine == null && line.startsWith(INTO)) {
+                    bucketsLine = line;
+                }
+                if (tline.startsWith("'")) {
+                    quoted.add(i);
+                } else if (!tline.startsWith("`")) {
+                    markers.putIfAbsent(line, i);
+                }
+            }
+            Integer tpIdx = markers.get(TBL_PROPERTIES);
+            for (int i = (tpIdx == null ? 0 : tpIdx + 1); i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line != null) {
+                    String key = line.trim().split("=")[0].replace("'", "").toLowerCase();
+                    properties.putIfAbsent(key, i);
+                }
+            }
+        }
+    }
+
+}
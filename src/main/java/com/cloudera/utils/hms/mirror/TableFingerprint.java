@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import com.cloudera.utils.hms.mirror.datastrategy.DataStrategyEnum;
+import com.cloudera.utils.hms.mirror.service.MetastoreStatsService;
+import com.cloudera.utils.hms.mirror.service.StatsCacheService;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.cloudera.utils.hms.mirror.MirrorConf.*;
+
+/*
+What a table looked like on the LEFT the last time it was synced: digests of its definition and partitions, its
+owner and size.  Used by 'sync-incremental' to skip the tables that haven't changed since.
+ */
+@Getter
+@Setter
+public class TableFingerprint {
+
+    /*
+    Table properties that change without the table changing (stats and timestamps).
+     */
+    protected static final Set<String> VOLATILE_PROPERTIES = new HashSet<>(Arrays.asList(
+            "transient_lastDdlTime", "last_modified_by", "last_modified_time", "COLUMN_STATS_ACCURATE",
+            "numFiles", "numRows", "rawDataSize", "totalSize", "numFilesErasureCoded", "discover.partitions"));
+
+    /*
+    The strategies that move the data, where a table with unknown data can't be taken as unchanged.
+     */
+    protected static final Set<DataStrategyEnum> DATA_STRATEGIES = EnumSet.of(DataStrategyEnum.SQL,
+            DataStrategyEnum.EXPORT_IMPORT, DataStrategyEnum.HYBRID, DataStrategyEnum.STORAGE_MIGRATION);
+
+    /*
+    Stats sources that may lag the data (the metastore's parameters and the stats cache).
+     */
+    protected static final Set<String> STALE_SOURCES = new HashSet<>(Arrays.asList(
+            MetastoreStatsService.SOURCE_METASTORE, StatsCacheService.SOURCE_CACHE));
+
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile("^'([^']+)'\\s*=");
+
+    private String definition;
+    private String partitions;
+    private int partitionCount;
+    private String owner;
+    private Long dataSize;
+    private Integer fileCount;
+    private DataStrategyEnum strategy;
+    private long recorded;
+
+    public static TableFingerprint of(EnvironmentTable et, DataStrategyEnum strategy) {
+        TableFingerprint rtn = new TableFingerprint();
+        List<String> lines = new ArrayList<>();
+        if (et.getDefinition() != null) {
+            for (String line : et.getDefinition()) {
+                String trimmed = line.trim();
+                Matcher matcher = PROPERTY_PATTERN.matcher(trimmed);
+                if (trimmed.isEmpty() || (matcher.find() && VOLATILE_PROPERTIES.contains(matcher.group(1)))) {
+                    continue;
+                }
+                lines.add(trimmed);
+            }
+        }
+        rtn.setDefinition(digest(lines));
+        // Partition spec and location, in spec order.
+        List<String> partitions = new ArrayList<>();
+        for (Map.Entry<String, String> entry : new TreeMap<>(et.getPartitions()).entrySet()) {
+            partitions.add(entry.getKey() + "=" + entry.getValue());
+        }
+        rtn.setPartitions(digest(partitions));
+        rtn.setPartitionCount(partitions.size());
+        rtn.setOwner(et.getOwner());
+        Number dataSize = measured(et, DATA_SIZE);
+        rtn.setDataSize(dataSize != null ? dataSize.longValue() : null);
+        Number fileCount = measured(et, FILE_COUNT);
+        rtn.setFileCount(fileCount != null ? fileCount.intValue() : null);
+        rtn.setStrategy(strategy);
+        return rtn;
+    }
+
+    /*
+    What's different from the 'previous' fingerprint.  Empty when nothing is.
+     */
+    public List<String> differences(TableFingerprint previous) {
+        List<String> rtn = new ArrayList<>();
+        if (!Objects.equals(definition, previous.getDefinition())) {
+            rtn.add("definition");
+        }
+        if (!Objects.equals(partitions, previous.getPartitions())) {
+            rtn.add("partitions (" + previous.getPartitionCount() + " -> " + partitionCount + ")");
+        }
+        if (!Objects.equals(owner, previous.getOwner())) {
+            rtn.add("owner");
+        }
+        if (DATA_STRATEGIES.contains(strategy) && (dataSize == null || fileCount == null ||
+                previous.getDataSize() == null || previous.getFileCount() == null)) {
+            // No counts to compare, so assume the data moved on.
+            rtn.add("data (no stats)");
+        } else if (!Objects.equals(dataSize, previous.getDataSize()) ||
+                !Objects.equals(fileCount, previous.getFileCount())) {
+            rtn.add("data");
+        }
+        if (strategy != previous.getStrategy()) {
+            rtn.add("strategy");
+        }
+        return rtn;
+    }
+
+    /*
+    The statistic, when it was counted from the filesystem this run.
+     */
+    @SuppressWarnings("unchecked")
+    protected static Number measured(EnvironmentTable et, String key) {
+        Object value = et.getStatistics().get(key);
+        if (!(value instanceof Number)) {
+            return null;
+        }
+        Object sources = et.getStatistics().get(STATS_SOURCE);
+        if (sources instanceof Map && STALE_SOURCES.contains(((Map<String, String>) sources).get(key))) {
+            return null;
+        }
+        return (Number) value;
+    }
+
+    public static String digest(List<String> lines) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String line : lines) {
+                md.update(line.getBytes(StandardCharsets.UTF_8));
+                md.update((byte) '\n');
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
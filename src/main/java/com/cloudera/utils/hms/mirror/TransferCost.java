@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import com.cloudera.utils.hms.mirror.datastrategy.DataStrategyEnum;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static com.cloudera.utils.hms.mirror.MirrorConf.DATA_SIZE;
+import static com.cloudera.utils.hms.mirror.MirrorConf.FILE_COUNT;
+
+/*
+A rough estimate of the work in a table's transfer, from the LEFT statistics collected with its metadata and the
+strategy.  Only the order it puts tables in matters, so the weights are coarse:
+
+- a unit for the table itself (its DDL),
+- one for every PARTITIONS_PER_UNIT partitions (their DDL),
+- and when the strategy moves the data, one for every BYTES_PER_UNIT bytes and FILES_PER_UNIT files.
+
+A table without statistics is costed on its DDL alone.
+ */
+public final class TransferCost {
+
+    public static final long BYTES_PER_UNIT = 64L * 1024 * 1024;
+    public static final long FILES_PER_UNIT = 100;
+    public static final long PARTITIONS_PER_UNIT = 50;
+
+    // The strategies that move the data with SQL or EXPORT/IMPORT as part of the transfer.
+    private static final Set<DataStrategyEnum> MOVES_DATA = EnumSet.of(DataStrategyEnum.SQL,
+            DataStrategyEnum.EXPORT_IMPORT, DataStrategyEnum.HYBRID, DataStrategyEnum.INTERMEDIATE,
+            DataStrategyEnum.STORAGE_MIGRATION, DataStrategyEnum.SQL_ACID_DOWNGRADE_INPLACE,
+            DataStrategyEnum.EXPORT_IMPORT_ACID_DOWNGRADE_INPLACE, DataStrategyEnum.HYBRID_ACID_DOWNGRADE_INPLACE);
+
+    private TransferCost() {
+    }
+
+    /*
+    'distcp' is set when the data is left to distcp, which only needs a plan from the transfer.
+     */
+    public static double estimate(TableMirror tableMirror, DataStrategyEnum strategy, boolean distcp) {
+        EnvironmentTable et = tableMirror.getEnvironmentTable(Environment.LEFT);
+        double rtn = 1 + (double) et.getPartitions().size() / PARTITIONS_PER_UNIT;
+        if (strategy != null && MOVES_DATA.contains(strategy) && !distcp) {
+            Object dataSize = et.getStatistics().get(DATA_SIZE);
+            Object fileCount = et.getStatistics().get(FILE_COUNT);
+            if (dataSize instanceof Number) {
+                rtn += ((Number) dataSize).doubleValue() / BYTES_PER_UNIT;
+            }
+            if (fileCount instanceof Number) {
+                rtn += ((Number) fileCount).doubleValue() / FILES_PER_UNIT;
+            }
+        }
+        return rtn;
+    }
+
+}
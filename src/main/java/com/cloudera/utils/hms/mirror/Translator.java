@@ -20,14 +20,17 @@ package com.cloudera.utils.hms.mirror;
 import com.cloudera.utils.hms.mirror.service.TransferService;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.regex.Matcher;
 
 @Slf4j
@@ -36,8 +39,12 @@ import java.util.regex.Matcher;
 @JsonIgnoreProperties({"dbLocationMap"})
 public class Translator {
 
+    /*
+    The distcp locations by database.  All the job threads add to this as they translate, so it's concurrent
+    all the way down rather than locking the translator.
+     */
     @JsonIgnore
-    private final Map<String, EnvironmentMap> dbLocationMap = new TreeMap<>();
+    private final Map<String, EnvironmentMap> dbLocationMap = new ConcurrentSkipListMap<>();
     @JsonIgnore
     private HmsMirrorConfig hmsMirrorConfig;
     /*
@@ -50,6 +57,11 @@ public class Translator {
     @JsonIgnore
     private Map<String, String> orderedGlobalLocationMap = null;
 
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile LocationMapTrie globalLocationTrie = null;
+
     public static String getLastDirFromUrl(final String urlString) {
         Matcher matcher = TransferService.lastDirPattern.matcher(urlString);
         if (matcher.find()) {
@@ -94,15 +106,46 @@ public class Translator {
 
     public void addGlobalLocationMap(String from, String to) {
         getOrderedGlobalLocationMap().put(from, to);
+        globalLocationTrie = null;
+    }
+
+    public void setGlobalLocationMap(Map<String, String> globalLocationMap) {
+        this.globalLocationMap = globalLocationMap;
+        this.globalLocationTrie = null;
+    }
+
+    public void setOrderedGlobalLocationMap(Map<String, String> orderedGlobalLocationMap) {
+        this.orderedGlobalLocationMap = orderedGlobalLocationMap;
+        this.globalLocationTrie = null;
+    }
+
+    /*
+    Lookup structure for the global location map.  Rebuilt when the map changes, including direct changes
+    to the ordered map (caught by the size check).
+     */
+    @JsonIgnore
+    public LocationMapTrie getGlobalLocationTrie() {
+        Map<String, String> glm = getOrderedGlobalLocationMap();
+        LocationMapTrie rtn = globalLocationTrie;
+        if (rtn == null || rtn.getSize() != glm.size()) {
+            rtn = new LocationMapTrie(glm);
+            globalLocationTrie = rtn;
+        }
+        return rtn;
     }
 
-    public synchronized void addLocation(String database, Environment environment, String originalLocation, String newLocation, int level) {
+    public void addLocation(String database, Environment environment, String originalLocation, String newLocation, int level) {
         EnvironmentMap environmentMap = dbLocationMap.computeIfAbsent(database, k -> new EnvironmentMap());
         environmentMap.addTranslationLocation(environment, originalLocation, newLocation, level);
 //        getDbLocationMap(database, environment).put(originalLocation, newLocation);
     }
 
-    public synchronized Set<EnvironmentMap.TranslationLevel> getDbLocationMap(String database, Environment environment) {
+    public void addLocations(String database, Environment environment, Collection<EnvironmentMap.TranslationLevel> locations) {
+        EnvironmentMap environmentMap = dbLocationMap.computeIfAbsent(database, k -> new EnvironmentMap());
+        environmentMap.addTranslationLocations(environment, locations);
+    }
+
+    public Set<EnvironmentMap.TranslationLevel> getDbLocationMap(String database, Environment environment) {
         EnvironmentMap envMap = dbLocationMap.computeIfAbsent(database, k -> new EnvironmentMap());
         return envMap.getTranslationSet(environment);
     }
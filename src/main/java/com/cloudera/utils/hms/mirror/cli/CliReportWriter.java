@@ -20,6 +20,7 @@ package com.cloudera.utils.hms.mirror.cli;
 import com.cloudera.utils.hms.mirror.*;
 import com.cloudera.utils.hms.mirror.service.HmsMirrorCfgService;
 import com.cloudera.utils.hms.mirror.service.ConnectionPoolService;
+import com.cloudera.utils.hms.mirror.service.DistcpPlanService;
 import com.cloudera.utils.hms.mirror.service.TranslatorService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -39,6 +40,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +57,7 @@ public class CliReportWriter {
     private TranslatorService translatorService;
     private Progression progression;
     private Conversion conversion;
+    private DistcpPlanService distcpPlanService;
 
     @Autowired
     public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
@@ -76,11 +79,92 @@ public class CliReportWriter {
         this.progression = progression;
     }
 
+    @Autowired
+    public void setDistcpPlanService(DistcpPlanService distcpPlanService) {
+        this.distcpPlanService = distcpPlanService;
+    }
+
     @Autowired
     public void setTranslatorService(TranslatorService translatorService) {
         this.translatorService = translatorService;
     }
 
+    // Concatenate the last path element to the target
+    private static String appendPathElement(String target, String lastPathElement) {
+        if (!target.endsWith("/") && !lastPathElement.startsWith("/")) {
+            return target + "/" + lastPathElement;
+        } else if (target.endsWith("/") && lastPathElement.startsWith("/")) {
+            return target + lastPathElement.substring(1);
+        } else {
+            return target + lastPathElement;
+        }
+    }
+
+    /*
+    Write the distcp sources for the database split into 'jobs' size balanced jobs.  Each job gets a script
+    (with its source files) and the plan summary lists the expected bytes and files for each.
+     */
+    protected void writeDistcpPlan(String database, Environment distcpEnv, int jobs) throws IOException {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        String outputDir = hmsMirrorConfig.getOutputDirectory() + FileSystems.getDefault().getSeparator();
+        List<DistcpPlanService.DistcpJob> plan = getDistcpPlanService().buildPlan(database, distcpEnv, jobs);
+        DecimalFormat lngdecf = new DecimalFormat("#,###");
+
+        StringBuilder planSb = new StringBuilder();
+        planSb.append("# distcp plan for ").append(database).append(" (").append(distcpEnv).append(")\n\n");
+        planSb.append("Sources split into ").append(plan.size()).append(" jobs by the table statistics collected. ");
+        planSb.append("'Estimated' sources had no statistics and were counted at the average size.\n\n");
+        planSb.append("| Job | Script | Targets | Sources | Estimated | Files | Bytes |\n");
+        planSb.append("|---:|:---|---:|---:|---:|---:|---:|\n");
+        long totalBytes = 0L;
+        long totalFiles = 0L;
+        for (DistcpPlanService.DistcpJob job : plan) {
+            String jobPrefix = database + "_" + distcpEnv + "_distcp_job_" + job.getJob();
+            StringBuilder jobScriptSb = new StringBuilder();
+            jobScriptSb.append("#!/usr/bin/env sh").append("\n\n");
+            jobScriptSb.append("# Job ").append(job.getJob()).append(" of ").append(plan.size())
+                    .append(": ").append(lngdecf.format(job.getBytes())).append(" bytes, ")
+                    .append(lngdecf.format(job.getFiles())).append(" files (expected).").append("\n");
+            jobScriptSb.append("# Requires 'HCFS_BASE_DIR' and 'DISTCP_OPTS', see the distcp script for details.").append("\n\n");
+            int i = 1;
+            for (Map.Entry<String, Set<String>> targetSources : job.getTargetSources().entrySet()) {
+                String target = targetSources.getKey();
+                if (targetSources.getValue().size() > 1) {
+                    String sourceFile = jobPrefix + "_" + i++ + "_distcp_source.txt";
+                    try (FileWriter sourceFW = new FileWriter(outputDir + sourceFile)) {
+                        for (String source : targetSources.getValue()) {
+                            sourceFW.append(source).append("\n");
+                        }
+                    }
+                    jobScriptSb.append("hdfs dfs -copyFromLocal -f ").append(sourceFile).append(" ${HCFS_BASE_DIR}").append("\n");
+                    jobScriptSb.append("hadoop distcp ${DISTCP_OPTS} -f ${HCFS_BASE_DIR}/").append(sourceFile)
+                            .append(" ").append(target).append("\n\n");
+                } else {
+                    // Single source, the last path element isn't carried over (see the distcp script).
+                    String source = targetSources.getValue().iterator().next();
+                    jobScriptSb.append("hadoop distcp ${DISTCP_OPTS} ").append(source).append(" ")
+                            .append(appendPathElement(target, Translator.getLastDirFromUrl(source))).append("\n\n");
+                }
+            }
+            try (FileWriter jobScriptFW = new FileWriter(outputDir + jobPrefix + ".sh")) {
+                jobScriptFW.write(jobScriptSb.toString());
+            }
+            planSb.append("| ").append(job.getJob()).append(" | ").append(jobPrefix).append(".sh | ")
+                    .append(job.getTargetSources().size()).append(" | ")
+                    .append(job.getSourceCount()).append(" | ")
+                    .append(job.getEstimatedCount()).append(" | ")
+                    .append(lngdecf.format(job.getFiles())).append(" | ")
+                    .append(lngdecf.format(job.getBytes())).append(" |\n");
+            totalBytes += job.getBytes();
+            totalFiles += job.getFiles();
+        }
+        planSb.append("| | **Total** | | | | ").append(lngdecf.format(totalFiles)).append(" | ")
+                .append(lngdecf.format(totalBytes)).append(" |\n");
+        try (FileWriter planFW = new FileWriter(outputDir + database + "_" + distcpEnv + "_distcp_plan.md")) {
+            planFW.write(planSb.toString());
+        }
+    }
+
     public void writeReport() {
         HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
         log.info("Writing CLI report and artifacts to directory: {}", hmsMirrorConfig.getOutputDirectory());
@@ -205,16 +289,7 @@ public class CliReportWriter {
 
                                         distcpScriptSb.append("echo \"Only one element in path.\"").append("\n");
 
-                                        String target = dbMap.getKey();
-
-                                        // Concatenate the last path element to the target
-                                        if (!target.endsWith("/") && !lastPathElement.startsWith("/")) {
-                                            target += "/" + lastPathElement;
-                                        } else if (target.endsWith("/") && lastPathElement.startsWith("/")) {
-                                            target += lastPathElement.substring(1);
-                                        } else {
-                                            target += lastPathElement;
-                                        }
+                                        String target = appendPathElement(dbMap.getKey(), lastPathElement);
 
                                         StringBuilder line = new StringBuilder();
                                         line.append("| | ").append(target).append(" | ");
@@ -255,6 +330,11 @@ public class CliReportWriter {
 
                                 distcpScriptFW.close();
                                 distcpWorkbookFW.close();
+
+                                if (hmsMirrorConfig.getTransfer().getStorageMigration().getDistcpJobs() > 0) {
+                                    writeDistcpPlan(database, distcpEnv,
+                                            hmsMirrorConfig.getTransfer().getStorageMigration().getDistcpJobs());
+                                }
                             }
                         }
                     } catch (IOException ioe) {
@@ -190,6 +190,7 @@ public class CliReporter {
                         errors++;
                         break;
                     case RETRY_SKIPPED_PAST_SUCCESS:
+                    case SYNC_UNCHANGED:
                         skipped++;
                 }
             }
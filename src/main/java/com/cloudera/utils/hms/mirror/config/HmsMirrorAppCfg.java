@@ -41,8 +41,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.DecimalFormat;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Matcher;
 
 /*
@@ -74,9 +74,15 @@ public class HmsMirrorAppCfg {
     @Getter
     private Progression progression = null;
     @Getter
-    private TableService tableService = null;
+    private WorkflowService workflowService = null;
     @Getter
-    private TransferService transferService = null;
+    private StatsCacheService statsCacheService = null;
+    @Getter
+    private SyncFingerprintService syncFingerprintService = null;
+    @Getter
+    private CheckpointJournalService checkpointJournalService = null;
+    @Getter
+    private AdaptiveConcurrencyService adaptiveConcurrencyService = null;
 
     // TODO: Need to address failures here...
     @Bean
@@ -212,76 +218,69 @@ public class HmsMirrorAppCfg {
                 throw new RuntimeException("No databases specified OR found if you used dbRegEx");
             }
 
-            List<Future<ReturnStatus>> gtf = new ArrayList<>();
-            // ========================================
-            // Get the Database definitions for the LEFT and RIGHT clusters.
-            // ========================================
-            if (!config.isLoadingTestData()) {
-                for (String database : config.getDatabases()) {
-                    DBMirror dbMirror = conversion.addDatabase(database);
-                    try {
-                        // Get the Database definitions for the LEFT and RIGHT clusters.
-
-                        if (getDatabaseService().getDatabase(dbMirror, Environment.LEFT)) { //getConfig().getCluster(Environment.LEFT).getDatabase(config, dbMirror)) {
-                            getDatabaseService().getDatabase(dbMirror, Environment.RIGHT);
-                            //getConfig().getCluster(Environment.RIGHT).getDatabase(config, dbMirror);
-                        } else {
-                            // LEFT DB doesn't exists.
-                            dbMirror.addIssue(Environment.LEFT, "DB doesn't exist. Check permissions for user running process");
-                            rtn = Boolean.FALSE;
+            // Before any SQL is built, a resumed run takes back its run marker.
+            if (getCheckpointJournalService().isEnabled()) {
+                getCheckpointJournalService().open();
+            }
+            if (getAdaptiveConcurrencyService().isEnabled()) {
+                getAdaptiveConcurrencyService().start();
+            }
+
+            try {
+                List<CompletableFuture<ReturnStatus>> gtf = new ArrayList<>();
+                // ========================================
+                // Get the Database definitions for the LEFT and RIGHT clusters.
+                // ========================================
+                if (!config.isLoadingTestData()) {
+                    for (String database : config.getDatabases()) {
+                        DBMirror dbMirror = conversion.addDatabase(database);
+                        try {
+                            // Get the Database definitions for the LEFT and RIGHT clusters.
+
+                            if (getDatabaseService().getDatabase(dbMirror, Environment.LEFT)) { //getConfig().getCluster(Environment.LEFT).getDatabase(config, dbMirror)) {
+                                getDatabaseService().getDatabase(dbMirror, Environment.RIGHT);
+                                //getConfig().getCluster(Environment.RIGHT).getDatabase(config, dbMirror);
+                            } else {
+                                // LEFT DB doesn't exists.
+                                dbMirror.addIssue(Environment.LEFT, "DB doesn't exist. Check permissions for user running process");
+                                rtn = Boolean.FALSE;
+                            }
+                        } catch (SQLException se) {
+                            throw new RuntimeException(se);
                         }
-                    } catch (SQLException se) {
-                        throw new RuntimeException(se);
-                    }
 
-                    // Build out the table in a database.
-                    if (!config.isDatabaseOnly()) {
-                        Future<ReturnStatus> gt = getTableService().getTables(dbMirror);
-                        gtf.add(gt);
+                        // Build out the table in a database.
+                        if (!config.isDatabaseOnly()) {
+                            getWorkflowService().enterPipeline();
+                            gtf.add(getWorkflowService().leavePipelineOn(getWorkflowService().getTables(dbMirror)));
+                        }
                     }
-                }
 
-                // Collect Table Information and ensure process is complete before moving on.
-                while (true) {
-                    boolean check = true;
-                    for (Future<ReturnStatus> sf : gtf) {
-                        if (!sf.isDone()) {
-                            check = false;
-                            break;
-                        }
-                        try {
-                            if (sf.isDone() && sf.get() != null) {
-                                if (sf.get().getStatus() == ReturnStatus.Status.ERROR) {
-                                    rtn = Boolean.FALSE;
-//                            throw new RuntimeException(sf.get().getException());
-                                }
-                            }
-                        } catch (InterruptedException | ExecutionException e) {
-                            throw new RuntimeException(e);
+                    // Collect Table Information and ensure process is complete before moving on.
+                    for (ReturnStatus returnStatus : waitFor(gtf)) {
+                        if (returnStatus != null && returnStatus.getStatus() == ReturnStatus.Status.ERROR) {
+                            rtn = Boolean.FALSE;
                         }
                     }
-                    if (check)
-                        break;
-                }
-                gtf.clear(); // reset
+                    gtf.clear(); // reset
 
-                // Failure, report and exit with FALSE
-                if (!rtn) {
-                    getProgression().getErrors().set(MessageCode.COLLECTING_TABLES);
-                    rtn = Boolean.FALSE;
+                    // Failure, report and exit with FALSE
+                    if (!rtn) {
+                        getProgression().getErrors().set(MessageCode.COLLECTING_TABLES);
+                        rtn = Boolean.FALSE;
+                    }
                 }
-            }
 
-            if (!getDatabaseService().createDatabases()) {
-                getProgression().getErrors().set(MessageCode.DATABASE_CREATION);
-                rtn = Boolean.FALSE;
+                if (!getDatabaseService().createDatabases()) {
+                    getProgression().getErrors().set(MessageCode.DATABASE_CREATION);
+                    rtn = Boolean.FALSE;
 
-            }
-            // Create the databases we'll need on the LEFT and RIGHT
+                }
+                // Create the databases we'll need on the LEFT and RIGHT
 //        Callable<ReturnStatus> createDatabases = new CreateDatabases(conversion);
 //        gtf.add(getConfig().getTransferThreadPool().schedule(createDatabases, 1, TimeUnit.MILLISECONDS));
 
-            // Check and Build DB's First.
+                // Check and Build DB's First.
 //        while (true) {
 //            boolean check = true;
 //            for (Future<ReturnStatus> sf : gtf) {
@@ -306,122 +305,98 @@ public class HmsMirrorAppCfg {
 //        }
 //        gtf.clear(); // reset
 
-            // Failure, report and exit with FALSE
+                // Failure, report and exit with FALSE
 //        if (!rtn) {
 //            getProgression().getErrors().set(DATABASE_CREATION.getCode());
 //            return Boolean.FALSE;
 //        }
 
-            // Shortcut.  Only DB's.
-            if (!config.isDatabaseOnly()
+                // Shortcut.  Only DB's.
+                if (!config.isDatabaseOnly()
 //                && !getConfig().isLoadingTestData()
-            ) {
-
-                // ========================================
-                // Get the table METADATA for the tables collected in the databases.
-                // ========================================
-                log.info(">>>>>>>>>>> Getting Table Metadata");
-                Set<String> collectedDbs = conversion.getDatabases().keySet();
-                for (String database : collectedDbs) {
-                    DBMirror dbMirror = conversion.getDatabase(database);
-                    Set<String> tables = dbMirror.getTableMirrors().keySet();
-                    for (String table : tables) {
-                        TableMirror tableMirror = dbMirror.getTableMirrors().get(table);
-                        gtf.add(tableService.getTableMetadata(tableMirror));
+                ) {
+
+                    // ========================================
+                    // Get the table METADATA for the tables collected in the databases.
+                    // ========================================
+                    log.info(">>>>>>>>>>> Getting Table Metadata");
+                    Set<String> collectedDbs = conversion.getDatabases().keySet();
+                    List<CompletableFuture<ReturnStatus>> migrationFuture = new ArrayList<>();
+                    for (String database : collectedDbs) {
+                        DBMirror dbMirror = conversion.getDatabase(database);
+                        Set<String> tables = dbMirror.getTableMirrors().keySet();
+                        for (String table : tables) {
+                            TableMirror tableMirror = dbMirror.getTableMirrors().get(table);
+                            // Wait for room in the pipeline, the table keeps it until its transfer is done.
+                            getWorkflowService().enterPipeline();
+                            CompletableFuture<ReturnStatus> metadataFuture = getWorkflowService().getTableMetadata(tableMirror);
+                            gtf.add(metadataFuture);
+                            // The transfer is launched by the completion of the metadata stage.
+                            migrationFuture.add(getWorkflowService().leavePipelineOn(
+                                    getWorkflowService().transferOnMetadata(metadataFuture)));
+                        }
                     }
-                }
 
-                List<Future<ReturnStatus>> migrationFuture = new ArrayList<>();
-
-                // Go through the Futures and check status.
-                // When SUCCESSFUL, move on to the next step.
-                // ========================================
-                // Check that a tables metadata has been retrieved.  When it has (ReturnStatus.Status.SUCCESS),
-                // move on to the NEXTSTEP and actual do the transfer.
-                // ========================================
-                while (true) {
-                    boolean check = true;
-                    for (Future<ReturnStatus> sf : gtf) {
-                        if (!sf.isDone()) {
-                            check = false;
-                            break;
-                        }
-                        try {
-                            if (sf.isDone() && sf.get() != null){
-//                                ReturnStatus sfStatus = sf.get(100, java.util.concurrent.TimeUnit.MILLISECONDS);
-//                                if (sfStatus != null) {
-                                switch (sf.get().getStatus()) {
-                                    case SUCCESS:
-                                        // Trigger next step and set status.
-                                        // TODO: Next Step
-                                        sf.get().setStatus(ReturnStatus.Status.NEXTSTEP);
-                                        // Launch the next step, which is the transfer.
-                                        migrationFuture.add(getTransferService().transfer(sf.get().getTableMirror()));
-                                        break;
-                                    case ERROR:
-                                        rtn = Boolean.FALSE;
-                                        throw new RuntimeException(sf.get().getException());
-                                    case FATAL:
-                                        rtn = Boolean.FALSE;
-                                        throw new RuntimeException(sf.get().getException());
-                                    case NEXTSTEP:
-                                        break;
-                                }
-//                                } else {
-//                                    check = false;
-//                                }
+                    // ========================================
+                    // Wait for the metadata of all the tables.  Transfers for tables that completed their metadata
+                    // SUCCESSFULLY (now NEXTSTEP) have already been launched.
+                    // ========================================
+                    for (ReturnStatus returnStatus : waitFor(gtf)) {
+                        if (returnStatus != null && returnStatus.getStatus() != null) {
+                            switch (returnStatus.getStatus()) {
+                                case ERROR:
+                                case FATAL:
+                                    rtn = Boolean.FALSE;
+                                    throw new RuntimeException(returnStatus.getException());
+                                default:
+                                    break;
                             }
-                        } catch (InterruptedException | ExecutionException e) {
-                            throw new RuntimeException(e);
                         }
                     }
-                    if (check)
-                        break;
-                }
-                gtf.clear(); // reset
-
-                // Remove the tables that are marked for removal.
-                for (String database : collectedDbs) {
-                    DBMirror dbMirror = conversion.getDatabase(database);
-                    Set<String> tables = dbMirror.getTableMirrors().keySet();
-                    for (String table : tables) {
-                        TableMirror tableMirror = dbMirror.getTableMirrors().get(table);
-                        if (tableMirror.isRemove()) {
-                            // Setup the filtered out tables so they can be reported w/ reason.
-                            log.info("Table: {}.{} is being removed from further processing. Reason: {}", dbMirror.getName(), table, tableMirror.getRemoveReason());
-                            dbMirror.getFilteredOut().put(table, tableMirror.getRemoveReason());
+                    gtf.clear(); // reset
+
+                    // The stats are all in, keep the counts for the next run.
+                    if (getStatsCacheService().isEnabled()) {
+                        getStatsCacheService().save();
+                    }
+
+                    // Remove the tables that are marked for removal.
+                    for (String database : collectedDbs) {
+                        DBMirror dbMirror = conversion.getDatabase(database);
+                        Set<String> tables = dbMirror.getTableMirrors().keySet();
+                        for (String table : tables) {
+                            TableMirror tableMirror = dbMirror.getTableMirrors().get(table);
+                            if (tableMirror.isRemove()) {
+                                // Setup the filtered out tables so they can be reported w/ reason.
+                                log.info("Table: {}.{} is being removed from further processing. Reason: {}", dbMirror.getName(), table, tableMirror.getRemoveReason());
+                                dbMirror.getFilteredOut().put(table, tableMirror.getRemoveReason());
+                            }
                         }
+                        dbMirror.getTableMirrors().values().removeIf(TableMirror::isRemove);
                     }
-                    dbMirror.getTableMirrors().values().removeIf(TableMirror::isRemove);
-                }
 
-                if (!rtn) {
-                    getProgression().getErrors().set(MessageCode.COLLECTING_TABLE_DEFINITIONS);
-                }
+                    if (!rtn) {
+                        getProgression().getErrors().set(MessageCode.COLLECTING_TABLE_DEFINITIONS);
+                    }
 
-                // Check the Migration Futures are done.
-                while (true) {
-                    boolean check = true;
-                    for (Future<ReturnStatus> sf : migrationFuture) {
-                        if (!sf.isDone()) {
-                            check = false;
-                            break;
-                        }
-                        try {
-                            if (sf.isDone() && sf.get() != null) {
-                                if (sf.get().getStatus() == ReturnStatus.Status.ERROR) {
-                                    rtn = Boolean.FALSE;
-//                                    throw new RuntimeException(sf.get().getException());
-                                }
-                            }
-                        } catch (InterruptedException | ExecutionException e) {
-                            throw new RuntimeException(e);
+                    // Check the Migration Futures are done.
+                    for (ReturnStatus returnStatus : waitFor(migrationFuture)) {
+                        if (returnStatus != null && returnStatus.getStatus() == ReturnStatus.Status.ERROR) {
+                            rtn = Boolean.FALSE;
                         }
                     }
-                    if (check)
-                        break;
                 }
+            } finally {
+                // Even when the run is cut short, the journal is flushed and the fingerprints of the tables
+                // that made it are kept.
+                getCheckpointJournalService().close();
+                getAdaptiveConcurrencyService().stop();
+                if (!config.isDatabaseOnly() && getSyncFingerprintService().isEnabled()) {
+                    getSyncFingerprintService().save(conversion);
+                }
+            }
 
+            if (!config.isDatabaseOnly()) {
                 log.info("Wrapping up the Application Workflow");
                 log.info("Setting 'running' to FALSE");
                 getHmsMirrorCfgService().getRunning().set(Boolean.FALSE);
@@ -442,6 +417,22 @@ public class HmsMirrorAppCfg {
         };
     }
 
+    /*
+    Block until all the futures are complete and return their results.
+     */
+    protected List<ReturnStatus> waitFor(List<CompletableFuture<ReturnStatus>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException ce) {
+            throw new RuntimeException(ce.getCause());
+        }
+        List<ReturnStatus> rtn = new ArrayList<>();
+        for (CompletableFuture<ReturnStatus> future : futures) {
+            rtn.add(future.join());
+        }
+        return rtn;
+    }
+
     @Autowired
     public void setCliReporter(CliReporter cliReporter) {
         this.cliReporter = cliReporter;
@@ -483,13 +474,28 @@ public class HmsMirrorAppCfg {
     }
 
     @Autowired
-    public void setTableService(TableService tableService) {
-        this.tableService = tableService;
+    public void setWorkflowService(WorkflowService workflowService) {
+        this.workflowService = workflowService;
+    }
+
+    @Autowired
+    public void setStatsCacheService(StatsCacheService statsCacheService) {
+        this.statsCacheService = statsCacheService;
+    }
+
+    @Autowired
+    public void setAdaptiveConcurrencyService(AdaptiveConcurrencyService adaptiveConcurrencyService) {
+        this.adaptiveConcurrencyService = adaptiveConcurrencyService;
+    }
+
+    @Autowired
+    public void setCheckpointJournalService(CheckpointJournalService checkpointJournalService) {
+        this.checkpointJournalService = checkpointJournalService;
     }
 
     @Autowired
-    public void setTransferService(TransferService transferService) {
-        this.transferService = transferService;
+    public void setSyncFingerprintService(SyncFingerprintService syncFingerprintService) {
+        this.syncFingerprintService = syncFingerprintService;
     }
 
 }
@@ -17,23 +17,44 @@
 
 package com.cloudera.utils.hms.mirror.config;
 
+import com.cloudera.utils.hms.mirror.Environment;
+import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
 import com.cloudera.utils.hms.mirror.service.HmsMirrorCfgService;
+import com.cloudera.utils.hms.stage.PrioritizedTask;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+
 @Configuration
 public class ThreadPoolConfigurator {
 
+    /*
+    The job and metadata pools only take work for the tables admitted to the WorkflowService pipeline, one task at
+    a time for each, so their queues are bounded by its capacity.
+
+    The job queue hands out the waiting transfers by priority (see PrioritizedTask).  A priority queue won't hold
+    to a capacity, so here the pipeline is the only bound.
+     */
     @Bean("jobThreadPool")
     @Order(20)
     public TaskExecutor jobThreadPool(HmsMirrorCfgService hmsMirrorCfgService) {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(hmsMirrorCfgService.getHmsMirrorConfig().getTransfer().getConcurrency());
-        executor.setMaxPoolSize(hmsMirrorCfgService.getHmsMirrorConfig().getTransfer().getConcurrency());
-        executor.setQueueCapacity(Integer.MAX_VALUE);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor() {
+            @Override
+            protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+                return new PriorityBlockingQueue<>(Math.min(queueCapacity, 1024), PrioritizedTask.ORDER);
+            }
+        };
+        HmsMirrorConfig hmsMirrorConfig = hmsMirrorCfgService.getHmsMirrorConfig();
+        int jobs = hmsMirrorConfig.getOptimization().jobConcurrency(hmsMirrorConfig.getTransfer().getConcurrency());
+        executor.setCorePoolSize(jobs);
+        executor.setMaxPoolSize(jobs);
+        executor.setQueueCapacity(pipelineCapacity(hmsMirrorCfgService));
         executor.setThreadNamePrefix("job-");
         executor.initialize();
         return executor;
@@ -45,7 +66,7 @@ public class ThreadPoolConfigurator {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(hmsMirrorCfgService.getHmsMirrorConfig().getTransfer().getConcurrency());
         executor.setMaxPoolSize(hmsMirrorCfgService.getHmsMirrorConfig().getTransfer().getConcurrency());
-        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setQueueCapacity(pipelineCapacity(hmsMirrorCfgService));
         executor.setThreadNamePrefix("metadata-");
         executor.initialize();
         return executor;
@@ -63,4 +84,74 @@ public class ThreadPoolConfigurator {
         return executor;
     }
 
+    /*
+    Extra hands for the partition ranges, or other independent steps, of a table (see TableService.runSqlGroup).
+    Kept apart from the jobThreadPool, which the tables themselves run on.
+     */
+    @Bean("transferRangeThreadPool")
+    @Order(20)
+    public TaskExecutor transferRangeThreadPool(HmsMirrorCfgService hmsMirrorCfgService) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hmsMirrorCfgService.getHmsMirrorConfig().getTransfer().getConcurrency());
+        executor.setMaxPoolSize(hmsMirrorCfgService.getHmsMirrorConfig().getTransfer().getConcurrency());
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix("range-");
+        executor.initialize();
+        return executor;
+    }
+
+    /*
+    The SQL of the transfers for each cluster, when 'optimization.environmentPools' is set (see
+    TableService.runTableSql).  The job threads wait on them, so there are never more queued than job threads.
+     */
+    @Bean("leftExecutionPool")
+    @Order(20)
+    public TaskExecutor leftExecutionPool(HmsMirrorCfgService hmsMirrorCfgService) {
+        return executionPool(hmsMirrorCfgService, Environment.LEFT, "left-");
+    }
+
+    @Bean("rightExecutionPool")
+    @Order(20)
+    public TaskExecutor rightExecutionPool(HmsMirrorCfgService hmsMirrorCfgService) {
+        return executionPool(hmsMirrorCfgService, Environment.RIGHT, "right-");
+    }
+
+    /*
+    The IMPORTs of the EXPORT_IMPORT tables, handed over as each EXPORT ends so the job thread can go on to the
+    next table (see ExportImportPipelineService).  Its queue is held to the exports in flight.
+     */
+    @Bean("importThreadPool")
+    @Order(20)
+    public TaskExecutor importThreadPool(HmsMirrorCfgService hmsMirrorCfgService) {
+        return executionPool(hmsMirrorCfgService, Environment.RIGHT, "import-");
+    }
+
+    protected static TaskExecutor executionPool(HmsMirrorCfgService hmsMirrorCfgService, Environment environment,
+                                                String threadNamePrefix) {
+        HmsMirrorConfig hmsMirrorConfig = hmsMirrorCfgService.getHmsMirrorConfig();
+        int concurrency = hmsMirrorConfig.getOptimization().environmentConcurrency(environment,
+                hmsMirrorConfig.getTransfer().getConcurrency());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.initialize();
+        return executor;
+    }
+
+    protected static int pipelineCapacity(HmsMirrorCfgService hmsMirrorCfgService) {
+        HmsMirrorConfig hmsMirrorConfig = hmsMirrorCfgService.getHmsMirrorConfig();
+        return hmsMirrorConfig.getOptimization().pipelineCapacity(hmsMirrorConfig.getTransfer().getConcurrency());
+    }
+
+    /*
+    CPU bound work that's split up within a single table (IE: partition location translation).
+     */
+    @Bean(name = "translationPool", destroyMethod = "shutdown")
+    @Order(20)
+    public ForkJoinPool translationPool() {
+        return new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
 }
@@ -32,8 +32,18 @@ public interface ConnectionPools {
 
     void close();
 
+    /*
+    Called concurrently by the metadata and transfer threads.  Implementations bind the HS2 driver to the pool
+    at 'init', so this should only be a pool borrow.
+     */
     Connection getHS2EnvironmentConnection(Environment environment) throws SQLException;
 
+    /*
+    A connection only when the pool can hand one out without waiting, otherwise null.  For work that other
+    connections will pick up when there isn't one.
+     */
+    Connection tryHS2EnvironmentConnection(Environment environment) throws SQLException;
+
     Connection getMetastoreDirectEnvironmentConnection(Environment environment) throws SQLException;
 
     void init() throws SQLException;
@@ -20,6 +20,7 @@ package com.cloudera.utils.hms.mirror.connections;
 import com.cloudera.utils.hive.config.DBStore;
 import com.cloudera.utils.hms.mirror.Environment;
 import com.cloudera.utils.hms.mirror.HiveServer2Config;
+import com.cloudera.utils.hms.mirror.RunStatistics;
 import com.cloudera.utils.hms.mirror.service.HmsMirrorCfgService;
 import com.cloudera.utils.hms.util.DriverUtils;
 import lombok.Getter;
@@ -35,22 +36,28 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public class ConnectionPoolsDBCP2Impl implements ConnectionPools {
 
-    private final Map<Environment, PoolingDataSource<PoolableConnection>> hs2DataSources = new TreeMap<>();
-    private final Map<Environment, Driver> hs2Drivers = new TreeMap<>();
+    private final Map<Environment, PoolingDataSource<PoolableConnection>> hs2DataSources = new ConcurrentHashMap<>();
+    private final Map<Environment, GenericObjectPool<PoolableConnection>> hs2Pools = new ConcurrentHashMap<>();
+    private final Map<Environment, Driver> hs2Drivers = new ConcurrentHashMap<>();
     private final Map<Environment, HiveServer2Config> hiveServerConfigs = new TreeMap<>();
     private final Map<Environment, DBStore> metastoreDirectConfigs = new TreeMap<>();
-    private final Map<Environment, PoolingDataSource<PoolableConnection>> metastoreDirectDataSources = new TreeMap<>();
+    private final Map<Environment, PoolingDataSource<PoolableConnection>> metastoreDirectDataSources = new ConcurrentHashMap<>();
     @Getter
     private final HmsMirrorCfgService hmsMirrorCfgService;
+    @Getter
+    private final RunStatistics runStatistics;
 
-    public ConnectionPoolsDBCP2Impl(HmsMirrorCfgService hmsMirrorCfgService) {
+    public ConnectionPoolsDBCP2Impl(HmsMirrorCfgService hmsMirrorCfgService, RunStatistics runStatistics) {
         this.hmsMirrorCfgService = hmsMirrorCfgService;
+        this.runStatistics = runStatistics;
     }
 
     public void addHiveServer2(Environment environment, HiveServer2Config hiveServer2) {
@@ -88,34 +95,46 @@ public class ConnectionPoolsDBCP2Impl implements ConnectionPools {
         }
     }
 
-    public synchronized Connection getHS2EnvironmentConnection(Environment environment) throws SQLException {
-        Driver lclDriver = getHS2EnvironmentDriver(environment);
+    public Connection getHS2EnvironmentConnection(Environment environment) throws SQLException {
         Connection conn = null;
-        if (lclDriver != null) {
-            DriverManager.registerDriver(lclDriver);
+        DataSource ds = getHS2EnvironmentDataSource(environment);
+        if (ds != null) {
             try {
-                DataSource ds = getHS2EnvironmentDataSource(environment);
-                if (ds != null)
-                    conn = ds.getConnection();
+                conn = ds.getConnection();
             } catch (Throwable se) {
                 log.error(se.getMessage(), se);
                 throw new RuntimeException(se);
-            } finally {
-                DriverManager.deregisterDriver(lclDriver);
             }
         }
         return conn;
     }
 
+    public Connection tryHS2EnvironmentConnection(Environment environment) throws SQLException {
+        GenericObjectPool<PoolableConnection> pool = hs2Pools.get(environment);
+        if (pool == null) {
+            return null;
+        }
+        try {
+            // Idle or newly created, but never a wait for one to be returned.
+            return pool.borrowObject(0);
+        } catch (NoSuchElementException nse) {
+            return null;
+        } catch (SQLException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException(e);
+        }
+    }
+
     protected DataSource getHS2EnvironmentDataSource(Environment environment) {
         return hs2DataSources.get(environment);
     }
 
-    protected synchronized Driver getHS2EnvironmentDriver(Environment environment) {
+    protected Driver getHS2EnvironmentDriver(Environment environment) {
         return hs2Drivers.get(environment);
     }
 
-    public synchronized Connection getMetastoreDirectEnvironmentConnection(Environment environment) throws SQLException {
+    public Connection getMetastoreDirectEnvironmentConnection(Environment environment) throws SQLException {
         Connection conn = null;
         DataSource ds = getMetastoreDirectEnvironmentDataSource(environment);
         if (ds != null)
@@ -131,8 +150,8 @@ public class ConnectionPoolsDBCP2Impl implements ConnectionPools {
         if (!getHmsMirrorCfgService().getHmsMirrorConfig().isLoadingTestData()) {
             initHS2Drivers();
             initHS2PooledDataSources();
-            // Only init if we are going to use it. (`-epl`).
-            if (getHmsMirrorCfgService().loadPartitionMetadata()) {
+            // Only init if we are going to use it. (`-epl`, `-mdc`).
+            if (getHmsMirrorCfgService().useMetastoreDirect()) {
                 initMetastoreDataSources();
             }
         }
@@ -155,7 +174,9 @@ public class ConnectionPoolsDBCP2Impl implements ConnectionPools {
                     log.error(throwables.getMessage(), throwables);
                     throw throwables;
                 }
-                hs2Drivers.put(environment, driver);
+                if (driver != null) {
+                    hs2Drivers.put(environment, driver);
+                }
             }
         }
     }
@@ -166,21 +187,14 @@ public class ConnectionPoolsDBCP2Impl implements ConnectionPools {
         for (Environment environment : environments) {
             HiveServer2Config hs2Config = hiveServerConfigs.get(environment);
             if (!hs2Config.isDisconnected()) {
-                ConnectionFactory connectionFactory =
-                        new DriverManagerConnectionFactory(hs2Config.getUri(), hs2Config.getConnectionProperties());
-
-                PoolableConnectionFactory poolableConnectionFactory =
-                        new PoolableConnectionFactory(connectionFactory, null);
-
-                ObjectPool<PoolableConnection> connectionPool =
-                        new GenericObjectPool<>(poolableConnectionFactory);
-
-                poolableConnectionFactory.setPool(connectionPool);
+                GenericObjectPool<PoolableConnection> connectionPool =
+                        hs2Pool(environment, hs2Config, getHS2EnvironmentDriver(environment));
 
                 PoolingDataSource<PoolableConnection> poolingDatasource = new PoolingDataSource<>(connectionPool);
 //            poolingDatasource.setLoginTimeout(10);
 
                 hs2DataSources.put(environment, poolingDatasource);
+                hs2Pools.put(environment, connectionPool);
                 Connection conn = null;
                 try {
                     conn = getHS2EnvironmentConnection(environment);
@@ -199,6 +213,30 @@ public class ConnectionPoolsDBCP2Impl implements ConnectionPools {
         }
     }
 
+    /*
+    The HS2 pool for the environment, sized to the connections the run can use (the pool's default is 8).  Each
+    environment has its own budget.
+     */
+    protected GenericObjectPool<PoolableConnection> hs2Pool(Environment environment, HiveServer2Config hs2Config,
+                                                            Driver driver) {
+        ConnectionFactory connectionFactory =
+                new DataSourceConnectionFactory(new DriverBoundDataSource(driver,
+                        hs2Config.getUri(), hs2Config.getConnectionProperties(), getRunStatistics()));
+
+        PoolableConnectionFactory poolableConnectionFactory =
+                new PoolableConnectionFactory(connectionFactory, null);
+
+        GenericObjectPool<PoolableConnection> connectionPool =
+                new GenericObjectPool<>(poolableConnectionFactory);
+        int connections = getHmsMirrorCfgService().hs2Connections(environment);
+        connectionPool.setMaxTotal(connections);
+        connectionPool.setMaxIdle(connections);
+        connectionPool.setMinIdle(getHmsMirrorCfgService().hs2IdleConnections(environment));
+
+        poolableConnectionFactory.setPool(connectionPool);
+        return connectionPool;
+    }
+
     protected void initMetastoreDataSources() {
         // Metastore Direct
         Set<Environment> environments = metastoreDirectConfigs.keySet();
@@ -20,10 +20,12 @@ package com.cloudera.utils.hms.mirror.connections;
 import com.cloudera.utils.hive.config.DBStore;
 import com.cloudera.utils.hms.mirror.Environment;
 import com.cloudera.utils.hms.mirror.HiveServer2Config;
+import com.cloudera.utils.hms.mirror.RunStatistics;
 import com.cloudera.utils.hms.mirror.service.HmsMirrorCfgService;
 import com.cloudera.utils.hms.util.DriverUtils;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -33,20 +35,24 @@ import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public class ConnectionPoolsHikariImpl implements ConnectionPools {
 
-    private final Map<Environment, HikariDataSource> hs2DataSources = new TreeMap<>();
-    private final Map<Environment, Driver> hs2Drivers = new TreeMap<>();
+    private final Map<Environment, HikariDataSource> hs2DataSources = new ConcurrentHashMap<>();
+    private final Map<Environment, Driver> hs2Drivers = new ConcurrentHashMap<>();
     private final Map<Environment, HiveServer2Config> hiveServerConfigs = new TreeMap<>();
     private final Map<Environment, DBStore> metastoreDirectConfigs = new TreeMap<>();
-    private final Map<Environment, HikariDataSource> metastoreDirectDataSources = new TreeMap<>();
+    private final Map<Environment, HikariDataSource> metastoreDirectDataSources = new ConcurrentHashMap<>();
     @Getter
     private final HmsMirrorCfgService hmsMirrorCfgService;
+    @Getter
+    private final RunStatistics runStatistics;
 
-    public ConnectionPoolsHikariImpl(HmsMirrorCfgService hmsMirrorCfgService) {
+    public ConnectionPoolsHikariImpl(HmsMirrorCfgService hmsMirrorCfgService, RunStatistics runStatistics) {
         this.hmsMirrorCfgService = hmsMirrorCfgService;
+        this.runStatistics = runStatistics;
     }
 
     public void addHiveServer2(Environment environment, HiveServer2Config hiveServer2) {
@@ -71,35 +77,44 @@ public class ConnectionPoolsHikariImpl implements ConnectionPools {
             metastoreDirectDataSources.get(Environment.RIGHT).close();
     }
 
-    public synchronized Connection getHS2EnvironmentConnection(Environment environment) throws SQLException {
-        Driver lclDriver = getHS2EnvironmentDriver(environment);
+    public Connection getHS2EnvironmentConnection(Environment environment) throws SQLException {
         Connection conn = null;
-        if (lclDriver != null) {
-            DriverManager.registerDriver(lclDriver);
+        DataSource ds = getHS2EnvironmentDataSource(environment);
+        if (ds != null) {
             try {
-                DataSource ds = getHS2EnvironmentDataSource(environment);
-                if (ds != null) {
-                    conn = ds.getConnection();
-                }
+                conn = ds.getConnection();
             } catch (Throwable se) {
                 log.error(se.getMessage(), se);
                 throw new RuntimeException(se);
-            } finally {
-                DriverManager.deregisterDriver(lclDriver);
             }
         }
         return conn;
     }
 
+    public Connection tryHS2EnvironmentConnection(Environment environment) throws SQLException {
+        DataSource ds = getHS2EnvironmentDataSource(environment);
+        if (!(ds instanceof HikariDataSource)) {
+            return null;
+        }
+        HikariDataSource hikariDataSource = (HikariDataSource) ds;
+        HikariPoolMXBean pool = hikariDataSource.getHikariPoolMXBean();
+        // Hikari has no per borrow timeout, so only borrow when there's an idle connection or room for a new one.
+        if (pool == null || (pool.getIdleConnections() == 0
+                && pool.getTotalConnections() >= hikariDataSource.getMaximumPoolSize())) {
+            return null;
+        }
+        return hikariDataSource.getConnection();
+    }
+
     protected DataSource getHS2EnvironmentDataSource(Environment environment) {
         return hs2DataSources.get(environment);
     }
 
-    protected synchronized Driver getHS2EnvironmentDriver(Environment environment) {
+    protected Driver getHS2EnvironmentDriver(Environment environment) {
         return hs2Drivers.get(environment);
     }
 
-    public synchronized Connection getMetastoreDirectEnvironmentConnection(Environment environment) throws SQLException {
+    public Connection getMetastoreDirectEnvironmentConnection(Environment environment) throws SQLException {
         Connection conn = null;
         DataSource ds = getMetastoreDirectEnvironmentDataSource(environment);
         if (ds != null)
@@ -115,8 +130,8 @@ public class ConnectionPoolsHikariImpl implements ConnectionPools {
         if (!getHmsMirrorCfgService().getHmsMirrorConfig().isLoadingTestData()) {
             initHS2Drivers();
             initHS2PooledDataSources();
-            // Only init if we are going to use it. (`-epl`).
-            if (getHmsMirrorCfgService().loadPartitionMetadata()) {
+            // Only init if we are going to use it. (`-epl`, `-mdc`).
+            if (getHmsMirrorCfgService().useMetastoreDirect()) {
                 initMetastoreDataSources();
             }
         }
@@ -138,7 +153,9 @@ public class ConnectionPoolsHikariImpl implements ConnectionPools {
                     log.error(throwables.getMessage(), throwables);
                     throw throwables;
                 }
-                hs2Drivers.put(environment, driver);
+                if (driver != null) {
+                    hs2Drivers.put(environment, driver);
+                }
             }
         }
     }
@@ -153,29 +170,13 @@ public class ConnectionPoolsHikariImpl implements ConnectionPools {
                 Driver lclDriver = getHS2EnvironmentDriver(environment);
                 if (lclDriver != null) {
                     try {
-                        DriverManager.registerDriver(lclDriver);
-                        try {
-                            Properties props = new Properties();
-                            if (hs2Config.getDriverClassName().equals(HiveServer2Config.APACHE_HIVE_DRIVER_CLASS_NAME)) {
-                                // Need with Apache Hive Driver, since it doesn't support
-                                //      Connection.isValid() api (JDBC4) and prevents Hikari-CP from attempting to call it.
-                                props.put("connectionTestQuery", "SELECT 1");
-                            }
-                            HikariConfig config = new HikariConfig(props);
-                            config.setJdbcUrl(hs2Config.getUri());
-                            config.setDataSourceProperties(hs2Config.getConnectionProperties());
-                            HikariDataSource poolingDatasource = new HikariDataSource(config);
-
-                            hs2DataSources.put(environment, poolingDatasource);
-                        } catch (Throwable se) {
-                            log.error(se.getMessage(), se);
-                            throw new RuntimeException(se);
-                        } finally {
-                            DriverManager.deregisterDriver(lclDriver);
-                        }
-                    } catch (SQLException e) {
-                        log.error(e.getMessage(), e);
-                        throw new RuntimeException(e);
+                        HikariConfig config = hs2PoolConfig(environment, hs2Config, lclDriver);
+                        HikariDataSource poolingDatasource = new HikariDataSource(config);
+
+                        hs2DataSources.put(environment, poolingDatasource);
+                    } catch (Throwable se) {
+                        log.error(se.getMessage(), se);
+                        throw new RuntimeException(se);
                     }
                 }
 
@@ -197,6 +198,26 @@ public class ConnectionPoolsHikariImpl implements ConnectionPools {
         }
     }
 
+    /*
+    The HS2 pool config for the environment, sized to the connections the run can use (Hikari's default is 10).
+    Each environment has its own budget.
+     */
+    protected HikariConfig hs2PoolConfig(Environment environment, HiveServer2Config hs2Config, Driver driver) {
+        Properties props = new Properties();
+        if (hs2Config.getDriverClassName().equals(HiveServer2Config.APACHE_HIVE_DRIVER_CLASS_NAME)) {
+            // Need with Apache Hive Driver, since it doesn't support
+            //      Connection.isValid() api (JDBC4) and prevents Hikari-CP from attempting to call it.
+            props.put("connectionTestQuery", "SELECT 1");
+        }
+        HikariConfig config = new HikariConfig(props);
+        config.setMaximumPoolSize(getHmsMirrorCfgService().hs2Connections(environment));
+        // Hikari fills the pool to the maximum unless told otherwise, keep the environment's own share open.
+        config.setMinimumIdle(getHmsMirrorCfgService().hs2IdleConnections(environment));
+        // Bind the driver to the pool, so physical connections don't go through the DriverManager.
+        config.setDataSource(new DriverBoundDataSource(driver, hs2Config.getUri(), hs2Config.getConnectionProperties(), getRunStatistics()));
+        return config;
+    }
+
     protected void initMetastoreDataSources() {
         // Metastore Direct
         Set<Environment> environments = metastoreDirectConfigs.keySet();
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.connections;
+
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import lombok.Getter;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/*
+A DataSource that creates connections directly from a Driver instance.  The HS2 drivers are loaded
+through an isolated classloader (DriverUtils) and are NOT registered with the DriverManager.  Binding
+the driver to the pool through this DataSource means new physical connections never go through
+DriverManager and its global lock.
+
+Each physical connection is wrapped in a SessionStateConnection, so its session state is tracked for
+as long as it lives in the pool.
+ */
+@Getter
+public class DriverBoundDataSource implements DataSource {
+
+    private final Driver driver;
+    private final String url;
+    private final Properties connectionProperties;
+    private final RunStatistics runStatistics;
+    private PrintWriter logWriter = null;
+    private int loginTimeout = 0;
+
+    public DriverBoundDataSource(Driver driver, String url, Properties connectionProperties) {
+        this(driver, url, connectionProperties, null);
+    }
+
+    public DriverBoundDataSource(Driver driver, String url, Properties connectionProperties, RunStatistics runStatistics) {
+        this.driver = driver;
+        this.url = url;
+        this.runStatistics = runStatistics;
+        this.connectionProperties = new Properties();
+        if (connectionProperties != null) {
+            this.connectionProperties.putAll(connectionProperties);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection conn = driver.connect(url, connectionProperties);
+        if (conn == null) {
+            throw new SQLException("Driver " + driver.getClass().getName() + " doesn't accept the url: " + url);
+        }
+        return new SessionStateConnection(conn, runStatistics);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Properties props = new Properties();
+        props.putAll(connectionProperties);
+        if (username != null) {
+            props.put("user", username);
+        }
+        if (password != null) {
+            props.put("password", password);
+        }
+        Connection conn = driver.connect(url, props);
+        if (conn == null) {
+            throw new SQLException("Driver " + driver.getClass().getName() + " doesn't accept the url: " + url);
+        }
+        return new SessionStateConnection(conn, runStatistics);
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        this.loginTimeout = seconds;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        throw new SQLException("DataSource is not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.connections;
+
+import com.cloudera.utils.hadoop.cli.DisabledException;
+
+import java.io.IOException;
+import java.util.List;
+
+/*
+A session for looking at (and making small changes to) the filesystems of the clusters.  Sessions aren't shared
+between threads, FileSystemProbeService hands them out from a pool.
+ */
+public interface FileSystemProbe {
+
+    /*
+    The directory count, file count and size (in that order) for each location, or null for a location that couldn't
+    be counted.
+     */
+    List<long[]> count(List<String> locations) throws IOException, DisabledException;
+
+    /*
+    Modification time (ms) of the location.
+     */
+    long getModificationTime(String location) throws IOException, DisabledException;
+
+    /*
+    Fails when the location isn't a directory that can be reached.
+     */
+    void checkDirectory(String location) throws IOException, DisabledException;
+
+    void mkdirs(String location) throws IOException, DisabledException;
+
+    void copy(String from, String to) throws IOException, DisabledException;
+
+}
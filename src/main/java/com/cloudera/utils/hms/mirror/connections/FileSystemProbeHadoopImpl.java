@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.connections;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Runs the probes through Hadoop FileSystem handles.  The handles are thread safe and cached by Hadoop (by scheme,
+authority and user), so they're never closed here.
+ */
+@Slf4j
+public class FileSystemProbeHadoopImpl implements FileSystemProbe {
+
+    private final Configuration configuration;
+
+    public FileSystemProbeHadoopImpl(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    @Override
+    public List<long[]> count(List<String> locations) {
+        List<long[]> rtn = new ArrayList<>(locations.size());
+        for (String location : locations) {
+            try {
+                Path path = new Path(location);
+                ContentSummary summary = path.getFileSystem(configuration).getContentSummary(path);
+                rtn.add(new long[]{summary.getDirectoryCount(), summary.getFileCount(), summary.getLength()});
+            } catch (IOException | IllegalArgumentException e) {
+                log.debug("Couldn't count {}: {}", location, e.getMessage());
+                rtn.add(null);
+            }
+        }
+        return rtn;
+    }
+
+    @Override
+    public long getModificationTime(String location) throws IOException {
+        Path path = new Path(location);
+        return path.getFileSystem(configuration).getFileStatus(path).getModificationTime();
+    }
+
+    @Override
+    public void checkDirectory(String location) throws IOException {
+        Path path = new Path(location);
+        if (!path.getFileSystem(configuration).getFileStatus(path).isDirectory()) {
+            throw new IOException(location + " isn't a directory");
+        }
+    }
+
+    @Override
+    public void mkdirs(String location) throws IOException {
+        Path path = new Path(location);
+        if (!path.getFileSystem(configuration).mkdirs(path)) {
+            throw new IOException("Couldn't create " + location);
+        }
+    }
+
+    @Override
+    public void copy(String from, String to) throws IOException {
+        Path source = new Path(from);
+        Path target = new Path(to);
+        FileSystem targetFs = target.getFileSystem(configuration);
+        if (!FileUtil.copy(source.getFileSystem(configuration), source, targetFs, target, false, true, configuration)) {
+            throw new IOException("Couldn't copy " + from + " to " + to);
+        }
+    }
+
+}
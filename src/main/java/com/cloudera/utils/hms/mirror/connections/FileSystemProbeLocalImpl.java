@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.connections;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Probes the local filesystem ('file:' URIs or plain paths).  Used by the tests, and for trying out a config without
+a cluster.
+ */
+public class FileSystemProbeLocalImpl implements FileSystemProbe {
+
+    @Override
+    public List<long[]> count(List<String> locations) throws IOException {
+        List<long[]> rtn = new ArrayList<>(locations.size());
+        for (String location : locations) {
+            Path path = toPath(location);
+            if (!Files.exists(path)) {
+                rtn.add(null);
+                continue;
+            }
+            long[] count = new long[3];
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    count[0]++;
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    count[1]++;
+                    count[2] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            rtn.add(count);
+        }
+        return rtn;
+    }
+
+    @Override
+    public long getModificationTime(String location) throws IOException {
+        return Files.getLastModifiedTime(toPath(location)).toMillis();
+    }
+
+    @Override
+    public void checkDirectory(String location) throws IOException {
+        if (!Files.isDirectory(toPath(location))) {
+            throw new NoSuchFileException(location);
+        }
+    }
+
+    @Override
+    public void mkdirs(String location) throws IOException {
+        Files.createDirectories(toPath(location));
+    }
+
+    @Override
+    public void copy(String from, String to) throws IOException {
+        Files.copy(toPath(from), toPath(to), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    protected static Path toPath(String location) {
+        return location.startsWith("file:") ? Paths.get(URI.create(location)) : Paths.get(location);
+    }
+
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.connections;
+
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+Wraps the physical HS2 connection, below the pool, and tracks the session state (current database and
+session variables) of that connection.  The HS2 session lives as long as the physical connection, so the state
+carries across pool borrows.  'USE' and 'SET' statements issued through a Statement from this connection that
+wouldn't change the session are skipped.
+
+The tracked state is dropped whenever it can't be trusted: a failed statement, a 'RESET', or a 'USE'/'SET'
+that couldn't be parsed.  The next statement will then go to the server.
+ */
+@Slf4j
+public class SessionStateConnection implements Connection {
+
+    public static final String USE_SKIPPED = "hs2.session.use.skipped";
+    public static final String SET_SKIPPED = "hs2.session.set.skipped";
+    /*
+    By the pool of the calling thread (see pool(String)).  The queries and the other statements (DDL, USE, SET) are
+    timed, they're short and much alike.  Statements that move data aren't, an INSERT can run for hours because of
+    the data.
+     */
+    public static final String STATEMENTS = "hs2.statements";
+    public static final String FAILURES = "hs2.failures";
+    public static final String QUERIES = "hs2.queries";
+    public static final String QUERY_MS = "hs2.query.ms";
+    public static final String EXECUTES = "hs2.executes";
+    public static final String EXECUTE_MS = "hs2.execute.ms";
+
+    private static final Pattern USE_PATTERN = Pattern.compile("^\\s*use\\s+`?([\\w]+)`?\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SET_PATTERN = Pattern.compile("^\\s*set\\s+([^=\\s]+)\\s*=\\s*(.*?)\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern DATA_PATTERN = Pattern.compile("^\\s*(insert|from|export|import|load|msck|analyze)\\b.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern SESSION_PATTERN = Pattern.compile("^\\s*(use|set|reset)\\b.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    @Getter
+    private final Connection delegate;
+    private final RunStatistics runStatistics;
+
+    @Getter
+    private String database = null;
+    private final Map<String, String> variables = new HashMap<>();
+
+    public SessionStateConnection(Connection delegate, RunStatistics runStatistics) {
+        this.delegate = delegate;
+        this.runStatistics = runStatistics;
+    }
+
+    public Map<String, String> getVariables() {
+        return Collections.unmodifiableMap(variables);
+    }
+
+    /*
+    Check if the sql would leave the session unchanged.
+     */
+    protected boolean isRedundant(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        Matcher useMatcher = USE_PATTERN.matcher(sql);
+        if (useMatcher.matches()) {
+            if (useMatcher.group(1).equalsIgnoreCase(database)) {
+                count(USE_SKIPPED);
+                return true;
+            }
+            return false;
+        }
+        Matcher setMatcher = SET_PATTERN.matcher(sql);
+        if (setMatcher.matches()) {
+            String current = variables.get(setMatcher.group(1));
+            if (current != null && current.equals(setMatcher.group(2))) {
+                count(SET_SKIPPED);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+    Record the session change of a statement that ran successfully.
+     */
+    protected void applied(String sql) {
+        if (sql == null || !SESSION_PATTERN.matcher(sql).matches()) {
+            return;
+        }
+        Matcher useMatcher = USE_PATTERN.matcher(sql);
+        Matcher setMatcher = SET_PATTERN.matcher(sql);
+        if (useMatcher.matches()) {
+            database = useMatcher.group(1).toLowerCase();
+        } else if (setMatcher.matches()) {
+            variables.put(setMatcher.group(1), setMatcher.group(2));
+        } else {
+            // 'RESET' or a form we don't follow.
+            reset();
+        }
+    }
+
+    /*
+    Forget what we know about the session.
+     */
+    public void reset() {
+        database = null;
+        variables.clear();
+    }
+
+    protected void executed(boolean failed) {
+        count(pool(STATEMENTS));
+        if (failed) {
+            count(pool(FAILURES));
+        }
+    }
+
+    protected void queried(long millis) {
+        if (runStatistics != null) {
+            runStatistics.increment(pool(QUERIES));
+            runStatistics.add(pool(QUERY_MS), millis);
+        }
+    }
+
+    protected void ran(String sql, long millis) {
+        if (runStatistics != null && sql != null && !DATA_PATTERN.matcher(sql).matches()) {
+            runStatistics.increment(pool(EXECUTES));
+            runStatistics.add(pool(EXECUTE_MS), millis);
+        }
+    }
+
+    /*
+    The key for the thread pool of the current thread, the thread name without its number (IE: 'job-3' is 'job').
+     */
+    public static String pool(String key) {
+        String name = Thread.currentThread().getName();
+        int dash = name.lastIndexOf('-');
+        if (dash > 0 && dash < name.length() - 1 && name.substring(dash + 1).chars().allMatch(Character::isDigit)) {
+            name = name.substring(0, dash);
+        }
+        return key + "." + name;
+    }
+
+    private void count(String key) {
+        if (runStatistics != null) {
+            runStatistics.increment(key);
+        }
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        return new SessionStateStatement(this, delegate.createStatement());
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+        return new SessionStateStatement(this, delegate.createStatement(resultSetType, resultSetConcurrency));
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        return new SessionStateStatement(this, delegate.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return delegate.prepareStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        return delegate.prepareStatement(sql, resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        return delegate.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        return delegate.prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+        return delegate.prepareStatement(sql, columnIndexes);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+        return delegate.prepareStatement(sql, columnNames);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql) throws SQLException {
+        return delegate.prepareCall(sql);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        return delegate.prepareCall(sql, resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        return delegate.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    public String nativeSQL(String sql) throws SQLException {
+        return delegate.nativeSQL(sql);
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        return delegate.getAutoCommit();
+    }
+
+    @Override
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        delegate.setAutoCommit(autoCommit);
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        delegate.commit();
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        delegate.rollback();
+    }
+
+    @Override
+    public void rollback(Savepoint savepoint) throws SQLException {
+        delegate.rollback(savepoint);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        reset();
+        delegate.close();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public DatabaseMetaData getMetaData() throws SQLException {
+        return delegate.getMetaData();
+    }
+
+    @Override
+    public boolean isReadOnly() throws SQLException {
+        return delegate.isReadOnly();
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        delegate.setReadOnly(readOnly);
+    }
+
+    @Override
+    public String getCatalog() throws SQLException {
+        return delegate.getCatalog();
+    }
+
+    @Override
+    public void setCatalog(String catalog) throws SQLException {
+        delegate.setCatalog(catalog);
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException {
+        return delegate.getTransactionIsolation();
+    }
+
+    @Override
+    public void setTransactionIsolation(int level) throws SQLException {
+        delegate.setTransactionIsolation(level);
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return delegate.getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        delegate.clearWarnings();
+    }
+
+    @Override
+    public Map<String, Class<?>> getTypeMap() throws SQLException {
+        return delegate.getTypeMap();
+    }
+
+    @Override
+    public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+        delegate.setTypeMap(map);
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        return delegate.getHoldability();
+    }
+
+    @Override
+    public void setHoldability(int holdability) throws SQLException {
+        delegate.setHoldability(holdability);
+    }
+
+    @Override
+    public Savepoint setSavepoint() throws SQLException {
+        return delegate.setSavepoint();
+    }
+
+    @Override
+    public Savepoint setSavepoint(String name) throws SQLException {
+        return delegate.setSavepoint(name);
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        delegate.releaseSavepoint(savepoint);
+    }
+
+    @Override
+    public Clob createClob() throws SQLException {
+        return delegate.createClob();
+    }
+
+    @Override
+    public Blob createBlob() throws SQLException {
+        return delegate.createBlob();
+    }
+
+    @Override
+    public NClob createNClob() throws SQLException {
+        return delegate.createNClob();
+    }
+
+    @Override
+    public SQLXML createSQLXML() throws SQLException {
+        return delegate.createSQLXML();
+    }
+
+    @Override
+    public boolean isValid(int timeout) throws SQLException {
+        return delegate.isValid(timeout);
+    }
+
+    @Override
+    public void setClientInfo(String name, String value) throws SQLClientInfoException {
+        delegate.setClientInfo(name, value);
+    }
+
+    @Override
+    public String getClientInfo(String name) throws SQLException {
+        return delegate.getClientInfo(name);
+    }
+
+    @Override
+    public Properties getClientInfo() throws SQLException {
+        return delegate.getClientInfo();
+    }
+
+    @Override
+    public void setClientInfo(Properties properties) throws SQLClientInfoException {
+        delegate.setClientInfo(properties);
+    }
+
+    @Override
+    public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+        return delegate.createArrayOf(typeName, elements);
+    }
+
+    @Override
+    public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+        return delegate.createStruct(typeName, attributes);
+    }
+
+    @Override
+    public String getSchema() throws SQLException {
+        return delegate.getSchema();
+    }
+
+    @Override
+    public void setSchema(String schema) throws SQLException {
+        // Changes the current database.
+        reset();
+        delegate.setSchema(schema);
+    }
+
+    @Override
+    public void abort(Executor executor) throws SQLException {
+        reset();
+        delegate.abort(executor);
+    }
+
+    @Override
+    public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+        delegate.setNetworkTimeout(executor, milliseconds);
+    }
+
+    @Override
+    public int getNetworkTimeout() throws SQLException {
+        return delegate.getNetworkTimeout();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+}
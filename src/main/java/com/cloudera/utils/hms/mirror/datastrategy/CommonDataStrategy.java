@@ -179,9 +179,8 @@ public class CommonDataStrategy extends DataStrategyBase implements DataStrategy
             if (getHmsMirrorCfgService().getHmsMirrorConfig().isEvaluatePartitionLocation()) {
                 // TODO: Write out the SQL to build the partitions.  NOTE: We need to get the partition locations and modify them
                 //       to the new namespace.
-                String tableParts = translatorService.buildPartitionAddStatement(ret);
-                String addPartSql = MessageFormat.format(MirrorConf.ALTER_TABLE_PARTITION_ADD_LOCATION, ret.getName(), tableParts);
-                ret.addSql(MirrorConf.ALTER_TABLE_PARTITION_ADD_LOCATION_DESC, addPartSql);
+                translatorService.addPartitionAddSql(ret,
+                        getHmsMirrorCfgService().getHmsMirrorConfig().getOptimization().getPartitionAddBatchSize());
             } else if (getHmsMirrorCfgService().getHmsMirrorConfig().getCluster(Environment.RIGHT).getPartitionDiscovery().isInitMSCK()) {
                 String msckStmt = MessageFormat.format(MirrorConf.MSCK_REPAIR_TABLE, ret.getName());
                 if (getHmsMirrorCfgService().getHmsMirrorConfig().getTransfer().getStorageMigration().isDistcp()) {
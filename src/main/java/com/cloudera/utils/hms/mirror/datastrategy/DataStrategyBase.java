@@ -18,17 +18,18 @@
 package com.cloudera.utils.hms.mirror.datastrategy;
 
 //import com.cloudera.utils.hadoop.HadoopSession;
-import com.cloudera.utils.hadoop.cli.CliEnvironment;
-import com.cloudera.utils.hadoop.shell.command.CommandReturn;
 import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
 import com.cloudera.utils.hms.mirror.Environment;
 import com.cloudera.utils.hms.mirror.EnvironmentTable;
 import com.cloudera.utils.hms.mirror.TableMirror;
+import com.cloudera.utils.hms.mirror.service.FileSystemProbeService;
 import com.cloudera.utils.hms.mirror.service.HmsMirrorCfgService;
 import com.cloudera.utils.hms.util.TableUtils;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.IOException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -41,6 +42,7 @@ public abstract class DataStrategyBase implements DataStrategy {
     public static final Pattern lastDirPattern = Pattern.compile(".*/([^/?]+).*");
 
     protected HmsMirrorCfgService hmsMirrorCfgService;
+    protected FileSystemProbeService fileSystemProbeService;
 
     protected Boolean AVROCheck(TableMirror tableMirror) {
         Boolean rtn = Boolean.TRUE;
@@ -110,9 +112,7 @@ public abstract class DataStrategyBase implements DataStrategy {
             if (leftPath != null && rightPath != null && hmsMirrorConfig.isCopyAvroSchemaUrls() && hmsMirrorConfig.isExecute()) {
                 // Copy over.
                 log.info("{}: Attempting to copy AVRO schema file to target cluster.", let.getName());
-                CliEnvironment cli = hmsMirrorConfig.getCliEnvironment();
                 try {
-                    CommandReturn cr = null;
                     if (relative) {
                         leftPath = hmsMirrorConfig.getCluster(Environment.LEFT).getHcfsNamespace() + leftPath;
                         rightPath = hmsMirrorConfig.getCluster(Environment.RIGHT).getHcfsNamespace() + rightPath;
@@ -123,15 +123,18 @@ public abstract class DataStrategyBase implements DataStrategy {
                     if (matcher.find()) {
                         String pathEnd = matcher.group(1);
                         String mkdir = rightPath.substring(0, rightPath.length() - pathEnd.length());
-                        cr = cli.processInput("mkdir -p " + mkdir);
-                        if (cr.isError()) {
-                            ret.addIssue("Problem creating directory " + mkdir + ". " + cr.getError());
+                        try {
+                            getFileSystemProbeService().mkdirs(mkdir);
+                        } catch (IOException ioe) {
+                            ret.addIssue("Problem creating directory " + mkdir + ". " + ioe.getMessage());
                             rtn = Boolean.FALSE;
-                        } else {
-                            cr = cli.processInput("cp -f " + leftPath + " " + rightPath);
-                            if (cr.isError()) {
+                        }
+                        if (rtn) {
+                            try {
+                                getFileSystemProbeService().copy(leftPath, rightPath);
+                            } catch (IOException ioe) {
                                 ret.addIssue("Problem copying AVRO schema file from " + leftPath + " to " +
-                                        mkdir + ".\n```" + cr.getError() + "```");
+                                        mkdir + ".\n```" + ioe.getMessage() + "```");
                                 rtn = Boolean.FALSE;
                             }
                         }
@@ -164,4 +167,9 @@ public abstract class DataStrategyBase implements DataStrategy {
         return et;
     }
 
+    @Autowired
+    public void setFileSystemProbeService(FileSystemProbeService fileSystemProbeService) {
+        this.fileSystemProbeService = fileSystemProbeService;
+    }
+
 }
@@ -92,9 +92,8 @@ public class DumpDataStrategy extends DataStrategyBase implements DataStrategy {
         // If partitioned, !ACID, repair
         if (let.getPartitioned() && !TableUtils.isACID(let)) {
             if (getHmsMirrorCfgService().getHmsMirrorConfig().isEvaluatePartitionLocation()) {
-                String tableParts = getTranslatorService().buildPartitionAddStatement(let);
-                String addPartSql = MessageFormat.format(MirrorConf.ALTER_TABLE_PARTITION_ADD_LOCATION, let.getName(), tableParts);
-                let.addSql(MirrorConf.ALTER_TABLE_PARTITION_ADD_LOCATION_DESC, addPartSql);
+                getTranslatorService().addPartitionAddSql(let,
+                        getHmsMirrorCfgService().getHmsMirrorConfig().getOptimization().getPartitionAddBatchSize());
             } else if (getHmsMirrorCfgService().getHmsMirrorConfig().getCluster(Environment.LEFT).getPartitionDiscovery().isInitMSCK()) {
                 String msckStmt = MessageFormat.format(MirrorConf.MSCK_REPAIR_TABLE, let.getName());
                 if (getHmsMirrorCfgService().getHmsMirrorConfig().getTransfer().getStorageMigration().isDistcp()) {
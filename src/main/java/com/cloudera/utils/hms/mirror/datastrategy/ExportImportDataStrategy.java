@@ -20,6 +20,7 @@ package com.cloudera.utils.hms.mirror.datastrategy;
 import com.cloudera.utils.hms.mirror.*;
 import com.cloudera.utils.hms.mirror.service.HmsMirrorCfgService;
 import com.cloudera.utils.hms.mirror.service.ExportCircularResolveService;
+import com.cloudera.utils.hms.mirror.service.ExportImportPipelineService;
 import com.cloudera.utils.hms.mirror.service.TableService;
 import com.cloudera.utils.hms.mirror.service.TranslatorService;
 import com.cloudera.utils.hms.util.TableUtils;
@@ -39,6 +40,7 @@ import static com.cloudera.utils.hms.mirror.TablePropertyVars.TRANSLATED_TO_EXTE
 public class ExportImportDataStrategy extends DataStrategyBase implements DataStrategy {
 
     private ExportCircularResolveService exportCircularResolveService;
+    private ExportImportPipelineService exportImportPipelineService;
     private TranslatorService translatorService;
     private ExportImportAcidDowngradeInPlaceDataStrategy exportImportAcidDowngradeInPlaceDataStrategy;
     private TableService tableService;
@@ -274,14 +276,12 @@ public class ExportImportDataStrategy extends DataStrategyBase implements DataSt
                 if (rtn)
                     rtn = AVROCheck(tableMirror);
             }
-            // If EXPORT_IMPORT, need to run LEFT queries.
+            // The LEFT EXPORT, then the RIGHT IMPORT queued for the import threads, within the limits on the exports
+            // in flight.
             if (rtn) {
-                rtn = tableService.runTableSql(tableMirror, Environment.LEFT);
-            }
-
-            // Execute the RIGHT sql if config.execute.
-            if (rtn) {
-                rtn = tableService.runTableSql(tableMirror, Environment.RIGHT);
+                rtn = getExportImportPipelineService().run(tableMirror,
+                        () -> tableService.runTableSql(tableMirror, Environment.LEFT),
+                        () -> tableService.runTableSql(tableMirror, Environment.RIGHT));
             }
         }
 
@@ -294,6 +294,11 @@ public class ExportImportDataStrategy extends DataStrategyBase implements DataSt
         this.exportCircularResolveService = exportCircularResolveService;
     }
 
+    @Autowired
+    public void setExportImportPipelineService(ExportImportPipelineService exportImportPipelineService) {
+        this.exportImportPipelineService = exportImportPipelineService;
+    }
+
     @Autowired
     public void setExportImportAcidDowngradeInPlaceDataStrategy(ExportImportAcidDowngradeInPlaceDataStrategy exportImportAcidDowngradeInPlaceDataStrategy) {
         this.exportImportAcidDowngradeInPlaceDataStrategy = exportImportAcidDowngradeInPlaceDataStrategy;
@@ -27,6 +27,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.text.MessageFormat;
+import java.util.concurrent.CompletableFuture;
 
 import static com.cloudera.utils.hms.mirror.MessageCode.*;
 import static com.cloudera.utils.hms.mirror.SessionVars.SET_TEZ_AS_EXECUTION_ENGINE;
@@ -325,19 +326,15 @@ public class IntermediateDataStrategy extends DataStrategyBase implements DataSt
             rtn = tableService.buildTransferSql(tableMirror, Environment.LEFT, Environment.TRANSFER, Environment.RIGHT);
             //tableMirror.buildTransferSql(let, set, ret, config);
 
-            // Execute the LEFT sql if config.execute.
+            // Execute the LEFT sql, then the RIGHT sql and the LEFT cleanup scripts, if config.execute.  Each runs on
+            // its cluster's pool as the one before it ends.
             if (rtn) {
-                rtn = tableService.runTableSql(tableMirror, Environment.LEFT);
-            }
-
-            // Execute the RIGHT sql if config.execute.
-            if (rtn) {
-                rtn = tableService.runTableSql(tableMirror, Environment.RIGHT);
-            }
-
-            if (rtn) {
-                // Run the Cleanup Scripts
-                tableService.runTableSql(let.getCleanUpSql(), tableMirror, Environment.LEFT);
+                rtn = tableService.await(tableService.runTableSqlAsync(tableMirror, Environment.LEFT)
+                        .thenCompose(left -> left ? tableService.runTableSqlAsync(tableMirror, Environment.RIGHT)
+                                : CompletableFuture.completedFuture(Boolean.FALSE))
+                        .thenCompose(right -> right ? tableService.runTableSqlAsync(let.getCleanUpSql(), tableMirror,
+                                Environment.LEFT).thenApply(cleanUp -> Boolean.TRUE)
+                                : CompletableFuture.completedFuture(Boolean.FALSE)), tableMirror, Environment.RIGHT);
             }
 
             // RIGHT Shadow table
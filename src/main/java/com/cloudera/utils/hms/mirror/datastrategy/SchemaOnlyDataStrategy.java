@@ -227,9 +227,8 @@ public class SchemaOnlyDataStrategy extends DataStrategyBase implements DataStra
             if (hmsMirrorConfig.isEvaluatePartitionLocation()) {
                 // TODO: Write out the SQL to build the partitions.  NOTE: We need to get the partition locations and modify them
                 //       to the new namespace.
-                String tableParts = getTranslatorService().buildPartitionAddStatement(ret);
-                String addPartSql = MessageFormat.format(MirrorConf.ALTER_TABLE_PARTITION_ADD_LOCATION, ret.getName(), tableParts);
-                ret.addSql(MirrorConf.ALTER_TABLE_PARTITION_ADD_LOCATION_DESC, addPartSql);
+                getTranslatorService().addPartitionAddSql(ret,
+                        hmsMirrorConfig.getOptimization().getPartitionAddBatchSize());
             } else if (hmsMirrorConfig.getCluster(Environment.RIGHT).getPartitionDiscovery().isInitMSCK()) {
                 String msckStmt = MessageFormat.format(MirrorConf.MSCK_REPAIR_TABLE, ret.getName());
                 // Add the MSCK repair to both initial and cleanup.
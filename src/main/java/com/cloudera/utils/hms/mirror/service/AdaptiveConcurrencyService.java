@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.AdaptiveLimit;
+import com.cloudera.utils.hms.mirror.Environment;
+import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
+import com.cloudera.utils.hms.mirror.Optimization;
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import com.cloudera.utils.hms.mirror.connections.SessionStateConnection;
+import com.cloudera.utils.hms.stage.WorkflowStage;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+Resizes the 'jobThreadPool' and 'metadataThreadPool' while the run goes, each with its own AdaptiveLimit.  Every
+interval, a pool is judged on what its threads saw since the last one: the HS2 statement latency and failures
+(see SessionStateConnection) and the time its tasks waited for a thread (see WorkflowService).  The job pool also
+answers for the 'range' threads that help its transfers.
+
+With 'environmentPools', the LEFT and RIGHT execution pools are resized in its place, each on what its own cluster
+is doing, and the job pool follows their sum.
+
+Changes are logged and kept as run statistics events, and 'concurrency.<pool>.limit' has the limit at the end.
+ */
+@Service
+@Slf4j
+@Getter
+@Setter
+public class AdaptiveConcurrencyService {
+
+    public static final String LIMIT = "concurrency.%s.limit";
+    public static final String PEAK = "concurrency.%s.limit.peak";
+    public static final String INCREASES = "concurrency.%s.increases";
+    public static final String DECREASES = "concurrency.%s.decreases";
+
+    private HmsMirrorCfgService hmsMirrorCfgService;
+    private RunStatistics runStatistics;
+    private TaskExecutor jobThreadPool;
+    private TaskExecutor metadataThreadPool;
+    private TaskExecutor leftExecutionPool;
+    private TaskExecutor rightExecutionPool;
+
+    private final List<ControlledPool> pools = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    public boolean isEnabled() {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        return hmsMirrorConfig.getOptimization().isAdaptiveConcurrency() && !hmsMirrorConfig.isLoadingTestData();
+    }
+
+    public void start() {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        Optimization optimization = hmsMirrorConfig.getOptimization();
+        int concurrency = hmsMirrorConfig.getTransfer().getConcurrency();
+        int max = optimization.adaptiveConcurrencyCeiling(concurrency);
+        pools.clear();
+        if (optimization.isEnvironmentPools()) {
+            for (Environment environment : new Environment[]{Environment.LEFT, Environment.RIGHT}) {
+                String name = environment.toString().toLowerCase();
+                int initial = optimization.environmentConcurrency(environment, concurrency);
+                add(name, Environment.LEFT == environment ? getLeftExecutionPool() : getRightExecutionPool(),
+                        new AdaptiveLimit(initial, optimization.getAdaptiveConcurrencyMin(),
+                                optimization.adaptiveConcurrencyCeiling(initial)),
+                        new WorkflowStage[0], name);
+            }
+            followEnvironmentPools();
+        } else {
+            add("job", getJobThreadPool(), new AdaptiveLimit(concurrency, optimization.getAdaptiveConcurrencyMin(), max),
+                    new WorkflowStage[]{WorkflowStage.TRANSFER}, "job", "range");
+        }
+        add("metadata", getMetadataThreadPool(), new AdaptiveLimit(concurrency, optimization.getAdaptiveConcurrencyMin(), max),
+                new WorkflowStage[]{WorkflowStage.TABLES, WorkflowStage.METADATA}, "metadata");
+
+        int interval = Math.max(1, optimization.getAdaptiveConcurrencyIntervalSeconds());
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "adaptive-concurrency");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::adjust, interval, interval, TimeUnit.SECONDS);
+        log.info("Adaptive concurrency between {} and {}, adjusted every {}s", optimization.getAdaptiveConcurrencyMin(),
+                max, interval);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        for (ControlledPool pool : pools) {
+            log.info("Adaptive concurrency for {} ended at {}", pool.name, pool.limit.getLimit());
+        }
+    }
+
+    protected void adjust() {
+        for (ControlledPool pool : pools) {
+            try {
+                adjust(pool);
+            } catch (RuntimeException rte) {
+                // Don't let one bad window stop the schedule.
+                log.error("Problem adjusting the concurrency of {}", pool.name, rte);
+            }
+        }
+        if (getHmsMirrorCfgService().getHmsMirrorConfig().getOptimization().isEnvironmentPools()) {
+            followEnvironmentPools();
+        }
+    }
+
+    /*
+    Enough job threads to keep every execution pool busy.
+     */
+    protected void followEnvironmentPools() {
+        if (!(getJobThreadPool() instanceof ThreadPoolTaskExecutor)) {
+            return;
+        }
+        int jobs = 0;
+        for (ControlledPool pool : pools) {
+            if (!pool.name.equals("metadata")) {
+                jobs += pool.limit.getLimit();
+            }
+        }
+        ThreadPoolTaskExecutor jobThreadPool = (ThreadPoolTaskExecutor) getJobThreadPool();
+        if (jobs > 0 && jobThreadPool.getCorePoolSize() != jobs) {
+            resize(jobThreadPool, jobs);
+        }
+    }
+
+    protected void adjust(ControlledPool pool) {
+        long statements = 0, failures = 0, queries = 0, queryMs = 0, tasks = 0, waitMs = 0;
+        for (String threads : pool.threads) {
+            statements += getRunStatistics().get(SessionStateConnection.STATEMENTS + "." + threads);
+            failures += getRunStatistics().get(SessionStateConnection.FAILURES + "." + threads);
+            queries += getRunStatistics().get(SessionStateConnection.QUERIES + "." + threads);
+            queryMs += getRunStatistics().get(SessionStateConnection.QUERY_MS + "." + threads);
+            // The job threads mostly 'execute'.
+            queries += getRunStatistics().get(SessionStateConnection.EXECUTES + "." + threads);
+            queryMs += getRunStatistics().get(SessionStateConnection.EXECUTE_MS + "." + threads);
+        }
+        for (WorkflowStage stage : pool.stages) {
+            tasks += getRunStatistics().get(stage.key("completed")) + getRunStatistics().get(stage.key("errors"));
+            waitMs += getRunStatistics().get(stage.key("wait.ms"));
+        }
+        long[] current = {statements, failures, queries, queryMs, tasks, waitMs};
+        long[] delta = new long[current.length];
+        for (int i = 0; i < current.length; i++) {
+            delta[i] = current[i] - pool.last[i];
+        }
+        pool.last = current;
+
+        double errorRate = delta[0] > 0 ? (double) delta[1] / delta[0] : 0;
+        double latencyMs = delta[2] > 0 ? (double) delta[3] / delta[2] : 0;
+        double avgWaitMs = delta[4] > 0 ? (double) delta[5] / delta[4] : 0;
+        int queued = pool.executor.getThreadPoolExecutor().getQueue().size();
+
+        int from = pool.limit.getLimit();
+        String reason = pool.limit.update(latencyMs, errorRate, avgWaitMs, queued);
+        if (reason != null) {
+            int to = pool.limit.getLimit();
+            resize(pool.executor, to);
+            log.info("Concurrency of {}: {} -> {} ({})", pool.name, from, to, reason);
+            getRunStatistics().event("Concurrency of " + pool.name + ": " + from + " -> " + to + " (" + reason + ")");
+            getRunStatistics().increment(String.format(to > from ? INCREASES : DECREASES, pool.name));
+        }
+        record(pool);
+    }
+
+    private void add(String name, TaskExecutor executor, AdaptiveLimit limit, WorkflowStage[] stages, String... threads) {
+        if (!(executor instanceof ThreadPoolTaskExecutor)) {
+            log.warn("The {} pool can't be resized, it stays at its configured size", name);
+            return;
+        }
+        ControlledPool pool = new ControlledPool(name, (ThreadPoolTaskExecutor) executor, limit, stages, threads);
+        if (pool.executor.getCorePoolSize() != limit.getLimit()) {
+            resize(pool.executor, limit.getLimit());
+        }
+        record(pool);
+        pools.add(pool);
+    }
+
+    private void record(ControlledPool pool) {
+        getRunStatistics().set(String.format(LIMIT, pool.name), pool.limit.getLimit());
+        getRunStatistics().max(String.format(PEAK, pool.name), pool.limit.getLimit());
+    }
+
+    /*
+    The queue never fills (see WorkflowService), so the core size is what runs.  The max has to stay at or above it.
+     */
+    protected static void resize(ThreadPoolTaskExecutor executor, int size) {
+        if (size > executor.getMaxPoolSize()) {
+            executor.setMaxPoolSize(size);
+            executor.setCorePoolSize(size);
+        } else {
+            executor.setCorePoolSize(size);
+            executor.setMaxPoolSize(size);
+        }
+    }
+
+    @Autowired
+    public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
+        this.hmsMirrorCfgService = hmsMirrorCfgService;
+    }
+
+    @Autowired
+    public void setJobThreadPool(@Qualifier("jobThreadPool") TaskExecutor jobThreadPool) {
+        this.jobThreadPool = jobThreadPool;
+    }
+
+    @Autowired
+    public void setLeftExecutionPool(@Qualifier("leftExecutionPool") TaskExecutor leftExecutionPool) {
+        this.leftExecutionPool = leftExecutionPool;
+    }
+
+    @Autowired
+    public void setRightExecutionPool(@Qualifier("rightExecutionPool") TaskExecutor rightExecutionPool) {
+        this.rightExecutionPool = rightExecutionPool;
+    }
+
+    @Autowired
+    public void setMetadataThreadPool(@Qualifier("metadataThreadPool") TaskExecutor metadataThreadPool) {
+        this.metadataThreadPool = metadataThreadPool;
+    }
+
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+    protected static class ControlledPool {
+        private final String name;
+        private final ThreadPoolTaskExecutor executor;
+        private final AdaptiveLimit limit;
+        private final WorkflowStage[] stages;
+        private final String[] threads;
+        // The counters at the end of the last window.
+        private long[] last = new long[6];
+
+        ControlledPool(String name, ThreadPoolTaskExecutor executor, AdaptiveLimit limit, WorkflowStage[] stages,
+                       String[] threads) {
+            this.name = name;
+            this.executor = executor;
+            this.limit = limit;
+            this.stages = stages;
+            this.threads = threads;
+        }
+    }
+
+}
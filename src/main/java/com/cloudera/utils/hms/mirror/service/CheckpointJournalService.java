@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Append only journal of an 'execute' run: the phase transitions of the tables and each SQL statement as it completes.
+It's kept in '$HOME/.hms-mirror/journal/<strategy>_<databases digest>.journal', so the same databases and strategy
+find it again.  A new run starts a new journal, while a 'resume' run loads it, takes back its run marker (so the
+generated SQL comes out the same), skips the tables that were done and, for the others, the statements that
+completed.  Statements are matched by their text, so anything that comes out differently this time is run.
+
+Job threads only queue records.  A single writer appends them and forces the file once per batch it drains, so a
+busy run syncs far less than once per record.  A statement that completed after the last sync is run again on
+resume, and a torn record at the end of the file (the crash) is dropped on load.
+ */
+@Service
+@Slf4j
+@Getter
+@Setter
+public class CheckpointJournalService {
+
+    public static final String COMPLETED = "Completed by the run being resumed";
+
+    public static final String JOURNAL_RECORDS = "journal.records";
+    public static final String JOURNAL_SYNCS = "journal.syncs";
+    public static final String RESUME_TABLES = "resume.tables.skipped";
+    public static final String RESUME_SQL = "resume.sql.skipped";
+
+    protected static final String RUN = "RUN";
+    protected static final String RESUME = "RESUME";
+    protected static final String PHASE = "PHASE";
+    protected static final String SQL = "SQL";
+
+    private static final int BATCH_SIZE = 1000;
+    // Queued by close(), compared by reference.
+    private static final String STOP = new String("STOP");
+
+    private HmsMirrorCfgService hmsMirrorCfgService;
+    private RunStatistics runStatistics;
+
+    private File directory = new File(System.getProperty("user.home") + File.separator + ".hms-mirror" +
+            File.separator + "journal");
+
+    // From the journal being resumed.  Last phase by db.table and completed statements by db.table:env:digest.
+    private final Map<String, PhaseState> phases = new ConcurrentHashMap<>();
+    private final Map<String, Integer> completed = new ConcurrentHashMap<>();
+    // Statements looked at in this run, for the ones that are repeated.
+    private final Map<String, AtomicInteger> seen = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private volatile boolean open = Boolean.FALSE;
+    private File journalFile;
+    private Thread writer;
+
+    public boolean isEnabled() {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        return hmsMirrorConfig.isExecute() && !hmsMirrorConfig.isLoadingTestData();
+    }
+
+    /*
+    Start the journal for the run, loading the previous one when resuming.  Needs to happen before any SQL is built,
+    since resuming resets the run marker.
+     */
+    public void open() {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        journalFile = getFile();
+        boolean resuming = hmsMirrorConfig.isResume() && journalFile.exists();
+        if (hmsMirrorConfig.isResume() && !resuming) {
+            log.warn("No journal to resume at {}.  Starting from the beginning.", journalFile);
+        }
+        try {
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            FileChannel channel;
+            if (resuming) {
+                String runMarker = load(journalFile);
+                if (runMarker != null) {
+                    hmsMirrorConfig.setRunMarker(runMarker);
+                }
+                channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                log.info("Resuming run {} from {}: {} tables completed, {} statements completed", runMarker, journalFile,
+                        phases.values().stream().filter(CheckpointJournalService::isCompleted).count(),
+                        completed.values().stream().mapToInt(Integer::intValue).sum());
+                queue.add(record(RESUME, Long.toString(System.currentTimeMillis())));
+            } else {
+                channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                queue.add(record(RUN, hmsMirrorConfig.getRunMarker(), Long.toString(System.currentTimeMillis())));
+                log.info("Journaling the run to {}", journalFile);
+            }
+            open = Boolean.TRUE;
+            writer = new Thread(() -> write(channel), "hms-mirror-journal");
+            writer.setDaemon(true);
+            writer.start();
+        } catch (IOException ioe) {
+            // The run goes on, it just can't be resumed.
+            log.error("Problem opening the journal {}.  The run can't be resumed.", journalFile, ioe);
+        }
+    }
+
+    /*
+    Write out what's queued and stop the writer.
+     */
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = Boolean.FALSE;
+        queue.add(STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void phase(TableMirror tableMirror) {
+        if (open && tableMirror.getPhaseState() != null) {
+            queue.add(record(PHASE, tableMirror.getParent().getName(), tableMirror.getName(),
+                    tableMirror.getPhaseState().toString()));
+        }
+    }
+
+    public void sqlCompleted(TableMirror tableMirror, Environment environment, Pair pair) {
+        if (open) {
+            queue.add(record(SQL, tableMirror.getParent().getName(), tableMirror.getName(), environment.toString(),
+                    digest(pair), pair.getDescription()));
+        }
+    }
+
+    /*
+    The table was done by the run being resumed.
+     */
+    public boolean isTableCompleted(TableMirror tableMirror) {
+        if (phases.isEmpty()) {
+            return false;
+        }
+        boolean rtn = isCompleted(phases.get(tableMirror.getParent().getName() + "." + tableMirror.getName()));
+        if (rtn) {
+            increment(RESUME_TABLES);
+        }
+        return rtn;
+    }
+
+    /*
+    The statement was completed by the run being resumed.  Each call counts as a run of the statement, so a
+    statement that's repeated is only skipped as many times as it completed.
+     */
+    public boolean isSqlCompleted(TableMirror tableMirror, Environment environment, Pair pair) {
+        if (completed.isEmpty()) {
+            return false;
+        }
+        String key = key(tableMirror.getParent().getName(), tableMirror.getName(), environment.toString(), digest(pair));
+        int count = completed.getOrDefault(key, 0);
+        boolean rtn = count > 0 && seen.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet() <= count;
+        if (rtn) {
+            increment(RESUME_SQL);
+        }
+        return rtn;
+    }
+
+    /*
+    Read the journal, dropping a torn record at the end.  Returns the run marker of the journaled run.
+     */
+    protected String load(File journal) throws IOException {
+        byte[] bytes = Files.readAllBytes(journal.toPath());
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end < bytes.length) {
+            log.info("Dropping the incomplete last record of {}", journal);
+            try (FileChannel channel = FileChannel.open(journal.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+        String runMarker = null;
+        for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+            String[] fields = fields(line);
+            switch (fields[0]) {
+                case RUN:
+                    runMarker = fields.length > 1 ? fields[1] : null;
+                    break;
+                case PHASE:
+                    if (fields.length == 4) {
+                        try {
+                            phases.put(fields[1] + "." + fields[2], PhaseState.valueOf(fields[3]));
+                        } catch (IllegalArgumentException iae) {
+                            // A garbled record, the table is taken as not done.
+                            log.warn("Skipping the unreadable phase record '{}' in {}", line, journal);
+                        }
+                    }
+                    break;
+                case SQL:
+                    if (fields.length >= 5) {
+                        completed.merge(key(fields[1], fields[2], fields[3], fields[4]), 1, Integer::sum);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return runMarker;
+    }
+
+    private void write(FileChannel channel) {
+        List<String> batch = new ArrayList<>();
+        boolean stop = Boolean.FALSE;
+        boolean failed = Boolean.FALSE;
+        try {
+            while (!stop) {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                StringBuilder sb = new StringBuilder();
+                int records = 0;
+                for (String record : batch) {
+                    if (record == STOP) {
+                        stop = Boolean.TRUE;
+                    } else {
+                        sb.append(record).append('\n');
+                        records++;
+                    }
+                }
+                batch.clear();
+                if (records == 0 || failed) {
+                    continue;
+                }
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                    if (getRunStatistics() != null) {
+                        getRunStatistics().add(JOURNAL_RECORDS, records);
+                        getRunStatistics().increment(JOURNAL_SYNCS);
+                    }
+                } catch (IOException ioe) {
+                    // Keep draining the queue so the job threads aren't held up.
+                    log.error("Problem writing the journal {}.  The run can't be resumed from here.", journalFile, ioe);
+                    failed = Boolean.TRUE;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ioe) {
+                log.warn("Problem closing the journal {}", journalFile, ioe);
+            }
+        }
+    }
+
+    /*
+    The journal for the strategy and the databases (with where they go) of the run.
+     */
+    protected File getFile() {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        List<String> databases = new ArrayList<>();
+        for (String database : hmsMirrorConfig.getDatabases()) {
+            databases.add(database + ">" + getHmsMirrorCfgService().getResolvedDB(database));
+        }
+        Collections.sort(databases);
+        return new File(directory, hmsMirrorConfig.getDataStrategy() + "_" +
+                TableFingerprint.digest(databases).substring(0, 16) + ".journal");
+    }
+
+    protected static boolean isCompleted(PhaseState phaseState) {
+        return phaseState == PhaseState.SUCCESS || phaseState == PhaseState.SYNC_UNCHANGED;
+    }
+
+    protected static String digest(Pair pair) {
+        return TableFingerprint.digest(Collections.singletonList(pair.getAction() == null ? "" : pair.getAction().trim()));
+    }
+
+    private static String key(String database, String table, String environment, String digest) {
+        return database + "." + table + ":" + environment + ":" + digest;
+    }
+
+    /*
+    Tab separated, with tabs, newlines and backslashes in the values escaped.
+     */
+    protected static String record(String... values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append('\t');
+            }
+            String value = values[i] == null ? "" : values[i];
+            sb.append(value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n"));
+        }
+        return sb.toString();
+    }
+
+    protected static String[] fields(String record) {
+        String[] rtn = record.split("\t", -1);
+        for (int i = 0; i < rtn.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            String value = rtn[i];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '\\' && c + 1 < value.length()) {
+                    char next = value.charAt(++c);
+                    sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+                } else {
+                    sb.append(ch);
+                }
+            }
+            rtn[i] = sb.toString();
+        }
+        return rtn;
+    }
+
+    private void increment(String key) {
+        if (getRunStatistics() != null) {
+            getRunStatistics().increment(key);
+        }
+    }
+
+    @Autowired
+    public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
+        this.hmsMirrorCfgService = hmsMirrorCfgService;
+    }
+
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+}
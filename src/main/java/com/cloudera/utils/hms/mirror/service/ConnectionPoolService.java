@@ -20,10 +20,12 @@ package com.cloudera.utils.hms.mirror.service;
 import com.cloudera.utils.hive.config.DBStore;
 import com.cloudera.utils.hms.mirror.Environment;
 import com.cloudera.utils.hms.mirror.HiveServer2Config;
+import com.cloudera.utils.hms.mirror.RunStatistics;
 import com.cloudera.utils.hms.mirror.connections.ConnectionPools;
 import com.cloudera.utils.hms.mirror.connections.ConnectionPoolsDBCP2Impl;
 import com.cloudera.utils.hms.mirror.connections.ConnectionPoolsHikariImpl;
 import com.cloudera.utils.hms.mirror.connections.ConnectionPoolsHybridImpl;
+import com.cloudera.utils.hms.mirror.connections.SessionStateConnection;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -40,14 +42,20 @@ import java.sql.SQLException;
 public class ConnectionPoolService implements ConnectionPools {
 
     private HmsMirrorCfgService hmsMirrorCfgService;
+    private RunStatistics runStatistics;
 
-    private ConnectionPools connectionPools = null;
+    private volatile ConnectionPools connectionPools = null;
 
     @Autowired
     public ConnectionPoolService(HmsMirrorCfgService hmsMirrorCfgService) {
         this.hmsMirrorCfgService = hmsMirrorCfgService;
     }
 
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
     @Override
     public void addHiveServer2(Environment environment, HiveServer2Config hiveServer2) {
         getConnectionPools().addHiveServer2(environment, hiveServer2);
@@ -60,16 +68,27 @@ public class ConnectionPoolService implements ConnectionPools {
 
     @Override
     public void close() {
+        if (getRunStatistics() != null) {
+            log.info("HS2 round trips saved by session tracking: USE({}) SET({})",
+                    getRunStatistics().get(SessionStateConnection.USE_SKIPPED),
+                    getRunStatistics().get(SessionStateConnection.SET_SKIPPED));
+        }
         getConnectionPools().close();
     }
 
     public ConnectionPools getConnectionPools() {
+        // Only lock while the pools are being built.  After that, every thread reads the
+        // initialized instance without contention.
         if (connectionPools == null) {
-            try {
-                connectionPools = getConnectionPoolsImpl();
-            } catch (SQLException e) {
-                log.error("Error creating connection pools", e);
-                throw new RuntimeException(e);
+            synchronized (this) {
+                if (connectionPools == null) {
+                    try {
+                        connectionPools = getConnectionPoolsImpl();
+                    } catch (SQLException e) {
+                        log.error("Error creating connection pools", e);
+                        throw new RuntimeException(e);
+                    }
+                }
             }
         }
         return connectionPools;
@@ -80,15 +99,15 @@ public class ConnectionPoolService implements ConnectionPools {
         switch (getHmsMirrorCfgService().getHmsMirrorConfig().getConnectionPoolLib()) {
             case DBCP2:
                 log.info("Using DBCP2 Connection Pooling Libraries");
-                rtn = new ConnectionPoolsDBCP2Impl(getHmsMirrorCfgService());
+                rtn = new ConnectionPoolsDBCP2Impl(getHmsMirrorCfgService(), getRunStatistics());
                 break;
             case HIKARICP:
                 log.info("Using HIKARICP Connection Pooling Libraries");
-                rtn = new ConnectionPoolsHikariImpl(getHmsMirrorCfgService());
+                rtn = new ConnectionPoolsHikariImpl(getHmsMirrorCfgService(), getRunStatistics());
                 break;
             case HYBRID:
                 log.info("Using HYBRID Connection Pooling Libraries");
-                rtn = new ConnectionPoolsHybridImpl(getHmsMirrorCfgService());
+                rtn = new ConnectionPoolsHybridImpl(getHmsMirrorCfgService(), getRunStatistics());
                 break;
         }
         // Initialize the connection pools
@@ -102,6 +121,11 @@ public class ConnectionPoolService implements ConnectionPools {
         return conn;
     }
 
+    @Override
+    public Connection tryHS2EnvironmentConnection(Environment environment) throws SQLException {
+        return getConnectionPools().tryHS2EnvironmentConnection(environment);
+    }
+
     @Override
     public Connection getMetastoreDirectEnvironmentConnection(Environment environment) throws SQLException {
         Connection conn = getConnectionPools().getMetastoreDirectEnvironmentConnection(environment);
@@ -19,15 +19,14 @@ package com.cloudera.utils.hms.mirror.service;
 
 //import com.cloudera.utils.hadoop.HadoopSession;
 
-import com.cloudera.utils.hadoop.cli.CliEnvironment;
 import com.cloudera.utils.hadoop.cli.DisabledException;
-import com.cloudera.utils.hadoop.shell.command.CommandReturn;
 import com.cloudera.utils.hms.mirror.*;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.sql.*;
 import java.text.MessageFormat;
 import java.util.List;
@@ -49,6 +48,7 @@ public class DatabaseService {
     private ConnectionPoolService connectionPoolService;
     private HmsMirrorCfgService hmsMirrorCfgService;
     private Conversion conversion;
+    private FileSystemProbeService fileSystemProbeService;
 
     public void buildDBStatements(DBMirror dbMirror) {
 //        Config config = Context.getInstance().getConfig();
@@ -182,7 +182,6 @@ public class DatabaseService {
                                 }
                                 if (hmsMirrorConfig.isReadOnly() && !hmsMirrorConfig.isLoadingTestData()) {
                                     log.debug("Config set to 'read-only'.  Validating FS before continuing");
-                                    CliEnvironment cli = getHmsMirrorCfgService().getHmsMirrorConfig().getCliEnvironment();
 
                                     // Check that location exists.
                                     String dbLocation = null;
@@ -248,15 +247,13 @@ public class DatabaseService {
                                     }
                                     if (dbLocation != null) {
                                         try {
-//                                            CommandReturn cr = cli.processInput("connect");
-                                            CommandReturn testCr = cli.processInput("test -d " + dbLocation);
-                                            if (testCr.isError()) {
-                                                // Doesn't exist.  So we can't create the DB in a "read-only" mode.
-                                                hmsMirrorConfig.addError(RO_DB_DOESNT_EXIST, dbLocation,
-                                                        testCr, testCr.getCommand(), dbMirror.getName());
-                                                dbMirror.addIssue(Environment.RIGHT, hmsMirrorConfig.getProgression().getErrorMessage(RO_DB_DOESNT_EXIST));
-                                                throw new RuntimeException(hmsMirrorConfig.getProgression().getErrorMessage(RO_DB_DOESNT_EXIST));
-                                            }
+                                            getFileSystemProbeService().checkDirectory(dbLocation);
+                                        } catch (IOException ioe) {
+                                            // Doesn't exist.  So we can't create the DB in a "read-only" mode.
+                                            hmsMirrorConfig.addError(RO_DB_DOESNT_EXIST, dbLocation,
+                                                    ioe.getMessage(), "test -d " + dbLocation, dbMirror.getName());
+                                            dbMirror.addIssue(Environment.RIGHT, hmsMirrorConfig.getProgression().getErrorMessage(RO_DB_DOESNT_EXIST));
+                                            throw new RuntimeException(hmsMirrorConfig.getProgression().getErrorMessage(RO_DB_DOESNT_EXIST));
                                         } catch (DisabledException e) {
                                             log.warn("Unable to test location {} because the CLI Interface is disabled.", dbLocation);
                                             dbMirror.addIssue(Environment.RIGHT, "Unable to test location " + dbLocation + " because the CLI Interface is disabled. " +
@@ -580,4 +577,9 @@ public class DatabaseService {
         this.conversion = conversion;
     }
 
+    @Autowired
+    public void setFileSystemProbeService(FileSystemProbeService fileSystemProbeService) {
+        this.fileSystemProbeService = fileSystemProbeService;
+    }
+
 }
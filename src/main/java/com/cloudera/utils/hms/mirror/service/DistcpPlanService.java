@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.*;
+import com.cloudera.utils.hms.util.TableUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+import static com.cloudera.utils.hms.mirror.MirrorConf.DATA_SIZE;
+import static com.cloudera.utils.hms.mirror.MirrorConf.FILE_COUNT;
+
+/*
+Split the distcp sources for a database into a number of jobs with about the same amount of data.
+
+The sources are the same ones the distcp workbook lists (see TranslatorService.buildDistcpList).  Each one is
+weighed by the table stats (data.size/file.count) collected for the LEFT tables that live under it.  Partitioned
+tables spread their stats evenly over their partition locations, so partition level sources get a share.  Sources
+we have no stats for are costed at the average of those we do.
+
+The sources are then handed out largest first, each to the job with the fewest bytes so far.
+ */
+@Service
+@Slf4j
+@Getter
+public class DistcpPlanService {
+
+    private Conversion conversion;
+    private TranslatorService translatorService;
+
+    @Autowired
+    public void setConversion(Conversion conversion) {
+        this.conversion = conversion;
+    }
+
+    @Autowired
+    public void setTranslatorService(TranslatorService translatorService) {
+        this.translatorService = translatorService;
+    }
+
+    public List<DistcpJob> buildPlan(String database, Environment environment, int jobs) {
+        Map<String, Set<String>> targetSources = getTranslatorService().buildDistcpList(database, environment, 1).get(database);
+        return plan(targetSources, collectSizes(database), jobs);
+    }
+
+    /*
+    The known sizes (bytes, files) by location for the LEFT tables of the database.
+     */
+    protected NavigableMap<String, long[]> collectSizes(String database) {
+        NavigableMap<String, long[]> rtn = new TreeMap<>();
+        DBMirror dbMirror = getConversion().getDatabase(database);
+        if (dbMirror == null) {
+            return rtn;
+        }
+        for (TableMirror tableMirror : dbMirror.getTableMirrors().values()) {
+            EnvironmentTable et = tableMirror.getEnvironmentTable(Environment.LEFT);
+            if (et == null || !(et.getStatistics().get(DATA_SIZE) instanceof Number)) {
+                continue;
+            }
+            long bytes = ((Number) et.getStatistics().get(DATA_SIZE)).longValue();
+            long files = et.getStatistics().get(FILE_COUNT) instanceof Number ?
+                    ((Number) et.getStatistics().get(FILE_COUNT)).longValue() : 0L;
+            Map<String, String> partitions = et.getPartitions();
+            if (partitions != null && !partitions.isEmpty()) {
+                int count = partitions.size();
+                for (String location : partitions.values()) {
+                    if (location != null && !location.equals(MirrorConf.NOT_SET)) {
+                        addSize(rtn, location, bytes / count, files / count);
+                    }
+                }
+            } else {
+                String location = TableUtils.getLocation(et.getName(), et.getDefinition());
+                if (location != null) {
+                    addSize(rtn, location, bytes, files);
+                }
+            }
+        }
+        return rtn;
+    }
+
+    private static void addSize(Map<String, long[]> sizes, String location, long bytes, long files) {
+        long[] size = sizes.computeIfAbsent(location, k -> new long[2]);
+        size[0] += bytes;
+        size[1] += files;
+    }
+
+    /*
+    The size of everything we know about at or below the source.  Null when we don't know anything about it.
+     */
+    protected static long[] weigh(NavigableMap<String, long[]> sizes, String source) {
+        long[] rtn = null;
+        for (Map.Entry<String, long[]> entry : sizes.subMap(source, true, source + Character.MAX_VALUE, false).entrySet()) {
+            String location = entry.getKey();
+            if (location.length() == source.length() || location.charAt(source.length()) == '/' || source.endsWith("/")) {
+                if (rtn == null) {
+                    rtn = new long[2];
+                }
+                rtn[0] += entry.getValue()[0];
+                rtn[1] += entry.getValue()[1];
+            }
+        }
+        return rtn;
+    }
+
+    public static List<DistcpJob> plan(Map<String, Set<String>> targetSources, NavigableMap<String, long[]> sizes, int jobs) {
+        List<DistcpJob> rtn = new ArrayList<>();
+        if (targetSources == null || targetSources.isEmpty() || jobs < 1) {
+            return rtn;
+        }
+
+        List<DistcpSource> sources = new ArrayList<>();
+        long knownBytes = 0L;
+        long knownFiles = 0L;
+        int known = 0;
+        for (Map.Entry<String, Set<String>> entry : targetSources.entrySet()) {
+            for (String source : entry.getValue()) {
+                DistcpSource distcpSource = new DistcpSource(entry.getKey(), source, weigh(sizes, source));
+                if (distcpSource.known) {
+                    knownBytes += distcpSource.bytes;
+                    knownFiles += distcpSource.files;
+                    known++;
+                }
+                sources.add(distcpSource);
+            }
+        }
+        // No stats at all means every source counts the same.
+        long avgBytes = known == 0 ? 1L : knownBytes / known;
+        long avgFiles = known == 0 ? 1L : knownFiles / known;
+        for (DistcpSource source : sources) {
+            if (!source.known) {
+                source.bytes = avgBytes;
+                source.files = avgFiles;
+            }
+        }
+        sources.sort(Comparator.comparingLong((DistcpSource s) -> s.bytes).reversed()
+                .thenComparing(s -> s.source));
+
+        int jobCount = Math.min(jobs, sources.size());
+        PriorityQueue<DistcpJob> queue = new PriorityQueue<>(Comparator.comparingLong(DistcpJob::getBytes)
+                .thenComparingInt(DistcpJob::getSourceCount)
+                .thenComparingInt(DistcpJob::getJob));
+        for (int i = 1; i <= jobCount; i++) {
+            DistcpJob job = new DistcpJob(i);
+            rtn.add(job);
+            queue.add(job);
+        }
+        for (DistcpSource source : sources) {
+            DistcpJob job = queue.poll();
+            job.add(source);
+            queue.add(job);
+        }
+        return rtn;
+    }
+
+    private static class DistcpSource {
+        private final String target;
+        private final String source;
+        private final boolean known;
+        private long bytes;
+        private long files;
+
+        DistcpSource(String target, String source, long[] size) {
+            this.target = target;
+            this.source = source;
+            this.known = size != null;
+            if (known) {
+                this.bytes = size[0];
+                this.files = size[1];
+            }
+        }
+    }
+
+    /*
+    One distcp job: the sources by target, with the bytes and files we expect it to copy.
+     */
+    @Getter
+    public static class DistcpJob {
+        private final int job;
+        private final Map<String, Set<String>> targetSources = new TreeMap<>();
+        private long bytes = 0L;
+        private long files = 0L;
+        private int sourceCount = 0;
+        // Sources costed at the average, since there were no stats for them.
+        private int estimatedCount = 0;
+
+        public DistcpJob(int job) {
+            this.job = job;
+        }
+
+        private void add(DistcpSource source) {
+            targetSources.computeIfAbsent(source.target, k -> new TreeSet<>()).add(source.source);
+            bytes += source.bytes;
+            files += source.files;
+            sourceCount++;
+            if (!source.known) {
+                estimatedCount++;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.Environment;
+import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
+import com.cloudera.utils.hms.mirror.Optimization;
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import com.cloudera.utils.hms.mirror.TableMirror;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static com.cloudera.utils.hms.mirror.MirrorConf.DATA_SIZE;
+
+/*
+The EXPORT on the LEFT and the IMPORT on the RIGHT of the EXPORT_IMPORT tables, as two stages.  The EXPORT runs on
+the job thread of the transfer, and when it ends the IMPORT is queued for the 'importThreadPool' and the job thread
+goes on to the next table.  The rest of the transfer follows the IMPORT (see TransferService.followOn).
+
+Between the stages, a table's export holds a place from the start of its EXPORT to the end of its IMPORT, while its
+data sits in the export location.  The places are limited by 'optimization.exportImportInFlight' tables and
+'exportImportInFlightBytes', which caps what the exports take in the intermediate or common storage, and an EXPORT
+waits while the imports are behind.  Tables are let in in the order they arrive, so a table bigger than the byte
+limit holds the line until nothing else is in flight, rather than being passed over by the smaller ones.  Without
+'execute' nothing is exported, so both stages run on the calling thread and don't take places or count in the
+stages.  Each stage records its tables, bytes, busy time and throughput over its span.
+ */
+@Service
+@Slf4j
+@Getter
+@Setter
+public class ExportImportPipelineService {
+
+    public static final String EXPORT = "export";
+    public static final String IMPORT = "import";
+
+    private HmsMirrorCfgService hmsMirrorCfgService;
+    private RunStatistics runStatistics;
+    private TaskExecutor importThreadPool = null;
+
+    private int inFlight = 0;
+    private long inFlightBytes = 0;
+    // The tables waiting to go in, in arrival order.
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    // The IMPORTs queued or running, for the transfers to follow.
+    private final Map<TableMirror, CompletableFuture<Boolean>> imports = new ConcurrentHashMap<>();
+    // First start and last end of each stage, for the throughput.
+    private long exportStarted = 0, exportEnded = 0, importStarted = 0, importEnded = 0;
+
+    public Boolean run(TableMirror tableMirror, Supplier<Boolean> export, Supplier<Boolean> importer) {
+        if (!getHmsMirrorCfgService().getHmsMirrorConfig().isExecute()) {
+            // The SQL is only recorded.
+            return export.get() && importer.get();
+        }
+        Object dataSize = tableMirror.getEnvironmentTable(Environment.LEFT).getStatistics().get(DATA_SIZE);
+        long bytes = dataSize instanceof Number ? ((Number) dataSize).longValue() : 0L;
+        try {
+            enter(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tableMirror.addIssue(Environment.LEFT, "Interrupted waiting to EXPORT");
+            return Boolean.FALSE;
+        }
+        if (getImportThreadPool() == null) {
+            try {
+                Boolean rtn = stage(EXPORT, bytes, export);
+                if (rtn) {
+                    rtn = stage(IMPORT, bytes, importer);
+                }
+                return rtn;
+            } finally {
+                leave(bytes);
+            }
+        }
+        Boolean rtn = Boolean.FALSE;
+        try {
+            rtn = stage(EXPORT, bytes, export);
+        } finally {
+            if (!rtn) {
+                leave(bytes);
+            }
+        }
+        if (rtn) {
+            // The place is held until the IMPORT ends, however it ends.
+            imports.put(tableMirror, CompletableFuture.supplyAsync(() -> stage(IMPORT, bytes, importer), getImportThreadPool())
+                    .whenComplete((imported, throwable) -> leave(bytes)));
+        }
+        return rtn;
+    }
+
+    public boolean isImporting(TableMirror tableMirror) {
+        return imports.containsKey(tableMirror);
+    }
+
+    /*
+    The IMPORT queued for the table by 'run', handed over once.  Null when there isn't one.
+     */
+    public CompletableFuture<Boolean> importing(TableMirror tableMirror) {
+        return imports.remove(tableMirror);
+    }
+
+    protected synchronized void enter(long bytes) throws InterruptedException {
+        Optimization optimization = getHmsMirrorCfgService().getHmsMirrorConfig().getOptimization();
+        long started = System.currentTimeMillis();
+        boolean waited = false;
+        Object place = new Object();
+        waiting.add(place);
+        int limit = optimization.exportImportInFlight(getHmsMirrorCfgService().getHmsMirrorConfig().getTransfer().getConcurrency());
+        // Only the head of the line goes in, when there's room (or nothing else in flight).
+        while (waiting.peek() != place || (inFlight > 0 && (inFlight >= limit
+                || (optimization.getExportImportInFlightBytes() > 0 && inFlightBytes + bytes > optimization.getExportImportInFlightBytes())))) {
+            waited = true;
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                waiting.remove(place);
+                notifyAll();
+                throw e;
+            }
+        }
+        waiting.remove();
+        // The next in line may fit too.
+        notifyAll();
+        if (waited) {
+            getRunStatistics().increment("exportimport.inflight.waits");
+            getRunStatistics().add("exportimport.inflight.wait.ms", System.currentTimeMillis() - started);
+        }
+        inFlight++;
+        inFlightBytes += bytes;
+        getRunStatistics().max("exportimport.inflight.peak", inFlight);
+        getRunStatistics().max("exportimport.inflight.bytes.peak", inFlightBytes);
+    }
+
+    protected synchronized void leave(long bytes) {
+        inFlight--;
+        inFlightBytes -= bytes;
+        notifyAll();
+    }
+
+    protected Boolean stage(String stage, long bytes, Supplier<Boolean> work) {
+        long started = System.currentTimeMillis();
+        started(stage, started);
+        Boolean rtn = Boolean.FALSE;
+        try {
+            rtn = work.get();
+        } finally {
+            long ended = System.currentTimeMillis();
+            String key = "exportimport." + stage;
+            getRunStatistics().add(key + ".ms", ended - started);
+            if (rtn) {
+                getRunStatistics().increment(key + ".tables");
+                getRunStatistics().add(key + ".bytes", bytes);
+            } else {
+                getRunStatistics().increment(key + ".errors");
+            }
+            long span = ended(stage, ended);
+            if (span > 0) {
+                getRunStatistics().set(key + ".mb.per.minute",
+                        getRunStatistics().get(key + ".bytes") / (1024 * 1024) * 60000L / span);
+            }
+        }
+        return rtn;
+    }
+
+    private synchronized void started(String stage, long time) {
+        if (EXPORT.equals(stage)) {
+            exportStarted = exportStarted == 0 ? time : exportStarted;
+        } else {
+            importStarted = importStarted == 0 ? time : importStarted;
+        }
+    }
+
+    // The span of the stage so far.
+    private synchronized long ended(String stage, long time) {
+        if (EXPORT.equals(stage)) {
+            exportEnded = Math.max(exportEnded, time);
+            return exportEnded - exportStarted;
+        } else {
+            importEnded = Math.max(importEnded, time);
+            return importEnded - importStarted;
+        }
+    }
+
+    @Autowired
+    public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
+        this.hmsMirrorCfgService = hmsMirrorCfgService;
+    }
+
+    @Autowired
+    public void setImportThreadPool(@Qualifier("importThreadPool") TaskExecutor importThreadPool) {
+        this.importThreadPool = importThreadPool;
+    }
+
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+}
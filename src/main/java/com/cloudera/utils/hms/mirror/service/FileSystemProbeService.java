@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hadoop.cli.DisabledException;
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import com.cloudera.utils.hms.mirror.connections.FileSystemProbe;
+import com.cloudera.utils.hms.mirror.connections.FileSystemProbeHadoopImpl;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.hadoop.conf.Configuration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/*
+The filesystem probing for the tables and databases (table 'count's, db location checks and AVRO schema copies)
+goes through here, on a pool of FileSystemProbe sessions sized to the transfer concurrency, instead of through the
+one CliEnvironment session.  The sessions use Hadoop FileSystem handles (see FileSystemProbeHadoopImpl).  The link
+test still runs on the CliEnvironment.
+
+Counts are coalesced and batched: a count for a location that's already being counted waits on that one, and a
+thread that gets a session counts every location that's queued up (to BATCH_SIZE) in one call.
+ */
+@Service
+@Slf4j
+@Getter
+@Setter
+public class FileSystemProbeService {
+
+    public static final String PROBE_COUNTS = "fs.probe.counts";
+    public static final String PROBE_COALESCED = "fs.probe.coalesced";
+    public static final String PROBE_BATCHES = "fs.probe.batches";
+    public static final String PROBE_SESSIONS = "fs.probe.sessions";
+
+    protected static final int BATCH_SIZE = 50;
+
+    private HmsMirrorCfgService hmsMirrorCfgService;
+    private RunStatistics runStatistics;
+    private Supplier<FileSystemProbe> probeFactory;
+
+    /*
+    Sessions in the pool.  When not set, the transfer concurrency.
+     */
+    private int sessions = 0;
+
+    private GenericObjectPool<FileSystemProbe> pool;
+    private final Map<String, CompletableFuture<long[]>> inFlight = new ConcurrentHashMap<>();
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+    /*
+    The directory count, file count and size of the location, or null when it couldn't be counted.
+     */
+    public long[] count(String location) throws IOException, DisabledException {
+        return await(count(Collections.singletonList(location)).get(0));
+    }
+
+    /*
+    Count the locations (IE: the partitions of a table) together, in batches.  Null for the ones that couldn't be
+    counted.
+     */
+    public List<long[]> countAll(List<String> locations) throws IOException, DisabledException {
+        List<long[]> rtn = new ArrayList<>();
+        for (CompletableFuture<long[]> future : count(locations)) {
+            try {
+                rtn.add(await(future));
+            } catch (IOException ioe) {
+                log.debug("Issue counting a location. {}", ioe.getMessage());
+                rtn.add(null);
+            }
+        }
+        return rtn;
+    }
+
+    private List<CompletableFuture<long[]>> count(List<String> locations) throws IOException {
+        List<CompletableFuture<long[]>> futures = new ArrayList<>();
+        for (String location : locations) {
+            CompletableFuture<long[]> future = new CompletableFuture<>();
+            CompletableFuture<long[]> running = inFlight.putIfAbsent(location, future);
+            if (running != null) {
+                increment(PROBE_COALESCED);
+                futures.add(running);
+            } else {
+                pending.add(location);
+                futures.add(future);
+            }
+        }
+        while (futures.stream().anyMatch(future -> !future.isDone())) {
+            FileSystemProbe probe = borrow();
+            try {
+                List<String> batch = new ArrayList<>();
+                String next;
+                while (batch.size() < BATCH_SIZE && (next = pending.poll()) != null) {
+                    batch.add(next);
+                }
+                if (batch.isEmpty()) {
+                    // Other threads picked them up.
+                    break;
+                }
+                countBatch(probe, batch);
+            } finally {
+                getPool().returnObject(probe);
+            }
+        }
+        return futures;
+    }
+
+    public long getModificationTime(String location) throws IOException, DisabledException {
+        FileSystemProbe probe = borrow();
+        try {
+            return probe.getModificationTime(location);
+        } finally {
+            getPool().returnObject(probe);
+        }
+    }
+
+    public void checkDirectory(String location) throws IOException, DisabledException {
+        FileSystemProbe probe = borrow();
+        try {
+            probe.checkDirectory(location);
+        } finally {
+            getPool().returnObject(probe);
+        }
+    }
+
+    public void mkdirs(String location) throws IOException, DisabledException {
+        FileSystemProbe probe = borrow();
+        try {
+            probe.mkdirs(location);
+        } finally {
+            getPool().returnObject(probe);
+        }
+    }
+
+    public void copy(String from, String to) throws IOException, DisabledException {
+        FileSystemProbe probe = borrow();
+        try {
+            probe.copy(from, to);
+        } finally {
+            getPool().returnObject(probe);
+        }
+    }
+
+    protected void countBatch(FileSystemProbe probe, List<String> batch) {
+        if (getRunStatistics() != null) {
+            getRunStatistics().increment(PROBE_BATCHES);
+            getRunStatistics().add(PROBE_COUNTS, batch.size());
+        }
+        try {
+            List<long[]> counts = probe.count(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                inFlight.remove(batch.get(i)).complete(i < counts.size() ? counts.get(i) : null);
+            }
+        } catch (Throwable t) {
+            for (String location : batch) {
+                inFlight.remove(location).completeExceptionally(t);
+            }
+        }
+    }
+
+    private long[] await(CompletableFuture<long[]> future) throws IOException, DisabledException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting on a filesystem count", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DisabledException) {
+                throw (DisabledException) e.getCause();
+            } else if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private FileSystemProbe borrow() throws IOException {
+        try {
+            return getPool().borrowObject();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Couldn't get a filesystem session", e);
+        }
+    }
+
+    public synchronized GenericObjectPool<FileSystemProbe> getPool() {
+        if (pool == null) {
+            if (getProbeFactory() == null) {
+                Configuration configuration = getHmsMirrorCfgService().getHadoopConfiguration();
+                setProbeFactory(() -> new FileSystemProbeHadoopImpl(configuration));
+            }
+            int size = sessions > 0 ? sessions :
+                    getHmsMirrorCfgService().getHmsMirrorConfig().getTransfer().getConcurrency();
+            pool = new GenericObjectPool<>(new BasePooledObjectFactory<FileSystemProbe>() {
+                @Override
+                public FileSystemProbe create() {
+                    increment(PROBE_SESSIONS);
+                    return getProbeFactory().get();
+                }
+
+                @Override
+                public PooledObject<FileSystemProbe> wrap(FileSystemProbe probe) {
+                    return new DefaultPooledObject<>(probe);
+                }
+            });
+            pool.setMaxTotal(size);
+            pool.setMaxIdle(size);
+            log.info("Filesystem probe sessions: {}", size);
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private void increment(String key) {
+        if (getRunStatistics() != null) {
+            getRunStatistics().increment(key);
+        }
+    }
+
+    @Autowired
+    public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
+        this.hmsMirrorCfgService = hmsMirrorCfgService;
+    }
+
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+}
@@ -24,6 +24,7 @@ import com.cloudera.utils.hms.mirror.Cluster;
 import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
 import com.cloudera.utils.hms.mirror.Environment;
 import com.cloudera.utils.hms.mirror.HiveServer2Config;
+import com.cloudera.utils.hms.mirror.Optimization;
 import com.cloudera.utils.hms.mirror.datastrategy.DataStrategyEnum;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
@@ -258,6 +259,13 @@ public class HmsMirrorCfgService {
         }
     }
 
+    /*
+    The 'metastore_direct' connections are needed for the partition metadata or the catalog extraction.
+     */
+    public Boolean useMetastoreDirect() {
+        return loadPartitionMetadata() || getHmsMirrorConfig().getOptimization().isMetastoreDirectCatalog();
+    }
+
 //    @Autowired
 //    public void setHmsMirrorConfig(HmsMirrorConfig hmsMirrorConfig) {
 //        this.hmsMirrorConfig = hmsMirrorConfig;
@@ -268,38 +276,46 @@ public class HmsMirrorCfgService {
         this.hmsMirrorConfig = hmsMirrorConfig;
     }
 
-    public void setupGSS() {
-        try {
-            String CURRENT_USER_PROP = "current.user";
-
-            String HADOOP_CONF_DIR = "HADOOP_CONF_DIR";
-            String[] HADOOP_CONF_FILES = {"core-site.xml", "hdfs-site.xml", "mapred-site.xml", "yarn-site.xml"};
+    /*
+    The Hadoop configuration from HADOOP_CONF_DIR (default '/etc/hadoop/conf').
+     */
+    public Configuration getHadoopConfiguration() {
+        String HADOOP_CONF_DIR = "HADOOP_CONF_DIR";
+        String[] HADOOP_CONF_FILES = {"core-site.xml", "hdfs-site.xml", "mapred-site.xml", "yarn-site.xml"};
 
-            // Get a value that over rides the default, if nothing then use default.
-            String hadoopConfDirProp = System.getenv().getOrDefault(HADOOP_CONF_DIR, "/etc/hadoop/conf");
+        // Get a value that over rides the default, if nothing then use default.
+        String hadoopConfDirProp = System.getenv().getOrDefault(HADOOP_CONF_DIR, "/etc/hadoop/conf");
 
-            // Set a default
-            if (hadoopConfDirProp == null)
-                hadoopConfDirProp = "/etc/hadoop/conf";
+        // Set a default
+        if (hadoopConfDirProp == null)
+            hadoopConfDirProp = "/etc/hadoop/conf";
 
-            Configuration hadoopConfig = new Configuration(true);
+        Configuration hadoopConfig = new Configuration(true);
 
-            File hadoopConfDir = new File(hadoopConfDirProp).getAbsoluteFile();
-            for (String file : HADOOP_CONF_FILES) {
-                File f = new File(hadoopConfDir, file);
-                if (f.exists()) {
-                    log.debug("Adding conf resource: '{}'", f.getAbsolutePath());
-                    try {
-                        // I found this new Path call failed on the Squadron Clusters.
-                        // Not sure why.  Anyhow, the above seems to work the same.
-                        hadoopConfig.addResource(new Path(f.getAbsolutePath()));
-                    } catch (Throwable t) {
-                        // This worked for the Squadron Cluster.
-                        // I think it has something to do with the Docker images.
-                        hadoopConfig.addResource("file:" + f.getAbsolutePath());
-                    }
+        File hadoopConfDir = new File(hadoopConfDirProp).getAbsoluteFile();
+        for (String file : HADOOP_CONF_FILES) {
+            File f = new File(hadoopConfDir, file);
+            if (f.exists()) {
+                log.debug("Adding conf resource: '{}'", f.getAbsolutePath());
+                try {
+                    // I found this new Path call failed on the Squadron Clusters.
+                    // Not sure why.  Anyhow, the above seems to work the same.
+                    hadoopConfig.addResource(new Path(f.getAbsolutePath()));
+                } catch (Throwable t) {
+                    // This worked for the Squadron Cluster.
+                    // I think it has something to do with the Docker images.
+                    hadoopConfig.addResource("file:" + f.getAbsolutePath());
                 }
             }
+        }
+        return hadoopConfig;
+    }
+
+    public void setupGSS() {
+        try {
+            String CURRENT_USER_PROP = "current.user";
+
+            Configuration hadoopConfig = getHadoopConfiguration();
 
             // hadoop.security.authentication
             if (hadoopConfig.get("hadoop.security.authentication", "simple").equalsIgnoreCase("kerberos")) {
@@ -318,6 +334,34 @@ public class HmsMirrorCfgService {
         }
     }
 
+    /*
+    The HS2 connections a cluster needs: the transfer concurrency, or its execution pool when that's bigger.  With
+    adaptive concurrency, the pools can grow to the ceiling.  The connection pools are sized to it.
+     */
+    public int hs2Connections(Environment environment) {
+        Optimization optimization = getHmsMirrorConfig().getOptimization();
+        int rtn = getHmsMirrorConfig().getTransfer().getConcurrency();
+        if (optimization.isEnvironmentPools()) {
+            rtn = Math.max(rtn, optimization.environmentConcurrency(environment, rtn));
+        }
+        if (optimization.isAdaptiveConcurrency()) {
+            rtn = optimization.adaptiveConcurrencyCeiling(rtn);
+        }
+        return rtn;
+    }
+
+    /*
+    The HS2 connections a cluster keeps open: its own share of the work (its execution pool with 'environmentPools').
+     */
+    public int hs2IdleConnections(Environment environment) {
+        Optimization optimization = getHmsMirrorConfig().getOptimization();
+        int rtn = getHmsMirrorConfig().getTransfer().getConcurrency();
+        if (optimization.isEnvironmentPools()) {
+            rtn = optimization.environmentConcurrency(environment, rtn);
+        }
+        return Math.min(rtn, hs2Connections(environment));
+    }
+
     public Boolean validate() {
         Boolean rtn = Boolean.TRUE;
 
@@ -469,28 +513,30 @@ public class HmsMirrorCfgService {
             rtn = Boolean.FALSE;
         }
 
-        if (getHmsMirrorConfig().getTransfer().getConcurrency() > 4 &&
+        int leftConnections = hs2Connections(Environment.LEFT);
+        int rightConnections = hs2Connections(Environment.RIGHT);
+        if (Math.max(leftConnections, rightConnections) > 4 &&
                 !getHmsMirrorConfig().isLoadingTestData()) {
             // We need to pass on a few scale parameters to the hs2 configs so the connection pools can handle the scale requested.
             if (getHmsMirrorConfig().getCluster(Environment.LEFT) != null) {
                 Cluster cluster = getHmsMirrorConfig().getCluster(Environment.LEFT);
-                cluster.getHiveServer2().getConnectionProperties().setProperty("initialSize", Integer.toString(getHmsMirrorConfig().getTransfer().getConcurrency() / 2));
-                cluster.getHiveServer2().getConnectionProperties().setProperty("minIdle", Integer.toString(getHmsMirrorConfig().getTransfer().getConcurrency() / 2));
+                cluster.getHiveServer2().getConnectionProperties().setProperty("initialSize", Integer.toString(hs2IdleConnections(Environment.LEFT) / 2));
+                cluster.getHiveServer2().getConnectionProperties().setProperty("minIdle", Integer.toString(hs2IdleConnections(Environment.LEFT) / 2));
                 if (cluster.getHiveServer2().getDriverClassName().equals(HiveServer2Config.APACHE_HIVE_DRIVER_CLASS_NAME)) {
-                    cluster.getHiveServer2().getConnectionProperties().setProperty("maxIdle", Integer.toString(getHmsMirrorConfig().getTransfer().getConcurrency()));
+                    cluster.getHiveServer2().getConnectionProperties().setProperty("maxIdle", Integer.toString(leftConnections));
                     cluster.getHiveServer2().getConnectionProperties().setProperty("maxWaitMillis", "10000");
-                    cluster.getHiveServer2().getConnectionProperties().setProperty("maxTotal", Integer.toString(getHmsMirrorConfig().getTransfer().getConcurrency()));
+                    cluster.getHiveServer2().getConnectionProperties().setProperty("maxTotal", Integer.toString(leftConnections));
                 }
             }
             if (getHmsMirrorConfig().getCluster(Environment.RIGHT) != null) {
                 Cluster cluster = getHmsMirrorConfig().getCluster(Environment.RIGHT);
                 if (cluster.getHiveServer2() != null) {
-                    cluster.getHiveServer2().getConnectionProperties().setProperty("initialSize", Integer.toString(getHmsMirrorConfig().getTransfer().getConcurrency() / 2));
-                    cluster.getHiveServer2().getConnectionProperties().setProperty("minIdle", Integer.toString(getHmsMirrorConfig().getTransfer().getConcurrency() / 2));
+                    cluster.getHiveServer2().getConnectionProperties().setProperty("initialSize", Integer.toString(hs2IdleConnections(Environment.RIGHT) / 2));
+                    cluster.getHiveServer2().getConnectionProperties().setProperty("minIdle", Integer.toString(hs2IdleConnections(Environment.RIGHT) / 2));
                     if (cluster.getHiveServer2().getDriverClassName().equals(HiveServer2Config.APACHE_HIVE_DRIVER_CLASS_NAME)) {
-                        cluster.getHiveServer2().getConnectionProperties().setProperty("maxIdle", Integer.toString(getHmsMirrorConfig().getTransfer().getConcurrency()));
+                        cluster.getHiveServer2().getConnectionProperties().setProperty("maxIdle", Integer.toString(rightConnections));
                         cluster.getHiveServer2().getConnectionProperties().setProperty("maxWaitMillis", "10000");
-                        cluster.getHiveServer2().getConnectionProperties().setProperty("maxTotal", Integer.toString(getHmsMirrorConfig().getTransfer().getConcurrency()));
+                        cluster.getHiveServer2().getConnectionProperties().setProperty("maxTotal", Integer.toString(rightConnections));
                     }
                 }
             }
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hive.config.QueryDefinitions;
+import com.cloudera.utils.hms.mirror.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Load the table definitions for a whole database directly from the metastore RDBMS.  A handful of set based
+queries (defined per DB type in '<DB_TYPE>/metastore.yaml') replace the 'USE' + 'SHOW CREATE TABLE' round trips
+to HS2 for each table.  The definition lines are rebuilt in the same form as 'SHOW CREATE TABLE' (Hive 3), so
+the rest of the process can't tell the difference.
+
+Tables we can't rebuild (non-native, materialized views) are left for the regular HS2 path.
+ */
+@Service
+@Slf4j
+@Getter
+@Setter
+public class MetastoreCatalogService {
+
+    public static final String TABLES_LOADED = "catalog.metastore_direct.tables.loaded";
+    public static final String TABLES_SKIPPED = "catalog.metastore_direct.tables.skipped";
+
+    protected static final String TBL_DEFS = "tbl_defs";
+    protected static final String TBL_COLUMNS = "tbl_columns";
+    protected static final String TBL_PARTITION_KEYS = "tbl_partition_keys";
+    protected static final String TBL_BUCKET_COLS = "tbl_bucket_cols";
+    protected static final String TBL_SORT_COLS = "tbl_sort_cols";
+    protected static final String TBL_SERDE_PARAMS = "tbl_serde_params";
+    protected static final String TBL_PARAMS = "tbl_params";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private HmsMirrorCfgService hmsMirrorCfgService;
+    private ConnectionPoolService connectionPoolService;
+    private QueryDefinitionsService queryDefinitionsService;
+    private RunStatistics runStatistics;
+
+    /*
+    Tables (environment:db.table) that were resolved by the bulk load, whether they exist or not.
+     */
+    private final Set<String> resolved = ConcurrentHashMap.newKeySet();
+
+    /*
+    Is the catalog extraction enabled and possible for the environment.
+     */
+    public boolean isEnabled(Environment environment) {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        if (!hmsMirrorConfig.getOptimization().isMetastoreDirectCatalog() || hmsMirrorConfig.isLoadingTestData()) {
+            return false;
+        }
+        Cluster cluster = hmsMirrorConfig.getCluster(environment);
+        // The rebuilt definitions follow the Hive 3 'SHOW CREATE TABLE' output.
+        return cluster != null && cluster.getMetastoreDirect() != null && !cluster.isLegacyHive();
+    }
+
+    /*
+    Was the table definition for the environment already resolved by the bulk load.
+     */
+    public boolean isResolved(TableMirror tableMirror, Environment environment) {
+        return resolved.contains(key(environment, tableMirror.getParent().getName(), tableMirror.getName()));
+    }
+
+    /*
+    Load the definitions for all the tables in the DBMirror from the environments metastore.
+     */
+    public void loadTableDefinitions(DBMirror dbMirror, Environment environment) {
+        if (!isEnabled(environment) || dbMirror.getTableMirrors().isEmpty()) {
+            return;
+        }
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        String database = (environment == Environment.LEFT ?
+                dbMirror.getName() : getHmsMirrorCfgService().getResolvedDB(dbMirror.getName()));
+        QueryDefinitions queryDefinitions = getQueryDefinitionsService().getQueryDefinitions(environment);
+        if (queryDefinitions == null) {
+            return;
+        }
+        Connection conn = null;
+        try {
+            conn = getConnectionPoolService().getMetastoreDirectEnvironmentConnection(environment);
+            if (conn == null) {
+                return;
+            }
+            log.info("Loading table definitions from Metastore Direct Connection {}:{}", environment, database);
+            Map<String, CatalogTable> catalog = extract(conn, queryDefinitions, database);
+
+            for (TableMirror tableMirror : dbMirror.getTableMirrors().values()) {
+                CatalogTable catalogTable = catalog.get(tableMirror.getName().toLowerCase());
+                if (catalogTable == null) {
+                    // Not in the metastore, so the table doesn't exist in this environment.
+                    tableMirror.addStep(environment.toString(), "No Schema");
+                } else if (!catalogTable.isSupported()) {
+                    getRunStatistics().increment(TABLES_SKIPPED);
+                    continue;
+                } else {
+                    EnvironmentTable et = tableMirror.getEnvironmentTable(environment);
+                    et.setDefinition(buildDefinition(catalogTable));
+                    et.setName(tableMirror.getName());
+                    et.setExists(Boolean.TRUE);
+                    if (hmsMirrorConfig.isTransferOwnership() && catalogTable.getOwner() != null) {
+                        et.setOwner(catalogTable.getOwner());
+                    }
+                    tableMirror.addStep(environment.toString(), "Fetched Schema (Metastore Direct)");
+                    getRunStatistics().increment(TABLES_LOADED);
+                }
+                resolved.add(key(environment, dbMirror.getName(), tableMirror.getName()));
+            }
+            log.info("Loaded {} table definitions from Metastore Direct Connection {}:{}",
+                    catalog.size(), environment, database);
+        } catch (SQLException throwables) {
+            // Nothing is marked as resolved, so the tables will go through HS2.
+            log.error("Issue loading table definitions from Metastore Direct Connection. {}:{}",
+                    environment, database, throwables);
+        } finally {
+            try {
+                if (conn != null)
+                    conn.close();
+            } catch (SQLException throwables) {
+                //
+            }
+        }
+    }
+
+    /*
+    Run the catalog queries for the database and assemble the tables, keyed by the lower case table name.
+     */
+    public static Map<String, CatalogTable> extract(Connection conn, QueryDefinitions queryDefinitions,
+                                                    String database) throws SQLException {
+        Map<Long, CatalogTable> byId = new HashMap<>();
+        try (ResultSet rs = query(conn, queryDefinitions, TBL_DEFS, database)) {
+            while (rs.next()) {
+                CatalogTable table = new CatalogTable();
+                table.setName(rs.getString(2));
+                table.setType(rs.getString(3));
+                table.setOwner(rs.getString(4));
+                table.setViewText(rs.getString(5));
+                table.setLocation(rs.getString(6));
+                table.setInputFormat(rs.getString(7));
+                table.setOutputFormat(rs.getString(8));
+                table.setNumBuckets(rs.getInt(9));
+                table.setSerde(rs.getString(10));
+                byId.put(rs.getLong(1), table);
+            }
+        }
+        try (ResultSet rs = query(conn, queryDefinitions, TBL_COLUMNS, database)) {
+            while (rs.next()) {
+                CatalogTable table = byId.get(rs.getLong(1));
+                if (table != null)
+                    table.getColumns().add(new String[]{rs.getString(2), rs.getString(3), rs.getString(4)});
+            }
+        }
+        try (ResultSet rs = query(conn, queryDefinitions, TBL_PARTITION_KEYS, database)) {
+            while (rs.next()) {
+                CatalogTable table = byId.get(rs.getLong(1));
+                if (table != null)
+                    table.getPartitionKeys().add(new String[]{rs.getString(2), rs.getString(3), rs.getString(4)});
+            }
+        }
+        try (ResultSet rs = query(conn, queryDefinitions, TBL_BUCKET_COLS, database)) {
+            while (rs.next()) {
+                CatalogTable table = byId.get(rs.getLong(1));
+                if (table != null)
+                    table.getBucketColumns().add(rs.getString(2));
+            }
+        }
+        try (ResultSet rs = query(conn, queryDefinitions, TBL_SORT_COLS, database)) {
+            while (rs.next()) {
+                CatalogTable table = byId.get(rs.getLong(1));
+                if (table != null)
+                    table.getSortColumns().add(rs.getString(2) + (rs.getInt(3) == 1 ? " ASC" : " DESC"));
+            }
+        }
+        try (ResultSet rs = query(conn, queryDefinitions, TBL_SERDE_PARAMS, database)) {
+            while (rs.next()) {
+                CatalogTable table = byId.get(rs.getLong(1));
+                if (table != null)
+                    table.getSerdeParameters().put(rs.getString(2), rs.getString(3));
+            }
+        }
+        try (ResultSet rs = query(conn, queryDefinitions, TBL_PARAMS, database)) {
+            while (rs.next()) {
+                CatalogTable table = byId.get(rs.getLong(1));
+                if (table != null)
+                    table.getParameters().put(rs.getString(2), rs.getString(3));
+            }
+        }
+        Map<String, CatalogTable> rtn = new HashMap<>();
+        for (CatalogTable table : byId.values()) {
+            rtn.put(table.getName().toLowerCase(), table);
+        }
+        return rtn;
+    }
+
+    /*
+    Run one of the catalog queries.  The statement is closed with the ResultSet.
+     */
+    private static ResultSet query(Connection conn, QueryDefinitions queryDefinitions, String name,
+                                   String database) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(queryDefinitions.getQueryDefinition(name).getStatement());
+        pstmt.closeOnCompletion();
+        pstmt.setFetchSize(FETCH_SIZE);
+        pstmt.setString(1, database);
+        return pstmt.executeQuery();
+    }
+
+    /*
+    Rebuild the 'SHOW CREATE TABLE' lines (trimmed) for the table.
+     */
+    public static List<String> buildDefinition(CatalogTable table) {
+        List<String> def = new ArrayList<>();
+        if (table.isView()) {
+            String[] viewLines = table.getViewText() == null ? new String[]{""} : table.getViewText().split("\n");
+            def.add(("CREATE VIEW `" + table.getName() + "` AS " + viewLines[0]).trim());
+            for (int i = 1; i < viewLines.length; i++) {
+                def.add(viewLines[i].trim());
+            }
+            return def;
+        }
+        def.add((table.isExternal() ? "CREATE EXTERNAL TABLE `" : "CREATE TABLE `") + table.getName() + "`(");
+        addColumns(def, table.getColumns());
+        String comment = table.getParameters().get("comment");
+        if (comment != null) {
+            def.add("COMMENT '" + escape(comment) + "'");
+        }
+        if (!table.getPartitionKeys().isEmpty()) {
+            def.add("PARTITIONED BY (");
+            addColumns(def, table.getPartitionKeys());
+        }
+        if (table.getNumBuckets() > 0 && !table.getBucketColumns().isEmpty()) {
+            def.add("CLUSTERED BY (");
+            addList(def, table.getBucketColumns());
+            if (!table.getSortColumns().isEmpty()) {
+                def.add("SORTED BY (");
+                addList(def, table.getSortColumns());
+            }
+            def.add("INTO " + table.getNumBuckets() + " BUCKETS");
+        }
+        def.add("ROW FORMAT SERDE");
+        def.add("'" + escape(table.getSerde()) + "'");
+        if (!table.getSerdeParameters().isEmpty()) {
+            def.add("WITH SERDEPROPERTIES (");
+            addProperties(def, table.getSerdeParameters());
+        }
+        def.add("STORED AS INPUTFORMAT");
+        def.add("'" + escape(table.getInputFormat()) + "'");
+        def.add("OUTPUTFORMAT");
+        def.add("'" + escape(table.getOutputFormat()) + "'");
+        if (table.getLocation() != null) {
+            def.add("LOCATION");
+            def.add("'" + escape(table.getLocation()) + "'");
+        }
+        Map<String, String> tblProperties = new TreeMap<>(table.getParameters());
+        // Covered by the 'CREATE EXTERNAL' and 'COMMENT' clauses.
+        tblProperties.remove("EXTERNAL");
+        tblProperties.remove("comment");
+        tblProperties.values().removeIf(Objects::isNull);
+        if (!tblProperties.isEmpty()) {
+            def.add("TBLPROPERTIES (");
+            addProperties(def, tblProperties);
+        }
+        return def;
+    }
+
+    private static void addColumns(List<String> def, List<String[]> columns) {
+        for (int i = 0; i < columns.size(); i++) {
+            String[] column = columns.get(i);
+            StringBuilder line = new StringBuilder();
+            line.append("`").append(column[0]).append("` ").append(column[1]);
+            if (column[2] != null) {
+                line.append(" COMMENT '").append(escape(column[2])).append("'");
+            }
+            line.append(i < columns.size() - 1 ? "," : ")");
+            def.add(line.toString());
+        }
+    }
+
+    private static void addList(List<String> def, List<String> items) {
+        for (int i = 0; i < items.size(); i++) {
+            def.add(items.get(i) + (i < items.size() - 1 ? "," : ")"));
+        }
+    }
+
+    private static void addProperties(List<String> def, Map<String, String> properties) {
+        Iterator<Map.Entry<String, String>> iter = new TreeMap<>(properties).entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<String, String> entry = iter.next();
+            def.add("'" + escape(entry.getKey()) + "'='" + escape(entry.getValue()) + "'" + (iter.hasNext() ? "," : ")"));
+        }
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("'", "\\'").replace(";", "\\;");
+    }
+
+    private static String key(Environment environment, String database, String table) {
+        return environment + ":" + database + "." + table.toLowerCase();
+    }
+
+    @Autowired
+    public void setConnectionPoolService(ConnectionPoolService connectionPoolService) {
+        this.connectionPoolService = connectionPoolService;
+    }
+
+    @Autowired
+    public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
+        this.hmsMirrorCfgService = hmsMirrorCfgService;
+    }
+
+    @Autowired
+    public void setQueryDefinitionsService(QueryDefinitionsService queryDefinitionsService) {
+        this.queryDefinitionsService = queryDefinitionsService;
+    }
+
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+    /*
+    The catalog rows for a single table.
+     */
+    @Getter
+    @Setter
+    public static class CatalogTable {
+        private String name;
+        private String type;
+        private String owner;
+        private String viewText;
+        private String location;
+        private String inputFormat;
+        private String outputFormat;
+        private int numBuckets = -1;
+        private String serde;
+        // name, type, comment
+        private final List<String[]> columns = new ArrayList<>();
+        private final List<String[]> partitionKeys = new ArrayList<>();
+        private final List<String> bucketColumns = new ArrayList<>();
+        private final List<String> sortColumns = new ArrayList<>();
+        private final Map<String, String> serdeParameters = new TreeMap<>();
+        private final Map<String, String> parameters = new TreeMap<>();
+
+        public boolean isExternal() {
+            return "EXTERNAL_TABLE".equalsIgnoreCase(type);
+        }
+
+        public boolean isView() {
+            return "VIRTUAL_VIEW".equalsIgnoreCase(type);
+        }
+
+        /*
+        Non-native tables (storage handlers) and materialized views are built differently by Hive.
+         */
+        public boolean isSupported() {
+            if (isView()) {
+                return true;
+            }
+            return !"MATERIALIZED_VIEW".equalsIgnoreCase(type) && !parameters.containsKey("storage_handler")
+                    && serde != null && inputFormat != null && outputFormat != null;
+        }
+    }
+
+}
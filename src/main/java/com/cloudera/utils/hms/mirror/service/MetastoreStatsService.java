@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hive.config.QueryDefinitions;
+import com.cloudera.utils.hms.mirror.*;
+import com.cloudera.utils.hms.util.TableUtils;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import static com.cloudera.utils.hms.mirror.MirrorConf.*;
+
+/*
+Table stats (files, bytes, rows) from the metastore params ('numFiles', 'totalSize', 'numRows'), read for a
+whole database with two queries through the 'metastore_direct' connection.  Partitioned tables add up their
+partition params.
+
+The params are only used when they're complete and current: every partition has them, the file count and size
+agree (no files with bytes, or bytes without files), and Hive marks them accurate ('BASIC_STATS' in
+'COLUMN_STATS_ACCURATE') for the table or every partition.  EXTERNAL tables are written to outside of Hive, so
+their params are never trusted.  Anything else is left to the filesystem count in TableService.loadTableStats.
+ */
+@Service
+@Slf4j
+@Getter
+@Setter
+public class MetastoreStatsService {
+
+    public static final String SOURCE_METASTORE = "metastore";
+    public static final String SOURCE_FILESYSTEM = "filesystem";
+
+    public static final String TABLES_METASTORE = "stats.source.metastore";
+    public static final String TABLES_FILESYSTEM = "stats.source.filesystem";
+
+    protected static final String DB_TBL_STATS = "db_tbl_stats";
+    protected static final String DB_PART_STATS = "db_part_stats";
+
+    private static final int FETCH_SIZE = 1000;
+
+    // Hive 2+ writes '{"BASIC_STATS":"true",...}', Hive 1 just 'true'.
+    private static final Pattern BASIC_STATS_ACCURATE = Pattern.compile("\"BASIC_STATS\"\\s*:\\s*\"true\"");
+
+    private HmsMirrorCfgService hmsMirrorCfgService;
+    private ConnectionPoolService connectionPoolService;
+    private QueryDefinitionsService queryDefinitionsService;
+    private RunStatistics runStatistics;
+
+    /*
+    Loaded, but not yet applied, stats by environment:db.table.
+     */
+    private final Map<String, TableStats> loaded = new ConcurrentHashMap<>();
+
+    public boolean isEnabled(Environment environment) {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        if (hmsMirrorConfig.getOptimization().isSkipStatsCollection() ||
+                hmsMirrorConfig.getOptimization().isFilesystemStats() || hmsMirrorConfig.isLoadingTestData()) {
+            return false;
+        }
+        Cluster cluster = hmsMirrorConfig.getCluster(environment);
+        return cluster != null && cluster.getMetastoreDirect() != null;
+    }
+
+    /*
+    Load the stats for all the tables of the database from the environments metastore.
+     */
+    public void loadDatabaseStats(DBMirror dbMirror, Environment environment) {
+        if (!isEnabled(environment) || dbMirror.getTableMirrors().isEmpty()) {
+            return;
+        }
+        String database = (environment == Environment.LEFT ?
+                dbMirror.getName() : getHmsMirrorCfgService().getResolvedDB(dbMirror.getName()));
+        QueryDefinitions queryDefinitions = getQueryDefinitionsService().getQueryDefinitions(environment);
+        if (queryDefinitions == null || queryDefinitions.getQueryDefinition(DB_TBL_STATS) == null ||
+                queryDefinitions.getQueryDefinition(DB_PART_STATS) == null) {
+            return;
+        }
+        try (Connection conn = getConnectionPoolService().getMetastoreDirectEnvironmentConnection(environment)) {
+            if (conn == null) {
+                return;
+            }
+            boolean legacyHive = getHmsMirrorCfgService().getHmsMirrorConfig().getCluster(environment).isLegacyHive();
+            Map<String, TableStats> stats = extract(conn, queryDefinitions, database, legacyHive);
+            for (TableMirror tableMirror : dbMirror.getTableMirrors().values()) {
+                TableStats tableStats = stats.get(tableMirror.getName().toLowerCase());
+                if (tableStats != null) {
+                    loaded.put(key(environment, dbMirror.getName(), tableMirror.getName()), tableStats);
+                }
+            }
+            log.info("Loaded stats for {} tables from Metastore Direct Connection {}:{}", stats.size(),
+                    environment, database);
+        } catch (SQLException throwables) {
+            // The tables will be counted on the filesystem.
+            log.error("Issue loading stats from Metastore Direct Connection. {}:{}", environment, database, throwables);
+        }
+    }
+
+    /*
+    Set the tables stats from the metastore params, when they're complete.  False when the caller needs to get them
+    some other way.
+     */
+    public boolean applyStats(TableMirror tableMirror, Environment environment) {
+        TableStats tableStats = loaded.remove(key(environment, tableMirror.getParent().getName(), tableMirror.getName()));
+        EnvironmentTable et = tableMirror.getEnvironmentTable(environment);
+        if (tableStats == null || TableUtils.isExternal(et) || !tableStats.isComplete(TableUtils.isPartitioned(et))) {
+            return false;
+        }
+        boolean partitioned = TableUtils.isPartitioned(et);
+        long files = partitioned ? tableStats.partFiles : tableStats.files;
+        long bytes = partitioned ? tableStats.partBytes : tableStats.bytes;
+        long rows = partitioned ? tableStats.getPartRows() : tableStats.rows;
+
+        Map<String, Object> statistics = et.getStatistics();
+        statistics.put(FILE_COUNT, (int) Math.min(files, Integer.MAX_VALUE));
+        statistics.put(DATA_SIZE, bytes);
+        if (files > 0) {
+            statistics.put(AVG_FILE_SIZE, (double) (bytes / files));
+            statistics.put(TABLE_EMPTY, Boolean.FALSE);
+        } else {
+            statistics.put(TABLE_EMPTY, Boolean.TRUE);
+        }
+        recordSource(et, SOURCE_METASTORE, FILE_COUNT, DATA_SIZE, AVG_FILE_SIZE, TABLE_EMPTY);
+        if (rows >= 0) {
+            statistics.put(ROW_COUNT, rows);
+            recordSource(et, SOURCE_METASTORE, ROW_COUNT);
+        }
+        if (getRunStatistics() != null) {
+            getRunStatistics().increment(TABLES_METASTORE);
+        }
+        return true;
+    }
+
+    /*
+    The stats for the table came from counting its location.
+     */
+    public void filesystemStatsApplied(EnvironmentTable et) {
+        recordSource(et, SOURCE_FILESYSTEM, DIR_COUNT, FILE_COUNT, DATA_SIZE, AVG_FILE_SIZE, TABLE_EMPTY);
+        if (getRunStatistics() != null) {
+            getRunStatistics().increment(TABLES_FILESYSTEM);
+        }
+    }
+
+    /*
+    Note which source produced the statistics entries (see the 'stats.source' statistic).
+     */
+    @SuppressWarnings("unchecked")
+    public static void recordSource(EnvironmentTable et, String source, String... keys) {
+        Map<String, String> sources = (Map<String, String>) et.getStatistics()
+                .computeIfAbsent(STATS_SOURCE, k -> new TreeMap<String, String>());
+        for (String key : keys) {
+            if (et.getStatistics().containsKey(key)) {
+                sources.put(key, source);
+            }
+        }
+    }
+
+    protected static Map<String, TableStats> extract(Connection conn, QueryDefinitions queryDefinitions,
+                                                     String database, boolean legacyHive) throws SQLException {
+        Map<String, TableStats> rtn = new TreeMap<>();
+        try (PreparedStatement pstmt = prepare(conn, queryDefinitions, DB_TBL_STATS, database, legacyHive);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                TableStats tableStats = rtn.computeIfAbsent(rs.getString(1).toLowerCase(), k -> new TableStats());
+                tableStats.setParam(rs.getString(2), rs.getString(3));
+            }
+        }
+        try (PreparedStatement pstmt = prepare(conn, queryDefinitions, DB_PART_STATS, database, legacyHive);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                TableStats tableStats = rtn.computeIfAbsent(rs.getString(1).toLowerCase(), k -> new TableStats());
+                long[] totals = new long[9];
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] = rs.getLong(i + 2);
+                    // The MIN is null when no partition has 'numRows'.
+                    if (i == 7 && rs.wasNull()) {
+                        totals[i] = -1L;
+                    }
+                }
+                tableStats.setPartitionTotals(totals[0], totals[1], totals[2], totals[3], totals[4], totals[5],
+                        totals[6], totals[7], totals[8]);
+            }
+        }
+        return rtn;
+    }
+
+    private static PreparedStatement prepare(Connection conn, QueryDefinitions queryDefinitions, String name,
+                                             String database, boolean legacyHive) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(
+                QueryDefinitionsService.getStatement(queryDefinitions, name, legacyHive));
+        pstmt.setFetchSize(FETCH_SIZE);
+        pstmt.setString(1, database);
+        return pstmt;
+    }
+
+    protected static String key(Environment environment, String database, String table) {
+        return environment + ":" + database + "." + table.toLowerCase();
+    }
+
+    @Autowired
+    public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
+        this.hmsMirrorCfgService = hmsMirrorCfgService;
+    }
+
+    @Autowired
+    public void setConnectionPoolService(ConnectionPoolService connectionPoolService) {
+        this.connectionPoolService = connectionPoolService;
+    }
+
+    @Autowired
+    public void setQueryDefinitionsService(QueryDefinitionsService queryDefinitionsService) {
+        this.queryDefinitionsService = queryDefinitionsService;
+    }
+
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+    /*
+    The params for one table.  -1 is 'not set'.
+     */
+    protected static class TableStats {
+        private long files = -1L;
+        private long bytes = -1L;
+        private long rows = -1L;
+        private long partitions = 0L;
+        private long partFilesCount = 0L;
+        private long partFiles = 0L;
+        private long partBytesCount = 0L;
+        private long partBytes = 0L;
+        private long partRowsCount = 0L;
+        private long partRows = 0L;
+        private long partMinRows = -1L;
+        private boolean accurate = false;
+        private long partAccurateCount = 0L;
+
+        void setParam(String key, String value) {
+            if ("COLUMN_STATS_ACCURATE".equals(key)) {
+                accurate = isAccurate(value);
+                return;
+            }
+            long parsed;
+            try {
+                parsed = value == null ? -1L : Long.parseLong(value.trim());
+            } catch (NumberFormatException nfe) {
+                return;
+            }
+            switch (key) {
+                case "numFiles":
+                    files = parsed;
+                    break;
+                case "totalSize":
+                    bytes = parsed;
+                    break;
+                case "numRows":
+                    rows = parsed;
+                    break;
+            }
+        }
+
+        void setPartitionTotals(long partitions, long bytesCount, long bytes, long filesCount, long files,
+                                long rowsCount, long rows, long minRows, long accurateCount) {
+            this.partitions = partitions;
+            this.partBytesCount = bytesCount;
+            this.partBytes = bytes;
+            this.partFilesCount = filesCount;
+            this.partFiles = files;
+            this.partRowsCount = rowsCount;
+            this.partRows = rows;
+            this.partMinRows = minRows;
+            this.partAccurateCount = accurateCount;
+        }
+
+        long getPartRows() {
+            return partRowsCount == partitions && partMinRows >= 0 ? partRows : -1L;
+        }
+
+        /*
+        Every partition (or the table) has a file count and size that Hive marks accurate, and they agree with each
+        other.
+         */
+        boolean isComplete(boolean partitioned) {
+            if (partitioned) {
+                return partFilesCount == partitions && partBytesCount == partitions &&
+                        partAccurateCount == partitions && (partFiles == 0) == (partBytes == 0);
+            }
+            return accurate && files >= 0 && bytes >= 0 && (files == 0) == (bytes == 0);
+        }
+
+        static boolean isAccurate(String columnStatsAccurate) {
+            return columnStatsAccurate != null && ("true".equalsIgnoreCase(columnStatsAccurate.trim())
+                    || BASIC_STATS_ACCURATE.matcher(columnStatsAccurate).find());
+        }
+    }
+
+}
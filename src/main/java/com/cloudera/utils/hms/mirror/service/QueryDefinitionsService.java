@@ -33,11 +33,19 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 @Service
 @Slf4j
 public class QueryDefinitionsService {
 
+    /*
+    Hive 3 metastores hold a catalog per engine ('hive', 'spark'), and each can have a database of the same name.
+    The bulk queries only read the 'hive' catalog.  Legacy metastores have no catalogs, so the predicate is dropped.
+     */
+    private static final Pattern CATALOG_PREDICATE =
+            Pattern.compile("\\s+AND\\s+\\S*CTLG_NAME\\S*\\s*=\\s*'hive'", Pattern.CASE_INSENSITIVE);
+
     private final HmsMirrorConfig hmsMirrorConfig;
 
     private final Map<Environment, QueryDefinitions> queryDefinitionsMap = new HashMap<>();
@@ -81,4 +89,16 @@ public class QueryDefinitionsService {
         return queryDefinitions;
     }
 
+    /*
+    The statement for the named query, without the catalog predicate when the metastore is a legacy one.  Null
+    when the query isn't defined.
+     */
+    public static String getStatement(QueryDefinitions queryDefinitions, String name, boolean legacyHive) {
+        if (queryDefinitions == null || queryDefinitions.getQueryDefinition(name) == null) {
+            return null;
+        }
+        String statement = queryDefinitions.getQueryDefinition(name).getStatement();
+        return legacyHive ? CATALOG_PREDICATE.matcher(statement).replaceAll("") : statement;
+    }
+
 }
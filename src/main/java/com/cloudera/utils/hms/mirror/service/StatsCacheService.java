@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.EnvironmentTable;
+import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import com.cloudera.utils.hms.util.TableUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/*
+Filesystem counts kept between runs in '$HOME/.hms-mirror/cache/stats-cache.yaml', by location.  An entry is
+good while the modification time of the location matches the one it was counted at and it's younger than the
+TTL.  On save, expired entries are dropped and then the least recently used ones, down to the max entries.
+
+The modification time of a directory only moves when its direct children change, so files added to (or replaced
+in) an existing partition don't show at the table location.  A partitioned table is kept by partition location
+instead, when its partitions have been loaded ('-epl').  Otherwise it's always counted.
+ */
+@Service
+@Slf4j
+@Getter
+@Setter
+public class StatsCacheService {
+
+    public static final String SOURCE_CACHE = "cache";
+
+    public static final String CACHE_HITS = "stats.cache.hit";
+    public static final String CACHE_MISSES = "stats.cache.miss";
+    public static final String CACHE_EVICTED = "stats.cache.evicted";
+
+    private HmsMirrorCfgService hmsMirrorCfgService;
+    private RunStatistics runStatistics;
+
+    private File cacheFile = new File(System.getProperty("user.home") + File.separator + ".hms-mirror" +
+            File.separator + "cache" + File.separator + "stats-cache.yaml");
+
+    private Map<String, Entry> entries = null;
+    private boolean dirty = false;
+
+    public boolean isEnabled() {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        return hmsMirrorConfig.getOptimization().isStatsCache() && !hmsMirrorConfig.isLoadingTestData();
+    }
+
+    public boolean isEnabled(EnvironmentTable et) {
+        return isEnabled() && (!TableUtils.isPartitioned(et) || !et.getPartitions().isEmpty());
+    }
+
+    /*
+    The directory count, file count and size for the location, when they were counted at this modification time.
+     */
+    public synchronized long[] get(String location, long modificationTime) {
+        Entry entry = getEntries().get(location);
+        long now = System.currentTimeMillis();
+        if (entry == null || entry.getModificationTime() != modificationTime || isExpired(entry, now)) {
+            increment(CACHE_MISSES);
+            return null;
+        }
+        entry.setUsed(now);
+        dirty = true;
+        increment(CACHE_HITS);
+        return new long[]{entry.getDirs(), entry.getFiles(), entry.getBytes()};
+    }
+
+    public synchronized void put(String location, long modificationTime, long[] count) {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry();
+        entry.setModificationTime(modificationTime);
+        entry.setDirs(count[0]);
+        entry.setFiles(count[1]);
+        entry.setBytes(count[2]);
+        entry.setCounted(now);
+        entry.setUsed(now);
+        getEntries().put(location, entry);
+        dirty = true;
+    }
+
+    /*
+    Write the cache back out, when anything changed.
+     */
+    public synchronized void save() {
+        if (entries == null || !dirty) {
+            return;
+        }
+        evict(System.currentTimeMillis());
+        try {
+            File parent = cacheFile.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            // Write it alongside and move it in, so a failed run doesn't leave half a cache.
+            File tmpFile = new File(cacheFile.getPath() + ".tmp");
+            new ObjectMapper(new YAMLFactory()).writeValue(tmpFile, new TreeMap<>(entries));
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+            log.info("Saved {} stats cache entries to {}", entries.size(), cacheFile);
+        } catch (IOException ioe) {
+            log.error("Problem saving the stats cache to {}", cacheFile, ioe);
+        }
+    }
+
+    protected void evict(long now) {
+        int before = entries.size();
+        entries.values().removeIf(entry -> isExpired(entry, now));
+        int max = getHmsMirrorCfgService().getHmsMirrorConfig().getOptimization().getStatsCacheMaxEntries();
+        if (entries.size() > max) {
+            List<Map.Entry<String, Entry>> byUse = new ArrayList<>(entries.entrySet());
+            byUse.sort(Comparator.comparingLong(e -> e.getValue().getUsed()));
+            for (int i = 0; i < byUse.size() - max; i++) {
+                entries.remove(byUse.get(i).getKey());
+            }
+        }
+        if (getRunStatistics() != null && before > entries.size()) {
+            getRunStatistics().add(CACHE_EVICTED, before - entries.size());
+        }
+    }
+
+    protected Map<String, Entry> getEntries() {
+        if (entries == null) {
+            entries = new HashMap<>();
+            if (cacheFile.exists()) {
+                try {
+                    ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+                    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+                    Map<String, Entry> loaded = mapper.readValue(cacheFile, new TypeReference<Map<String, Entry>>() {
+                    });
+                    if (loaded != null) {
+                        entries.putAll(loaded);
+                    }
+                    log.info("Loaded {} stats cache entries from {}", entries.size(), cacheFile);
+                } catch (IOException ioe) {
+                    // Start over.
+                    log.warn("Couldn't read the stats cache {}, starting a new one. {}", cacheFile, ioe.getMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        long ttl = getHmsMirrorCfgService().getHmsMirrorConfig().getOptimization().getStatsCacheTtlMinutes() * 60000L;
+        return now - entry.getCounted() > ttl;
+    }
+
+    private void increment(String key) {
+        if (getRunStatistics() != null) {
+            getRunStatistics().increment(key);
+        }
+    }
+
+    @Autowired
+    public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
+        this.hmsMirrorCfgService = hmsMirrorCfgService;
+    }
+
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+    @Getter
+    @Setter
+    public static class Entry {
+        private long modificationTime;
+        private long dirs;
+        private long files;
+        private long bytes;
+        private long counted;
+        private long used;
+    }
+
+}
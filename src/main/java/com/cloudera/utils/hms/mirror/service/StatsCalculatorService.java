@@ -24,7 +24,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 import static com.cloudera.utils.hms.mirror.SessionVars.*;
 
@@ -35,6 +37,11 @@ Provide a class where rules can be generated based on the hms-mirror stats colle
 @Slf4j
 @Getter
 public class StatsCalculatorService {
+    // Past this, the partitions go in the DISTRIBUTE BY by class instead of by name.
+    private static final int MAX_SKEWED_PARTITIONS = 1000;
+    // The Hive default for 'hive.exec.reducers.max'.
+    private static final long DEFAULT_MAX_REDUCERS = 1009;
+
     private HmsMirrorCfgService hmsMirrorCfgService;
 
     protected static Long getTezMaxGrouping(EnvironmentTable envTable) {
@@ -80,7 +87,12 @@ public class StatsCalculatorService {
             if (hmsMirrorConfig.getOptimization().isAutoTune() &&
                     !hmsMirrorConfig.getOptimization().isSkipStatsCollection()) {
                 SerdeType stype = serdeFromStats(envTable.getStatistics());
-                if (envTable.getStatistics().get(MirrorConf.DATA_SIZE) != null) {
+                if (envTable.getPartitionHistogram() != null && !envTable.getPartitionHistogram().isEmpty()) {
+                    String skewed = getSkewedDistribution(envTable);
+                    if (skewed != null) {
+                        sb.append(skewed);
+                    }
+                } else if (envTable.getStatistics().get(MirrorConf.DATA_SIZE) != null) {
                     Long ratio = getPartitionDistributionRatio(envTable);
                     if (ratio >= 1) {
                         sb.append("ROUND((rand() * 1000) % ").append(ratio).append(")");
@@ -101,6 +113,32 @@ public class StatsCalculatorService {
         return sb.toString();
     }
 
+    public long getTargetSize(EnvironmentTable envTable) {
+        return serdeFromStats(envTable.getStatistics()).getTargetSize();
+    }
+
+    /*
+    With the size of each partition, spread the large ones by class: the biggest get the most reducers and the ones
+    under the target size get a single reducer, instead of every partition getting the average table wide ratio.
+    Null when no partition needs more than one reducer.
+     */
+    protected String getSkewedDistribution(EnvironmentTable envTable) {
+        long targetSize = getTargetSize(envTable);
+        PartitionHistogram histogram = envTable.getPartitionHistogram();
+        SortedMap<Integer, List<String>> classes = histogram.getSpreadClasses(targetSize, MAX_SKEWED_PARTITIONS);
+        if (classes.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder("CASE");
+        for (Map.Entry<Integer, List<String>> entry : classes.entrySet()) {
+            sb.append(" WHEN ").append(new PartitionRange(0, entry.getValue()).getWhereClause())
+                    .append(" THEN FLOOR(rand() * ").append(entry.getKey()).append(")");
+        }
+        int remainder = histogram.getRemainderSpread(targetSize, MAX_SKEWED_PARTITIONS);
+        sb.append(" ELSE ").append(remainder > 1 ? "FLOOR(rand() * " + remainder + ")" : "0").append(" END");
+        return sb.toString();
+    }
+
     /*
     This will return the ratio of files to the average partition size. For example, if the average partition size is 1GB
     and the target size is 128MB, then the ratio will be 8. This means that we should have 8 files per partition.
@@ -152,6 +190,7 @@ public class StatsCalculatorService {
         }
 
         // Check the partition count.
+        PartitionHistogram histogram = controlEnv.getPartitionHistogram();
         if (controlEnv.getPartitioned()) {
             // MAX DYN PARTS: 1000 is the Apache default.  CDP is 5000.  Regardless, we'll set this to +20%
             // Also check MAX REDUCERS
@@ -162,15 +201,25 @@ public class StatsCalculatorService {
                                 (int) (controlEnv.getPartitions().size() * 1.2));
                 applyEnv.addIssue("Adjusting " + HIVE_MAX_REDUCERS + " to handle partition load");
                 int ratio = getPartitionDistributionRatio(controlEnv).intValue();
-                if (ratio >= 1) {
+                if (histogram != null && !histogram.isEmpty()) {
+                    applyEnv.addSql("Setting " + HIVE_MAX_REDUCERS,
+                            "set " + HIVE_MAX_REDUCERS + "=" +
+                                    (histogram.getReducers(serdeType.getTargetSize()) + 20));
+                } else if (ratio >= 1) {
                     applyEnv.addSql("Setting " + HIVE_MAX_REDUCERS,
                             "set " + HIVE_MAX_REDUCERS + "=" +
-                                    (ratio * controlEnv.getPartitions().size()) + 20);
+                                    (ratio * controlEnv.getPartitions().size() + 20));
                 } else {
                     applyEnv.addSql("Setting " + HIVE_MAX_REDUCERS,
                             "set " + HIVE_MAX_REDUCERS + "=" +
                                     (int) (controlEnv.getPartitions().size() * 1.2));
                 }
+            } else if (histogram != null && histogram.getReducers(serdeType.getTargetSize()) > DEFAULT_MAX_REDUCERS) {
+                // Few partitions, but big enough to need more than the default.
+                applyEnv.addIssue("Adjusting " + HIVE_MAX_REDUCERS + " to handle the size of the partitions");
+                applyEnv.addSql("Setting " + HIVE_MAX_REDUCERS,
+                        "set " + HIVE_MAX_REDUCERS + "=" +
+                                (histogram.getReducers(serdeType.getTargetSize()) + 20));
             }
         }
 
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.*;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Table fingerprints (see TableFingerprint) from the last successful sync, kept in
+'$HOME/.hms-mirror/sync/<db>_<target db>.yaml'.  With 'sync-incremental', a table whose LEFT fingerprint
+hasn't changed (and is still on the RIGHT) skips its transfer.  The delta (added, altered, unchanged, dropped)
+is kept on the DBMirror for the report.
+
+Only sizes counted from the filesystem are fingerprinted; the metastore's and the stats cache's can lag the
+data.  For the strategies that move the data, a table without counts is always transferred.
+
+Fingerprints are only written for 'execute' runs, and only for the tables that succeeded, so a failed table is
+picked up again on the next run.
+ */
+@Service
+@Slf4j
+@Getter
+@Setter
+public class SyncFingerprintService {
+
+    public static final String ADDED = "ADDED";
+    public static final String ALTERED = "ALTERED";
+    public static final String UNCHANGED = "UNCHANGED";
+    public static final String DROPPED = "DROPPED";
+    public static final String MISSING_RIGHT = "MISSING ON RIGHT";
+
+    private HmsMirrorCfgService hmsMirrorCfgService;
+    private RunStatistics runStatistics;
+
+    private File directory = new File(System.getProperty("user.home") + File.separator + ".hms-mirror" +
+            File.separator + "sync");
+
+    // By database.
+    private final Map<String, Map<String, TableFingerprint>> previous = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, TableFingerprint>> current = new ConcurrentHashMap<>();
+    // By db.table, until the transfer is done.
+    private final Map<String, TableFingerprint> pending = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        return hmsMirrorConfig.isSync() && hmsMirrorConfig.isSyncIncremental() && !hmsMirrorConfig.isLoadingTestData();
+    }
+
+    /*
+    Compare the table with its fingerprint from the last run, and note the delta on its database.  True when the
+    table is unchanged and its transfer can be skipped.
+     */
+    public boolean isUnchanged(TableMirror tableMirror) {
+        DBMirror dbMirror = tableMirror.getParent();
+        TableFingerprint fingerprint = TableFingerprint.of(tableMirror.getEnvironmentTable(Environment.LEFT),
+                getHmsMirrorCfgService().getHmsMirrorConfig().getDataStrategy());
+        pending.put(dbMirror.getName() + "." + tableMirror.getName(), fingerprint);
+
+        TableFingerprint last = getPrevious(dbMirror.getName()).get(tableMirror.getName());
+        boolean rtn = Boolean.FALSE;
+        String delta;
+        if (last == null) {
+            delta = ADDED;
+        } else {
+            List<String> differences = fingerprint.differences(last);
+            if (!differences.isEmpty()) {
+                delta = ALTERED + ": " + String.join(", ", differences);
+            } else if (!tableMirror.getEnvironmentTable(Environment.RIGHT).isExists()) {
+                delta = MISSING_RIGHT;
+            } else {
+                delta = UNCHANGED;
+                rtn = Boolean.TRUE;
+            }
+        }
+        dbMirror.getSyncDelta().put(tableMirror.getName(), delta);
+        increment("sync." + (rtn ? UNCHANGED : last == null ? ADDED : ALTERED).toLowerCase());
+        return rtn;
+    }
+
+    /*
+    The table is in sync with the LEFT, keep its fingerprint.
+     */
+    public void recordSuccess(TableMirror tableMirror) {
+        String database = tableMirror.getParent().getName();
+        TableFingerprint fingerprint = pending.remove(database + "." + tableMirror.getName());
+        if (fingerprint != null) {
+            fingerprint.setRecorded(System.currentTimeMillis());
+            current.computeIfAbsent(database, k -> new ConcurrentHashMap<>()).put(tableMirror.getName(), fingerprint);
+        }
+    }
+
+    /*
+    Note the dropped tables and, for an 'execute' run, write the fingerprints out.
+     */
+    public void save(Conversion conversion) {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        for (DBMirror dbMirror : conversion.getDatabases().values()) {
+            Map<String, TableFingerprint> fingerprints = new TreeMap<>();
+            for (Map.Entry<String, TableFingerprint> entry : getPrevious(dbMirror.getName()).entrySet()) {
+                if (dbMirror.getFilteredOut().containsKey(entry.getKey())) {
+                    // Not looked at this time.
+                    fingerprints.put(entry.getKey(), entry.getValue());
+                } else if (!dbMirror.getTableMirrors().containsKey(entry.getKey())) {
+                    dbMirror.getSyncDelta().put(entry.getKey(), DROPPED);
+                    increment("sync.dropped");
+                }
+            }
+            fingerprints.putAll(current.getOrDefault(dbMirror.getName(), new TreeMap<>()));
+            if (!hmsMirrorConfig.isExecute()) {
+                continue;
+            }
+            File file = getFile(dbMirror.getName());
+            try {
+                if (!directory.exists()) {
+                    directory.mkdirs();
+                }
+                mapper.writeValue(file, fingerprints);
+                log.info("Saved {} table fingerprints to {}", fingerprints.size(), file);
+            } catch (IOException ioe) {
+                log.error("Problem saving the table fingerprints to {}", file, ioe);
+            }
+        }
+    }
+
+    protected Map<String, TableFingerprint> getPrevious(String database) {
+        return previous.computeIfAbsent(database, db -> {
+            Map<String, TableFingerprint> rtn = new TreeMap<>();
+            File file = getFile(db);
+            if (file.exists()) {
+                try {
+                    ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+                    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+                    Map<String, TableFingerprint> loaded = mapper.readValue(file,
+                            new TypeReference<Map<String, TableFingerprint>>() {
+                            });
+                    if (loaded != null) {
+                        rtn.putAll(loaded);
+                    }
+                } catch (IOException ioe) {
+                    // Everything will be processed.
+                    log.warn("Couldn't read the table fingerprints {}. {}", file, ioe.getMessage());
+                }
+            }
+            return rtn;
+        });
+    }
+
+    protected File getFile(String database) {
+        return new File(directory, database + "_" + getHmsMirrorCfgService().getResolvedDB(database) + ".yaml");
+    }
+
+    private void increment(String key) {
+        if (getRunStatistics() != null) {
+            getRunStatistics().increment(key);
+        }
+    }
+
+    @Autowired
+    public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
+        this.hmsMirrorCfgService = hmsMirrorCfgService;
+    }
+
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+}
@@ -19,9 +19,7 @@ package com.cloudera.utils.hms.mirror.service;
 
 //import com.cloudera.utils.hadoop.HadoopSession;
 
-import com.cloudera.utils.hadoop.cli.CliEnvironment;
 import com.cloudera.utils.hadoop.cli.DisabledException;
-import com.cloudera.utils.hadoop.shell.command.CommandReturn;
 import com.cloudera.utils.hive.config.QueryDefinitions;
 import com.cloudera.utils.hms.mirror.*;
 import com.cloudera.utils.hms.mirror.datastrategy.DataStrategyEnum;
@@ -33,17 +31,23 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.sql.*;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.*;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 
 import static com.cloudera.utils.hms.mirror.MessageCode.LOCATION_NOT_MATCH_WAREHOUSE;
@@ -61,12 +65,29 @@ import static com.cloudera.utils.hms.mirror.datastrategy.DataStrategyEnum.STORAG
 public class TableService {
     private final DateFormat df = new SimpleDateFormat("yyyyMMddHHmmss");
     private final DateFormat tdf = new SimpleDateFormat("HH:mm:ss.SSS");
+    private static final int PARTITION_FETCH_SIZE = 10000;
+    // Set while a thread runs SQL for one of the execution pools (see runTableSqlAsync).
+    private static final ThreadLocal<Boolean> ON_EXECUTION_POOL = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /*
+    Tables (environment:db.table) that had their partitions loaded with the rest of the database.
+     */
+    private final Set<String> directPartitionsLoaded = ConcurrentHashMap.newKeySet();
 
     private HmsMirrorCfgService hmsMirrorCfgService;
     private ConnectionPoolService connectionPoolService;
     private QueryDefinitionsService queryDefinitionsService;
+    private MetastoreCatalogService metastoreCatalogService;
     private TranslatorService translatorService;
     private StatsCalculatorService statsCalculatorService;
+    private MetastoreStatsService metastoreStatsService;
+    private FileSystemProbeService fileSystemProbeService;
+    private StatsCacheService statsCacheService;
+    private CheckpointJournalService checkpointJournalService;
+    private TaskExecutor transferRangeThreadPool = null;
+    private TaskExecutor leftExecutionPool = null;
+    private TaskExecutor rightExecutionPool = null;
+    private RunStatistics runStatistics;
 
     protected HmsMirrorConfig getConfig() {
         return getHmsMirrorCfgService().getHmsMirrorConfig();
@@ -109,10 +130,8 @@ public class TableService {
                         target.addSql("Setting " + SORT_DYNAMIC_PARTITION, "set " + SORT_DYNAMIC_PARTITION + "=false");
                     }
                     String partElement = TableUtils.getPartitionElements(source);
-                    String shadowSql = MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_WITH_PARTITIONS_DECLARATIVE,
-                            shadow.getName(), target.getName(), partElement);
                     String shadowDesc = MessageFormat.format(TableUtils.LOAD_FROM_PARTITIONED_SHADOW_DESC, source.getPartitions().size());
-                    target.addSql(new Pair(shadowDesc, shadowSql));
+                    addPartitionTransferSql(target, source, shadow.getName(), target.getName(), partElement, null, shadowDesc);
                 } else if (hmsMirrorConfig.getOptimization().isSortDynamicPartitionInserts()) {
                     if (!hmsMirrorConfig.getCluster(Environment.RIGHT).isLegacyHive()) {
                         target.addSql("Setting " + SORT_DYNAMIC_PARTITION, "set " + SORT_DYNAMIC_PARTITION + "=true");
@@ -121,10 +140,8 @@ public class TableService {
                         }
                     }
                     String partElement = TableUtils.getPartitionElements(source);
-                    String shadowSql = MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_WITH_PARTITIONS_DECLARATIVE,
-                            shadow.getName(), target.getName(), partElement);
                     String shadowDesc = MessageFormat.format(TableUtils.LOAD_FROM_PARTITIONED_SHADOW_DESC, source.getPartitions().size());
-                    target.addSql(new Pair(shadowDesc, shadowSql));
+                    addPartitionTransferSql(target, source, shadow.getName(), target.getName(), partElement, null, shadowDesc);
                 } else {
                     // Prescriptive
                     if (!hmsMirrorConfig.getCluster(Environment.RIGHT).isLegacyHive()) {
@@ -135,10 +152,8 @@ public class TableService {
                     }
                     String partElement = TableUtils.getPartitionElements(source);
                     String distPartElement = statsCalculatorService.getDistributedPartitionElements(source);
-                    String shadowSql = MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_WITH_PARTITIONS_PRESCRIPTIVE,
-                            shadow.getName(), target.getName(), partElement, distPartElement);
                     String shadowDesc = MessageFormat.format(TableUtils.STORAGE_MIGRATION_TRANSFER_DESC, target.getPartitions().size());
-                    target.addSql(new Pair(shadowDesc, shadowSql));
+                    addPartitionTransferSql(target, source, shadow.getName(), target.getName(), partElement, distPartElement, shadowDesc);
                 }
             } else {
                 String shadowSql = MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_OVERWRITE,
@@ -154,6 +169,40 @@ public class TableService {
         return rtn;
     }
 
+    /*
+    Add the INSERT that moves a partitioned table ('from' to 'to') to the SQL of 'sqlTable'.  When the
+    optimization.partitionTransferRange* settings split the partitions of 'source' into more than one range, there's an
+    INSERT per range, filtered to its partitions.  The ranges share a group, so runTableSql can run them at the same
+    time.  'distPartElement' is null for the declarative (no DISTRIBUTE BY) form.
+     */
+    protected void addPartitionTransferSql(EnvironmentTable sqlTable, EnvironmentTable source, String from, String to,
+                                           String partElement, String distPartElement, String desc) {
+        Optimization optimization = getConfig().getOptimization();
+        long dataSize = source.getStatistics().get(DATA_SIZE) instanceof Number ?
+                ((Number) source.getStatistics().get(DATA_SIZE)).longValue() : -1L;
+        int partitionsPerRange = PartitionRange.partitionsPerRange(source.getPartitions().size(), dataSize,
+                optimization.getPartitionTransferRangeSize(), optimization.getPartitionTransferRangeBytes());
+        List<PartitionRange> ranges = PartitionRange.split(source.getPartitions().keySet(), partitionsPerRange);
+        if (ranges.size() < 2) {
+            String transferSql = distPartElement == null ?
+                    MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_WITH_PARTITIONS_DECLARATIVE, from, to, partElement) :
+                    MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_WITH_PARTITIONS_PRESCRIPTIVE, from, to, partElement, distPartElement);
+            sqlTable.addSql(new Pair(desc, transferSql));
+            return;
+        }
+        String group = from + " -> " + to;
+        for (PartitionRange range : ranges) {
+            String transferSql = distPartElement == null ?
+                    MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_WITH_PARTITION_RANGE_DECLARATIVE, from, to,
+                            partElement, range.getWhereClause()) :
+                    MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_WITH_PARTITION_RANGE_PRESCRIPTIVE, from, to,
+                            partElement, distPartElement, range.getWhereClause());
+            Pair pair = new Pair(desc + " (" + range.getRange() + " of " + ranges.size() + ")", transferSql);
+            pair.setGroup(group);
+            sqlTable.addSql(pair);
+        }
+    }
+
     protected Boolean buildSourceToTransferSql(TableMirror tableMirror) {
         Boolean rtn = Boolean.TRUE;
         HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
@@ -206,10 +255,8 @@ public class TableService {
                             source.addSql("Setting " + SORT_DYNAMIC_PARTITION, "set " + SORT_DYNAMIC_PARTITION + "=false");
                         }
                         String partElement = TableUtils.getPartitionElements(source);
-                        String transferSql = MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_WITH_PARTITIONS_DECLARATIVE,
-                                source.getName(), transfer.getName(), partElement);
                         String transferDesc = MessageFormat.format(TableUtils.STAGE_TRANSFER_PARTITION_DESC, source.getPartitions().size());
-                        source.addSql(new Pair(transferDesc, transferSql));
+                        addPartitionTransferSql(source, source, source.getName(), transfer.getName(), partElement, null, transferDesc);
                     } else if (hmsMirrorConfig.getOptimization().isSortDynamicPartitionInserts()) {
                         if (!hmsMirrorConfig.getCluster(Environment.LEFT).isLegacyHive()) {
                             source.addSql("Setting " + SORT_DYNAMIC_PARTITION, "set " + SORT_DYNAMIC_PARTITION + "=true");
@@ -218,10 +265,8 @@ public class TableService {
                             }
                         }
                         String partElement = TableUtils.getPartitionElements(source);
-                        String transferSql = MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_WITH_PARTITIONS_DECLARATIVE,
-                                source.getName(), transfer.getName(), partElement);
                         String transferDesc = MessageFormat.format(TableUtils.STAGE_TRANSFER_PARTITION_DESC, source.getPartitions().size());
-                        source.addSql(new Pair(transferDesc, transferSql));
+                        addPartitionTransferSql(source, source, source.getName(), transfer.getName(), partElement, null, transferDesc);
                     } else {
                         if (!hmsMirrorConfig.getCluster(Environment.LEFT).isLegacyHive()) {
                             source.addSql("Setting " + SORT_DYNAMIC_PARTITION, "set " + SORT_DYNAMIC_PARTITION + "=false");
@@ -231,10 +276,8 @@ public class TableService {
                         }
                         String partElement = TableUtils.getPartitionElements(source);
                         String distPartElement = statsCalculatorService.getDistributedPartitionElements(source);
-                        String transferSql = MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_WITH_PARTITIONS_PRESCRIPTIVE,
-                                source.getName(), transfer.getName(), partElement, distPartElement);
                         String transferDesc = MessageFormat.format(TableUtils.STAGE_TRANSFER_PARTITION_DESC, source.getPartitions().size());
-                        source.addSql(new Pair(transferDesc, transferSql));
+                        addPartitionTransferSql(source, source, source.getName(), transfer.getName(), partElement, distPartElement, transferDesc);
                     }
                 } else {
                     String transferSql = MessageFormat.format(MirrorConf.SQL_DATA_TRANSFER_OVERWRITE,
@@ -273,7 +316,7 @@ public class TableService {
                         source.getPartitioned()) {
                     if (!TableUtils.isACID(source)) {
                         // New Map.  So we can modify it..
-                        Map<String, String> targetPartitions = new HashMap<>(source.getPartitions());
+                        Map<String, String> targetPartitions = new PartitionMap(source.getPartitions());
                         target.setPartitions(targetPartitions);
                         if (!getTranslatorService().translatePartitionLocations(tableMirror)) {
                             rtn = Boolean.FALSE;
@@ -732,6 +775,8 @@ public class TableService {
         // Fetch Table Definition.
         if (hmsMirrorConfig.isLoadingTestData()) {
             // Already loaded from before.
+        } else if (getMetastoreCatalogService().isResolved(tableMirror, environment)) {
+            // Loaded with the rest of the database from the metastore (-mdc).
         } else {
             loadSchemaFromCatalog(tableMirror, environment);
         }
@@ -772,9 +817,10 @@ public class TableService {
             metastore_direct connection to do so. Trying to load this through the standard Hive SQL process
             is 'extremely' slow.
              */
-            if (hmsMirrorConfig.isEvaluatePartitionLocation() ||
-                    (hmsMirrorConfig.getDataStrategy() == STORAGE_MIGRATION && hmsMirrorConfig.getTransfer().getStorageMigration().isDistcp())) {
-                loadTablePartitionMetadataDirect(tableMirror, environment);
+            if (getHmsMirrorCfgService().loadPartitionMetadata()) {
+                if (!directPartitionsLoaded.contains(environment + ":" + tableMirror.getParent().getName() + "." + tableMirror.getName())) {
+                    loadTablePartitionMetadataDirect(tableMirror, environment);
+                }
             } else {
                 loadTablePartitionMetadata(tableMirror, environment);
             }
@@ -795,8 +841,7 @@ public class TableService {
                 environment, tableMirror.getParent().getName(), tableMirror.getName());
     }
 
-    @Async("metadataThreadPool")
-    public Future<ReturnStatus> getTableMetadata(TableMirror tableMirror) {
+    public ReturnStatus getTableMetadata(TableMirror tableMirror) {
         ReturnStatus rtn = new ReturnStatus();
         rtn.setTableMirror(tableMirror);
         HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
@@ -817,11 +862,10 @@ public class TableService {
             rtn.setStatus(ReturnStatus.Status.ERROR);
             rtn.setException(throwables);
         }
-        return new AsyncResult<>(rtn);
+        return rtn;
     }
 
-    @Async("metadataThreadPool")
-    public Future<ReturnStatus> getTables(DBMirror dbMirror) {
+    public ReturnStatus getTables(DBMirror dbMirror) {
         ReturnStatus rtn = new ReturnStatus();
         HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
         log.debug("Getting tables for Database {}", dbMirror.getName());
@@ -836,12 +880,29 @@ public class TableService {
                     // OK, if the db doesn't exist yet.
                 }
             }
+            // Pick up all the table definitions (-mdc) and partitions (-epl) for the database at once.
+            List<Environment> environments = new ArrayList<>();
+            environments.add(Environment.LEFT);
+            switch (hmsMirrorConfig.getDataStrategy()) {
+                case DUMP:
+                case STORAGE_MIGRATION:
+                    break;
+                default:
+                    environments.add(Environment.RIGHT);
+            }
+            for (Environment environment : environments) {
+                getMetastoreCatalogService().loadTableDefinitions(dbMirror, environment);
+                getMetastoreStatsService().loadDatabaseStats(dbMirror, environment);
+                if (getHmsMirrorCfgService().loadPartitionMetadata() && !hmsMirrorConfig.isLoadingTestData()) {
+                    loadDatabasePartitionMetadataDirect(dbMirror, environment);
+                }
+            }
             rtn.setStatus(ReturnStatus.Status.SUCCESS);
         } catch (SQLException throwables) {
             rtn.setStatus(ReturnStatus.Status.ERROR);
             rtn.setException(throwables);
         }
-        return new AsyncResult<>(rtn);
+        return rtn;
     }
 
     public void getTables(DBMirror dbMirror, Environment environment) throws SQLException {
@@ -1156,7 +1217,7 @@ public class TableService {
                 log.debug("{}:{}.{}: Loading Partitions", environment, database, et.getName());
 
                 resultSet = stmt.executeQuery(MessageFormat.format(MirrorConf.SHOW_PARTITIONS, database, et.getName()));
-                Map<String, String> partDef = new HashMap<String, String>();
+                Map<String, String> partDef = new PartitionMap();
                 while (resultSet.next()) {
                     partDef.put(resultSet.getString(1), NOT_SET);
                 }
@@ -1201,20 +1262,19 @@ public class TableService {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet resultSet = null;
-        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
         String database = tableMirror.getParent().getName();
         EnvironmentTable et = tableMirror.getEnvironmentTable(environment);
         try {
             conn = getConnectionPoolService().getMetastoreDirectEnvironmentConnection(environment);
             log.info("Loading Partitions from Metastore Direct Connection {}:{}.{}", environment, database, et.getName());
             QueryDefinitions queryDefinitions = getQueryDefinitionsService().getQueryDefinitions(environment);
-            if (queryDefinitions != null) {
+            if (conn != null && queryDefinitions != null) {
                 String partLocationQuery = queryDefinitions.getQueryDefinition("part_locations").getStatement();
                 pstmt = conn.prepareStatement(partLocationQuery);
                 pstmt.setString(1, database);
                 pstmt.setString(2, et.getName());
                 resultSet = pstmt.executeQuery();
-                Map<String, String> partDef = new HashMap<String, String>();
+                Map<String, String> partDef = new PartitionMap();
                 while (resultSet.next()) {
                     partDef.put(resultSet.getString(1), resultSet.getString(2));
                 }
@@ -1226,6 +1286,20 @@ public class TableService {
             log.error("Issue loading Partitions from Metastore Direct Connection. {}:{}.{}", environment, database, et.getName());
             log.error(throwables.getMessage(), throwables);
         } finally {
+            if (resultSet != null) {
+                try {
+                    resultSet.close();
+                } catch (SQLException sqlException) {
+                    // ignore
+                }
+            }
+            if (pstmt != null) {
+                try {
+                    pstmt.close();
+                } catch (SQLException sqlException) {
+                    // ignore
+                }
+            }
             try {
                 if (conn != null)
                     conn.close();
@@ -1235,6 +1309,104 @@ public class TableService {
         }
     }
 
+    /*
+    Load the partitions and locations for every table in the database with a single query ('db_part_locations'),
+    routing the rows to the TableMirrors as they are read.  The result set is streamed, so the size of the
+    database doesn't drive the size of the client buffer.
+     */
+    protected void loadDatabasePartitionMetadataDirect(DBMirror dbMirror, Environment environment) {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        Cluster cluster = hmsMirrorConfig.getCluster(environment);
+        if (cluster == null || cluster.getMetastoreDirect() == null || dbMirror.getTableMirrors().isEmpty()) {
+            return;
+        }
+        String database = (environment == Environment.LEFT ?
+                dbMirror.getName() : getHmsMirrorCfgService().getResolvedDB(dbMirror.getName()));
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet resultSet = null;
+        Boolean autoCommit = null;
+        try {
+            QueryDefinitions queryDefinitions = getQueryDefinitionsService().getQueryDefinitions(environment);
+            conn = getConnectionPoolService().getMetastoreDirectEnvironmentConnection(environment);
+            if (conn == null || queryDefinitions == null) {
+                return;
+            }
+            log.info("Loading Partitions from Metastore Direct Connection {}:{}", environment, database);
+            Map<String, Map<String, String>> partDefs = new HashMap<>();
+            for (TableMirror tableMirror : dbMirror.getTableMirrors().values()) {
+                Map<String, String> partDef = new PartitionMap();
+                tableMirror.getEnvironmentTable(environment).setPartitions(partDef);
+                partDefs.put(tableMirror.getName().toLowerCase(), partDef);
+            }
+            String partLocationQuery = QueryDefinitionsService.getStatement(queryDefinitions, "db_part_locations",
+                    cluster.isLegacyHive());
+            switch (cluster.getMetastoreDirect().getType()) {
+                case MYSQL:
+                    // The MySQL driver only streams with this fetch size.
+                    pstmt = conn.prepareStatement(partLocationQuery, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    pstmt.setFetchSize(Integer.MIN_VALUE);
+                    break;
+                case POSTGRES:
+                    // Postgres only uses a cursor outside of auto-commit.
+                    autoCommit = conn.getAutoCommit();
+                    conn.setAutoCommit(false);
+                    // fall through
+                default:
+                    pstmt = conn.prepareStatement(partLocationQuery);
+                    pstmt.setFetchSize(PARTITION_FETCH_SIZE);
+            }
+            pstmt.setString(1, database);
+            resultSet = pstmt.executeQuery();
+            long count = 0;
+            String tableName = null;
+            Map<String, String> partDef = null;
+            while (resultSet.next()) {
+                // Rows for a table come mostly together, so only look up the table when it changes.
+                String rowTableName = resultSet.getString(1);
+                if (!rowTableName.equals(tableName)) {
+                    tableName = rowTableName;
+                    partDef = partDefs.get(tableName.toLowerCase());
+                }
+                if (partDef != null) {
+                    partDef.put(resultSet.getString(2), resultSet.getString(3));
+                    count++;
+                }
+            }
+            for (TableMirror tableMirror : dbMirror.getTableMirrors().values()) {
+                directPartitionsLoaded.add(environment + ":" + dbMirror.getName() + "." + tableMirror.getName());
+            }
+            log.info("Loaded {} Partitions from Metastore Direct Connection {}:{}", count, environment, database);
+        } catch (SQLException throwables) {
+            // The tables will go back to loading their partitions one at a time.
+            log.error("Issue loading Partitions from Metastore Direct Connection. {}:{}", environment, database, throwables);
+        } finally {
+            if (resultSet != null) {
+                try {
+                    resultSet.close();
+                } catch (SQLException sqlException) {
+                    // ignore
+                }
+            }
+            if (pstmt != null) {
+                try {
+                    pstmt.close();
+                } catch (SQLException sqlException) {
+                    // ignore
+                }
+            }
+            try {
+                if (conn != null) {
+                    if (autoCommit != null)
+                        conn.setAutoCommit(autoCommit);
+                    conn.close();
+                }
+            } catch (SQLException throwables) {
+                //
+            }
+        }
+    }
+
     protected void loadTableStats(TableMirror tableMirror, Environment environment) throws DisabledException {
         // Considered only gathering stats for partitioned tables, but decided to gather for all tables to support
         //  smallfiles across the board.
@@ -1260,10 +1432,27 @@ public class TableService {
                 break;
         }
 
+        // The metastore params, when they're complete, save a trip to the filesystem.
+        if (getMetastoreStatsService() != null && getMetastoreStatsService().applyStats(tableMirror, environment)) {
+            log.debug("{}:{}: Stats from the metastore params.", environment, et.getName());
+        } else {
+            loadTableStatsFromFileSystem(tableMirror, environment);
+        }
+        // Determine Table File Format
+        TableUtils.getSerdeType(et);
+
+        if (hmsMirrorConfig.getOptimization().isAutoTune() && TableUtils.isPartitioned(et)) {
+            loadPartitionHistogramDirect(tableMirror, environment);
+        }
+    }
+
+    protected void loadTableStatsFromFileSystem(TableMirror tableMirror, Environment environment) throws DisabledException {
+        EnvironmentTable et = tableMirror.getEnvironmentTable(environment);
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
         // Determine File sizes in table or partitions.
         /*
         - Get Base location for table
-        - Get HadoopSession
+        - Get a filesystem session (FileSystemProbeService)
         - Do a 'count' of the location.
          */
         String location = TableUtils.getLocation(et.getName(), et.getDefinition());
@@ -1271,35 +1460,160 @@ public class TableService {
         String[] locationParts = location.split(":");
         String protocol = locationParts[0];
         if (hmsMirrorConfig.getSupportFileSystems().contains(protocol)) {
-            CliEnvironment cli = getConfig().getCliEnvironment();
-
-            String countCmd = "count " + location;
-            CommandReturn cr = cli.processInput(countCmd);
-            if (!cr.isError() && cr.getRecords().size() == 1) {
-                // We should only get back one record.
-                List<Object> countRecord = cr.getRecords().get(0);
+            long[] count = null;
+            boolean cached = false;
+            boolean partitioned = TableUtils.isPartitioned(et);
+            if (getStatsCacheService().isEnabled(et)) {
+                // The table location doesn't show the changes inside its partitions, so those are kept by partition.
+                List<String> locations = partitioned ? new ArrayList<>(new LinkedHashSet<>(et.getPartitions().values()))
+                        : Collections.singletonList(location);
+                count = countThroughCache(et, locations);
+                cached = count != null && count[3] == 0;
+            }
+            if (count == null && (partitioned || !getStatsCacheService().isEnabled(et))) {
+                try {
+                    count = getFileSystemProbeService().count(location);
+                } catch (IOException ioe) {
+                    log.warn("{}: Issue counting {}. {}", et.getName(), location, ioe.getMessage());
+                    return;
+                }
+            }
+            if (count != null) {
                 // 0 = Folder Count
                 // 1 = File Count
                 // 2 = Size Summary
-                try {
-                    Double avgFileSize = (double) (Long.parseLong(countRecord.get(2).toString()) /
-                            Integer.parseInt(countRecord.get(1).toString()));
-                    et.getStatistics().put(DIR_COUNT, Integer.valueOf(countRecord.get(0).toString()));
-                    et.getStatistics().put(FILE_COUNT, Integer.valueOf(countRecord.get(1).toString()));
-                    et.getStatistics().put(DATA_SIZE, Long.valueOf(countRecord.get(2).toString()));
-                    et.getStatistics().put(AVG_FILE_SIZE, avgFileSize);
+                if (count[1] > 0) {
+                    et.getStatistics().put(DIR_COUNT, (int) count[0]);
+                    et.getStatistics().put(FILE_COUNT, (int) count[1]);
+                    et.getStatistics().put(DATA_SIZE, count[2]);
+                    et.getStatistics().put(AVG_FILE_SIZE, (double) (count[2] / count[1]));
                     et.getStatistics().put(TABLE_EMPTY, Boolean.FALSE);
-                } catch (ArithmeticException ae) {
+                } else {
                     // Directory is probably empty.
                     et.getStatistics().put(TABLE_EMPTY, Boolean.TRUE);
                 }
+                if (cached) {
+                    MetastoreStatsService.recordSource(et, StatsCacheService.SOURCE_CACHE, DIR_COUNT, FILE_COUNT,
+                            DATA_SIZE, AVG_FILE_SIZE, TABLE_EMPTY);
+                } else if (getMetastoreStatsService() != null) {
+                    getMetastoreStatsService().filesystemStatsApplied(et);
+                }
             } else {
                 // Issue getting count.
 
             }
         }
-        // Determine Table File Format
-        TableUtils.getSerdeType(et);
+    }
+
+    /*
+    Sum the directory count, file count and size of the locations.  The ones the stats cache has at their current
+    modification time are taken from it, the others are counted together and cached.  The fourth value is how many
+    were counted.  Null when one of them couldn't be counted.
+     */
+    protected long[] countThroughCache(EnvironmentTable et, List<String> locations) throws DisabledException {
+        long[] rtn = new long[4];
+        List<String> misses = new ArrayList<>();
+        List<Long> modificationTimes = new ArrayList<>();
+        for (String location : locations) {
+            long modificationTime = -1L;
+            try {
+                modificationTime = getFileSystemProbeService().getModificationTime(location);
+                long[] count = getStatsCacheService().get(location, modificationTime);
+                if (count != null) {
+                    for (int i = 0; i < count.length; i++) {
+                        rtn[i] += count[i];
+                    }
+                    continue;
+                }
+            } catch (IOException ioe) {
+                log.debug("{}: No modification time for {}, it will be counted. {}", et.getName(), location,
+                        ioe.getMessage());
+            }
+            misses.add(location);
+            modificationTimes.add(modificationTime);
+        }
+        if (misses.isEmpty()) {
+            return rtn;
+        }
+        List<long[]> counts;
+        try {
+            counts = getFileSystemProbeService().countAll(misses);
+        } catch (IOException ioe) {
+            log.warn("{}: Issue counting {} locations. {}", et.getName(), misses.size(), ioe.getMessage());
+            return null;
+        }
+        for (int i = 0; i < misses.size(); i++) {
+            long[] count = counts.get(i);
+            if (count == null) {
+                log.debug("{}: Couldn't count {}.", et.getName(), misses.get(i));
+                return null;
+            }
+            if (modificationTimes.get(i) >= 0) {
+                getStatsCacheService().put(misses.get(i), modificationTimes.get(i), count);
+            }
+            for (int j = 0; j < count.length; j++) {
+                rtn[j] += count[j];
+            }
+        }
+        rtn[3] = misses.size();
+        return rtn;
+    }
+
+    /*
+    Load the size of each partition from the metastore partition params ('totalSize', 'numFiles'), so the transfer
+    SQL can be tuned to the skew of the table (see StatsCalculatorService).  Partitions without params are left out,
+    and nothing is set when none have them.
+     */
+    protected void loadPartitionHistogramDirect(TableMirror tableMirror, Environment environment) {
+        Cluster cluster = getHmsMirrorCfgService().getHmsMirrorConfig().getCluster(environment);
+        if (cluster == null || cluster.getMetastoreDirect() == null) {
+            return;
+        }
+        String database = tableMirror.getParent().getName();
+        EnvironmentTable et = tableMirror.getEnvironmentTable(environment);
+        try (Connection conn = getConnectionPoolService().getMetastoreDirectEnvironmentConnection(environment)) {
+            QueryDefinitions queryDefinitions = getQueryDefinitionsService().getQueryDefinitions(environment);
+            if (conn == null || queryDefinitions == null || queryDefinitions.getQueryDefinition("part_stats") == null) {
+                return;
+            }
+            Map<String, long[]> sizes = new LinkedHashMap<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    QueryDefinitionsService.getStatement(queryDefinitions, "part_stats", cluster.isLegacyHive()))) {
+                pstmt.setString(1, database);
+                pstmt.setString(2, et.getName());
+                try (ResultSet resultSet = pstmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        long[] size = sizes.computeIfAbsent(resultSet.getString(1), k -> new long[]{-1L, 0L});
+                        String value = resultSet.getString(3);
+                        try {
+                            if (value != null) {
+                                size["totalSize".equals(resultSet.getString(2)) ? 0 : 1] = Long.parseLong(value.trim());
+                            }
+                        } catch (NumberFormatException nfe) {
+                            // Leave it unknown.
+                        }
+                    }
+                }
+            }
+            PartitionHistogram histogram = new PartitionHistogram();
+            for (Map.Entry<String, long[]> entry : sizes.entrySet()) {
+                if (entry.getValue()[0] >= 0) {
+                    histogram.add(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+                }
+            }
+            if (!histogram.isEmpty()) {
+                et.setPartitionHistogram(histogram);
+                et.getStatistics().put(PARTITION_SIZE_CLASSES,
+                        histogram.getClassCounts(getStatsCalculatorService().getTargetSize(et)));
+                MetastoreStatsService.recordSource(et, MetastoreStatsService.SOURCE_METASTORE, PARTITION_SIZE_CLASSES);
+                log.debug("{}:{}.{}: Loaded partition sizes for {} partitions", environment, database, et.getName(),
+                        histogram.size());
+            }
+        } catch (SQLException throwables) {
+            // Fall back to the table level stats.
+            log.warn("{}:{}.{}: Issue loading partition sizes from Metastore Direct Connection: {}", environment,
+                    database, et.getName(), throwables.getMessage());
+        }
     }
 
     /**
@@ -1320,7 +1634,79 @@ public class TableService {
         return rtn;
     }
 
+    /*
+    With 'optimization.environmentPools', the SQL runs on the pool for the environment's cluster while this thread
+    waits, so each cluster's work is held to its own concurrency.
+     */
     public Boolean runTableSql(List<Pair> sqlList, TableMirror tblMirror, Environment environment) {
+        return await(runTableSqlAsync(sqlList, tblMirror, environment), tblMirror, environment);
+    }
+
+    public CompletableFuture<Boolean> runTableSqlAsync(TableMirror tblMirror, Environment environment) {
+        return runTableSqlAsync(tblMirror.getEnvironmentTable(environment).getSql(), tblMirror, environment);
+    }
+
+    /*
+    The SQL as a stage on the environment's pool, for the steps of a table to be chained (IE: the LEFT, then the
+    RIGHT) without a thread waiting between them.  Without the pools, or when called from one of them, the SQL runs
+    on this thread and the stage is already complete.  A pool thread never waits on a pool, so a full pool can't
+    deadlock on its own work.
+     */
+    public CompletableFuture<Boolean> runTableSqlAsync(List<Pair> sqlList, TableMirror tblMirror, Environment environment) {
+        TaskExecutor executionPool = getExecutionPool(environment);
+        if (executionPool == null || ON_EXECUTION_POOL.get()) {
+            return CompletableFuture.completedFuture(runTableSqlWork(sqlList, tblMirror, environment));
+        }
+        String key = "environment." + environment.toString().toLowerCase();
+        final long submitted = System.currentTimeMillis();
+        return CompletableFuture.supplyAsync(() -> {
+            getRunStatistics().add(key + ".wait.ms", System.currentTimeMillis() - submitted);
+            long started = System.currentTimeMillis();
+            ON_EXECUTION_POOL.set(Boolean.TRUE);
+            try {
+                return runTableSqlWork(sqlList, tblMirror, environment);
+            } finally {
+                ON_EXECUTION_POOL.remove();
+                getRunStatistics().increment(key + ".steps");
+                getRunStatistics().add(key + ".elapsed.ms", System.currentTimeMillis() - started);
+            }
+        }, executionPool);
+    }
+
+    /*
+    Wait for the SQL stage(s) of a table.
+     */
+    public Boolean await(CompletableFuture<Boolean> step, TableMirror tblMirror, Environment environment) {
+        try {
+            return step.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tblMirror.addIssue(environment, "Interrupted waiting on the " + environment + " SQL");
+            return Boolean.FALSE;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    protected TaskExecutor getExecutionPool(Environment environment) {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        if (!hmsMirrorConfig.getOptimization().isEnvironmentPools() || hmsMirrorConfig.isLoadingTestData()) {
+            return null;
+        }
+        switch (environment) {
+            case LEFT:
+                return getLeftExecutionPool();
+            case RIGHT:
+                return getRightExecutionPool();
+            default:
+                return null;
+        }
+    }
+
+    protected Boolean runTableSqlWork(List<Pair> sqlList, TableMirror tblMirror, Environment environment) {
         Connection conn = null;
         Boolean rtn = Boolean.TRUE;
         HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
@@ -1347,13 +1733,44 @@ public class TableService {
                     Statement stmt = null;
                     try {
                         stmt = conn.createStatement();
-                        for (Pair pair : sqlList) {
-                            log.debug("{}:SQL:{}:{}", environment, pair.getDescription(), pair.getAction());
-                            tblMirror.setMigrationStageMessage("Executing SQL: " + pair.getDescription());
-                            if (hmsMirrorConfig.isExecute()) {
-                                stmt.execute(pair.getAction());
-                                tblMirror.addStep(hmsMirrorConfig.toString(), "Sql Run Complete for: " + pair.getDescription());
-                            } else {
+                        // What a second connection needs to run in the same session state.
+                        List<Pair> sessionSql = new ArrayList<>();
+                        if (hmsMirrorConfig.isExecute()) {
+                            // The runs of steps that can go on parallel connections, less those done by the run
+                            // being resumed.
+                            List<SqlStepPlan.Step> steps = SqlStepPlan.steps(sqlList,
+                                    hmsMirrorConfig.getOptimization().isParallelDdl(),
+                                    pair -> getCheckpointJournalService().isSqlCompleted(tblMirror, environment, pair));
+                            for (SqlStepPlan.Step step : steps) {
+                                for (Pair pair : step.getResumed()) {
+                                    tblMirror.addStep(hmsMirrorConfig.toString(), "Sql Run SKIPPED (RESUMED) for: " + pair.getDescription());
+                                }
+                                if (step.getGroup() != null) {
+                                    if (!step.getPairs().isEmpty()) {
+                                        runSqlGroup(stmt, step.getGroup(), step.getPairs(), sessionSql, tblMirror, environment);
+                                    }
+                                    continue;
+                                }
+                                for (Pair pair : step.getPairs()) {
+                                    boolean session = SqlStepPlan.isSession(pair);
+                                    if (session) {
+                                        sessionSql.add(pair);
+                                    }
+                                    log.debug("{}:SQL:{}:{}", environment, pair.getDescription(), pair.getAction());
+                                    tblMirror.setMigrationStageMessage("Executing SQL: " + pair.getDescription());
+                                    long started = System.currentTimeMillis();
+                                    stmt.execute(pair.getAction());
+                                    recordStep(pair, System.currentTimeMillis() - started);
+                                    tblMirror.addStep(hmsMirrorConfig.toString(), "Sql Run Complete for: " + pair.getDescription());
+                                    if (!session) {
+                                        getCheckpointJournalService().sqlCompleted(tblMirror, environment, pair);
+                                    }
+                                }
+                            }
+                        } else {
+                            for (Pair pair : sqlList) {
+                                log.debug("{}:SQL:{}:{}", environment, pair.getDescription(), pair.getAction());
+                                tblMirror.setMigrationStageMessage("Executing SQL: " + pair.getDescription());
                                 tblMirror.addStep(hmsMirrorConfig.toString(), "Sql Run SKIPPED (DRY-RUN) for: " + pair.getDescription());
                             }
                         }
@@ -1395,6 +1812,201 @@ public class TableService {
         return rtn;
     }
 
+    /*
+    The latency of a SQL step, by its kind (see SqlStepPlan.kind).
+     */
+    protected void recordStep(Pair pair, long ms) {
+        if (getRunStatistics() == null) {
+            return;
+        }
+        String key = "sql.step." + SqlStepPlan.kind(pair);
+        getRunStatistics().increment(key + ".count");
+        getRunStatistics().add(key + ".ms", ms);
+        getRunStatistics().max(key + ".max.ms", ms);
+    }
+
+    /*
+    Run a group of independent statements (see SqlStepPlan).  This thread works through them on the
+    tables connection, while up to 'partitionTransferConcurrency - 1' helpers on the transferRangeThreadPool do the same
+    on connections of their own.  A helper only takes a connection the pool can hand out right away, and only joins the
+    group once it has one, so neither the helper nor the group ever waits on the pool.  Each statement is retried
+    'partitionTransferRetries' times, and the first one that still fails stops the group and is thrown.
+     */
+    protected void runSqlGroup(Statement stmt, String name, List<Pair> group, List<Pair> sessionSql, TableMirror tblMirror,
+                               Environment environment) throws SQLException {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        SqlGroupRun run = new SqlGroupRun(name, group, hmsMirrorConfig.getOptimization().getPartitionTransferRetries());
+        int helpers = Math.min(hmsMirrorConfig.getOptimization().getPartitionTransferConcurrency(), group.size()) - 1;
+        if (getTransferRangeThreadPool() != null) {
+            for (int i = 0; i < helpers; i++) {
+                getTransferRangeThreadPool().execute(() -> runSqlGroupHelper(run, sessionSql, tblMirror, environment));
+            }
+        }
+        runSqlGroupWork(run, stmt, tblMirror, environment);
+        try {
+            run.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting on " + run.group, e);
+        }
+        if (run.failure.get() != null) {
+            throw run.failure.get();
+        }
+    }
+
+    private void runSqlGroupHelper(SqlGroupRun run, List<Pair> sessionSql, TableMirror tblMirror, Environment environment) {
+        if (run.queue.isEmpty() || run.failure.get() != null) {
+            return;
+        }
+        Connection conn = null;
+        boolean joined = false;
+        try {
+            conn = getConnectionPoolService().tryHS2EnvironmentConnection(environment);
+            if (conn == null) {
+                // The pool is busy, so the other connections pick up the work.
+                if (getRunStatistics() != null) {
+                    getRunStatistics().increment("sql.group.helper.no.connection");
+                }
+                return;
+            }
+            joined = run.join();
+            if (!joined) {
+                return;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                for (Pair pair : sessionSql) {
+                    stmt.execute(pair.getAction());
+                }
+                runSqlGroupWork(run, stmt, tblMirror, environment);
+            }
+        } catch (SQLException throwables) {
+            // The other connections pick up the work.
+            log.warn("{}:{}: No helper connection for '{}': {}", environment, tblMirror.getName(),
+                    run.group, throwables.getMessage());
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException throwables) {
+                    //
+                }
+            }
+            if (joined) {
+                run.leave();
+            }
+        }
+    }
+
+    private void runSqlGroupWork(SqlGroupRun run, Statement stmt, TableMirror tblMirror, Environment environment) {
+        Pair pair;
+        while (run.failure.get() == null && (pair = run.queue.poll()) != null) {
+            log.debug("{}:SQL:{}:{}", environment, pair.getDescription(), pair.getAction());
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    long started = System.currentTimeMillis();
+                    stmt.execute(pair.getAction());
+                    recordStep(pair, System.currentTimeMillis() - started);
+                    break;
+                } catch (SQLException throwables) {
+                    if (attempt >= run.retries) {
+                        run.failure.compareAndSet(null, throwables);
+                        return;
+                    }
+                    log.warn("{}:{}: Retrying ({} of {}): {}", environment, pair.getDescription(), attempt + 1,
+                            run.retries, throwables.getMessage());
+                }
+            }
+            getCheckpointJournalService().sqlCompleted(tblMirror, environment, pair);
+            int done = run.done.incrementAndGet();
+            synchronized (tblMirror) {
+                tblMirror.setMigrationStageMessage("Executing SQL: " + pair.getDescription() + " [" + done + "/" + run.total + " done]");
+                tblMirror.addStep(getHmsMirrorCfgService().getHmsMirrorConfig().toString(), "Sql Run Complete for: " + pair.getDescription());
+            }
+        }
+    }
+
+    private static class SqlGroupRun {
+        private final String group;
+        private final Queue<Pair> queue;
+        private final int total;
+        private final int retries;
+        private final AtomicInteger done = new AtomicInteger(0);
+        private final AtomicReference<SQLException> failure = new AtomicReference<>();
+        private int active = 0;
+        private boolean closed = false;
+
+        SqlGroupRun(String name, List<Pair> group, int retries) {
+            this.group = name;
+            this.queue = new ConcurrentLinkedQueue<>(group);
+            this.total = group.size();
+            this.retries = Math.max(retries, 0);
+        }
+
+        /*
+        Called by a helper that holds a connection.  False once the group is done, so a helper that only got a
+        thread late doesn't start.
+         */
+        synchronized boolean join() {
+            if (closed) {
+                return false;
+            }
+            active++;
+            return true;
+        }
+
+        synchronized void leave() {
+            active--;
+            notifyAll();
+        }
+
+        synchronized void close() throws InterruptedException {
+            closed = true;
+            while (active > 0) {
+                wait();
+            }
+        }
+    }
+
+    @Autowired
+    public void setLeftExecutionPool(@Qualifier("leftExecutionPool") TaskExecutor leftExecutionPool) {
+        this.leftExecutionPool = leftExecutionPool;
+    }
+
+    @Autowired
+    public void setRightExecutionPool(@Qualifier("rightExecutionPool") TaskExecutor rightExecutionPool) {
+        this.rightExecutionPool = rightExecutionPool;
+    }
+
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+    @Autowired
+    public void setTransferRangeThreadPool(@Qualifier("transferRangeThreadPool") TaskExecutor transferRangeThreadPool) {
+        this.transferRangeThreadPool = transferRangeThreadPool;
+    }
+
+    @Autowired
+    public void setMetastoreStatsService(MetastoreStatsService metastoreStatsService) {
+        this.metastoreStatsService = metastoreStatsService;
+    }
+
+    @Autowired
+    public void setFileSystemProbeService(FileSystemProbeService fileSystemProbeService) {
+        this.fileSystemProbeService = fileSystemProbeService;
+    }
+
+    @Autowired
+    public void setCheckpointJournalService(CheckpointJournalService checkpointJournalService) {
+        this.checkpointJournalService = checkpointJournalService;
+    }
+
+    @Autowired
+    public void setStatsCacheService(StatsCacheService statsCacheService) {
+        this.statsCacheService = statsCacheService;
+    }
+
     @Autowired
     public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
         this.hmsMirrorCfgService = hmsMirrorCfgService;
@@ -1405,6 +2017,11 @@ public class TableService {
         this.connectionPoolService = connectionPoolService;
     }
 
+    @Autowired
+    public void setMetastoreCatalogService(MetastoreCatalogService metastoreCatalogService) {
+        this.metastoreCatalogService = metastoreCatalogService;
+    }
+
     @Autowired
     public void setQueryDefinitionsService(QueryDefinitionsService queryDefinitionsService) {
         this.queryDefinitionsService = queryDefinitionsService;
@@ -29,14 +29,13 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Pattern;
 
 import static com.cloudera.utils.hms.mirror.MessageCode.DISTCP_FOR_SO_ACID;
@@ -52,17 +51,25 @@ public class TransferService {
     private final DateFormat df = new SimpleDateFormat("yyyyMMddHHmmss");
     private final DateFormat tdf = new SimpleDateFormat("HH:mm:ss.SSS");
     private HmsMirrorCfgService hmsMirrorCfgService;
+    private CheckpointJournalService checkpointJournalService;
     private TableService tableService;
     private DatabaseService databaseService;
     private DataStrategyService dataStrategyService;
     private HybridDataStrategy hybridDataStrategy;
     private HybridAcidDowngradeInPlaceDataStrategy hybridAcidDowngradeInPlaceDataStrategy;
+    private SyncFingerprintService syncFingerprintService;
+    private ExportImportPipelineService exportImportPipelineService;
 
     @Autowired
     public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
         this.hmsMirrorCfgService = hmsMirrorCfgService;
     }
 
+    @Autowired
+    public void setCheckpointJournalService(CheckpointJournalService checkpointJournalService) {
+        this.checkpointJournalService = checkpointJournalService;
+    }
+
     @Autowired
     public void setDataStrategyService(DataStrategyService dataStrategyService) {
         this.dataStrategyService = dataStrategyService;
@@ -73,6 +80,11 @@ public class TransferService {
         this.databaseService = databaseService;
     }
 
+    @Autowired
+    public void setExportImportPipelineService(ExportImportPipelineService exportImportPipelineService) {
+        this.exportImportPipelineService = exportImportPipelineService;
+    }
+
     @Autowired
     public void setHybridAcidDowngradeInPlaceDataStrategy(HybridAcidDowngradeInPlaceDataStrategy hybridAcidDowngradeInPlaceDataStrategy) {
         this.hybridAcidDowngradeInPlaceDataStrategy = hybridAcidDowngradeInPlaceDataStrategy;
@@ -83,13 +95,21 @@ public class TransferService {
         this.hybridDataStrategy = hybridDataStrategy;
     }
 
+    @Autowired
+    public void setSyncFingerprintService(SyncFingerprintService syncFingerprintService) {
+        this.syncFingerprintService = syncFingerprintService;
+    }
+
     @Autowired
     public void setTableService(TableService tableService) {
         this.tableService = tableService;
     }
 
-    @Async("jobThreadPool")
-    public Future<ReturnStatus> transfer(TableMirror tableMirror) {
+    /*
+    Run the transfer stage for the table.  Scheduling of the stage on the 'jobThreadPool' is managed by
+    the WorkflowService.  When an IMPORT is left queued after the EXPORT, the stage is NEXTSTEP (see followOn).
+     */
+    public ReturnStatus transfer(TableMirror tableMirror) {
         ReturnStatus rtn = new ReturnStatus();
 //        rtn.setStatus(ReturnStatus.Status.SUCCESS);
 //        Boolean successful = Boolean.FALSE;
@@ -100,12 +120,31 @@ public class TransferService {
             log.info("Migrating {}.{}", tableMirror.getParent().getName(), tableMirror.getName());
 
             EnvironmentTable let = tableMirror.getEnvironmentTable(Environment.LEFT);
-            EnvironmentTable tet = tableMirror.getEnvironmentTable(Environment.TRANSFER);
-            EnvironmentTable set = tableMirror.getEnvironmentTable(Environment.SHADOW);
-            EnvironmentTable ret = tableMirror.getEnvironmentTable(Environment.RIGHT);
+
+            if (getSyncFingerprintService().isEnabled() && getSyncFingerprintService().isUnchanged(tableMirror)) {
+                log.info("{}.{} hasn't changed since the last sync", tableMirror.getParent().getName(), tableMirror.getName());
+                tableMirror.addStep("SYNC", SyncFingerprintService.UNCHANGED);
+                tableMirror.setPhaseState(PhaseState.SYNC_UNCHANGED);
+                getCheckpointJournalService().phase(tableMirror);
+                getSyncFingerprintService().recordSuccess(tableMirror);
+                rtn.setStatus(ReturnStatus.Status.SUCCESS);
+                return rtn;
+            }
+
+            if (getCheckpointJournalService().isTableCompleted(tableMirror)) {
+                log.info("{}.{} was completed by the run being resumed", tableMirror.getParent().getName(), tableMirror.getName());
+                tableMirror.addStep("RESUME", CheckpointJournalService.COMPLETED);
+                tableMirror.setPhaseState(PhaseState.SUCCESS);
+                if (getSyncFingerprintService().isEnabled()) {
+                    getSyncFingerprintService().recordSuccess(tableMirror);
+                }
+                rtn.setStatus(ReturnStatus.Status.SUCCESS);
+                return rtn;
+            }
 
             // Set Database to Transfer DB.
             tableMirror.setPhaseState(PhaseState.STARTED);
+            getCheckpointJournalService().phase(tableMirror);
 
             tableMirror.setStrategy(hmsMirrorConfig.getDataStrategy());
 //            tblMirror.setResolvedDbName(config.getResolvedDB(tblMirror.getParent().getName()));
@@ -139,115 +178,12 @@ public class TransferService {
                         }
                         break;
                 }
-                // Build out DISTCP workplans.
-                if (rtn.getStatus() == ReturnStatus.Status.SUCCESS && hmsMirrorConfig.getTransfer().getStorageMigration().isDistcp()) {
-                    // Build distcp reports.
-                    if (hmsMirrorConfig.getTransfer().getIntermediateStorage() != null) {
-                        // LEFT PUSH INTERMEDIATE
-                        // The Transfer Table should be available.
-                        String isLoc = hmsMirrorConfig.getTransfer().getIntermediateStorage();
-                        // Deal with extra '/'
-                        isLoc = isLoc.endsWith("/") ? isLoc.substring(0, isLoc.length() - 1) : isLoc;
-                        isLoc = isLoc + "/" +
-                                hmsMirrorConfig.getTransfer().getRemoteWorkingDirectory() + "/" +
-                                hmsMirrorConfig.getRunMarker() + "/" +
-                                tableMirror.getParent().getName() + ".db/" +
-                                tableMirror.getName();
-
-                        hmsMirrorConfig.getTranslator().addLocation(tableMirror.getParent().getName(), Environment.LEFT,
-                                TableUtils.getLocation(tableMirror.getName(), let.getDefinition()),
-                                isLoc, 1);
-                        // RIGHT PULL from INTERMEDIATE
-                        String fnlLoc = null;
-                        if (!set.getDefinition().isEmpty()) {
-                            fnlLoc = TableUtils.getLocation(ret.getName(), set.getDefinition());
-                        } else {
-                            fnlLoc = TableUtils.getLocation(tableMirror.getName(), ret.getDefinition());
-                            if (fnlLoc == null && hmsMirrorConfig.isResetToDefaultLocation()) {
-                                StringBuilder sbDir = new StringBuilder();
-                                if (hmsMirrorConfig.getTransfer().getCommonStorage() != null) {
-                                    sbDir.append(hmsMirrorConfig.getTransfer().getCommonStorage());
-                                } else {
-                                    sbDir.append(hmsMirrorConfig.getCluster(Environment.RIGHT).getHcfsNamespace());
-                                }
-                                sbDir.append(hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory()).append("/");
-                                sbDir.append(getHmsMirrorCfgService().getResolvedDB(tableMirror.getParent().getName())).append(".db").append("/").append(tableMirror.getName());
-                                fnlLoc = sbDir.toString();
-                            }
-                        }
-                        hmsMirrorConfig.getTranslator().addLocation(tableMirror.getParent().getName(), Environment.RIGHT,
-                                isLoc,
-                                fnlLoc, 1);
-                    } else if (hmsMirrorConfig.getTransfer().getCommonStorage() != null && hmsMirrorConfig.getDataStrategy() != DataStrategyEnum.STORAGE_MIGRATION) {
-                        // LEFT PUSH COMMON
-                        String origLoc = TableUtils.isACID(let) ?
-                                TableUtils.getLocation(let.getName(), tet.getDefinition()) :
-                                TableUtils.getLocation(let.getName(), let.getDefinition());
-                        String newLoc = null;
-                        if (TableUtils.isACID(let)) {
-                            if (hmsMirrorConfig.getMigrateACID().isDowngrade()) {
-                                newLoc = TableUtils.getLocation(ret.getName(), ret.getDefinition());
-                            } else {
-                                newLoc = TableUtils.getLocation(ret.getName(), set.getDefinition());
-                            }
-                        } else {
-                            newLoc = TableUtils.getLocation(ret.getName(), ret.getDefinition());
-                        }
-                        if (newLoc == null && hmsMirrorConfig.isResetToDefaultLocation()) {
-                            String sbDir = hmsMirrorConfig.getTransfer().getCommonStorage() +
-                                    hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory() + "/" +
-                                    getHmsMirrorCfgService().getResolvedDB(tableMirror.getParent().getName()) + ".db" + "/" + tableMirror.getName();
-                            newLoc = sbDir;
-                        }
-                        hmsMirrorConfig.getTranslator().addLocation(tableMirror.getParent().getName(), Environment.LEFT,
-                                origLoc, newLoc, 1);
-                    } else {
-                        // RIGHT PULL
-                        if (TableUtils.isACID(let)
-                                && !hmsMirrorConfig.getMigrateACID().isDowngrade()
-                                && !(hmsMirrorConfig.getDataStrategy() == DataStrategyEnum.STORAGE_MIGRATION)) {
-                            tableMirror.addIssue(Environment.RIGHT, DISTCP_FOR_SO_ACID.getDesc());
-                            rtn.setStatus(ReturnStatus.Status.ERROR);//successful = Boolean.FALSE;
-                        } else if (TableUtils.isACID(let) && hmsMirrorConfig.getMigrateACID().isDowngrade()) {
-                            String rLoc = TableUtils.getLocation(tableMirror.getName(), ret.getDefinition());
-                            if (rLoc == null && hmsMirrorConfig.isResetToDefaultLocation()) {
-                                StringBuilder sbDir = new StringBuilder();
-                                if (hmsMirrorConfig.getTransfer().getCommonStorage() != null) {
-                                    sbDir.append(hmsMirrorConfig.getTransfer().getCommonStorage());
-                                } else {
-                                    sbDir.append(hmsMirrorConfig.getCluster(Environment.RIGHT).getHcfsNamespace());
-                                }
-                                sbDir.append(hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory()).append("/");
-                                sbDir.append(getHmsMirrorCfgService().getResolvedDB(tableMirror.getParent().getName())).append(".db").append("/").append(tableMirror.getName());
-                                rLoc = sbDir.toString();
-                            }
-                            hmsMirrorConfig.getTranslator().addLocation(tableMirror.getParent().getName(), Environment.RIGHT,
-                                    TableUtils.getLocation(tableMirror.getName(), tet.getDefinition()),
-                                    rLoc, 1);
-                        } else {
-                            String rLoc = TableUtils.getLocation(tableMirror.getName(), ret.getDefinition());
-                            if (rLoc == null && hmsMirrorConfig.isResetToDefaultLocation()) {
-                                StringBuilder sbDir = new StringBuilder();
-                                if (hmsMirrorConfig.getTransfer().getCommonStorage() != null) {
-                                    sbDir.append(hmsMirrorConfig.getTransfer().getCommonStorage());
-                                } else {
-                                    sbDir.append(hmsMirrorConfig.getCluster(Environment.RIGHT).getHcfsNamespace());
-                                }
-                                sbDir.append(hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory()).append("/");
-                                sbDir.append(getHmsMirrorCfgService().getResolvedDB(tableMirror.getParent().getName())).append(".db").append("/").append(tableMirror.getName());
-                                rLoc = sbDir.toString();
-                            }
-                            hmsMirrorConfig.getTranslator().addLocation(tableMirror.getParent().getName(), Environment.RIGHT,
-                                    TableUtils.getLocation(tableMirror.getName(), let.getDefinition())
-                                    , rLoc, 1);
-                        }
-                    }
+                if (getExportImportPipelineService().isImporting(tableMirror)) {
+                    // The job thread is done with the EXPORT, the rest follows the IMPORT.
+                    rtn.setStatus(ReturnStatus.Status.NEXTSTEP);
+                } else {
+                    finish(tableMirror, rtn);
                 }
-
-                if (rtn.getStatus() == ReturnStatus.Status.SUCCESS)
-                    tableMirror.setPhaseState(PhaseState.SUCCESS);
-                else
-                    tableMirror.setPhaseState(PhaseState.ERROR);
             } catch (ConnectionException ce) {
                 tableMirror.addIssue(Environment.LEFT, "FAILURE (check logs):" + ce.getMessage());
                 log.error("Connection Error", ce);
@@ -263,12 +199,173 @@ public class TransferService {
             Date end = new Date();
             Long diff = end.getTime() - start.getTime();
             tableMirror.setStageDuration(diff);
-            log.info("Migration complete for {}.{} in {}ms", tableMirror.getParent().getName(), tableMirror.getName(), diff);
+            if (rtn.getStatus() == ReturnStatus.Status.NEXTSTEP) {
+                log.info("Exported {}.{} in {}ms", tableMirror.getParent().getName(), tableMirror.getName(), diff);
+            } else {
+                log.info("Migration complete for {}.{} in {}ms", tableMirror.getParent().getName(), tableMirror.getName(), diff);
+            }
         } catch (Throwable t) {
             rtn.setStatus(ReturnStatus.Status.FATAL);
             rtn.setException(t);
         }
-        return new AsyncResult<>(rtn);
+        return rtn;
+    }
+
+    /*
+    The rest of the transfer once its IMPORT ends, when the transfer handed one to the ExportImportPipelineService.
+    Otherwise the transfer is already complete.
+     */
+    public CompletableFuture<ReturnStatus> followOn(TableMirror tableMirror, ReturnStatus status) {
+        CompletableFuture<Boolean> importing = getExportImportPipelineService() == null ? null
+                : getExportImportPipelineService().importing(tableMirror);
+        if (importing == null) {
+            return CompletableFuture.completedFuture(status);
+        }
+        long started = System.currentTimeMillis();
+        return importing.handle((imported, throwable) -> {
+            try {
+                if (throwable != null) {
+                    throw throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                }
+                status.setStatus(imported ? ReturnStatus.Status.SUCCESS : ReturnStatus.Status.ERROR);
+                finish(tableMirror, status);
+            } catch (Throwable t) {
+                tableMirror.addIssue(Environment.RIGHT, "FAILURE (check logs):" + t.getMessage());
+                log.error("Transfer Error", t);
+                status.setStatus(ReturnStatus.Status.FATAL);
+                status.setException(t);
+            }
+            long diff = System.currentTimeMillis() - started;
+            tableMirror.setStageDuration(tableMirror.getStageDuration() + diff);
+            log.info("Migration complete for {}.{} in {}ms", tableMirror.getParent().getName(), tableMirror.getName(),
+                    tableMirror.getStageDuration());
+            return status;
+        });
+    }
+
+    /*
+    Build the distcp plans of a table that transferred, and record how the transfer ended.
+     */
+    protected void finish(TableMirror tableMirror, ReturnStatus rtn) {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        EnvironmentTable let = tableMirror.getEnvironmentTable(Environment.LEFT);
+        EnvironmentTable tet = tableMirror.getEnvironmentTable(Environment.TRANSFER);
+        EnvironmentTable set = tableMirror.getEnvironmentTable(Environment.SHADOW);
+        EnvironmentTable ret = tableMirror.getEnvironmentTable(Environment.RIGHT);
+
+        // Build out DISTCP workplans.
+        if (rtn.getStatus() == ReturnStatus.Status.SUCCESS && hmsMirrorConfig.getTransfer().getStorageMigration().isDistcp()) {
+            // Build distcp reports.
+            if (hmsMirrorConfig.getTransfer().getIntermediateStorage() != null) {
+                // LEFT PUSH INTERMEDIATE
+                // The Transfer Table should be available.
+                String isLoc = hmsMirrorConfig.getTransfer().getIntermediateStorage();
+                // Deal with extra '/'
+                isLoc = isLoc.endsWith("/") ? isLoc.substring(0, isLoc.length() - 1) : isLoc;
+                isLoc = isLoc + "/" +
+                        hmsMirrorConfig.getTransfer().getRemoteWorkingDirectory() + "/" +
+                        hmsMirrorConfig.getRunMarker() + "/" +
+                        tableMirror.getParent().getName() + ".db/" +
+                        tableMirror.getName();
+
+                hmsMirrorConfig.getTranslator().addLocation(tableMirror.getParent().getName(), Environment.LEFT,
+                        TableUtils.getLocation(tableMirror.getName(), let.getDefinition()),
+                        isLoc, 1);
+                // RIGHT PULL from INTERMEDIATE
+                String fnlLoc = null;
+                if (!set.getDefinition().isEmpty()) {
+                    fnlLoc = TableUtils.getLocation(ret.getName(), set.getDefinition());
+                } else {
+                    fnlLoc = TableUtils.getLocation(tableMirror.getName(), ret.getDefinition());
+                    if (fnlLoc == null && hmsMirrorConfig.isResetToDefaultLocation()) {
+                        StringBuilder sbDir = new StringBuilder();
+                        if (hmsMirrorConfig.getTransfer().getCommonStorage() != null) {
+                            sbDir.append(hmsMirrorConfig.getTransfer().getCommonStorage());
+                        } else {
+                            sbDir.append(hmsMirrorConfig.getCluster(Environment.RIGHT).getHcfsNamespace());
+                        }
+                        sbDir.append(hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory()).append("/");
+                        sbDir.append(getHmsMirrorCfgService().getResolvedDB(tableMirror.getParent().getName())).append(".db").append("/").append(tableMirror.getName());
+                        fnlLoc = sbDir.toString();
+                    }
+                }
+                hmsMirrorConfig.getTranslator().addLocation(tableMirror.getParent().getName(), Environment.RIGHT,
+                        isLoc,
+                        fnlLoc, 1);
+            } else if (hmsMirrorConfig.getTransfer().getCommonStorage() != null && hmsMirrorConfig.getDataStrategy() != DataStrategyEnum.STORAGE_MIGRATION) {
+                // LEFT PUSH COMMON
+                String origLoc = TableUtils.isACID(let) ?
+                        TableUtils.getLocation(let.getName(), tet.getDefinition()) :
+                        TableUtils.getLocation(let.getName(), let.getDefinition());
+                String newLoc = null;
+                if (TableUtils.isACID(let)) {
+                    if (hmsMirrorConfig.getMigrateACID().isDowngrade()) {
+                        newLoc = TableUtils.getLocation(ret.getName(), ret.getDefinition());
+                    } else {
+                        newLoc = TableUtils.getLocation(ret.getName(), set.getDefinition());
+                    }
+                } else {
+                    newLoc = TableUtils.getLocation(ret.getName(), ret.getDefinition());
+                }
+                if (newLoc == null && hmsMirrorConfig.isResetToDefaultLocation()) {
+                    String sbDir = hmsMirrorConfig.getTransfer().getCommonStorage() +
+                            hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory() + "/" +
+                            getHmsMirrorCfgService().getResolvedDB(tableMirror.getParent().getName()) + ".db" + "/" + tableMirror.getName();
+                    newLoc = sbDir;
+                }
+                hmsMirrorConfig.getTranslator().addLocation(tableMirror.getParent().getName(), Environment.LEFT,
+                        origLoc, newLoc, 1);
+            } else {
+                // RIGHT PULL
+                if (TableUtils.isACID(let)
+                        && !hmsMirrorConfig.getMigrateACID().isDowngrade()
+                        && !(hmsMirrorConfig.getDataStrategy() == DataStrategyEnum.STORAGE_MIGRATION)) {
+                    tableMirror.addIssue(Environment.RIGHT, DISTCP_FOR_SO_ACID.getDesc());
+                    rtn.setStatus(ReturnStatus.Status.ERROR);//successful = Boolean.FALSE;
+                } else if (TableUtils.isACID(let) && hmsMirrorConfig.getMigrateACID().isDowngrade()) {
+                    String rLoc = TableUtils.getLocation(tableMirror.getName(), ret.getDefinition());
+                    if (rLoc == null && hmsMirrorConfig.isResetToDefaultLocation()) {
+                        StringBuilder sbDir = new StringBuilder();
+                        if (hmsMirrorConfig.getTransfer().getCommonStorage() != null) {
+                            sbDir.append(hmsMirrorConfig.getTransfer().getCommonStorage());
+                        } else {
+                            sbDir.append(hmsMirrorConfig.getCluster(Environment.RIGHT).getHcfsNamespace());
+                        }
+                        sbDir.append(hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory()).append("/");
+                        sbDir.append(getHmsMirrorCfgService().getResolvedDB(tableMirror.getParent().getName())).append(".db").append("/").append(tableMirror.getName());
+                        rLoc = sbDir.toString();
+                    }
+                    hmsMirrorConfig.getTranslator().addLocation(tableMirror.getParent().getName(), Environment.RIGHT,
+                            TableUtils.getLocation(tableMirror.getName(), tet.getDefinition()),
+                            rLoc, 1);
+                } else {
+                    String rLoc = TableUtils.getLocation(tableMirror.getName(), ret.getDefinition());
+                    if (rLoc == null && hmsMirrorConfig.isResetToDefaultLocation()) {
+                        StringBuilder sbDir = new StringBuilder();
+                        if (hmsMirrorConfig.getTransfer().getCommonStorage() != null) {
+                            sbDir.append(hmsMirrorConfig.getTransfer().getCommonStorage());
+                        } else {
+                            sbDir.append(hmsMirrorConfig.getCluster(Environment.RIGHT).getHcfsNamespace());
+                        }
+                        sbDir.append(hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory()).append("/");
+                        sbDir.append(getHmsMirrorCfgService().getResolvedDB(tableMirror.getParent().getName())).append(".db").append("/").append(tableMirror.getName());
+                        rLoc = sbDir.toString();
+                    }
+                    hmsMirrorConfig.getTranslator().addLocation(tableMirror.getParent().getName(), Environment.RIGHT,
+                            TableUtils.getLocation(tableMirror.getName(), let.getDefinition())
+                            , rLoc, 1);
+                }
+            }
+        }
+
+        if (rtn.getStatus() == ReturnStatus.Status.SUCCESS) {
+            tableMirror.setPhaseState(PhaseState.SUCCESS);
+            if (getSyncFingerprintService().isEnabled()) {
+                getSyncFingerprintService().recordSuccess(tableMirror);
+            }
+        } else
+            tableMirror.setPhaseState(PhaseState.ERROR);
+        getCheckpointJournalService().phase(tableMirror);
     }
 
 }
@@ -24,10 +24,13 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static com.cloudera.utils.hms.mirror.MessageCode.LOCATION_NOT_MATCH_WAREHOUSE;
 import static com.cloudera.utils.hms.mirror.MessageCode.RDL_W_EPL_NO_MAPPING;
@@ -37,8 +40,16 @@ import static com.cloudera.utils.hms.mirror.MirrorConf.*;
 @Slf4j
 public class TranslatorService {
 
+    public static final String GLM_HITS = "translator.glm.hits";
+    public static final String GLM_MISSES = "translator.glm.misses";
+    // Partitions per unit of work when translating the partition locations of a table.
+    public static final int PARTITION_CHUNK_SIZE = 5000;
+
     @Getter
     private HmsMirrorCfgService hmsMirrorCfgService = null;
+    @Getter
+    private RunStatistics runStatistics = null;
+    private ForkJoinPool translationPool = null;
 
     /**
      * @param consolidationLevel how far up the directory hierarchy to go to build the distcp list based on the sources
@@ -46,16 +57,13 @@ public class TranslatorService {
      * @return A map of databases.  Each database will have a map that has 1 or more 'targets' and 'x' sources for each
      * target.
      */
-    public synchronized Map<String, Map<String, Set<String>>> buildDistcpList(String database, Environment environment, int consolidationLevel) {
+    public Map<String, Map<String, Set<String>>> buildDistcpList(String database, Environment environment, int consolidationLevel) {
         Map<String, Map<String, Set<String>>> rtn = new TreeMap<>();
 
-        // get the map for a db.
-        Set<String> databases = getHmsMirrorCfgService().getHmsMirrorConfig().getTranslator().getDbLocationMap().keySet();
-
         // get the map.entry
         Map<String, Set<String>> reverseMap = new TreeMap<>();
-        // Get a static view of set to avoid concurrent modification.
-        Set<EnvironmentMap.TranslationLevel> dbTranslationLevel = new HashSet<>(getHmsMirrorCfgService().getHmsMirrorConfig().getTranslator().getDbLocationMap(database, environment));
+        // The registry is concurrent, so no copy is needed to read it while tables are still being added.
+        Set<EnvironmentMap.TranslationLevel> dbTranslationLevel = getHmsMirrorCfgService().getHmsMirrorConfig().getTranslator().getDbLocationMap(database, environment);
 
         Map<String, String> dbLocationMap = new TreeMap<>();
 
@@ -88,31 +96,69 @@ public class TranslatorService {
 
     public String buildPartitionAddStatement(EnvironmentTable environmentTable) {
         StringBuilder sbPartitionDetails = new StringBuilder();
-        Map<String, String> partitions = new HashMap<String, String>();
-        // Fix formatting of partition names.
         for (Map.Entry<String, String> item : environmentTable.getPartitions().entrySet()) {
-            String partitionName = item.getKey();
-            String partSpec = TableUtils.toPartitionSpec(partitionName);
-            partitions.put(partSpec, item.getValue());
+            appendPartitionAdd(sbPartitionDetails, item.getKey(), item.getValue());
         }
-        // Transfer partitions map to a string using streaming
-        partitions.entrySet().stream().forEach(e -> sbPartitionDetails.append("\tPARTITION (")
-                .append(e.getKey()).append(") LOCATION '").append(e.getValue()).append("' \n"));
         return sbPartitionDetails.toString();
     }
 
+    /*
+    Add the 'ALTER TABLE ... ADD PARTITION' sql for the tables partitions with 'batchSize' partitions in each
+    statement (all of them when 0).  The statements are built one batch at a time and each one stands on its own
+    ('IF NOT EXISTS'), so a failed batch can be rerun without the others.
+     */
+    public void addPartitionAddSql(EnvironmentTable environmentTable, int batchSize) {
+        Map<String, String> partitions = environmentTable.getPartitions();
+        if (partitions == null || partitions.isEmpty()) {
+            return;
+        }
+        int perBatch = batchSize <= 0 ? partitions.size() : batchSize;
+        int batches = (partitions.size() + perBatch - 1) / perBatch;
+        int batch = 0;
+        int count = 0;
+        StringBuilder sbPartitionDetails = new StringBuilder();
+        for (Map.Entry<String, String> item : partitions.entrySet()) {
+            appendPartitionAdd(sbPartitionDetails, item.getKey(), item.getValue());
+            if (++count == perBatch) {
+                addPartitionAddBatch(environmentTable, sbPartitionDetails.toString(), ++batch, batches);
+                sbPartitionDetails = new StringBuilder();
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            addPartitionAddBatch(environmentTable, sbPartitionDetails.toString(), ++batch, batches);
+        }
+    }
+
+    private static void addPartitionAddBatch(EnvironmentTable environmentTable, String tableParts, int batch, int batches) {
+        String description = ALTER_TABLE_PARTITION_ADD_LOCATION_DESC;
+        if (batches > 1) {
+            description = description + " (" + batch + " of " + batches + ")";
+        }
+        String addPartSql = MessageFormat.format(ALTER_TABLE_PARTITION_ADD_LOCATION, environmentTable.getName(), tableParts);
+        environmentTable.addSql(description, addPartSql);
+    }
+
+    private static void appendPartitionAdd(StringBuilder sbPartitionDetails, String partitionName, String location) {
+        // Fix formatting of partition names.
+        sbPartitionDetails.append("\tPARTITION (").append(TableUtils.toPartitionSpec(partitionName))
+                .append(") LOCATION '").append(location).append("' \n");
+    }
+
     public String processGlobalLocationMap(String originalLocation) {
         String newLocation = null;
-        if (!getHmsMirrorCfgService().getHmsMirrorConfig().getTranslator().getOrderedGlobalLocationMap().isEmpty()) {
-            log.debug("Checking location: {} for replacement element in global location map.", originalLocation);
-            for (String key : getHmsMirrorCfgService().getHmsMirrorConfig().getTranslator().getOrderedGlobalLocationMap().keySet()) {
-                if (originalLocation.startsWith(key)) {
-                    String rLoc = getHmsMirrorCfgService().getHmsMirrorConfig().getTranslator().getOrderedGlobalLocationMap().get(key);
-                    newLocation = originalLocation.replace(key, rLoc);
-                    log.info("Location Map Found. {}:{} New Location: {}", key, rLoc, newLocation);
-                    // Stop Processing
-                    break;
+        LocationMapTrie glm = getHmsMirrorCfgService().getHmsMirrorConfig().getTranslator().getGlobalLocationTrie();
+        if (!glm.isEmpty()) {
+            log.trace("Checking location: {} for replacement element in global location map.", originalLocation);
+            // Only the matched prefix is replaced, not every occurrence of it in the location.
+            newLocation = glm.translate(originalLocation);
+            if (newLocation != null) {
+                log.debug("Location Map Found. {} New Location: {}", originalLocation, newLocation);
+                if (runStatistics != null) {
+                    runStatistics.increment(GLM_HITS);
                 }
+            } else if (runStatistics != null) {
+                runStatistics.increment(GLM_MISSES);
             }
         }
         if (newLocation != null)
@@ -126,13 +172,25 @@ public class TranslatorService {
         this.hmsMirrorCfgService = hmsMirrorCfgService;
     }
 
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+    public ForkJoinPool getTranslationPool() {
+        return translationPool == null ? ForkJoinPool.commonPool() : translationPool;
+    }
+
+    @Autowired
+    public void setTranslationPool(@Qualifier("translationPool") ForkJoinPool translationPool) {
+        this.translationPool = translationPool;
+    }
+
     public Boolean translatePartitionLocations(TableMirror tblMirror) {
         Boolean rtn = Boolean.TRUE;
         HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
 
 //        Config config = EnvironmentConnectionPools.getInstance().getConfig();
-        Map<String, String> dbRef = tblMirror.getParent().getDBDefinition(Environment.RIGHT);
-        Boolean chkLocation = hmsMirrorConfig.getTransfer().getWarehouse().getManagedDirectory() != null && hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory() != null;
         if (hmsMirrorConfig.isEvaluatePartitionLocation()
                 && tblMirror.getEnvironmentTable(Environment.LEFT).getPartitioned()
                 && (tblMirror.getStrategy() == DataStrategyEnum.SCHEMA_ONLY)) {
@@ -144,75 +202,99 @@ public class TranslatorService {
              */
             Map<String, String> partitionLocationMap = target.getPartitions();
             if (partitionLocationMap != null && !partitionLocationMap.isEmpty()) {
+                PartitionTranslation translation = new PartitionTranslation(tblMirror, partitionLocationMap);
+                if (translation.size() > PARTITION_CHUNK_SIZE) {
+                    getTranslationPool().invoke(new PartitionChunkTask(translation, 0, translation.size()));
+                } else {
+                    translatePartitions(translation, 0, translation.size());
+                }
+
+                // Apply the results in the order of the partitions.
+                int i = 0;
                 for (Map.Entry<String, String> entry : partitionLocationMap.entrySet()) {
-                    String partitionLocation = entry.getValue();
-                    String partSpec = entry.getKey();
-                    int level = StringUtils.countMatches(partSpec, "/");
-                    // Increase level to the table, since we're not filter any tables.  It's assumed that
-                    //   we're pulling the whole DB.
-                    if (!hmsMirrorConfig.getFilter().isTableFiltering()) {
-                        level++;
+                    if (translation.newLocations[i] != null) {
+                        entry.setValue(translation.newLocations[i]);
                     }
-                    if (partitionLocation == null || partitionLocation.isEmpty() ||
-                            partitionLocation.equals(NOT_SET)) {
-                        rtn = Boolean.FALSE;
+                    i++;
+                }
+                List<EnvironmentMap.TranslationLevel> locations = new ArrayList<>(translation.size());
+                for (PartitionChunk chunk : translation.chunks) {
+                    if (chunk == null) {
                         continue;
                     }
-                    // Get the relative dir.
-                    String relativeDir = partitionLocation.replace(hmsMirrorConfig.getCluster(Environment.LEFT).getHcfsNamespace(), "");
-                    // Check the Global Location Map for a match.
-                    String mappedDir = processGlobalLocationMap(relativeDir);
-                    if (relativeDir.equals(mappedDir) && hmsMirrorConfig.isResetToDefaultLocation()) {
-                        // This is a problem, since we've asked to translate the partitions but didn't find a map, nothing changed.
-                        // Which would be inconsistent with the table location details.
-                        String errMsg = MessageFormat.format(RDL_W_EPL_NO_MAPPING.getDesc(), entry.getKey(), entry.getValue());
-                        tblMirror.addIssue(Environment.RIGHT, errMsg);
-                        rtn = Boolean.FALSE;
-                    }
-                    // Check for 'common storage'
-                    String newPartitionLocation = null;
-                    if (hmsMirrorConfig.getTransfer().getCommonStorage() != null) {
-                        newPartitionLocation = hmsMirrorConfig.getTransfer().getCommonStorage() + mappedDir;
-                    } else {
-                        newPartitionLocation = hmsMirrorConfig.getCluster(Environment.RIGHT).getHcfsNamespace() + mappedDir;
+                    for (String issue : chunk.issues) {
+                        tblMirror.addIssue(Environment.RIGHT, issue);
                     }
-                    entry.setValue(newPartitionLocation);
-                    // For distcp.
-                    hmsMirrorConfig.getTranslator().addLocation(getHmsMirrorCfgService().getResolvedDB(tblMirror.getParent().getName()), Environment.RIGHT, partitionLocation,
-                            newPartitionLocation, ++level);
-
-                    // Check and warn against warehouse locations if specified.
-                    if (hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory() != null &&
-                            hmsMirrorConfig.getTransfer().getWarehouse().getManagedDirectory() != null) {
-                        if (TableUtils.isExternal(tblMirror.getEnvironmentTable(Environment.LEFT))) {
-                            // We store the DB LOCATION in the RIGHT dbDef so we can avoid changing the original LEFT
-                            if (!newPartitionLocation.startsWith(tblMirror.getParent().getDBDefinition(Environment.RIGHT).get(DB_LOCATION))) {
-                                // Set warning that even though you've specified to warehouse directories, the current configuration
-                                // will NOT place it in that directory.
-                                String msg = MessageFormat.format(LOCATION_NOT_MATCH_WAREHOUSE.getDesc(), "partition",
-                                        tblMirror.getParent().getDBDefinition(Environment.RIGHT).get(DB_LOCATION),
-                                        newPartitionLocation);
-                                tblMirror.addIssue(Environment.RIGHT, msg);
-                            }
-                        } else {
-                            if (!newPartitionLocation.startsWith(tblMirror.getParent().getDBDefinition(Environment.RIGHT).get(DB_MANAGED_LOCATION))) {
-                                // Set warning that even though you've specified to warehouse directories, the current configuration
-                                // will NOT place it in that directory.
-                                String msg = MessageFormat.format(LOCATION_NOT_MATCH_WAREHOUSE.getDesc(), "partition",
-                                        tblMirror.getParent().getDBDefinition(Environment.RIGHT).get(DB_MANAGED_LOCATION),
-                                        newPartitionLocation);
-                                tblMirror.addIssue(Environment.RIGHT, msg);
-                            }
-                        }
+                    locations.addAll(chunk.locations);
+                    if (!chunk.success) {
+                        rtn = Boolean.FALSE;
                     }
-
                 }
+                // For distcp.  Added once per table.
+                hmsMirrorConfig.getTranslator().addLocations(translation.database, Environment.RIGHT, locations);
             }
             // end partitions location conversion.
         }
         return rtn;
     }
 
+    /*
+    Translate the partitions in [from, to) into the chunk that starts at 'from'.
+     */
+    private void translatePartitions(PartitionTranslation translation, int from, int to) {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        PartitionChunk chunk = new PartitionChunk();
+        translation.chunks[from / PARTITION_CHUNK_SIZE] = chunk;
+        String leftNamespace = hmsMirrorConfig.getCluster(Environment.LEFT).getHcfsNamespace();
+        String targetNamespace = hmsMirrorConfig.getTransfer().getCommonStorage() != null ?
+                hmsMirrorConfig.getTransfer().getCommonStorage() :
+                hmsMirrorConfig.getCluster(Environment.RIGHT).getHcfsNamespace();
+        boolean checkWarehouse = hmsMirrorConfig.getTransfer().getWarehouse().getExternalDirectory() != null &&
+                hmsMirrorConfig.getTransfer().getWarehouse().getManagedDirectory() != null;
+
+        for (int i = from; i < to; i++) {
+            String partitionLocation = translation.locations[i];
+            String partSpec = translation.partSpecs[i];
+            int level = StringUtils.countMatches(partSpec, "/");
+            // Increase level to the table, since we're not filter any tables.  It's assumed that
+            //   we're pulling the whole DB.
+            if (!hmsMirrorConfig.getFilter().isTableFiltering()) {
+                level++;
+            }
+            if (partitionLocation == null || partitionLocation.isEmpty() ||
+                    partitionLocation.equals(NOT_SET)) {
+                chunk.success = Boolean.FALSE;
+                continue;
+            }
+            // Get the relative dir.
+            String relativeDir = partitionLocation.replace(leftNamespace, "");
+            // Check the Global Location Map for a match.
+            String mappedDir = processGlobalLocationMap(relativeDir);
+            if (relativeDir.equals(mappedDir) && hmsMirrorConfig.isResetToDefaultLocation()) {
+                // This is a problem, since we've asked to translate the partitions but didn't find a map, nothing changed.
+                // Which would be inconsistent with the table location details.
+                chunk.issues.add(MessageFormat.format(RDL_W_EPL_NO_MAPPING.getDesc(), partSpec, partitionLocation));
+                chunk.success = Boolean.FALSE;
+            }
+            // Check for 'common storage'
+            String newPartitionLocation = targetNamespace + mappedDir;
+            translation.newLocations[i] = newPartitionLocation;
+            // For distcp.
+            chunk.locations.add(new EnvironmentMap.TranslationLevel(partitionLocation, newPartitionLocation, ++level));
+
+            // Check and warn against warehouse locations if specified.
+            if (checkWarehouse) {
+                // We store the DB LOCATION in the RIGHT dbDef so we can avoid changing the original LEFT
+                if (!newPartitionLocation.startsWith(translation.warehouseLocation)) {
+                    // Set warning that even though you've specified to warehouse directories, the current configuration
+                    // will NOT place it in that directory.
+                    chunk.issues.add(MessageFormat.format(LOCATION_NOT_MATCH_WAREHOUSE.getDesc(), "partition",
+                            translation.warehouseLocation, newPartitionLocation));
+                }
+            }
+        }
+    }
+
     public String translateTableLocation(TableMirror tableMirror, String originalLocation, int level, String partitionSpec) throws Exception {
         String rtn = originalLocation;
         StringBuilder dirBuilder = new StringBuilder();
@@ -320,4 +402,74 @@ public class TranslatorService {
         return dirBuilder.toString().trim();
     }
 
+
+    /*
+    The partitions of a table being translated.  The chunks write to their own range of 'newLocations' and keep
+    their issues and distcp locations to themselves; they're merged in partition order once the table is done.
+     */
+    private class PartitionTranslation {
+        private final String database;
+        private final String warehouseLocation;
+        private final String[] partSpecs;
+        private final String[] locations;
+        private final String[] newLocations;
+        private final PartitionChunk[] chunks;
+
+        PartitionTranslation(TableMirror tblMirror, Map<String, String> partitionLocationMap) {
+            this.database = getHmsMirrorCfgService().getResolvedDB(tblMirror.getParent().getName());
+            // External tables check against the db LOCATION, managed against the MANAGEDLOCATION.
+            Map<String, String> dbDefinition = tblMirror.getParent().getDBDefinition(Environment.RIGHT);
+            this.warehouseLocation = dbDefinition == null ? null : dbDefinition
+                    .get(TableUtils.isExternal(tblMirror.getEnvironmentTable(Environment.LEFT)) ? DB_LOCATION : DB_MANAGED_LOCATION);
+            int size = partitionLocationMap.size();
+            this.partSpecs = new String[size];
+            this.locations = new String[size];
+            this.newLocations = new String[size];
+            this.chunks = new PartitionChunk[(size + PARTITION_CHUNK_SIZE - 1) / PARTITION_CHUNK_SIZE];
+            int i = 0;
+            for (Map.Entry<String, String> entry : partitionLocationMap.entrySet()) {
+                partSpecs[i] = entry.getKey();
+                locations[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        int size() {
+            return partSpecs.length;
+        }
+    }
+
+    private static class PartitionChunk {
+        private final List<String> issues = new ArrayList<>();
+        private final List<EnvironmentMap.TranslationLevel> locations = new ArrayList<>();
+        private boolean success = Boolean.TRUE;
+    }
+
+    /*
+    Splits the partitions down to PARTITION_CHUNK_SIZE ranges (on chunk boundaries) for the translation pool.
+     */
+    private class PartitionChunkTask extends RecursiveAction {
+        private final PartitionTranslation translation;
+        private final int from;
+        private final int to;
+
+        PartitionChunkTask(PartitionTranslation translation, int from, int to) {
+            this.translation = translation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int chunks = (to - from + PARTITION_CHUNK_SIZE - 1) / PARTITION_CHUNK_SIZE;
+            if (chunks <= 1) {
+                translatePartitions(translation, from, to);
+            } else {
+                int mid = from + (chunks / 2) * PARTITION_CHUNK_SIZE;
+                invokeAll(new PartitionChunkTask(translation, from, mid),
+                        new PartitionChunkTask(translation, mid, to));
+            }
+        }
+    }
+
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.DBMirror;
+import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
+import com.cloudera.utils.hms.mirror.Optimization;
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import com.cloudera.utils.hms.mirror.TableMirror;
+import com.cloudera.utils.hms.mirror.TransferCost;
+import com.cloudera.utils.hms.stage.PrioritizedTask;
+import com.cloudera.utils.hms.stage.ReturnStatus;
+import com.cloudera.utils.hms.stage.WorkflowStage;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+Completion driven workflow for the tables in a run.  Each stage is submitted to its thread pool and the completion
+of a tables metadata stage directly triggers its transfer stage.  No polling of the futures is required by the caller,
+who only needs to wait on the returned futures.
+
+The work is admitted through a pipeline of fixed capacity (see Optimization.pipelineCapacity).  A database holds
+its place while its tables are discovered, a table from the submit of its metadata stage to the end of its
+transfer.  The caller waits for room, so the pools only ever hold the queued work of the admitted tables.
+ */
+@Service
+@Slf4j
+@Getter
+public class WorkflowService {
+
+    private RunStatistics runStatistics;
+    private TableService tableService;
+    private TransferService transferService;
+    private TaskExecutor jobThreadPool;
+    private TaskExecutor metadataThreadPool;
+    private HmsMirrorCfgService hmsMirrorCfgService;
+
+    private Semaphore pipeline = null;
+    private int pipelineCapacity = 0;
+    private final Map<String, AtomicInteger> scheduledByDatabase = new ConcurrentHashMap<>();
+
+    /*
+    Take a place in the pipeline, waiting while it's full.  The place is given back by 'leavePipelineOn'.
+     */
+    public void enterPipeline() {
+        Semaphore pipeline = getPipeline();
+        if (!pipeline.tryAcquire()) {
+            long started = System.currentTimeMillis();
+            getRunStatistics().increment("pipeline.waits");
+            pipeline.acquireUninterruptibly();
+            getRunStatistics().add("pipeline.wait.ms", System.currentTimeMillis() - started);
+        }
+        getRunStatistics().max("pipeline.inflight.peak", pipelineCapacity - pipeline.availablePermits());
+    }
+
+    /*
+    Give the place back when the work it was taken for is done, however it ends.
+     */
+    public CompletableFuture<ReturnStatus> leavePipelineOn(CompletableFuture<ReturnStatus> future) {
+        return future.whenComplete((status, throwable) -> getPipeline().release());
+    }
+
+    protected synchronized Semaphore getPipeline() {
+        if (pipeline == null) {
+            HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+            pipelineCapacity = hmsMirrorConfig.getOptimization().pipelineCapacity(hmsMirrorConfig.getTransfer().getConcurrency());
+            pipeline = new Semaphore(pipelineCapacity);
+            getRunStatistics().set("pipeline.capacity", pipelineCapacity);
+            log.info("Pipeline capacity: {}", pipelineCapacity);
+        }
+        return pipeline;
+    }
+
+    /*
+    Collect the tables for the database on the 'metadataThreadPool'.
+     */
+    public CompletableFuture<ReturnStatus> getTables(DBMirror dbMirror) {
+        return submit(WorkflowStage.TABLES, getMetadataThreadPool(), () -> getTableService().getTables(dbMirror));
+    }
+
+    /*
+    Gather the table metadata on the 'metadataThreadPool'.
+     */
+    public CompletableFuture<ReturnStatus> getTableMetadata(TableMirror tableMirror) {
+        return submit(WorkflowStage.METADATA, getMetadataThreadPool(), () -> getTableService().getTableMetadata(tableMirror));
+    }
+
+    /*
+    Chain the transfer stage to the metadata stage.  The transfer is submitted to the 'jobThreadPool' as soon as the
+    metadata for the table is SUCCESSFUL.  The metadata status is moved to NEXTSTEP to identify that the transfer
+    has been launched.  Other statuses are passed through and the transfer is NOT launched.  A transfer that leaves
+    its IMPORT queued (see ExportImportPipelineService) frees its job thread and completes with the IMPORT.
+     */
+    public CompletableFuture<ReturnStatus> transferOnMetadata(CompletableFuture<ReturnStatus> metadataFuture) {
+        return metadataFuture.thenCompose(metadataStatus -> {
+            if (metadataStatus != null && metadataStatus.getStatus() == ReturnStatus.Status.SUCCESS) {
+                metadataStatus.setStatus(ReturnStatus.Status.NEXTSTEP);
+                TableMirror tableMirror = metadataStatus.getTableMirror();
+                return submit(WorkflowStage.TRANSFER, getJobThreadPool(), transferPriority(tableMirror),
+                        () -> getTransferService().transfer(tableMirror))
+                        .thenCompose(transferStatus -> getTransferService().followOn(tableMirror, transferStatus))
+                        .whenComplete((status, throwable) -> transferDone(tableMirror));
+            } else {
+                return CompletableFuture.completedFuture(metadataStatus);
+            }
+        });
+    }
+
+    /*
+    The place of the transfer among those waiting for a thread.  0 (submit order) unless 'largestFirst' is set.
+    With 'largestFirstFairShare', the share is over the database's transfers not yet done.
+     */
+    protected double transferPriority(TableMirror tableMirror) {
+        HmsMirrorConfig hmsMirrorConfig = getHmsMirrorCfgService().getHmsMirrorConfig();
+        Optimization optimization = hmsMirrorConfig.getOptimization();
+        if (!optimization.isLargestFirst()) {
+            return 0;
+        }
+        double rtn = TransferCost.estimate(tableMirror, hmsMirrorConfig.getDataStrategy(),
+                hmsMirrorConfig.getTransfer().getStorageMigration().isDistcp());
+        if (optimization.isLargestFirstFairShare()) {
+            int scheduled = scheduledByDatabase.computeIfAbsent(tableMirror.getParent().getName(),
+                    k -> new AtomicInteger(0)).getAndIncrement();
+            rtn = rtn / (1 + scheduled);
+        }
+        return rtn;
+    }
+
+    /*
+    The transfer is no longer scheduled, so it doesn't count against its database's share.
+     */
+    protected void transferDone(TableMirror tableMirror) {
+        AtomicInteger scheduled = scheduledByDatabase.get(tableMirror.getParent().getName());
+        if (scheduled != null) {
+            scheduled.decrementAndGet();
+        }
+    }
+
+    protected CompletableFuture<ReturnStatus> submit(WorkflowStage stage, TaskExecutor executor, Supplier<ReturnStatus> task) {
+        return submit(stage, executor, 0, task);
+    }
+
+    protected CompletableFuture<ReturnStatus> submit(WorkflowStage stage, TaskExecutor executor, double priority,
+                                                     Supplier<ReturnStatus> task) {
+        final long submitted = System.currentTimeMillis();
+        getRunStatistics().increment(stage.key("submitted"));
+        return CompletableFuture.supplyAsync(() -> {
+            long started = System.currentTimeMillis();
+            // Time spent waiting for a thread in the pool.  For TRANSFER, this is the time between the metadata
+            // completing and the transfer starting.
+            getRunStatistics().add(stage.key("wait.ms"), started - submitted);
+            ReturnStatus rtn = null;
+            try {
+                rtn = task.get();
+            } catch (Throwable t) {
+                log.error("Issue running stage: {}", stage, t);
+                rtn = new ReturnStatus();
+                rtn.setStatus(ReturnStatus.Status.FATAL);
+                rtn.setException(t);
+            }
+            getRunStatistics().add(stage.key("elapsed.ms"), System.currentTimeMillis() - started);
+            // Sampled as each task ends, so the high mark of the heap (garbage included) while the stage runs.
+            getRunStatistics().max(stage.key("heap.peak.mb"), heapUsedMb());
+            if (rtn != null && (rtn.getStatus() == ReturnStatus.Status.ERROR || rtn.getStatus() == ReturnStatus.Status.FATAL)) {
+                getRunStatistics().increment(stage.key("errors"));
+            } else {
+                getRunStatistics().increment(stage.key("completed"));
+            }
+            return rtn;
+        }, runnable -> executor.execute(new PrioritizedTask(priority, runnable)));
+    }
+
+    protected static long heapUsedMb() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024);
+    }
+
+    @Autowired
+    public void setHmsMirrorCfgService(HmsMirrorCfgService hmsMirrorCfgService) {
+        this.hmsMirrorCfgService = hmsMirrorCfgService;
+    }
+
+    @Autowired
+    public void setJobThreadPool(@Qualifier("jobThreadPool") TaskExecutor jobThreadPool) {
+        this.jobThreadPool = jobThreadPool;
+    }
+
+    @Autowired
+    public void setMetadataThreadPool(@Qualifier("metadataThreadPool") TaskExecutor metadataThreadPool) {
+        this.metadataThreadPool = metadataThreadPool;
+    }
+
+    @Autowired
+    public void setRunStatistics(RunStatistics runStatistics) {
+        this.runStatistics = runStatistics;
+    }
+
+    @Autowired
+    public void setTableService(TableService tableService) {
+        this.tableService = tableService;
+    }
+
+    @Autowired
+    public void setTransferService(TransferService transferService) {
+        this.transferService = transferService;
+    }
+
+}
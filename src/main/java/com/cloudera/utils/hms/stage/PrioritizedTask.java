@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.stage;
+
+import lombok.Getter;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+A task for a pool whose queue orders its work (see ThreadPoolConfigurator).  The highest priority runs first and
+equal priorities run in the order they were submitted, so a queue of all zero priorities is plain FIFO.
+ */
+@Getter
+public class PrioritizedTask implements Runnable {
+
+    /*
+    For the queue.  Tasks that aren't a PrioritizedTask are taken as priority 0, submitted before any that are.
+     */
+    public static final Comparator<Runnable> ORDER = Comparator
+            .comparingDouble((Runnable r) -> r instanceof PrioritizedTask ? -((PrioritizedTask) r).getPriority() : 0)
+            .thenComparingLong(r -> r instanceof PrioritizedTask ? ((PrioritizedTask) r).getSequence() : 0);
+
+    private static final AtomicLong SEQUENCE = new AtomicLong(0);
+
+    private final double priority;
+    private final long sequence = SEQUENCE.incrementAndGet();
+    private final Runnable task;
+
+    public PrioritizedTask(double priority, Runnable task) {
+        this.priority = priority;
+        this.task = task;
+    }
+
+    @Override
+    public void run() {
+        task.run();
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.stage;
+
+/*
+The stages a table moves through in the application workflow.  Used to key the per-stage counters.
+ */
+public enum WorkflowStage {
+    TABLES,
+    METADATA,
+    TRANSFER;
+
+    public String key(String counter) {
+        return "stage." + name().toLowerCase() + "." + counter;
+    }
+
+}
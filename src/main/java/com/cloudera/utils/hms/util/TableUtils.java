@@ -279,12 +279,10 @@ public class TableUtils {
     public static int numOfBuckets(EnvironmentTable envTable) {
         int rtn = 0;
         log.debug("Looking to see if table has buckets");
-        for (String line : envTable.getDefinition()) {
-            if (line.startsWith(INTO)) {
-                String[] bucketParts = line.split(" ");
-                rtn = Integer.parseInt(bucketParts[1]);
-                break;
-            }
+        String line = TableDefinition.of(envTable.getDefinition()).getBucketsLine();
+        if (line != null) {
+            String[] bucketParts = line.split(" ");
+            rtn = Integer.parseInt(bucketParts[1]);
         }
         return rtn;
     }
@@ -405,20 +403,11 @@ public class TableUtils {
     }
 
     public static Boolean isManaged(EnvironmentTable envTable) {
-        Boolean rtn = Boolean.FALSE;
         log.trace("Checking if table '{}' is 'managed'", envTable.getName());
         if (envTable.getDefinition() == null) {
             throw new RuntimeException("Table definition for " + envTable.getName() + " is null.");
         }
-        if (envTable.getDefinition() != null) {
-            for (String line : envTable.getDefinition()) {
-                if (line != null && line.startsWith(CREATE_TABLE)) {
-                    rtn = Boolean.TRUE;
-                    break;
-                }
-            }
-        }
-        return rtn;
+        return TableDefinition.of(envTable.getDefinition()).isManaged();
     }
 
     public static void stripDatabase(String tableName, List<String> tableDefinition) {
@@ -538,30 +527,16 @@ public class TableUtils {
     Check that its a Hive table and not a connector like HBase, Kafka, RDBMS, etc.
      */
     public static Boolean isHiveNative(EnvironmentTable envTable) {
-        Boolean rtn = Boolean.FALSE;
         log.trace("Checking if table '{}' is 'native' (not a connector [HBase, Kafka, etc])", envTable.getName());
         if (envTable.getDefinition() == null) {
             throw new RuntimeException("Table definition for " + envTable.getName() + " is null.");
         }
-        for (String line : envTable.getDefinition()) {
-            if (line != null && line.trim().startsWith(LOCATION)) {
-                rtn = Boolean.TRUE;
-                break;
-            }
-        }
-        return rtn;
+        return TableDefinition.of(envTable.getDefinition()).hasLocation();
     }
 
     public static Boolean isExternal(EnvironmentTable envTable) {
-        Boolean rtn = Boolean.FALSE;
         log.trace("Checking if table '{}' is 'external'", envTable.getName());
-        for (String line : envTable.getDefinition()) {
-            if (line.startsWith(CREATE_EXTERNAL_TABLE)) {
-                rtn = Boolean.TRUE;
-                break;
-            }
-        }
-        return rtn;
+        return TableDefinition.of(envTable.getDefinition()).isExternal();
     }
 
     public static Boolean isHive3Standard(EnvironmentTable envTable) {
@@ -573,47 +548,19 @@ public class TableUtils {
     }
 
     public static Boolean isHMSConverted(EnvironmentTable envTable) {
-        Boolean rtn = Boolean.FALSE;
         log.trace("Checking if table '{}' was converted by 'hms-mirror'", envTable.getName());
         if (envTable.getDefinition() == null) {
             throw new RuntimeException("Table definition for " + envTable.getName() + " is null.");
         }
-        for (String line : envTable.getDefinition()) {
-            if (line != null) {
-                String tline = line.trim();
-                if (tline.toLowerCase().startsWith("'" + TablePropertyVars.HMS_MIRROR_CONVERTED_FLAG.toLowerCase())) {
-                    String[] prop = tline.split("=");
-                    if (prop.length == 2) {
-                        // Stripe the quotes
-                        String value = prop[1].replace("'", "").trim();
-                        // Remove trailing , or )
-                        if (value.endsWith(",") || value.endsWith(")")) {
-                            value = value.substring(0, value.length() - 1);
-                        }
-                        if (Boolean.parseBoolean(value)) {
-                            rtn = Boolean.TRUE;
-                        }
-                    }
-                    break;
-                }
-            }
-        }
-        return rtn;
+        return isFlagSet(TableDefinition.of(envTable.getDefinition())
+                .getQuotedLine("'" + TablePropertyVars.HMS_MIRROR_CONVERTED_FLAG));
     }
 
     public static Boolean isView(EnvironmentTable envTable) {
-        Boolean rtn = Boolean.FALSE;
         if (envTable.getDefinition() == null) {
             throw new RuntimeException("Definition for " + envTable.getName() + " is null.");
         }
-
-        for (String line : envTable.getDefinition()) {
-            if (line.trim().startsWith(CREATE_VIEW)) {
-                rtn = Boolean.TRUE;
-                break;
-            }
-        }
-        return rtn;
+        return TableDefinition.of(envTable.getDefinition()).isView();
     }
 
     public static Boolean isACID(EnvironmentTable envTable) {
@@ -623,26 +570,10 @@ public class TableUtils {
             throw new RuntimeException("Table definition for " + envTable.getName() + " is null.");
         }
         if (isManaged(envTable)) {
-            for (String line : envTable.getDefinition()) {
-                if (line != null) {
-                    String tline = line.trim();
-                    if (tline.toLowerCase().startsWith("'" + TablePropertyVars.TRANSACTIONAL)) {
-                        String[] prop = tline.split("=");
-                        if (prop.length == 2) {
-                            // Stripe the quotes
-                            String value = prop[1].replace("'", "").trim();
-                            // Remove trailing , or )
-                            if (value.endsWith(",") || value.endsWith(")")) {
-                                value = value.substring(0, value.length() - 1);
-                            }
-                            if (Boolean.parseBoolean(value)) {
-                                rtn = Boolean.TRUE;
-                                envTable.getStatistics().put(TablePropertyVars.TRANSACTIONAL, Boolean.TRUE);
-                            }
-                        }
-                        break;
-                    }
-                }
+            if (isFlagSet(TableDefinition.of(envTable.getDefinition())
+                    .getQuotedLine("'" + TablePropertyVars.TRANSACTIONAL))) {
+                rtn = Boolean.TRUE;
+                envTable.getStatistics().put(TablePropertyVars.TRANSACTIONAL, Boolean.TRUE);
             }
         }
         return rtn;
@@ -655,25 +586,31 @@ public class TableUtils {
             throw new RuntimeException("Table definition for " + envTable.getName() + " is null.");
         }
         if (isExternal(envTable)) {
-            for (String line : envTable.getDefinition()) {
-                if (line != null) {
-                    String tline = line.trim();
-                    if (tline.toLowerCase().startsWith("'" + TablePropertyVars.EXTERNAL_TABLE_PURGE)) {
-                        String[] prop = tline.split("=");
-                        if (prop.length == 2) {
-                            // Stripe the quotes
-                            String value = prop[1].replace("'", "").trim();
-                            // Remove trailing , or )
-                            if (value.endsWith(",") || value.endsWith(")")) {
-                                value = value.substring(0, value.length() - 1);
-                            }
-                            if (Boolean.parseBoolean(value)) {
-                                rtn = Boolean.TRUE;
-                                envTable.getStatistics().put(TablePropertyVars.EXTERNAL_TABLE_PURGE, Boolean.TRUE);
-                            }
-                        }
-                        break;
-                    }
+            if (isFlagSet(TableDefinition.of(envTable.getDefinition())
+                    .getQuotedLine("'" + TablePropertyVars.EXTERNAL_TABLE_PURGE))) {
+                rtn = Boolean.TRUE;
+                envTable.getStatistics().put(TablePropertyVars.EXTERNAL_TABLE_PURGE, Boolean.TRUE);
+            }
+        }
+        return rtn;
+    }
+
+    /*
+    Check the value of a boolean table property line: 'key'='true'[,|)]
+     */
+    private static Boolean isFlagSet(String tline) {
+        Boolean rtn = Boolean.FALSE;
+        if (tline != null) {
+            String[] prop = tline.split("=");
+            if (prop.length == 2) {
+                // Stripe the quotes
+                String value = prop[1].replace("'", "").trim();
+                // Remove trailing , or )
+                if (value.endsWith(",") || value.endsWith(")")) {
+                    value = value.substring(0, value.length() - 1);
+                }
+                if (Boolean.parseBoolean(value)) {
+                    rtn = Boolean.TRUE;
                 }
             }
         }
@@ -708,18 +645,11 @@ public class TableUtils {
     }
 
     public static Boolean isPartitioned(EnvironmentTable envTable) {
-        Boolean rtn = Boolean.FALSE;
         log.trace("Checking if table '{}' is 'Partitioned'", envTable.getName());
         if (envTable.getDefinition() == null) {
-            return rtn;
-        }
-        for (String line : envTable.getDefinition()) {
-            if (line != null && line.startsWith(PARTITIONED_BY)) {
-                rtn = Boolean.TRUE;
-                break;
-            }
+            return Boolean.FALSE;
         }
-        return rtn;
+        return TableDefinition.of(envTable.getDefinition()).isPartitioned();
     }
 
     public static Boolean isAVROSchemaBased(EnvironmentTable envTable) {
@@ -778,27 +708,9 @@ public class TableUtils {
     }
 
     public static Boolean isHMSLegacyManaged(EnvironmentTable envTable) {
-        Boolean rtn = Boolean.FALSE;
         log.trace("Checking if table '{}' was tagged as Legacy Managed by 'hms-mirror'", envTable.getName());
-        for (String line : envTable.getDefinition()) {
-            String tline = line.trim();
-            if (tline.toLowerCase().startsWith("'" + TablePropertyVars.HMS_MIRROR_LEGACY_MANAGED_FLAG.toLowerCase())) {
-                String[] prop = tline.split("=");
-                if (prop.length == 2) {
-                    // Stripe the quotes
-                    String value = prop[1].replace("'", "").trim();
-                    // Remove trailing , or )
-                    if (value.endsWith(",") || value.endsWith(")")) {
-                        value = value.substring(0, value.length() - 1);
-                    }
-                    if (Boolean.parseBoolean(value)) {
-                        rtn = Boolean.TRUE;
-                    }
-                }
-                break;
-            }
-        }
-        return rtn;
+        return isFlagSet(TableDefinition.of(envTable.getDefinition())
+                .getQuotedLine("'" + TablePropertyVars.HMS_MIRROR_LEGACY_MANAGED_FLAG));
     }
 
     public static void upsertTblProperty(String key, String value, EnvironmentTable envTable) {
@@ -930,17 +842,10 @@ public class TableUtils {
 
     public static String getTblProperty(String key, List<String> tblDef) {
         String rtn = null;
-        int tpIdx = tblDef.indexOf(TBL_PROPERTIES);
-
-        for (int i = tpIdx + 1; i < tblDef.size(); i++) {
-            String line = tblDef.get(i).trim();
-            String[] checkProperty = line.split("=");
-            String checkKey = checkProperty[0].replace("'", "");
-            if (checkKey.equalsIgnoreCase(key)) {
-                // Found existing Property, replace it.
-                rtn = checkProperty[1].replace("'", "");
-                break;
-            }
+        int i = TableDefinition.of(tblDef).getTblPropertyIndex(key);
+        if (i != -1) {
+            String[] checkProperty = tblDef.get(i).trim().split("=");
+            rtn = checkProperty[1].replace("'", "");
         }
         // Remove Comma, if present.
         if (rtn != null && rtn.endsWith(","))
@@ -951,27 +856,20 @@ public class TableUtils {
     public static Boolean replaceTblProperty(String key, String newValue, EnvironmentTable environmentTable) {
         Boolean rtn = Boolean.FALSE;
         List<String> tblDef = environmentTable.getDefinition();
-        int tpIdx = tblDef.indexOf(TBL_PROPERTIES);
-
-        for (int i = tpIdx + 1; i < tblDef.size(); i++) {
+        int i = TableDefinition.of(tblDef).getTblPropertyIndex(key);
+        if (i != -1) {
             String line = tblDef.get(i).trim();
-            String[] checkProperty = line.split("=");
-            String checkKey = checkProperty[0].replace("'", "");
-            if (checkKey.equalsIgnoreCase(key)) {
-                // Found existing Property, replace it.
-                tblDef.remove(i);
-                StringBuilder sb = new StringBuilder();
-                sb.append("'").append(key).append("'")
-                        .append("=")
-                        .append("'").append(newValue).append("'");
-                // Replace ending param.
-                if (line.endsWith(")")) {
-                    sb.append(")");
-                }
-                tblDef.add(i, sb.toString());
-                rtn = Boolean.TRUE;
-                break;
-            }
+            // Found existing Property, replace it.
+            StringBuilder sb = new StringBuilder();
+            sb.append("'").append(key).append("'")
+                    .append("=")
+                    .append("'").append(newValue).append("'");
+            // Replace ending param.
+            if (line.endsWith(")")) {
+                sb.append(")");
+            }
+            tblDef.set(i, sb.toString());
+            rtn = Boolean.TRUE;
         }
         return rtn;
     }
@@ -985,26 +883,20 @@ public class TableUtils {
     public static void removeTblProperty(String key, List<String> tableDefinition) {
         // Search for property first.
         int tpIdx = tableDefinition.indexOf(TBL_PROPERTIES);
-
-        for (int i = tpIdx + 1; i < tableDefinition.size(); i++) {
+        int i = TableDefinition.of(tableDefinition).getTblPropertyIndex(key);
+        if (i != -1) {
             String line = tableDefinition.get(i).trim();
-            String[] checkProperty = line.split("=");
-            String checkKey = checkProperty[0].replace("'", "");
-            if (checkKey.equalsIgnoreCase(key)) {
-                // Found existing Property, replace it.
-                tableDefinition.remove(i);
-                // Replace ending param.
-                if (line.endsWith(")")) {
-                    if (i == tpIdx + 2) {
-                        String lastLine = tableDefinition.get(i - 1).trim();
-                        String newLastLine = lastLine.replace(",", ")");
-                        tableDefinition.remove(i - 1);
-                        tableDefinition.add(newLastLine);
-                    } else {
-                        tableDefinition.add(i, ")");
-                    }
+            tableDefinition.remove(i);
+            // Replace ending param.
+            if (line.endsWith(")")) {
+                if (i == tpIdx + 2) {
+                    String lastLine = tableDefinition.get(i - 1).trim();
+                    String newLastLine = lastLine.replace(",", ")");
+                    tableDefinition.remove(i - 1);
+                    tableDefinition.add(newLastLine);
+                } else {
+                    tableDefinition.add(i, ")");
                 }
-                break;
             }
         }
     }
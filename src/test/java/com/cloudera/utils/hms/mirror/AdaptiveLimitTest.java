@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveLimitTest {
+
+    @Test
+    public void bounds() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 2, 6);
+        assertEquals(6, limit.getLimit());
+        assertEquals(2, new AdaptiveLimit(1, 2, 6).getLimit());
+        // Never below one, or a max under the min.
+        AdaptiveLimit zero = new AdaptiveLimit(0, 0, 0);
+        assertEquals(1, zero.getMin());
+        assertEquals(1, zero.getMax());
+    }
+
+    @Test
+    public void growsWhileWorkWaits() {
+        AdaptiveLimit limit = new AdaptiveLimit(4, 1, 6);
+        assertNotNull(limit.update(100, 0, 0, 10));
+        assertEquals(5, limit.getLimit());
+        assertNotNull(limit.update(100, 0, 5000, 0));
+        assertEquals(6, limit.getLimit());
+        // At the max.
+        assertNull(limit.update(100, 0, 0, 10));
+        assertEquals(6, limit.getLimit());
+        // Nothing waiting.
+        assertNull(new AdaptiveLimit(4, 1, 6).update(100, 0, 10, 0));
+    }
+
+    @Test
+    public void backsOff() {
+        AdaptiveLimit limit = new AdaptiveLimit(8, 1, 16);
+        limit.update(100, 0, 0, 0);
+        assertEquals(100, limit.getBaselineMs(), 0.01);
+
+        // Latency well over the baseline, even with work waiting.
+        String reason = limit.update(250, 0, 0, 10);
+        assertTrue(reason, reason.startsWith("latency"));
+        assertEquals(6, limit.getLimit());
+
+        // Failures.
+        reason = limit.update(100, 0.2, 0, 10);
+        assertTrue(reason, reason.startsWith("failures"));
+        assertEquals(4, limit.getLimit());
+
+        // To the min, and no further.
+        limit.update(100, 0.2, 0, 0);
+        limit.update(100, 0.2, 0, 0);
+        limit.update(100, 0.2, 0, 0);
+        assertEquals(1, limit.getLimit());
+        assertNull(limit.update(100, 0.2, 0, 0));
+    }
+
+    @Test
+    public void baselineDrifts() {
+        AdaptiveLimit limit = new AdaptiveLimit(4, 1, 8);
+        limit.update(100, 0, 0, 0);
+        limit.update(150, 0, 0, 0);
+        assertEquals(100 * AdaptiveLimit.BASELINE_DRIFT, limit.getBaselineMs(), 0.01);
+        limit.update(50, 0, 0, 0);
+        assertEquals(50, limit.getBaselineMs(), 0.01);
+        // No queries in the window.
+        limit.update(0, 0, 0, 0);
+        assertEquals(50, limit.getBaselineMs(), 0.01);
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EnvironmentMapTest {
+
+    @Test
+    public void concurrentAddsWhileReading() throws Exception {
+        EnvironmentMap environmentMap = new EnvironmentMap();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        environmentMap.addTranslationLocation(Environment.RIGHT,
+                                "/warehouse/t" + thread + "/p=" + i, "/new/t" + thread + "/p=" + i, 2);
+                    }
+                }));
+            }
+            // Reading while the adds are running must not fail.
+            Set<EnvironmentMap.TranslationLevel> levels = environmentMap.getTranslationSet(Environment.RIGHT);
+            for (int r = 0; r < 20; r++) {
+                int count = 0;
+                for (EnvironmentMap.TranslationLevel ignored : levels) {
+                    count++;
+                }
+                assertTrue(count <= 80000);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(80000, environmentMap.getTranslationSet(Environment.RIGHT).size());
+            assertEquals(0, environmentMap.getTranslationSet(Environment.LEFT).size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
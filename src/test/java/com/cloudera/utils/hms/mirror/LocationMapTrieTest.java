@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class LocationMapTrieTest {
+
+    private static Map<String, String> glm() {
+        Map<String, String> glm = new HashMap<>();
+        glm.put("/tpc_data", "/data/tpc");
+        glm.put("/tpc_data/tpcds", "/data/tpc/ds");
+        glm.put("/warehouse/tablespace/external/hive", "/finance/external");
+        glm.put("/warehouse/tablespace/external/hive/sales.db/web_", "/sales/web");
+        glm.put("/user/dstreev/datasets/", "/datasets/");
+        return glm;
+    }
+
+    // What the length ordered scan found: the longest 'from' that the location starts with.
+    private static String linear(Map<String, String> glm, String location) {
+        String rtn = null;
+        for (Map.Entry<String, String> entry : glm.entrySet()) {
+            if (location.startsWith(entry.getKey()) && (rtn == null || entry.getKey().length() > rtn.length())) {
+                rtn = entry.getKey();
+            }
+        }
+        return rtn;
+    }
+
+    @Test
+    public void longestPrefix() {
+        LocationMapTrie trie = new LocationMapTrie(glm());
+        assertEquals("/data/tpc/ds/call_center", trie.translate("/tpc_data/tpcds/call_center"));
+        assertEquals("/data/tpc/h/orders", trie.translate("/tpc_data/h/orders"));
+        assertEquals("/data/tpc_old/x", trie.translate("/tpc_data_old/x"));
+        assertEquals("/finance/external/finance.db/gl", trie.translate("/warehouse/tablespace/external/hive/finance.db/gl"));
+        assertEquals("/sales/websales/dt=1", trie.translate("/warehouse/tablespace/external/hive/sales.db/web_sales/dt=1"));
+        assertEquals("/datasets/junk", trie.translate("/user/dstreev/datasets/junk"));
+        assertNull(trie.translate("/user/dstreev/datasets"));
+        assertNull(trie.translate("/apps/hive/warehouse/x.db/y"));
+    }
+
+    @Test
+    public void onlyThePrefixIsReplaced() {
+        Map<String, String> glm = new HashMap<>();
+        glm.put("/data", "/archive/data");
+        LocationMapTrie trie = new LocationMapTrie(glm);
+        assertEquals("/archive/data/sales/data/dt=1", trie.translate("/data/sales/data/dt=1"));
+    }
+
+    @Test
+    public void sameAsLinearScan() {
+        Map<String, String> glm = glm();
+        LocationMapTrie trie = new LocationMapTrie(glm);
+        String[] dirs = {"/tpc_data/tpcds/store_sales", "/tpc_data/tpcds_old/store_sales", "/tpc_data",
+                "/warehouse/tablespace/external/hive/sales.db/web_sales", "/warehouse/tablespace/external/hive",
+                "/warehouse/tablespace/external/hive2/sales.db/web_sales", "/user/dstreev/datasets", "/other"};
+        for (String dir : dirs) {
+            for (int i = 0; i < 50; i++) {
+                String location = dir + "/dt=" + (i / 10) + "/hr=" + i;
+                LocationMapTrie.Match match = trie.find(location);
+                assertEquals(location, linear(glm, location), match == null ? null : match.getFrom());
+                // Again, from the parent cache.
+                match = trie.find(location);
+                assertEquals(location, linear(glm, location), match == null ? null : match.getFrom());
+            }
+            LocationMapTrie.Match match = trie.find(dir);
+            assertEquals(dir, linear(glm, dir), match == null ? null : match.getFrom());
+        }
+    }
+
+    @Test
+    public void translatorRebuildsOnChange() {
+        Translator translator = new Translator();
+        assertTrue(translator.getGlobalLocationTrie().isEmpty());
+        translator.addGlobalLocationMap("/data", "/archive");
+        assertEquals("/archive/x", translator.getGlobalLocationTrie().translate("/data/x"));
+        translator.getOrderedGlobalLocationMap().put("/data/x", "/current/x");
+        assertEquals("/current/x/y", translator.getGlobalLocationTrie().translate("/data/x/y"));
+    }
+
+}
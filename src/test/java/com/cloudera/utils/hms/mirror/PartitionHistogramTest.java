@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PartitionHistogramTest {
+
+    private static final long TARGET = 128L * 1024 * 1024;
+
+    // One 10 GB partition, two of 1 GB and 100 small ones.
+    private static PartitionHistogram skewed() {
+        PartitionHistogram histogram = new PartitionHistogram();
+        histogram.add("dt=2024-01-01", 10L * 1024 * 1024 * 1024, 80);
+        histogram.add("dt=2024-01-02", 1024L * 1024 * 1024, 8);
+        histogram.add("dt=2024-01-03", 1024L * 1024 * 1024, 8);
+        for (int i = 0; i < 100; i++) {
+            histogram.add("dt=2023-" + i, 1024L * 1024, 1);
+        }
+        return histogram;
+    }
+
+    @Test
+    public void spread() {
+        assertEquals(1, PartitionHistogram.spread(0, TARGET));
+        assertEquals(1, PartitionHistogram.spread(TARGET, TARGET));
+        assertEquals(2, PartitionHistogram.spread(TARGET + 1, TARGET));
+        assertEquals(4, PartitionHistogram.spread(3 * TARGET, TARGET));
+        assertEquals(8, PartitionHistogram.spread(8 * TARGET, TARGET));
+        assertEquals(PartitionHistogram.MAX_SPREAD, PartitionHistogram.spread(5000 * TARGET, TARGET));
+    }
+
+    @Test
+    public void classes() {
+        PartitionHistogram histogram = skewed();
+        assertEquals(103, histogram.size());
+
+        SortedMap<Integer, Integer> counts = histogram.getClassCounts(TARGET);
+        assertEquals(Integer.valueOf(100), counts.get(1));
+        assertEquals(Integer.valueOf(2), counts.get(8));
+        assertEquals(Integer.valueOf(1), counts.get(128));
+
+        SortedMap<Integer, List<String>> classes = histogram.getSpreadClasses(TARGET, 1000);
+        assertEquals(Arrays.asList(128, 8), new ArrayList<>(classes.keySet()));
+        assertEquals(Collections.singletonList("dt=2024-01-01"), classes.get(128));
+        assertEquals(Arrays.asList("dt=2024-01-02", "dt=2024-01-03"), classes.get(8));
+        assertEquals(1, histogram.getRemainderSpread(TARGET, 1000));
+
+        // 128 + 8 + 8 + 100 singles, not the 103 * 'average' of the table wide ratio.
+        assertEquals(244, histogram.getReducers(TARGET));
+    }
+
+    @Test
+    public void limitListsTheLargest() {
+        PartitionHistogram histogram = skewed();
+        SortedMap<Integer, List<String>> classes = histogram.getSpreadClasses(TARGET, 1);
+        assertEquals(Collections.singleton(128), classes.keySet());
+        assertEquals(8, histogram.getRemainderSpread(TARGET, 1));
+    }
+
+    @Test
+    public void replace() {
+        PartitionHistogram histogram = new PartitionHistogram();
+        histogram.add("dt=1", 100, 2);
+        histogram.add("dt=1", 50, 1);
+        assertEquals(1, histogram.size());
+        assertEquals(50, histogram.getTotalBytes());
+        assertEquals(1, histogram.getTotalFiles());
+        assertEquals(50, histogram.getBytes("dt=1"));
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PartitionMapTest {
+
+    private static final String TABLE_LOCATION = "hdfs://HOME90/warehouse/tablespace/external/hive/tpcds.db/store_sales";
+
+    private static Map<String, String> fill(Map<String, String> partitions, int count) {
+        for (int i = 0; i < count; i++) {
+            String name = "ss_sold_date_sk=" + (2450000 + i / 24) + "/hr=" + (i % 24);
+            if (i % 100 == 99) {
+                partitions.put(name, "s3a://bucket/other/" + name);
+            } else if (i % 50 == 49) {
+                partitions.put(name, TABLE_LOCATION + "/moved/" + i);
+            } else {
+                partitions.put(name, TABLE_LOCATION + "/" + name);
+            }
+        }
+        return partitions;
+    }
+
+    @Test
+    public void sameAsHashMap() {
+        Map<String, String> expected = fill(new HashMap<>(), 50000);
+        Map<String, String> partitions = fill(new PartitionMap(), 50000);
+        assertEquals(expected.size(), partitions.size());
+        assertEquals(expected, partitions);
+        assertEquals(partitions, expected);
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertTrue(partitions.containsKey(entry.getKey()));
+            assertEquals(entry.getValue(), partitions.get(entry.getKey()));
+        }
+        assertNull(partitions.get("ss_sold_date_sk=1/hr=1"));
+        assertFalse(partitions.containsKey("unknown=1"));
+        assertEquals(TABLE_LOCATION, ((PartitionMap) partitions).getTableLocation());
+    }
+
+    @Test
+    public void insertionOrder() {
+        Map<String, String> partitions = new PartitionMap();
+        partitions.put("b=2", "/t/b=2");
+        partitions.put("a=1", "/t/a=1");
+        partitions.put("c=3", null);
+        assertEquals(Arrays.asList("b=2", "a=1", "c=3"), new ArrayList<>(partitions.keySet()));
+        assertNull(partitions.get("c=3"));
+        assertTrue(partitions.containsKey("c=3"));
+    }
+
+    @Test
+    public void replaceValues() {
+        Map<String, String> partitions = new PartitionMap();
+        partitions.put("dt=1", MirrorConf.NOT_SET);
+        partitions.put("dt=2", MirrorConf.NOT_SET);
+        assertEquals(MirrorConf.NOT_SET, partitions.put("dt=1", "/t/dt=1"));
+        assertEquals("/t/dt=1", partitions.get("dt=1"));
+        assertEquals(MirrorConf.NOT_SET, partitions.get("dt=2"));
+        assertEquals(2, partitions.size());
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        PartitionMap source = (PartitionMap) fill(new PartitionMap(), 1000);
+        Map<String, String> expected = new HashMap<>(source);
+
+        PartitionMap target = new PartitionMap(source);
+        for (Map.Entry<String, String> entry : target.entrySet()) {
+            entry.setValue(entry.getValue().replace("hdfs://HOME90", "hdfs://NEW"));
+        }
+        target.put("ss_sold_date_sk=1/hr=1", "hdfs://NEW/t/ss_sold_date_sk=1/hr=1");
+
+        assertEquals(expected, source);
+        assertEquals(1001, target.size());
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().replace("hdfs://HOME90", "hdfs://NEW"), target.get(entry.getKey()));
+        }
+        assertFalse(source.containsKey("ss_sold_date_sk=1/hr=1"));
+    }
+
+    @Test
+    public void clear() {
+        Map<String, String> partitions = fill(new PartitionMap(), 100);
+        partitions.clear();
+        assertTrue(partitions.isEmpty());
+        partitions.put("a=1", "/other/a=1");
+        assertEquals("/other/a=1", partitions.get("a=1"));
+        assertEquals("/other", ((PartitionMap) partitions).getTableLocation());
+    }
+
+    @Test
+    public void environmentTableKeepsCompactForm() {
+        EnvironmentTable et = new EnvironmentTable();
+        assertTrue(et.getPartitions() instanceof PartitionMap);
+        et.setPartitions(fill(new HashMap<>(), 10));
+        assertTrue(et.getPartitions() instanceof PartitionMap);
+        assertEquals(10, et.getPartitions().size());
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PartitionRangeTest {
+
+    @Test
+    public void split() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            names.add("dt=" + i);
+        }
+        List<PartitionRange> ranges = PartitionRange.split(names, 4);
+        assertEquals(3, ranges.size());
+        assertEquals(Arrays.asList("dt=0", "dt=1", "dt=2", "dt=3"), ranges.get(0).getPartitions());
+        assertEquals(Arrays.asList("dt=8", "dt=9"), ranges.get(2).getPartitions());
+        assertEquals(3, ranges.get(2).getRange());
+
+        assertEquals(1, PartitionRange.split(names, 0).size());
+        assertEquals(1, PartitionRange.split(names, 10).size());
+        assertTrue(PartitionRange.split(Collections.emptyList(), 4).isEmpty());
+    }
+
+    @Test
+    public void partitionsPerRange() {
+        // Off unless one of the bounds is set.
+        assertEquals(0, PartitionRange.partitionsPerRange(1000, 1000000L, 0, 0L));
+        assertEquals(100, PartitionRange.partitionsPerRange(1000, 1000000L, 100, 0L));
+        // 1000 bytes a partition.
+        assertEquals(50, PartitionRange.partitionsPerRange(1000, 1000000L, 0, 50000L));
+        assertEquals(50, PartitionRange.partitionsPerRange(1000, 1000000L, 100, 50000L));
+        assertEquals(100, PartitionRange.partitionsPerRange(1000, 1000000L, 100, 500000L));
+        // A partition bigger than the bound still gets a range.
+        assertEquals(1, PartitionRange.partitionsPerRange(1000, 1000000L, 0, 10L));
+        // No stats, no byte bound.
+        assertEquals(100, PartitionRange.partitionsPerRange(1000, -1L, 100, 50000L));
+    }
+
+    @Test
+    public void singleColumnWhereClause() {
+        PartitionRange range = new PartitionRange(1, Arrays.asList("dt=2024-01-01", "dt=2024-01-02",
+                "dt=" + PartitionRange.DEFAULT_PARTITION));
+        assertEquals("`dt` IN ('2024-01-01','2024-01-02') OR `dt` IS NULL", range.getWhereClause());
+    }
+
+    @Test
+    public void multiColumnWhereClause() {
+        PartitionRange range = new PartitionRange(1, Arrays.asList("dt=2024-01-01/hr=1", "dt=2024-01-01/hr=2"));
+        assertEquals("(`dt`='2024-01-01' AND `hr`='1') OR (`dt`='2024-01-01' AND `hr`='2')",
+                range.getWhereClause());
+    }
+
+    @Test
+    public void escapedValues() {
+        PartitionRange range = new PartitionRange(1, Arrays.asList("ts=2024-01-01 10%3A00%3A00", "ts=it's",
+                "ts=50%"));
+        assertEquals("`ts` IN ('2024-01-01 10:00:00','it\\'s','50%')", range.getWhereClause());
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SqlStepPlanTest {
+
+    private static List<Pair> steps() {
+        List<Pair> rtn = new ArrayList<>();
+        rtn.add(new Pair("Session", "SET hive.exec.dynamic.partition=true"));
+        rtn.add(new Pair("Create", "CREATE EXTERNAL TABLE IF NOT EXISTS orders (id int) PARTITIONED BY (dt string)"));
+        rtn.add(new Pair("Add 1", "ALTER TABLE orders ADD IF NOT EXISTS\n\tPARTITION (dt='1') LOCATION 'a'"));
+        rtn.add(new Pair("Add 2", "ALTER TABLE orders ADD IF NOT EXISTS\n\tPARTITION (dt='2') LOCATION 'b'"));
+        rtn.add(new Pair("Location 1", "ALTER TABLE orders PARTITION (dt='1') SET LOCATION \"c\""));
+        rtn.add(new Pair("Location 2", "ALTER TABLE orders PARTITION (dt='2') SET LOCATION \"d\""));
+        rtn.add(new Pair("Add other", "ALTER TABLE other ADD IF NOT EXISTS\n\tPARTITION (dt='1') LOCATION 'e'"));
+        rtn.add(new Pair("Repair", "MSCK REPAIR TABLE orders"));
+        return rtn;
+    }
+
+    @Test
+    public void groups() {
+        String[] groups = SqlStepPlan.groups(steps(), true);
+        assertNull(groups[0]);
+        assertNull(groups[1]);
+        assertEquals("add partitions orders", groups[2]);
+        assertEquals(groups[2], groups[3]);
+        assertEquals("partition locations orders", groups[4]);
+        assertEquals(groups[4], groups[5]);
+        // Alone in its run.
+        assertNull(groups[6]);
+        assertNull(groups[7]);
+    }
+
+    @Test
+    public void onlyTheSetGroupsWhenNotInferred() {
+        List<Pair> steps = steps();
+        steps.get(7).setGroup("ranges");
+        String[] groups = SqlStepPlan.groups(steps, false);
+        assertEquals(Arrays.asList(null, null, null, null, null, null, null, "ranges"), Arrays.asList(groups));
+    }
+
+    @Test
+    public void kinds() {
+        List<Pair> steps = steps();
+        assertTrue(SqlStepPlan.isSession(steps.get(0)));
+        assertFalse(SqlStepPlan.isSession(steps.get(1)));
+        assertEquals("set", SqlStepPlan.kind(steps.get(0)));
+        assertEquals("alter", SqlStepPlan.kind(steps.get(2)));
+        assertEquals("msck", SqlStepPlan.kind(steps.get(7)));
+        assertEquals("other", SqlStepPlan.kind(new Pair("Empty", null)));
+    }
+
+    private static List<String> descriptions(List<Pair> pairs) {
+        List<String> rtn = new ArrayList<>();
+        for (Pair pair : pairs) {
+            rtn.add(pair.getDescription());
+        }
+        return rtn;
+    }
+
+    /*
+    A resume, where the journal has some steps of the groups completed and some not.  Each step is either run or
+    skipped as resumed, once and in order.
+     */
+    @Test
+    public void stepsOnResume() {
+        List<Pair> steps = steps();
+        // A statement repeated in a run, that only completed once.
+        steps.add(4, new Pair("Add 2 again", steps.get(3).getAction()));
+        // What the journal has, by statement (see CheckpointJournalService.isSqlCompleted).
+        Map<String, Integer> completed = new HashMap<>();
+        for (int i : new int[]{0, 1, 2, 3, 5, 6}) {
+            completed.put(steps.get(i).getAction(), 1);
+        }
+
+        List<SqlStepPlan.Step> plan = SqlStepPlan.steps(steps, true,
+                pair -> completed.merge(pair.getAction(), -1, Integer::sum) >= 0);
+        assertEquals(6, plan.size());
+
+        // The session is always set.
+        assertNull(plan.get(0).getGroup());
+        assertEquals(Arrays.asList("Session"), descriptions(plan.get(0).getPairs()));
+        assertTrue(plan.get(0).getResumed().isEmpty());
+
+        assertEquals(Arrays.asList("Create"), descriptions(plan.get(1).getResumed()));
+        assertTrue(plan.get(1).getPairs().isEmpty());
+
+        assertEquals("add partitions orders", plan.get(2).getGroup());
+        assertEquals(Arrays.asList("Add 1", "Add 2"), descriptions(plan.get(2).getResumed()));
+        assertEquals(Arrays.asList("Add 2 again"), descriptions(plan.get(2).getPairs()));
+
+        // All done, nothing to run for the group.
+        assertEquals("partition locations orders", plan.get(3).getGroup());
+        assertEquals(Arrays.asList("Location 1", "Location 2"), descriptions(plan.get(3).getResumed()));
+        assertTrue(plan.get(3).getPairs().isEmpty());
+
+        assertEquals(Arrays.asList("Add other"), descriptions(plan.get(4).getPairs()));
+        assertEquals(Arrays.asList("Repair"), descriptions(plan.get(5).getPairs()));
+
+        // Every step is accounted for once, in order.
+        List<String> all = new ArrayList<>();
+        for (SqlStepPlan.Step step : plan) {
+            List<Pair> accounted = new ArrayList<>(step.getResumed());
+            accounted.addAll(step.getPairs());
+            accounted.sort((a, b) -> Integer.compare(steps.indexOf(a), steps.indexOf(b)));
+            all.addAll(descriptions(accounted));
+        }
+        assertEquals(descriptions(steps), all);
+    }
+
+    @Test
+    public void stepsWithoutJournal() {
+        List<SqlStepPlan.Step> plan = SqlStepPlan.steps(steps(), false, pair -> false);
+        assertEquals(8, plan.size());
+        for (SqlStepPlan.Step step : plan) {
+            assertNull(step.getGroup());
+            assertEquals(1, step.getPairs().size());
+            assertTrue(step.getResumed().isEmpty());
+        }
+    }
+
+}
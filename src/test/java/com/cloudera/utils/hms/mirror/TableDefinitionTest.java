@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TableDefinitionTest {
+
+    private static final List<String> WEB_SALES = Arrays.asList(
+            "CREATE TABLE `web_sales`(",
+            "  `ws_item_sk` bigint, ",
+            "  `ws_note` string)",
+            "PARTITIONED BY ( ",
+            "  `ws_sold_date_sk` bigint)",
+            "CLUSTERED BY ( ",
+            "  ws_item_sk) ",
+            "INTO 4 BUCKETS",
+            "ROW FORMAT SERDE ",
+            "  'org.apache.hadoop.hive.ql.io.orc.OrcSerde' ",
+            "STORED AS INPUTFORMAT ",
+            "  'org.apache.hadoop.hive.ql.io.orc.OrcInputFormat' ",
+            "OUTPUTFORMAT ",
+            "  'org.apache.hadoop.hive.ql.io.orc.OrcOutputFormat'",
+            "LOCATION",
+            "  'hdfs://HOME90/warehouse/tablespace/managed/hive/tpcds.db/web_sales'",
+            "TBLPROPERTIES (",
+            "  'bucketing_version'='2', ",
+            "  'Transactional'='true', ",
+            "  'transient_lastDdlTime'='1606919590')");
+
+    @Test
+    public void parsed() {
+        TableDefinition def = new TableDefinition(WEB_SALES);
+        assertTrue(def.isManaged());
+        assertFalse(def.isExternal());
+        assertFalse(def.isView());
+        assertTrue(def.isPartitioned());
+        assertTrue(def.hasLocation());
+        assertEquals("INTO 4 BUCKETS", def.getBucketsLine());
+        assertEquals(WEB_SALES, def);
+    }
+
+    @Test
+    public void indexOf() {
+        TableDefinition def = new TableDefinition(WEB_SALES);
+        assertEquals(WEB_SALES.indexOf("LOCATION"), def.indexOf("LOCATION"));
+        assertEquals(WEB_SALES.indexOf("TBLPROPERTIES ("), def.indexOf("TBLPROPERTIES ("));
+        assertEquals(WEB_SALES.indexOf("  `ws_note` string)"), def.indexOf("  `ws_note` string)"));
+        assertEquals(-1, def.indexOf("WITH SERDEPROPERTIES ("));
+    }
+
+    @Test
+    public void properties() {
+        TableDefinition def = new TableDefinition(WEB_SALES);
+        assertEquals(18, def.getTblPropertyIndex("transactional"));
+        assertEquals(19, def.getTblPropertyIndex("TRANSIENT_LASTDDLTIME"));
+        assertEquals(-1, def.getTblPropertyIndex("external.table.purge"));
+        assertEquals("'Transactional'='true',", def.getQuotedLine("'transactional"));
+        assertNull(def.getQuotedLine("'hms-mirror_Converted"));
+    }
+
+    @Test
+    public void changesDropTheParsedState() {
+        TableDefinition def = new TableDefinition(WEB_SALES);
+        assertTrue(def.isManaged());
+        def.set(0, "CREATE EXTERNAL TABLE `web_sales`(");
+        assertTrue(def.isExternal());
+        assertFalse(def.isManaged());
+
+        int locIdx = def.indexOf("LOCATION");
+        def.remove(locIdx + 1);
+        def.remove(locIdx);
+        assertFalse(def.hasLocation());
+        assertEquals(-1, def.indexOf("LOCATION"));
+        assertEquals(WEB_SALES.indexOf("TBLPROPERTIES (") - 2, def.indexOf("TBLPROPERTIES ("));
+
+        def.add(def.indexOf("TBLPROPERTIES (") + 1, "  'external.table.purge'='true', ");
+        assertEquals(def.indexOf("TBLPROPERTIES (") + 1, def.getTblPropertyIndex("external.table.purge"));
+
+        def.clear();
+        assertFalse(def.isExternal());
+        assertNull(def.getBucketsLine());
+    }
+
+    @Test
+    public void environmentTableKeepsParsedForm() {
+        EnvironmentTable et = new EnvironmentTable();
+        assertTrue(et.getDefinition() instanceof TableDefinition);
+        et.setDefinition(WEB_SALES);
+        assertTrue(et.getDefinition() instanceof TableDefinition);
+        assertEquals(WEB_SALES, et.getDefinition());
+    }
+
+}
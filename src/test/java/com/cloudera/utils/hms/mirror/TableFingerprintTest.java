@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import com.cloudera.utils.hms.mirror.datastrategy.DataStrategyEnum;
+import com.cloudera.utils.hms.mirror.service.MetastoreStatsService;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TableFingerprintTest {
+
+    private static EnvironmentTable table(String ddlTime, String owner) {
+        EnvironmentTable et = new EnvironmentTable();
+        et.setName("orders");
+        et.setOwner(owner);
+        et.setDefinition(Arrays.asList(
+                "CREATE EXTERNAL TABLE `orders`(",
+                "  `id` int)",
+                "PARTITIONED BY (",
+                "  `dt` string)",
+                "LOCATION",
+                "  'hdfs://HOME90/warehouse/sales.db/orders'",
+                "TBLPROPERTIES (",
+                "  'bucketing_version'='2',",
+                "  'transient_lastDdlTime'='" + ddlTime + "')"));
+        et.getPartitions().put("dt=2024-01-01", "hdfs://HOME90/warehouse/sales.db/orders/dt=2024-01-01");
+        et.getStatistics().put(MirrorConf.DATA_SIZE, 4096L);
+        et.getStatistics().put(MirrorConf.FILE_COUNT, 4);
+        return et;
+    }
+
+    @Test
+    public void ignoresVolatileProperties() {
+        TableFingerprint first = TableFingerprint.of(table("1700000000", "hive"), DataStrategyEnum.SCHEMA_ONLY);
+        TableFingerprint second = TableFingerprint.of(table("1710000000", "hive"), DataStrategyEnum.SCHEMA_ONLY);
+        assertEquals(first.getDefinition(), second.getDefinition());
+        assertEquals(Collections.emptyList(), second.differences(first));
+    }
+
+    @Test
+    public void differences() {
+        TableFingerprint first = TableFingerprint.of(table("1700000000", "hive"), DataStrategyEnum.SCHEMA_ONLY);
+
+        EnvironmentTable changed = table("1700000000", "etl");
+        changed.getPartitions().put("dt=2024-01-02", "hdfs://HOME90/warehouse/sales.db/orders/dt=2024-01-02");
+        changed.getStatistics().put(MirrorConf.DATA_SIZE, 8192L);
+        assertEquals(Arrays.asList("partitions (1 -> 2)", "owner", "data"),
+                TableFingerprint.of(changed, DataStrategyEnum.SCHEMA_ONLY).differences(first));
+
+        assertEquals(Collections.singletonList("strategy"),
+                TableFingerprint.of(table("1700000000", "hive"), DataStrategyEnum.SQL).differences(first));
+    }
+
+    @Test
+    public void missingStatsAreChangedData() {
+        // No counts on either side, but the files under the table were replaced.
+        EnvironmentTable before = table("1700000000", "hive");
+        before.getStatistics().clear();
+        EnvironmentTable after = table("1700000000", "hive");
+        after.getStatistics().clear();
+        after.getPartitions().put("dt=2024-01-01", "hdfs://HOME90/warehouse/sales.db/orders/dt=2024-01-01_v2");
+
+        TableFingerprint first = TableFingerprint.of(before, DataStrategyEnum.SQL);
+        List<String> differences = TableFingerprint.of(after, DataStrategyEnum.SQL).differences(first);
+        assertTrue(differences.contains("data (no stats)"));
+        assertFalse(differences.isEmpty());
+
+        // Without a location change either, the table still isn't taken as unchanged.
+        assertEquals(Collections.singletonList("data (no stats)"),
+                TableFingerprint.of(before, DataStrategyEnum.EXPORT_IMPORT)
+                        .differences(TableFingerprint.of(before, DataStrategyEnum.EXPORT_IMPORT)));
+        // The schema only strategies don't move the data.
+        assertEquals(Collections.emptyList(), TableFingerprint.of(before, DataStrategyEnum.SCHEMA_ONLY)
+                .differences(TableFingerprint.of(before, DataStrategyEnum.SCHEMA_ONLY)));
+    }
+
+    @Test
+    public void metastoreStatsAreNotFingerprinted() {
+        EnvironmentTable et = table("1700000000", "hive");
+        MetastoreStatsService.recordSource(et, MetastoreStatsService.SOURCE_METASTORE,
+                MirrorConf.DATA_SIZE, MirrorConf.FILE_COUNT);
+        TableFingerprint fingerprint = TableFingerprint.of(et, DataStrategyEnum.SQL);
+        assertNull(fingerprint.getDataSize());
+        assertNull(fingerprint.getFileCount());
+        assertEquals(Collections.singletonList("data (no stats)"), fingerprint.differences(fingerprint));
+
+        EnvironmentTable counted = table("1700000000", "hive");
+        MetastoreStatsService.recordSource(counted, MetastoreStatsService.SOURCE_FILESYSTEM,
+                MirrorConf.DATA_SIZE, MirrorConf.FILE_COUNT);
+        assertEquals(Long.valueOf(4096L), TableFingerprint.of(counted, DataStrategyEnum.SQL).getDataSize());
+    }
+
+}
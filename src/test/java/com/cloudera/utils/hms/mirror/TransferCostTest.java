@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror;
+
+import com.cloudera.utils.hms.mirror.datastrategy.DataStrategyEnum;
+import com.cloudera.utils.hms.stage.PrioritizedTask;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import static com.cloudera.utils.hms.mirror.MirrorConf.DATA_SIZE;
+import static com.cloudera.utils.hms.mirror.MirrorConf.FILE_COUNT;
+import static org.junit.Assert.*;
+
+public class TransferCostTest {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    private static TableMirror table(String name, long bytes, int files, int partitions) {
+        TableMirror tableMirror = new TableMirror();
+        tableMirror.setName(name);
+        EnvironmentTable et = tableMirror.getEnvironmentTable(Environment.LEFT);
+        et.getStatistics().put(DATA_SIZE, bytes);
+        et.getStatistics().put(FILE_COUNT, files);
+        for (int i = 0; i < partitions; i++) {
+            et.getPartitions().put("dt=" + i, "hdfs://left/" + name + "/dt=" + i);
+        }
+        return tableMirror;
+    }
+
+    /*
+    Run the tasks on 'threads' workers, each taking the next from the queue as it frees up, with a task taking its
+    priority in time.  Returns when the last one ends.
+     */
+    private static double makespan(List<PrioritizedTask> tasks, Queue<PrioritizedTask> queue, int threads) {
+        queue.addAll(tasks);
+        double[] free = new double[threads];
+        while (!queue.isEmpty()) {
+            int next = 0;
+            for (int i = 1; i < threads; i++) {
+                if (free[i] < free[next]) {
+                    next = i;
+                }
+            }
+            free[next] += queue.poll().getPriority();
+        }
+        double rtn = 0;
+        for (double end : free) {
+            rtn = Math.max(rtn, end);
+        }
+        return rtn;
+    }
+
+    @Test
+    public void estimate() {
+        TableMirror big = table("big", 64 * GB, 1000, 100);
+        // 1 + 100/50 partitions + 1024 for the bytes + 1000/100 files.
+        assertEquals(1037, TransferCost.estimate(big, DataStrategyEnum.SQL, false), 0.01);
+        // The data doesn't move.
+        assertEquals(3, TransferCost.estimate(big, DataStrategyEnum.SCHEMA_ONLY, false), 0.01);
+        assertEquals(3, TransferCost.estimate(big, DataStrategyEnum.STORAGE_MIGRATION, true), 0.01);
+        // No statistics.
+        assertEquals(1, TransferCost.estimate(new TableMirror(), DataStrategyEnum.SQL, false), 0.01);
+    }
+
+    @Test
+    public void largestFirstShortensMakespan() {
+        // The way the metadata happens to finish: the small tables first, the big ones last.
+        List<PrioritizedTask> fifo = new ArrayList<>();
+        List<PrioritizedTask> largestFirst = new ArrayList<>();
+        List<TableMirror> tables = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            tables.add(table("small_" + i, GB, 50, 0));
+        }
+        tables.add(table("large", 20 * GB, 2000, 0));
+        tables.add(table("huge", 30 * GB, 4000, 365));
+        for (TableMirror tableMirror : tables) {
+            double cost = TransferCost.estimate(tableMirror, DataStrategyEnum.SQL, false);
+            // In submit order, as the pool runs them without 'largestFirst'.
+            fifo.add(new PrioritizedTask(cost, () -> {}));
+            largestFirst.add(new PrioritizedTask(cost, () -> {}));
+        }
+
+        Queue<PrioritizedTask> submitOrder = new ArrayDeque<>();
+        double fifoMakespan = makespan(fifo, submitOrder, 4);
+        double lptMakespan = makespan(largestFirst, new PriorityQueue<>(PrioritizedTask.ORDER), 4);
+
+        assertTrue(lptMakespan + " against " + fifoMakespan, lptMakespan < fifoMakespan);
+        // No worse than the biggest table, with the rest spread over the other threads.
+        double huge = TransferCost.estimate(tables.get(tables.size() - 1), DataStrategyEnum.SQL, false);
+        assertEquals(huge, lptMakespan, 0.01);
+    }
+
+    @Test
+    public void equalPrioritiesKeepSubmitOrder() {
+        PriorityQueue<Runnable> queue = new PriorityQueue<>(PrioritizedTask.ORDER);
+        PrioritizedTask first = new PrioritizedTask(0, () -> {});
+        PrioritizedTask second = new PrioritizedTask(0, () -> {});
+        PrioritizedTask larger = new PrioritizedTask(5, () -> {});
+        queue.add(second);
+        queue.add(first);
+        queue.add(larger);
+        assertSame(larger, queue.poll());
+        assertSame(first, queue.poll());
+        assertSame(second, queue.poll());
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.connections;
+
+import com.cloudera.utils.hms.mirror.Environment;
+import com.cloudera.utils.hms.mirror.HiveServer2Config;
+import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
+import com.cloudera.utils.hms.mirror.service.HmsMirrorCfgService;
+import com.zaxxer.hikari.HikariConfig;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/*
+The HS2 pools are sized to the connections the run can use, not the pool library's default.
+ */
+public class ConnectionPoolsTest {
+
+    private static HmsMirrorCfgService cfgService(int concurrency) {
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        config.getTransfer().setConcurrency(concurrency);
+        return new HmsMirrorCfgService(config);
+    }
+
+    private static HiveServer2Config hs2Config() {
+        HiveServer2Config hs2Config = new HiveServer2Config();
+        hs2Config.setUri("jdbc:hive2://localhost:10000");
+        return hs2Config;
+    }
+
+    @Test
+    public void sizedToConcurrency() {
+        HmsMirrorCfgService cfgService = cfgService(20);
+        assertEquals(20, cfgService.hs2Connections(Environment.LEFT));
+
+        ConnectionPoolsHikariImpl hikari = new ConnectionPoolsHikariImpl(cfgService, null);
+        assertEquals(20, hikari.hs2PoolConfig(Environment.LEFT, hs2Config(), null).getMaximumPoolSize());
+
+        ConnectionPoolsDBCP2Impl dbcp = new ConnectionPoolsDBCP2Impl(cfgService, null);
+        assertEquals(20, dbcp.hs2Pool(Environment.LEFT, hs2Config(), null).getMaxTotal());
+        assertEquals(20, dbcp.hs2Pool(Environment.LEFT, hs2Config(), null).getMaxIdle());
+    }
+
+    @Test
+    public void sizedToAdaptiveCeiling() {
+        HmsMirrorCfgService cfgService = cfgService(10);
+        cfgService.getHmsMirrorConfig().getOptimization().setAdaptiveConcurrency(Boolean.TRUE);
+        cfgService.getHmsMirrorConfig().getOptimization().setAdaptiveConcurrencyMax(24);
+        assertEquals(24, cfgService.hs2Connections(Environment.RIGHT));
+
+        ConnectionPoolsHybridImpl hybrid = new ConnectionPoolsHybridImpl(cfgService, null);
+        assertEquals(24, hybrid.hs2PoolConfig(Environment.RIGHT, hs2Config(), null).getMaximumPoolSize());
+        assertEquals(24, hybrid.hs2Pool(Environment.RIGHT, hs2Config(), null).getMaxTotal());
+    }
+
+    @Test
+    public void sizedPerEnvironment() {
+        HmsMirrorCfgService cfgService = cfgService(6);
+        cfgService.getHmsMirrorConfig().getOptimization().setEnvironmentPools(Boolean.TRUE);
+        cfgService.getHmsMirrorConfig().getOptimization().setLeftConcurrency(4);
+        cfgService.getHmsMirrorConfig().getOptimization().setRightConcurrency(12);
+
+        ConnectionPoolsHikariImpl hikari = new ConnectionPoolsHikariImpl(cfgService, null);
+        HikariConfig left = hikari.hs2PoolConfig(Environment.LEFT, hs2Config(), null);
+        HikariConfig right = hikari.hs2PoolConfig(Environment.RIGHT, hs2Config(), null);
+        // The LEFT can still run the transfer concurrency, but only keeps its own share open.
+        assertEquals(6, left.getMaximumPoolSize());
+        assertEquals(4, left.getMinimumIdle());
+        assertEquals(12, right.getMaximumPoolSize());
+        assertEquals(12, right.getMinimumIdle());
+
+        ConnectionPoolsDBCP2Impl dbcp = new ConnectionPoolsDBCP2Impl(cfgService, null);
+        assertEquals(6, dbcp.hs2Pool(Environment.LEFT, hs2Config(), null).getMaxTotal());
+        assertEquals(12, dbcp.hs2Pool(Environment.RIGHT, hs2Config(), null).getMaxTotal());
+
+        // With adaptive concurrency, each environment grows to its own ceiling.
+        cfgService.getHmsMirrorConfig().getOptimization().setAdaptiveConcurrency(Boolean.TRUE);
+        ConnectionPoolsHybridImpl hybrid = new ConnectionPoolsHybridImpl(cfgService, null);
+        assertEquals(12, hybrid.hs2PoolConfig(Environment.LEFT, hs2Config(), null).getMaximumPoolSize());
+        assertEquals(24, hybrid.hs2PoolConfig(Environment.RIGHT, hs2Config(), null).getMaximumPoolSize());
+        assertEquals(12, hybrid.hs2Pool(Environment.RIGHT, hs2Config(), null).getMinIdle());
+    }
+
+}
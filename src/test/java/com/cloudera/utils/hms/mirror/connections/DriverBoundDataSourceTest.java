@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.connections;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.dbcp2.*;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/*
+Multi-threaded borrow harness.  Checks that connects through the bound driver don't serialize the way the previous
+acquisition path (synchronized, with a DriverManager register/deregister around each borrow) did.
+ */
+@Slf4j
+public class DriverBoundDataSourceTest {
+
+    private static final String URL = "jdbc:stub://localhost:10000";
+
+    @Test
+    public void connectThroughBoundDriver() throws SQLException {
+        StubDriver driver = new StubDriver();
+        DataSource ds = new DriverBoundDataSource(driver, URL, new Properties());
+        try (Connection conn = ds.getConnection()) {
+            assertNotNull(conn);
+        }
+        assertEquals(1, driver.connects.get());
+        // The driver is never registered with the DriverManager.
+        assertFalse(Collections.list(DriverManager.getDrivers()).contains(driver));
+    }
+
+    @Test(expected = SQLException.class)
+    public void rejectedUrl() throws SQLException {
+        DataSource ds = new DriverBoundDataSource(new StubDriver(), "jdbc:other://localhost", new Properties());
+        ds.getConnection();
+    }
+
+    /*
+    Connects through the bound driver run at the same time: each one waits inside the driver until all the threads
+    are in.  The previous path (synchronized, with the DriverManager register/deregister) only ever has one inside.
+     */
+    @Test
+    public void concurrentConnectsOverlap() throws Exception {
+        int threads = 8;
+        StubDriver driver = new StubDriver();
+        DataSource ds = new DriverBoundDataSource(driver, URL, new Properties());
+        driver.gate(threads, 5000);
+        borrow(threads, ds::getConnection);
+        assertEquals(threads, driver.peakInside.get());
+
+        StubDriver legacyDriver = new StubDriver();
+        DataSource legacyDs = new DriverBoundDataSource(legacyDriver, URL, new Properties());
+        legacyDriver.gate(threads, 50);
+        Object lock = new Object();
+        borrow(threads, () -> {
+            synchronized (lock) {
+                DriverManager.registerDriver(legacyDriver);
+                try {
+                    return legacyDs.getConnection();
+                } finally {
+                    DriverManager.deregisterDriver(legacyDriver);
+                }
+            }
+        });
+        assertEquals(1, legacyDriver.peakInside.get());
+    }
+
+    @Test
+    public void pooledBorrowsReuseConnections() throws Exception {
+        int threads = 16;
+        StubDriver driver = new StubDriver();
+        PoolingDataSource<PoolableConnection> pool = buildPool(driver, threads);
+        borrow(threads, pool::getConnection, 200);
+        // Connections are re-used by the pool, physical connects are bound by the pool size.
+        assertTrue(driver.connects.get() <= threads);
+        pool.close();
+    }
+
+    private void borrow(int threads, Borrower borrower) throws InterruptedException {
+        borrow(threads, borrower, 1);
+    }
+
+    private void borrow(int threads, Borrower borrower, int borrowsPerThread) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicLong failures = new AtomicLong(0);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < borrowsPerThread; j++) {
+                        try (Connection conn = borrower.borrow()) {
+                            if (conn == null) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    log.error(e.getMessage(), e);
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.start();
+        }
+        start.countDown();
+        assertTrue("Borrows didn't finish", done.await(60, TimeUnit.SECONDS));
+        assertEquals("Borrow failures", 0, failures.get());
+    }
+
+    private PoolingDataSource<PoolableConnection> buildPool(Driver driver, int size) {
+        ConnectionFactory connectionFactory = new DriverConnectionFactory(driver, URL, new Properties());
+        PoolableConnectionFactory poolableConnectionFactory = new PoolableConnectionFactory(connectionFactory, null);
+        GenericObjectPool<PoolableConnection> connectionPool = new GenericObjectPool<>(poolableConnectionFactory);
+        connectionPool.setMaxTotal(size);
+        connectionPool.setMaxIdle(size);
+        poolableConnectionFactory.setPool(connectionPool);
+        return new PoolingDataSource<>(connectionPool);
+    }
+
+    private interface Borrower {
+        Connection borrow() throws SQLException;
+    }
+
+    /*
+    A driver that hands out no-op connections.
+     */
+    private static class StubDriver implements Driver {
+        private final AtomicLong connects = new AtomicLong(0);
+        private final AtomicInteger inside = new AtomicInteger(0);
+        private final AtomicInteger peakInside = new AtomicInteger(0);
+        private CountDownLatch arrived = null;
+        private long waitMs = 0;
+
+        /*
+        Hold each connect until 'parties' are inside at once, or 'waitMs' passes.
+         */
+        void gate(int parties, long waitMs) {
+            this.arrived = new CountDownLatch(parties);
+            this.waitMs = waitMs;
+        }
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            connects.incrementAndGet();
+            peakInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+            try {
+                if (arrived != null) {
+                    arrived.countDown();
+                    arrived.await(waitMs, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inside.decrementAndGet();
+            }
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "isValid":
+                            case "getAutoCommit":
+                                return Boolean.TRUE;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            case "toString":
+                                return "StubConnection";
+                            default:
+                                Class<?> rtnType = method.getReturnType();
+                                if (rtnType == boolean.class) {
+                                    return Boolean.FALSE;
+                                } else if (rtnType == int.class) {
+                                    return 0;
+                                } else if (rtnType == long.class) {
+                                    return 0L;
+                                }
+                                return null;
+                        }
+                    });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith("jdbc:stub:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.connections;
+
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SessionStateConnectionTest {
+
+    private final List<String> executed = new ArrayList<>();
+    private RunStatistics runStatistics;
+    private SessionStateConnection connection;
+
+    @Before
+    public void setUp() {
+        executed.clear();
+        runStatistics = new RunStatistics();
+        Statement stmt = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Statement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("execute")) {
+                        String sql = (String) args[0];
+                        if (sql.startsWith("fail")) {
+                            throw new SQLException("failed: " + sql);
+                        }
+                        executed.add(sql);
+                        return Boolean.FALSE;
+                    }
+                    return null;
+                });
+        Connection conn = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                (proxy, method, args) -> method.getName().equals("createStatement") ? stmt : null);
+        connection = new SessionStateConnection(conn, runStatistics);
+    }
+
+    @Test
+    public void skipRepeatedUse() throws SQLException {
+        Statement stmt = connection.createStatement();
+        stmt.execute("USE tpcds");
+        stmt.execute("use TPCDS");
+        stmt.execute("USE `tpcds`;");
+        stmt.execute("USE other");
+        assertEquals(2, executed.size());
+        assertEquals("other", connection.getDatabase());
+        assertEquals(2, runStatistics.get(SessionStateConnection.USE_SKIPPED));
+    }
+
+    @Test
+    public void stateCarriesAcrossStatements() throws SQLException {
+        connection.createStatement().execute("USE tpcds");
+        connection.createStatement().execute("USE tpcds");
+        assertEquals(1, executed.size());
+    }
+
+    @Test
+    public void skipRepeatedSet() throws SQLException {
+        Statement stmt = connection.createStatement();
+        stmt.execute("set hive.exec.dynamic.partition.mode=nonstrict");
+        stmt.execute("set hive.exec.dynamic.partition.mode = nonstrict");
+        stmt.execute("set hive.exec.dynamic.partition.mode=strict");
+        stmt.execute("set hive.exec.dynamic.partition.mode=strict");
+        assertEquals(2, executed.size());
+        assertEquals("strict", connection.getVariables().get("hive.exec.dynamic.partition.mode"));
+        assertEquals(2, runStatistics.get(SessionStateConnection.SET_SKIPPED));
+    }
+
+    @Test
+    public void otherStatementsPassThrough() throws SQLException {
+        Statement stmt = connection.createStatement();
+        stmt.execute("ALTER TABLE a ADD PARTITION (dt='1')");
+        stmt.execute("ALTER TABLE a ADD PARTITION (dt='1')");
+        assertEquals(2, executed.size());
+    }
+
+    @Test
+    public void resetClearsState() throws SQLException {
+        Statement stmt = connection.createStatement();
+        stmt.execute("USE tpcds");
+        stmt.execute("set a=b");
+        stmt.execute("RESET");
+        stmt.execute("USE tpcds");
+        stmt.execute("set a=b");
+        assertEquals(5, executed.size());
+    }
+
+    @Test
+    public void failureClearsState() throws SQLException {
+        Statement stmt = connection.createStatement();
+        stmt.execute("USE tpcds");
+        try {
+            stmt.execute("fail");
+            fail("Expected failure");
+        } catch (SQLException se) {
+            // expected
+        }
+        assertNull(connection.getDatabase());
+        stmt.execute("USE tpcds");
+        assertEquals(2, executed.size());
+    }
+
+    @Test
+    public void countedByPool() throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                connection.createStatement().executeQuery("SHOW TABLES");
+                connection.createStatement().execute("fail");
+            } catch (SQLException se) {
+                // expected
+            }
+        }, "metadata-7");
+        thread.start();
+        thread.join();
+        assertEquals(1, runStatistics.get(SessionStateConnection.QUERIES + ".metadata"));
+        assertEquals(2, runStatistics.get(SessionStateConnection.STATEMENTS + ".metadata"));
+        assertEquals(1, runStatistics.get(SessionStateConnection.FAILURES + ".metadata"));
+        assertEquals(0, runStatistics.get(SessionStateConnection.FAILURES + ".main"));
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import com.cloudera.utils.hms.mirror.connections.SessionStateConnection;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveConcurrencyServiceTest {
+
+    private final List<ThreadPoolTaskExecutor> executors = new ArrayList<>();
+    private final RunStatistics runStatistics = new RunStatistics();
+    private volatile long statementMs = 0;
+
+    @After
+    public void tearDown() {
+        executors.forEach(ThreadPoolTaskExecutor::shutdown);
+    }
+
+    /*
+    The job threads run their SQL with 'execute'.  When those statements slow down, the job pool backs off.
+     */
+    @Test
+    public void jobPoolBacksOffOnStatementLatency() throws Exception {
+        AdaptiveConcurrencyService service = service(8);
+        ThreadPoolTaskExecutor jobs = (ThreadPoolTaskExecutor) service.getJobThreadPool();
+
+        statementMs = 5;
+        runOnJobThread("CREATE TABLE t (c string)");
+        service.adjust();
+        assertEquals(8, jobs.getCorePoolSize());
+
+        statementMs = 200;
+        runOnJobThread("ALTER TABLE t SET TBLPROPERTIES ('a'='b')");
+        service.adjust();
+        assertEquals(6, jobs.getCorePoolSize());
+        assertEquals(1, runStatistics.get(String.format(AdaptiveConcurrencyService.DECREASES, "job")));
+        assertEquals(0, runStatistics.get(String.format(AdaptiveConcurrencyService.DECREASES, "metadata")));
+    }
+
+    /*
+    A long INSERT is the data, not the server, so it isn't held against the pool.
+     */
+    @Test
+    public void dataStatementsAreNotTimed() throws Exception {
+        AdaptiveConcurrencyService service = service(8);
+        ThreadPoolTaskExecutor jobs = (ThreadPoolTaskExecutor) service.getJobThreadPool();
+
+        statementMs = 5;
+        runOnJobThread("CREATE TABLE t (c string)");
+        service.adjust();
+
+        statementMs = 200;
+        runOnJobThread("INSERT OVERWRITE TABLE t SELECT * FROM s");
+        service.adjust();
+        assertEquals(8, jobs.getCorePoolSize());
+        assertEquals(1, runStatistics.get(SessionStateConnection.EXECUTES + ".job"));
+        assertEquals(2, runStatistics.get(SessionStateConnection.STATEMENTS + ".job"));
+    }
+
+    private AdaptiveConcurrencyService service(int concurrency) {
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        config.getTransfer().setConcurrency(concurrency);
+        config.getOptimization().setAdaptiveConcurrency(Boolean.TRUE);
+        AdaptiveConcurrencyService service = new AdaptiveConcurrencyService();
+        service.setHmsMirrorCfgService(new HmsMirrorCfgService(config));
+        service.setRunStatistics(runStatistics);
+        service.setJobThreadPool(executor("job", concurrency));
+        service.setMetadataThreadPool(executor("metadata", concurrency));
+        service.setLeftExecutionPool(executor("left", concurrency));
+        service.setRightExecutionPool(executor("right", concurrency));
+        service.start();
+        // The windows are run by the test.
+        service.stop();
+        return service;
+    }
+
+    private ThreadPoolTaskExecutor executor(String name, int size) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setThreadNamePrefix(name + "-");
+        executor.initialize();
+        executors.add(executor);
+        return executor;
+    }
+
+    private void runOnJobThread(String sql) throws Exception {
+        Statement delegate = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Statement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("execute")) {
+                        Thread.sleep(statementMs);
+                        return Boolean.FALSE;
+                    }
+                    return null;
+                });
+        Connection conn = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Connection.class}, (proxy, method, args) ->
+                        method.getName().equals("createStatement") ? delegate : null);
+        SessionStateConnection connection = new SessionStateConnection(conn, runStatistics);
+        List<SQLException> errors = new ArrayList<>();
+        Thread thread = new Thread(() -> {
+            try {
+                connection.createStatement().execute(sql);
+            } catch (SQLException se) {
+                errors.add(se);
+            }
+        }, "job-1");
+        thread.start();
+        thread.join();
+        assertTrue(errors.isEmpty());
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class CheckpointJournalServiceTest {
+
+    private static CheckpointJournalService service(File directory, boolean resume) {
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        config.setExecute(Boolean.TRUE);
+        config.setResume(resume);
+        config.setDatabases(new String[]{"sales"});
+        CheckpointJournalService service = new CheckpointJournalService();
+        service.setHmsMirrorCfgService(new HmsMirrorCfgService(config));
+        service.setDirectory(directory);
+        return service;
+    }
+
+    private static TableMirror tableMirror(String name) {
+        DBMirror dbMirror = new DBMirror();
+        dbMirror.setName("sales");
+        TableMirror tableMirror = new TableMirror();
+        tableMirror.setName(name);
+        tableMirror.setParent(dbMirror);
+        return tableMirror;
+    }
+
+    @Test
+    public void escaping() {
+        String[] values = {"SQL", "a\tb", "line1\nline2", "back\\slash", ""};
+        String record = CheckpointJournalService.record(values);
+        assertFalse(record.contains("\n"));
+        assertArrayEquals(values, CheckpointJournalService.fields(record));
+    }
+
+    @Test
+    public void resume() throws IOException {
+        File directory = Files.createTempDirectory("journal").toFile();
+        Pair create = new Pair("Create table", "CREATE EXTERNAL TABLE orders (id int)");
+        Pair range = new Pair("Partition range", "INSERT INTO orders SELECT * FROM orders_src");
+
+        CheckpointJournalService first = service(directory, false);
+        String runMarker = first.getHmsMirrorCfgService().getHmsMirrorConfig().getRunMarker();
+        first.open();
+        TableMirror done = tableMirror("customers");
+        done.setPhaseState(PhaseState.STARTED);
+        first.phase(done);
+        done.setPhaseState(PhaseState.SUCCESS);
+        first.phase(done);
+        TableMirror partial = tableMirror("orders");
+        partial.setPhaseState(PhaseState.STARTED);
+        first.phase(partial);
+        first.sqlCompleted(partial, Environment.RIGHT, create);
+        first.sqlCompleted(partial, Environment.RIGHT, range);
+        first.close();
+
+        // The crash, part way through a record.
+        try (FileOutputStream out = new FileOutputStream(first.getFile(), true)) {
+            out.write("SQL\tsales\torders\tRIGHT".getBytes(StandardCharsets.UTF_8));
+        }
+
+        CheckpointJournalService second = service(directory, true);
+        second.getHmsMirrorCfgService().getHmsMirrorConfig().setRunMarker("other");
+        second.open();
+        assertEquals(runMarker, second.getHmsMirrorCfgService().getHmsMirrorConfig().getRunMarker());
+        assertTrue(second.isTableCompleted(tableMirror("customers")));
+        assertFalse(second.isTableCompleted(tableMirror("orders")));
+        assertTrue(second.isSqlCompleted(tableMirror("orders"), Environment.RIGHT, create));
+        assertFalse(second.isSqlCompleted(tableMirror("orders"), Environment.LEFT, range));
+        assertTrue(second.isSqlCompleted(tableMirror("orders"), Environment.RIGHT, range));
+        // It only completed once.
+        assertFalse(second.isSqlCompleted(tableMirror("orders"), Environment.RIGHT, range));
+        second.close();
+
+        String journal = new String(Files.readAllBytes(second.getFile().toPath()), StandardCharsets.UTF_8);
+        assertTrue(journal.endsWith("\n"));
+        assertTrue(journal.contains(CheckpointJournalService.RESUME + "\t"));
+
+        // Without 'resume', the journal starts over.
+        CheckpointJournalService third = service(directory, false);
+        third.open();
+        third.close();
+        assertFalse(third.isTableCompleted(tableMirror("customers")));
+        assertEquals(1, Files.readAllLines(third.getFile().toPath()).size());
+    }
+
+    @Test
+    public void unreadablePhase() throws IOException {
+        File directory = Files.createTempDirectory("journal").toFile();
+        CheckpointJournalService first = service(directory, false);
+        first.open();
+        TableMirror done = tableMirror("customers");
+        done.setPhaseState(PhaseState.SUCCESS);
+        first.phase(done);
+        first.close();
+
+        // A phase cut short, but followed by a newline.
+        try (FileOutputStream out = new FileOutputStream(first.getFile(), true)) {
+            out.write("PHASE\tsales\torders\tSUCC\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        CheckpointJournalService second = service(directory, true);
+        second.open();
+        assertTrue(second.isTableCompleted(tableMirror("customers")));
+        assertFalse(second.isTableCompleted(tableMirror("orders")));
+        second.close();
+    }
+
+}
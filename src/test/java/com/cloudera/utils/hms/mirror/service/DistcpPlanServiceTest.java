@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DistcpPlanServiceTest {
+
+    private static final String SOURCE = "hdfs://HOME90/warehouse/tablespace/external/hive/sales.db";
+    private static final String TARGET = "s3a://bucket/warehouse/external/sales.db";
+
+    private static long[] size(long bytes, long files) {
+        return new long[]{bytes, files};
+    }
+
+    @Test
+    public void weigh() {
+        NavigableMap<String, long[]> sizes = new TreeMap<>();
+        sizes.put(SOURCE + "/web_sales/dt=1", size(100, 2));
+        sizes.put(SOURCE + "/web_sales/dt=2", size(300, 4));
+        sizes.put(SOURCE + "/web_sales_old", size(5000, 50));
+        assertArrayEquals(size(400, 6), DistcpPlanService.weigh(sizes, SOURCE + "/web_sales"));
+        assertArrayEquals(size(100, 2), DistcpPlanService.weigh(sizes, SOURCE + "/web_sales/dt=1"));
+        assertArrayEquals(size(5400, 56), DistcpPlanService.weigh(sizes, SOURCE));
+        assertNull(DistcpPlanService.weigh(sizes, SOURCE + "/store_sales"));
+    }
+
+    @Test
+    public void balancedByBytes() {
+        Map<String, Set<String>> targetSources = new TreeMap<>();
+        NavigableMap<String, long[]> sizes = new TreeMap<>();
+        Set<String> sources = new TreeSet<>();
+        // One big table and a lot of small ones.
+        long[] bytes = {8000, 3000, 2500, 2000, 1000, 900, 800, 700, 600, 500};
+        for (int i = 0; i < bytes.length; i++) {
+            String source = SOURCE + "/t" + i;
+            sources.add(source);
+            sizes.put(source, size(bytes[i], bytes[i] / 100));
+        }
+        targetSources.put(TARGET, sources);
+
+        List<DistcpPlanService.DistcpJob> plan = DistcpPlanService.plan(targetSources, sizes, 3);
+        assertEquals(3, plan.size());
+        long total = 0;
+        int sourceCount = 0;
+        for (DistcpPlanService.DistcpJob job : plan) {
+            total += job.getBytes();
+            sourceCount += job.getSourceCount();
+            assertEquals(0, job.getEstimatedCount());
+        }
+        assertEquals(20000, total);
+        assertEquals(bytes.length, sourceCount);
+        // The big table gets a job to itself, the rest share the other two evenly.
+        assertEquals(8000, plan.get(0).getBytes());
+        assertEquals(Collections.singleton(SOURCE + "/t0"), plan.get(0).getTargetSources().get(TARGET));
+        assertEquals(12000, plan.get(1).getBytes() + plan.get(2).getBytes());
+        assertTrue(Math.abs(plan.get(1).getBytes() - plan.get(2).getBytes()) <= 500);
+    }
+
+    @Test
+    public void unknownSourcesUseTheAverage() {
+        Map<String, Set<String>> targetSources = new TreeMap<>();
+        targetSources.put(TARGET, new TreeSet<>(Arrays.asList(SOURCE + "/a", SOURCE + "/b", SOURCE + "/c", SOURCE + "/d")));
+        targetSources.put(TARGET + "_other", new TreeSet<>(Collections.singletonList(SOURCE + "_other/e")));
+        NavigableMap<String, long[]> sizes = new TreeMap<>();
+        sizes.put(SOURCE + "/a", size(1000, 10));
+        sizes.put(SOURCE + "/b", size(3000, 30));
+
+        List<DistcpPlanService.DistcpJob> plan = DistcpPlanService.plan(targetSources, sizes, 2);
+        assertEquals(2, plan.size());
+        int estimated = 0;
+        long total = 0;
+        for (DistcpPlanService.DistcpJob job : plan) {
+            estimated += job.getEstimatedCount();
+            total += job.getBytes();
+        }
+        assertEquals(3, estimated);
+        assertEquals(1000 + 3000 + 3 * 2000, total);
+        assertEquals(5000, plan.get(0).getBytes());
+        assertEquals(5000, plan.get(1).getBytes());
+    }
+
+    @Test
+    public void moreJobsThanSources() {
+        Map<String, Set<String>> targetSources = new TreeMap<>();
+        targetSources.put(TARGET, new TreeSet<>(Arrays.asList(SOURCE + "/a", SOURCE + "/b")));
+        List<DistcpPlanService.DistcpJob> plan = DistcpPlanService.plan(targetSources, new TreeMap<>(), 10);
+        assertEquals(2, plan.size());
+        assertEquals(1, plan.get(0).getSourceCount());
+        assertEquals(1, plan.get(1).getSourceCount());
+        assertTrue(DistcpPlanService.plan(null, new TreeMap<>(), 4).isEmpty());
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.cloudera.utils.hms.mirror.MirrorConf.DATA_SIZE;
+import static org.junit.Assert.*;
+
+public class ExportImportPipelineServiceTest {
+
+    private static final long MB = 1024L * 1024;
+
+    private static ExportImportPipelineService service(HmsMirrorConfig config, RunStatistics runStatistics) {
+        config.setExecute(Boolean.TRUE);
+        ExportImportPipelineService service = new ExportImportPipelineService();
+        service.setHmsMirrorCfgService(new HmsMirrorCfgService(config));
+        service.setRunStatistics(runStatistics);
+        return service;
+    }
+
+    private static TableMirror table(String name, long bytes) {
+        TableMirror tableMirror = new TableMirror();
+        tableMirror.setName(name);
+        tableMirror.getEnvironmentTable(Environment.LEFT).getStatistics().put(DATA_SIZE, bytes);
+        return tableMirror;
+    }
+
+    @Test
+    public void runsBothStages() {
+        RunStatistics runStatistics = new RunStatistics();
+        ExportImportPipelineService service = service(new HmsMirrorConfig(), runStatistics);
+        assertTrue(service.run(table("orders", 10 * MB), () -> Boolean.TRUE, () -> Boolean.TRUE));
+        AtomicBoolean imported = new AtomicBoolean(false);
+        // No IMPORT after a failed EXPORT.
+        assertFalse(service.run(table("customers", MB), () -> Boolean.FALSE, () -> imported.getAndSet(true)));
+        assertFalse(imported.get());
+
+        assertEquals(1, runStatistics.get("exportimport.export.tables"));
+        assertEquals(1, runStatistics.get("exportimport.export.errors"));
+        assertEquals(1, runStatistics.get("exportimport.import.tables"));
+        assertEquals(10 * MB, runStatistics.get("exportimport.import.bytes"));
+        assertEquals(0, service.getInFlight());
+        assertEquals(0, service.getInFlightBytes());
+    }
+
+    @Test
+    public void limitsTheBytesInFlight() throws InterruptedException {
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        config.getOptimization().setExportImportInFlightBytes(100 * MB);
+        RunStatistics runStatistics = new RunStatistics();
+        ExportImportPipelineService service = service(config, runStatistics);
+
+        CountDownLatch exported = new CountDownLatch(1);
+        CountDownLatch importing = new CountDownLatch(1);
+        Thread first = new Thread(() -> service.run(table("large", 80 * MB), () -> {
+            exported.countDown();
+            return Boolean.TRUE;
+        }, () -> {
+            try {
+                return importing.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return Boolean.FALSE;
+            }
+        }));
+        first.start();
+        assertTrue(exported.await(5, TimeUnit.SECONDS));
+
+        // 80MB + 30MB is over the limit, so this one waits for the first IMPORT.
+        CountDownLatch second = new CountDownLatch(1);
+        new Thread(() -> {
+            service.run(table("small", 30 * MB), () -> Boolean.TRUE, () -> Boolean.TRUE);
+            second.countDown();
+        }).start();
+        assertFalse(second.await(200, TimeUnit.MILLISECONDS));
+        importing.countDown();
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        first.join();
+
+        assertEquals(1, runStatistics.get("exportimport.inflight.waits"));
+        assertEquals(1, runStatistics.get("exportimport.inflight.peak"));
+        assertEquals(80 * MB, runStatistics.get("exportimport.inflight.bytes.peak"));
+
+        // Bigger than the limit, with nothing else in flight.
+        assertTrue(service.run(table("huge", 500 * MB), () -> Boolean.TRUE, () -> Boolean.TRUE));
+    }
+
+    @Test
+    public void oversizeTableIsNotPassedOver() throws InterruptedException {
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        config.getOptimization().setExportImportInFlightBytes(100 * MB);
+        ExportImportPipelineService service = service(config, new RunStatistics());
+        List<String> exported = Collections.synchronizedList(new ArrayList<>());
+
+        CountDownLatch firstIn = new CountDownLatch(1);
+        CountDownLatch firstDone = new CountDownLatch(1);
+        Thread first = new Thread(() -> service.run(table("first", 60 * MB), () -> {
+            firstIn.countDown();
+            return Boolean.TRUE;
+        }, () -> {
+            try {
+                return firstDone.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return Boolean.FALSE;
+            }
+        }));
+        first.start();
+        assertTrue(firstIn.await(5, TimeUnit.SECONDS));
+
+        Thread huge = new Thread(() -> service.run(table("huge", 500 * MB), () -> exported.add("huge"), () -> Boolean.TRUE));
+        huge.start();
+        while (service.getWaiting().size() < 1) {
+            Thread.sleep(10);
+        }
+        // 60MB + 10MB fits, but the huge table is ahead of it.
+        Thread small = new Thread(() -> service.run(table("small", 10 * MB), () -> exported.add("small"), () -> Boolean.TRUE));
+        small.start();
+        Thread.sleep(200);
+        assertTrue(exported.isEmpty());
+
+        firstDone.countDown();
+        first.join();
+        huge.join(5000);
+        small.join(5000);
+        assertEquals(Arrays.asList("huge", "small"), exported);
+        assertEquals(0, service.getInFlight());
+    }
+
+    @Test
+    public void exportOverlapsTheImport() throws Exception {
+        ExecutorService importers = Executors.newSingleThreadExecutor();
+        try {
+            RunStatistics runStatistics = new RunStatistics();
+            ExportImportPipelineService service = service(new HmsMirrorConfig(), runStatistics);
+            service.setImportThreadPool(importers::execute);
+            CountDownLatch importing = new CountDownLatch(1);
+            CountDownLatch nextExported = new CountDownLatch(1);
+
+            // Back as soon as the EXPORT ends, with the IMPORT left to the import thread.
+            TableMirror orders = table("orders", 10 * MB);
+            assertTrue(service.run(orders, () -> Boolean.TRUE, () -> {
+                importing.countDown();
+                try {
+                    return nextExported.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return Boolean.FALSE;
+                }
+            }));
+            assertTrue(service.isImporting(orders));
+            assertTrue(importing.await(5, TimeUnit.SECONDS));
+
+            // The next table EXPORTs while the first IMPORTs.
+            TableMirror customers = table("customers", MB);
+            assertTrue(service.run(customers, () -> {
+                nextExported.countDown();
+                return Boolean.TRUE;
+            }, () -> Boolean.TRUE));
+            assertTrue(service.importing(orders).get(5, TimeUnit.SECONDS));
+            assertTrue(service.importing(customers).get(5, TimeUnit.SECONDS));
+            assertNull(service.importing(orders));
+
+            assertEquals(2, runStatistics.get("exportimport.import.tables"));
+            assertEquals(2, runStatistics.get("exportimport.inflight.peak"));
+            assertEquals(0, service.getInFlight());
+        } finally {
+            importers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void exportWaitsForTheImportsBehind() throws Exception {
+        ExecutorService importers = Executors.newSingleThreadExecutor();
+        try {
+            HmsMirrorConfig config = new HmsMirrorConfig();
+            config.getOptimization().setExportImportInFlight(1);
+            RunStatistics runStatistics = new RunStatistics();
+            ExportImportPipelineService service = service(config, runStatistics);
+            service.setImportThreadPool(importers::execute);
+            CountDownLatch importDone = new CountDownLatch(1);
+
+            TableMirror orders = table("orders", 10 * MB);
+            assertTrue(service.run(orders, () -> Boolean.TRUE, () -> {
+                try {
+                    return importDone.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return Boolean.FALSE;
+                }
+            }));
+
+            // No room for another export until the first is imported.
+            CountDownLatch exported = new CountDownLatch(1);
+            Thread next = new Thread(() -> service.run(table("customers", MB), () -> {
+                exported.countDown();
+                return Boolean.TRUE;
+            }, () -> Boolean.TRUE));
+            next.start();
+            assertFalse(exported.await(200, TimeUnit.MILLISECONDS));
+            importDone.countDown();
+            assertTrue(exported.await(5, TimeUnit.SECONDS));
+            next.join(5000);
+
+            assertTrue(service.importing(orders).get(5, TimeUnit.SECONDS));
+            assertEquals(1, runStatistics.get("exportimport.inflight.waits"));
+            assertEquals(1, runStatistics.get("exportimport.inflight.peak"));
+        } finally {
+            importers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void dryRunDoesNotEnter() {
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        RunStatistics runStatistics = new RunStatistics();
+        ExportImportPipelineService service = service(config, runStatistics);
+        config.setExecute(Boolean.FALSE);
+        AtomicBoolean imported = new AtomicBoolean(false);
+        assertTrue(service.run(table("orders", 10 * MB), () -> Boolean.TRUE, () -> !imported.getAndSet(true)));
+        assertTrue(imported.get());
+        assertEquals(0, runStatistics.get("exportimport.inflight.peak"));
+        assertEquals(0, runStatistics.get("exportimport.export.tables"));
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import com.cloudera.utils.hms.mirror.connections.FileSystemProbe;
+import com.cloudera.utils.hms.mirror.connections.FileSystemProbeLocalImpl;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class FileSystemProbeServiceTest {
+
+    private static FileSystemProbeService service(Supplier<FileSystemProbe> probeFactory, int sessions) {
+        FileSystemProbeService service = new FileSystemProbeService();
+        service.setRunStatistics(new RunStatistics());
+        service.setProbeFactory(probeFactory);
+        service.setSessions(sessions);
+        return service;
+    }
+
+    @Test
+    public void localCount() throws Exception {
+        Path dir = Files.createTempDirectory("probe");
+        Files.createDirectories(dir.resolve("dt=1"));
+        Files.write(dir.resolve("dt=1").resolve("000000_0"), new byte[100]);
+        Files.write(dir.resolve("000000_0"), new byte[50]);
+
+        FileSystemProbeService service = service(FileSystemProbeLocalImpl::new, 2);
+        assertArrayEquals(new long[]{2, 2, 150}, service.count(dir.toUri().toString()));
+        assertNull(service.count(dir.resolve("missing").toString()));
+
+        service.checkDirectory(dir.toString());
+        try {
+            service.checkDirectory(dir.resolve("000000_0").toString());
+            fail("Not a directory");
+        } catch (IOException ioe) {
+            // Expected
+        }
+
+        service.mkdirs(dir.resolve("avro/schema").toString());
+        service.copy(dir.resolve("000000_0").toString(), dir.resolve("avro/schema/t.avsc").toString());
+        assertEquals(50, Files.size(dir.resolve("avro/schema/t.avsc")));
+
+        GenericObjectPool<FileSystemProbe> pool = service.getPool();
+        service.close();
+        assertTrue(pool.isClosed());
+    }
+
+    @Test
+    public void coalesceAndBatch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<String>> calls = Collections.synchronizedList(new ArrayList<>());
+        FileSystemProbe probe = new FileSystemProbeLocalImpl() {
+            @Override
+            public List<long[]> count(List<String> locations) {
+                calls.add(new ArrayList<>(locations));
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                List<long[]> rtn = new ArrayList<>();
+                for (String location : locations) {
+                    rtn.add(new long[]{1, 1, location.length()});
+                }
+                return rtn;
+            }
+        };
+        FileSystemProbeService service = service(() -> probe, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<long[]> a = executor.submit(() -> service.count("/a"));
+            while (calls.isEmpty()) {
+                Thread.sleep(5);
+            }
+            // Queued up behind the one session, and a second ask for '/a'.
+            Future<long[]> b = executor.submit(() -> service.count("/bb"));
+            Future<long[]> c = executor.submit(() -> service.count("/ccc"));
+            Future<long[]> a2 = executor.submit(() -> service.count("/a"));
+            while (service.getPending().size() < 2 ||
+                    service.getRunStatistics().get(FileSystemProbeService.PROBE_COALESCED) < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertEquals(2, a.get(5, TimeUnit.SECONDS)[2]);
+            assertEquals(2, a2.get(5, TimeUnit.SECONDS)[2]);
+            assertEquals(3, b.get(5, TimeUnit.SECONDS)[2]);
+            assertEquals(4, c.get(5, TimeUnit.SECONDS)[2]);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, calls.size());
+        assertEquals(Collections.singletonList("/a"), calls.get(0));
+        assertEquals(new HashSet<>(Arrays.asList("/bb", "/ccc")), new HashSet<>(calls.get(1)));
+        assertEquals(2, service.getRunStatistics().get(FileSystemProbeService.PROBE_BATCHES));
+        assertEquals(3, service.getRunStatistics().get(FileSystemProbeService.PROBE_COUNTS));
+        assertTrue(service.getInFlight().isEmpty());
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hive.config.QueryDefinitions;
+import com.cloudera.utils.hms.mirror.EnvironmentTable;
+import com.cloudera.utils.hms.util.TableUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MetastoreCatalogServiceTest {
+
+    private MetastoreCatalogService.CatalogTable externalTable() {
+        MetastoreCatalogService.CatalogTable table = new MetastoreCatalogService.CatalogTable();
+        table.setName("web_sales");
+        table.setType("EXTERNAL_TABLE");
+        table.setLocation("hdfs://HOME90/warehouse/tablespace/external/hive/tpcds.db/web_sales");
+        table.setSerde("org.apache.hadoop.hive.ql.io.orc.OrcSerde");
+        table.setInputFormat("org.apache.hadoop.hive.ql.io.orc.OrcInputFormat");
+        table.setOutputFormat("org.apache.hadoop.hive.ql.io.orc.OrcOutputFormat");
+        table.setNumBuckets(-1);
+        table.getColumns().add(new String[]{"ws_item_sk", "bigint", null});
+        table.getColumns().add(new String[]{"ws_note", "string", "it's a note"});
+        table.getParameters().put("EXTERNAL", "TRUE");
+        table.getParameters().put("transient_lastDdlTime", "1700000000");
+        table.getParameters().put("external.table.purge", "true");
+        return table;
+    }
+
+    @Test
+    public void externalTable() {
+        List<String> def = MetastoreCatalogService.buildDefinition(externalTable());
+        List<String> expected = Arrays.asList(
+                "CREATE EXTERNAL TABLE `web_sales`(",
+                "`ws_item_sk` bigint,",
+                "`ws_note` string COMMENT 'it\\'s a note')",
+                "ROW FORMAT SERDE",
+                "'org.apache.hadoop.hive.ql.io.orc.OrcSerde'",
+                "STORED AS INPUTFORMAT",
+                "'org.apache.hadoop.hive.ql.io.orc.OrcInputFormat'",
+                "OUTPUTFORMAT",
+                "'org.apache.hadoop.hive.ql.io.orc.OrcOutputFormat'",
+                "LOCATION",
+                "'hdfs://HOME90/warehouse/tablespace/external/hive/tpcds.db/web_sales'",
+                "TBLPROPERTIES (",
+                "'external.table.purge'='true',",
+                "'transient_lastDdlTime'='1700000000')");
+        assertEquals(expected, def);
+
+        EnvironmentTable et = new EnvironmentTable();
+        et.setName("web_sales");
+        et.setDefinition(def);
+        assertTrue(TableUtils.isExternal(et));
+        assertFalse(TableUtils.isPartitioned(et));
+        assertEquals("hdfs://HOME90/warehouse/tablespace/external/hive/tpcds.db/web_sales",
+                TableUtils.getLocation("web_sales", def));
+    }
+
+    @Test
+    public void partitionedBucketedTable() {
+        MetastoreCatalogService.CatalogTable table = externalTable();
+        table.setType("MANAGED_TABLE");
+        table.getParameters().remove("EXTERNAL");
+        table.getParameters().put("comment", "sales");
+        table.getPartitionKeys().add(new String[]{"ws_sold_date_sk", "bigint", null});
+        table.setNumBuckets(4);
+        table.getBucketColumns().add("ws_item_sk");
+        table.getSortColumns().add("ws_item_sk ASC");
+        table.getSerdeParameters().put("serialization.format", "1");
+
+        List<String> def = MetastoreCatalogService.buildDefinition(table);
+        assertEquals("CREATE TABLE `web_sales`(", def.get(0));
+        assertEquals("COMMENT 'sales'", def.get(3));
+        assertEquals(Arrays.asList("PARTITIONED BY (", "`ws_sold_date_sk` bigint)",
+                "CLUSTERED BY (", "ws_item_sk)", "SORTED BY (", "ws_item_sk ASC)", "INTO 4 BUCKETS"),
+                def.subList(4, 11));
+        assertTrue(def.contains("WITH SERDEPROPERTIES ("));
+        assertTrue(def.contains("'serialization.format'='1')"));
+        assertFalse(def.contains("'comment'='sales',"));
+
+        EnvironmentTable et = new EnvironmentTable();
+        et.setName("web_sales");
+        et.setDefinition(def);
+        assertTrue(TableUtils.isPartitioned(et));
+        assertFalse(TableUtils.isExternal(et));
+    }
+
+    @Test
+    public void view() {
+        MetastoreCatalogService.CatalogTable table = new MetastoreCatalogService.CatalogTable();
+        table.setName("web_sales_v");
+        table.setType("VIRTUAL_VIEW");
+        table.setViewText("SELECT `web_sales`.`ws_item_sk`\n  FROM `tpcds`.`web_sales`");
+
+        List<String> def = MetastoreCatalogService.buildDefinition(table);
+        assertEquals(Arrays.asList("CREATE VIEW `web_sales_v` AS SELECT `web_sales`.`ws_item_sk`",
+                "FROM `tpcds`.`web_sales`"), def);
+        assertTrue(table.isSupported());
+
+        EnvironmentTable et = new EnvironmentTable();
+        et.setDefinition(def);
+        assertTrue(TableUtils.isView(et));
+    }
+
+    @Test
+    public void unsupported() {
+        MetastoreCatalogService.CatalogTable table = externalTable();
+        table.getParameters().put("storage_handler", "org.apache.hadoop.hive.hbase.HBaseStorageHandler");
+        assertFalse(table.isSupported());
+
+        table = externalTable();
+        table.setType("MATERIALIZED_VIEW");
+        assertFalse(table.isSupported());
+    }
+
+    /*
+    Run the MYSQL catalog queries against an in memory metastore with a 'hive' and a 'spark' catalog, each holding
+    a 'tpcds' database.  Only the 'hive' catalog tables come back, with their rows joined once.
+     */
+    @Test
+    public void extractFromMetastore() throws Exception {
+        QueryDefinitions queryDefinitions = queryDefinitions("/MYSQL/metastore.yaml");
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:catalog;MODE=MySQL");
+             Statement stmt = conn.createStatement()) {
+            for (String ddl : new String[]{
+                    "CREATE TABLE DBS (DB_ID BIGINT, NAME VARCHAR(128), CTLG_NAME VARCHAR(256))",
+                    "CREATE TABLE TBLS (TBL_ID BIGINT, DB_ID BIGINT, SD_ID BIGINT, TBL_NAME VARCHAR(256), "
+                            + "TBL_TYPE VARCHAR(128), OWNER VARCHAR(767), VIEW_EXPANDED_TEXT CLOB)",
+                    "CREATE TABLE SDS (SD_ID BIGINT, CD_ID BIGINT, SERDE_ID BIGINT, LOCATION VARCHAR(4000), "
+                            + "INPUT_FORMAT VARCHAR(4000), OUTPUT_FORMAT VARCHAR(4000), NUM_BUCKETS INT)",
+                    "CREATE TABLE SERDES (SERDE_ID BIGINT, SLIB VARCHAR(4000))",
+                    "CREATE TABLE COLUMNS_V2 (CD_ID BIGINT, COLUMN_NAME VARCHAR(767), TYPE_NAME CLOB, "
+                            + "COMMENT VARCHAR(256), INTEGER_IDX INT)",
+                    "CREATE TABLE PARTITION_KEYS (TBL_ID BIGINT, PKEY_NAME VARCHAR(128), PKEY_TYPE VARCHAR(767), "
+                            + "PKEY_COMMENT VARCHAR(4000), INTEGER_IDX INT)",
+                    "CREATE TABLE BUCKETING_COLS (SD_ID BIGINT, BUCKET_COL_NAME VARCHAR(256), INTEGER_IDX INT)",
+                    "CREATE TABLE SORT_COLS (SD_ID BIGINT, COLUMN_NAME VARCHAR(767), `ORDER` INT, INTEGER_IDX INT)",
+                    "CREATE TABLE SERDE_PARAMS (SERDE_ID BIGINT, PARAM_KEY VARCHAR(256), PARAM_VALUE CLOB)",
+                    "CREATE TABLE TABLE_PARAMS (TBL_ID BIGINT, PARAM_KEY VARCHAR(256), PARAM_VALUE CLOB)",
+                    "INSERT INTO DBS VALUES (1, 'tpcds', 'hive'), (2, 'tpcds', 'spark')",
+                    // hive.tpcds.web_sales, partitioned and bucketed
+                    "INSERT INTO TBLS VALUES (10, 1, 100, 'web_sales', 'MANAGED_TABLE', 'hive', NULL)",
+                    "INSERT INTO SDS VALUES (100, 1000, 10000, 'hdfs://HOME90/warehouse/tpcds.db/web_sales', "
+                            + "'org.apache.hadoop.hive.ql.io.orc.OrcInputFormat', "
+                            + "'org.apache.hadoop.hive.ql.io.orc.OrcOutputFormat', 4)",
+                    "INSERT INTO SERDES VALUES (10000, 'org.apache.hadoop.hive.ql.io.orc.OrcSerde')",
+                    "INSERT INTO COLUMNS_V2 VALUES (1000, 'ws_note', 'string', 'a note', 1), "
+                            + "(1000, 'ws_item_sk', 'bigint', NULL, 0)",
+                    "INSERT INTO PARTITION_KEYS VALUES (10, 'ws_sold_date_sk', 'bigint', NULL, 0)",
+                    "INSERT INTO BUCKETING_COLS VALUES (100, 'ws_item_sk', 0)",
+                    "INSERT INTO SORT_COLS VALUES (100, 'ws_item_sk', 1, 0)",
+                    "INSERT INTO SERDE_PARAMS VALUES (10000, 'serialization.format', '1')",
+                    "INSERT INTO TABLE_PARAMS VALUES (10, 'transactional', 'true'), (10, 'comment', 'sales')",
+                    // hive.tpcds.web_sales_v
+                    "INSERT INTO TBLS VALUES (11, 1, NULL, 'web_sales_v', 'VIRTUAL_VIEW', 'hive', "
+                            + "'SELECT `web_sales`.`ws_item_sk` FROM `tpcds`.`web_sales`')",
+                    // spark.tpcds.web_sales and spark.tpcds.spark_only
+                    "INSERT INTO TBLS VALUES (20, 2, 200, 'web_sales', 'EXTERNAL_TABLE', 'spark', NULL), "
+                            + "(21, 2, 200, 'spark_only', 'EXTERNAL_TABLE', 'spark', NULL)",
+                    "INSERT INTO SDS VALUES (200, 2000, 20000, 'hdfs://HOME90/spark/tpcds.db/web_sales', "
+                            + "'org.apache.hadoop.mapred.TextInputFormat', "
+                            + "'org.apache.hadoop.hive.ql.io.HiveIgnoreKeyTextOutputFormat', -1)",
+                    "INSERT INTO SERDES VALUES (20000, 'org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe')",
+                    "INSERT INTO COLUMNS_V2 VALUES (2000, 'ws_item_sk', 'bigint', NULL, 0)",
+                    "INSERT INTO TABLE_PARAMS VALUES (20, 'EXTERNAL', 'TRUE'), (20, 'spark.sql.sources.provider', 'csv')"
+            }) {
+                stmt.execute(ddl);
+            }
+
+            Map<String, MetastoreCatalogService.CatalogTable> catalog =
+                    MetastoreCatalogService.extract(conn, queryDefinitions, "tpcds");
+            assertEquals(2, catalog.size());
+            assertFalse(catalog.containsKey("spark_only"));
+
+            List<String> def = MetastoreCatalogService.buildDefinition(catalog.get("web_sales"));
+            assertEquals(Arrays.asList(
+                    "CREATE TABLE `web_sales`(",
+                    "`ws_item_sk` bigint,",
+                    "`ws_note` string COMMENT 'a note')",
+                    "COMMENT 'sales'",
+                    "PARTITIONED BY (",
+                    "`ws_sold_date_sk` bigint)",
+                    "CLUSTERED BY (",
+                    "ws_item_sk)",
+                    "SORTED BY (",
+                    "ws_item_sk ASC)",
+                    "INTO 4 BUCKETS",
+                    "ROW FORMAT SERDE",
+                    "'org.apache.hadoop.hive.ql.io.orc.OrcSerde'",
+                    "WITH SERDEPROPERTIES (",
+                    "'serialization.format'='1')",
+                    "STORED AS INPUTFORMAT",
+                    "'org.apache.hadoop.hive.ql.io.orc.OrcInputFormat'",
+                    "OUTPUTFORMAT",
+                    "'org.apache.hadoop.hive.ql.io.orc.OrcOutputFormat'",
+                    "LOCATION",
+                    "'hdfs://HOME90/warehouse/tpcds.db/web_sales'",
+                    "TBLPROPERTIES (",
+                    "'transactional'='true')"), def);
+
+            assertEquals(Arrays.asList("CREATE VIEW `web_sales_v` AS SELECT `web_sales`.`ws_item_sk` FROM `tpcds`.`web_sales`"),
+                    MetastoreCatalogService.buildDefinition(catalog.get("web_sales_v")));
+        }
+    }
+
+    private QueryDefinitions queryDefinitions(String resource) throws Exception {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        try (InputStream in = getClass().getResourceAsStream(resource)) {
+            return mapper.readerFor(QueryDefinitions.class).readValue(in);
+        }
+    }
+
+}
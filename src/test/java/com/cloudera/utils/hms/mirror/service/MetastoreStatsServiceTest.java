@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static com.cloudera.utils.hms.mirror.MirrorConf.*;
+import static org.junit.Assert.*;
+
+public class MetastoreStatsServiceTest {
+
+    private static TableMirror tableMirror(String name, boolean partitioned) {
+        return tableMirror(name, partitioned, false);
+    }
+
+    private static TableMirror tableMirror(String name, boolean partitioned, boolean external) {
+        DBMirror dbMirror = new DBMirror();
+        dbMirror.setName("sales");
+        TableMirror tableMirror = new TableMirror();
+        tableMirror.setName(name);
+        tableMirror.setParent(dbMirror);
+        EnvironmentTable et = tableMirror.getEnvironmentTable(Environment.LEFT);
+        et.setName(name);
+        String create = external ? "CREATE EXTERNAL TABLE `" : "CREATE TABLE `";
+        if (partitioned) {
+            et.setDefinition(Arrays.asList(create + name + "`(", "`id` int)",
+                    "PARTITIONED BY (", "`dt` string)", "LOCATION", "'hdfs://HOME90/sales.db/" + name + "'"));
+        } else {
+            et.setDefinition(Arrays.asList(create + name + "`(", "`id` int)",
+                    "LOCATION", "'hdfs://HOME90/sales.db/" + name + "'"));
+        }
+        return tableMirror;
+    }
+
+    private static MetastoreStatsService.TableStats tableStats(String files, String bytes, String rows) {
+        return tableStats(files, bytes, rows, "{\"BASIC_STATS\":\"true\",\"COLUMN_STATS\":{\"id\":\"true\"}}");
+    }
+
+    private static MetastoreStatsService.TableStats tableStats(String files, String bytes, String rows,
+                                                               String columnStatsAccurate) {
+        MetastoreStatsService.TableStats tableStats = new MetastoreStatsService.TableStats();
+        tableStats.setParam("COLUMN_STATS_ACCURATE", columnStatsAccurate);
+        tableStats.setParam("numFiles", files);
+        tableStats.setParam("totalSize", bytes);
+        tableStats.setParam("numRows", rows);
+        return tableStats;
+    }
+
+    private static MetastoreStatsService service(String table, MetastoreStatsService.TableStats tableStats) {
+        MetastoreStatsService service = new MetastoreStatsService();
+        service.getLoaded().put(MetastoreStatsService.key(Environment.LEFT, "sales", table), tableStats);
+        return service;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void tableParams() {
+        TableMirror tableMirror = tableMirror("orders", false);
+        MetastoreStatsService service = service("orders", tableStats("4", "4096", "100"));
+        assertTrue(service.applyStats(tableMirror, Environment.LEFT));
+
+        Map<String, Object> statistics = tableMirror.getEnvironmentTable(Environment.LEFT).getStatistics();
+        assertEquals(4, statistics.get(FILE_COUNT));
+        assertEquals(4096L, statistics.get(DATA_SIZE));
+        assertEquals(1024.0, statistics.get(AVG_FILE_SIZE));
+        assertEquals(100L, statistics.get(ROW_COUNT));
+        assertEquals(Boolean.FALSE, statistics.get(TABLE_EMPTY));
+        Map<String, String> sources = (Map<String, String>) statistics.get(STATS_SOURCE);
+        assertEquals(MetastoreStatsService.SOURCE_METASTORE, sources.get(DATA_SIZE));
+        assertEquals(MetastoreStatsService.SOURCE_METASTORE, sources.get(ROW_COUNT));
+        assertFalse(sources.containsKey(DIR_COUNT));
+
+        // Used up.
+        assertFalse(service.applyStats(tableMirror, Environment.LEFT));
+    }
+
+    @Test
+    public void missingOrInconsistentParams() {
+        assertFalse(service("orders", tableStats(null, "4096", "100"))
+                .applyStats(tableMirror("orders", false), Environment.LEFT));
+        assertFalse(service("orders", tableStats("0", "4096", "100"))
+                .applyStats(tableMirror("orders", false), Environment.LEFT));
+        assertFalse(service("orders", tableStats("4", "junk", "100"))
+                .applyStats(tableMirror("orders", false), Environment.LEFT));
+        assertFalse(new MetastoreStatsService().applyStats(tableMirror("orders", false), Environment.LEFT));
+    }
+
+    @Test
+    public void partitionTotals() {
+        // The table params of a partitioned table don't count.
+        MetastoreStatsService.TableStats complete = tableStats("0", "0", "0");
+        complete.setPartitionTotals(10, 10, 10240, 10, 20, 10, 500, 0, 10);
+        TableMirror tableMirror = tableMirror("web_sales", true);
+        assertTrue(service("web_sales", complete).applyStats(tableMirror, Environment.LEFT));
+        Map<String, Object> statistics = tableMirror.getEnvironmentTable(Environment.LEFT).getStatistics();
+        assertEquals(20, statistics.get(FILE_COUNT));
+        assertEquals(10240L, statistics.get(DATA_SIZE));
+        assertEquals(500L, statistics.get(ROW_COUNT));
+
+        // Rows aren't known for every partition.
+        MetastoreStatsService.TableStats noRows = new MetastoreStatsService.TableStats();
+        noRows.setPartitionTotals(10, 10, 10240, 10, 20, 10, 500, -1, 10);
+        tableMirror = tableMirror("web_sales", true);
+        assertTrue(service("web_sales", noRows).applyStats(tableMirror, Environment.LEFT));
+        assertNull(tableMirror.getEnvironmentTable(Environment.LEFT).getStatistics().get(ROW_COUNT));
+
+        // A partition without params.
+        MetastoreStatsService.TableStats partial = new MetastoreStatsService.TableStats();
+        partial.setPartitionTotals(10, 9, 10240, 10, 20, 10, 500, 0, 10);
+        assertFalse(service("web_sales", partial).applyStats(tableMirror("web_sales", true), Environment.LEFT));
+
+        // A partition whose params aren't marked accurate.
+        MetastoreStatsService.TableStats stale = new MetastoreStatsService.TableStats();
+        stale.setPartitionTotals(10, 10, 10240, 10, 20, 10, 500, 0, 9);
+        assertFalse(service("web_sales", stale).applyStats(tableMirror("web_sales", true), Environment.LEFT));
+    }
+
+    @Test
+    public void staleOrExternalParams() {
+        // Written outside of the stats collection, so Hive has marked the params stale.
+        assertFalse(service("orders", tableStats("4", "4096", "100", "{\"BASIC_STATS\":\"false\"}"))
+                .applyStats(tableMirror("orders", false), Environment.LEFT));
+        assertFalse(service("orders", tableStats("4", "4096", "100", null))
+                .applyStats(tableMirror("orders", false), Environment.LEFT));
+        // Hive 1 form.
+        assertTrue(service("orders", tableStats("4", "4096", "100", "true"))
+                .applyStats(tableMirror("orders", false), Environment.LEFT));
+
+        // EXTERNAL tables are counted on the filesystem, whatever their params say.
+        assertFalse(service("orders", tableStats("4", "4096", "100"))
+                .applyStats(tableMirror("orders", false, true), Environment.LEFT));
+        MetastoreStatsService.TableStats complete = new MetastoreStatsService.TableStats();
+        complete.setPartitionTotals(10, 10, 10240, 10, 20, 10, 500, 0, 10);
+        assertFalse(service("web_sales", complete).applyStats(tableMirror("web_sales", true, true), Environment.LEFT));
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hive.config.QueryDefinitions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/*
+The bulk metastore queries read only the 'hive' catalog, except on legacy metastores, which have no catalogs.
+ */
+public class QueryDefinitionsServiceTest {
+
+    private static final String[] METASTORES = {"/MYSQL/metastore.yaml", "/ORACLE/metastore.yaml",
+            "/POSTGRES/metastore.yaml"};
+
+    @Test
+    public void partitionLocationsCatalog() throws Exception {
+        for (String metastore : METASTORES) {
+            QueryDefinitions queryDefinitions = queryDefinitions(metastore);
+            String statement = QueryDefinitionsService.getStatement(queryDefinitions, "db_part_locations", false);
+            assertTrue(metastore, statement.contains("CTLG_NAME"));
+
+            // Legacy metastores have no catalogs.
+            statement = QueryDefinitionsService.getStatement(queryDefinitions, "db_part_locations", true);
+            assertFalse(metastore, statement.contains("CTLG_NAME"));
+            assertTrue(metastore, statement.trim().endsWith("= ?"));
+        }
+    }
+
+    @Test
+    public void partitionStatsCatalog() throws Exception {
+        QueryDefinitions queryDefinitions = queryDefinitions("/MYSQL/metastore.yaml");
+        String statement = QueryDefinitionsService.getStatement(queryDefinitions, "part_stats", false);
+        assertTrue(statement.contains("D.CTLG_NAME = 'hive'"));
+
+        statement = QueryDefinitionsService.getStatement(queryDefinitions, "part_stats", true);
+        assertFalse(statement.contains("CTLG_NAME"));
+        assertTrue(statement.contains("D.NAME = ? AND T.TBL_NAME = ?"));
+    }
+
+    @Test
+    public void databaseStatsCatalog() throws Exception {
+        for (String metastore : METASTORES) {
+            QueryDefinitions queryDefinitions = queryDefinitions(metastore);
+            for (String name : new String[]{MetastoreStatsService.DB_TBL_STATS, MetastoreStatsService.DB_PART_STATS}) {
+                assertTrue(metastore + " " + name,
+                        QueryDefinitionsService.getStatement(queryDefinitions, name, false).contains("CTLG_NAME"));
+                assertFalse(metastore + " " + name,
+                        QueryDefinitionsService.getStatement(queryDefinitions, name, true).contains("CTLG_NAME"));
+            }
+        }
+    }
+
+    @Test
+    public void undefinedQuery() throws Exception {
+        assertNull(QueryDefinitionsService.getStatement(queryDefinitions("/MYSQL/metastore.yaml"), "not_defined", true));
+        assertNull(QueryDefinitionsService.getStatement(null, "db_part_locations", false));
+    }
+
+    private QueryDefinitions queryDefinitions(String resource) throws Exception {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        try (InputStream in = getClass().getResourceAsStream(resource)) {
+            return mapper.readerFor(QueryDefinitions.class).readValue(in);
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.EnvironmentTable;
+import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import com.cloudera.utils.hms.mirror.connections.FileSystemProbeLocalImpl;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StatsCacheServiceTest {
+
+    private static final String LOCATION = "hdfs://HOME90/warehouse/tablespace/external/hive/sales.db/orders";
+
+    private static StatsCacheService service(HmsMirrorConfig config, File cacheFile) {
+        StatsCacheService service = new StatsCacheService();
+        service.setHmsMirrorCfgService(new HmsMirrorCfgService(config));
+        service.setRunStatistics(new RunStatistics());
+        service.setCacheFile(cacheFile);
+        return service;
+    }
+
+    @Test
+    public void reusedAcrossRuns() throws Exception {
+        File cacheFile = new File(Files.createTempDirectory("cache").toFile(), "stats-cache.yaml");
+        HmsMirrorConfig config = new HmsMirrorConfig();
+
+        StatsCacheService first = service(config, cacheFile);
+        assertNull(first.get(LOCATION, 1000L));
+        first.put(LOCATION, 1000L, new long[]{3, 12, 4096});
+        first.save();
+        assertTrue(cacheFile.exists());
+
+        StatsCacheService second = service(config, cacheFile);
+        assertArrayEquals(new long[]{3, 12, 4096}, second.get(LOCATION, 1000L));
+        // Modified since.
+        assertNull(second.get(LOCATION, 2000L));
+        assertEquals(1, second.getRunStatistics().get(StatsCacheService.CACHE_HITS));
+        assertEquals(1, second.getRunStatistics().get(StatsCacheService.CACHE_MISSES));
+    }
+
+    @Test
+    public void expireAndEvict() throws Exception {
+        File cacheFile = new File(Files.createTempDirectory("cache").toFile(), "stats-cache.yaml");
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        config.getOptimization().setStatsCacheMaxEntries(2);
+        StatsCacheService service = service(config, cacheFile);
+
+        service.put(LOCATION, 1000L, new long[]{1, 1, 1});
+        service.getEntries().get(LOCATION).setCounted(0L);
+        assertNull(service.get(LOCATION, 1000L));
+
+        for (int i = 1; i <= 3; i++) {
+            service.put(LOCATION + i, 1000L, new long[]{1, i, i});
+            service.getEntries().get(LOCATION + i).setUsed(i);
+        }
+        service.evict(System.currentTimeMillis());
+        assertEquals(2, service.getEntries().size());
+        assertFalse(service.getEntries().containsKey(LOCATION + 1));
+        assertEquals(2, service.getRunStatistics().get(StatsCacheService.CACHE_EVICTED));
+    }
+
+    @Test
+    public void partitionedTablesByPartition() throws Exception {
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        config.getOptimization().setStatsCache(true);
+        StatsCacheService service = service(config, new File(Files.createTempDirectory("cache").toFile(),
+                "stats-cache.yaml"));
+
+        EnvironmentTable et = new EnvironmentTable();
+        et.setName("orders");
+        et.setDefinition(Arrays.asList("CREATE EXTERNAL TABLE `orders`(", "`id` int)", "LOCATION", "'" + LOCATION + "'"));
+        assertTrue(service.isEnabled(et));
+
+        // Files added to a partition don't move the modification time of the table location.
+        et.setDefinition(Arrays.asList("CREATE EXTERNAL TABLE `orders`(", "`id` int)", "PARTITIONED BY (",
+                "`dt` string)", "LOCATION", "'" + LOCATION + "'"));
+        assertFalse(service.isEnabled(et));
+
+        // Kept by partition once they're loaded.
+        et.getPartitions().put("dt=1", LOCATION + "/dt=1");
+        assertTrue(service.isEnabled(et));
+    }
+
+    /*
+    Only the partitions that changed since the last run are counted again.
+     */
+    @Test
+    public void countedByPartition() throws Exception {
+        Path table = Files.createTempDirectory("orders");
+        for (String partition : new String[]{"dt=1", "dt=2"}) {
+            Files.createDirectories(table.resolve(partition));
+            Files.write(table.resolve(partition).resolve("000000_0"), new byte[100]);
+            Files.setLastModifiedTime(table.resolve(partition), FileTime.fromMillis(1000L));
+        }
+        List<String> locations = Arrays.asList(table.resolve("dt=1").toString(), table.resolve("dt=2").toString());
+
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        config.getOptimization().setStatsCache(true);
+        TableService tableService = new TableService();
+        tableService.setStatsCacheService(service(config, new File(Files.createTempDirectory("cache").toFile(),
+                "stats-cache.yaml")));
+        FileSystemProbeService probeService = new FileSystemProbeService();
+        probeService.setProbeFactory(FileSystemProbeLocalImpl::new);
+        probeService.setSessions(1);
+        tableService.setFileSystemProbeService(probeService);
+        EnvironmentTable et = new EnvironmentTable();
+        et.setName("orders");
+
+        assertArrayEquals(new long[]{2, 2, 200, 2}, tableService.countThroughCache(et, locations));
+        assertArrayEquals(new long[]{2, 2, 200, 0}, tableService.countThroughCache(et, locations));
+
+        // An INSERT OVERWRITE replaced the files of a partition.
+        Files.delete(table.resolve("dt=2").resolve("000000_0"));
+        Files.write(table.resolve("dt=2").resolve("000001_0"), new byte[300]);
+        Files.setLastModifiedTime(table.resolve("dt=2"), FileTime.fromMillis(2000L));
+        assertArrayEquals(new long[]{2, 2, 400, 1}, tableService.countThroughCache(et, locations));
+        probeService.close();
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.EnvironmentTable;
+import com.cloudera.utils.hms.mirror.MirrorConf;
+import com.cloudera.utils.hms.mirror.PartitionHistogram;
+import com.cloudera.utils.hms.mirror.SerdeType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StatsCalculatorServiceTest {
+
+    private static EnvironmentTable table(PartitionHistogram histogram) {
+        EnvironmentTable et = new EnvironmentTable();
+        et.setName("web_sales");
+        et.getStatistics().put(MirrorConf.FILE_FORMAT, SerdeType.ORC.toString());
+        et.setPartitionHistogram(histogram);
+        return et;
+    }
+
+    @Test
+    public void skewedDistribution() {
+        long target = SerdeType.ORC.getTargetSize();
+        PartitionHistogram histogram = new PartitionHistogram();
+        histogram.add("dt=1", 10 * target, 40);
+        histogram.add("dt=2", 3 * target, 12);
+        histogram.add("dt=3", 3 * target, 12);
+        histogram.add("dt=4", target / 10, 1);
+
+        StatsCalculatorService statsCalculatorService = new StatsCalculatorService();
+        assertEquals("CASE WHEN `dt` IN ('1') THEN FLOOR(rand() * 16)" +
+                        " WHEN `dt` IN ('2','3') THEN FLOOR(rand() * 4) ELSE 0 END",
+                statsCalculatorService.getSkewedDistribution(table(histogram)));
+    }
+
+    @Test
+    public void noSkew() {
+        PartitionHistogram histogram = new PartitionHistogram();
+        histogram.add("dt=1", 1024, 1);
+        histogram.add("dt=2", 2048, 1);
+        assertNull(new StatsCalculatorService().getSkewedDistribution(table(histogram)));
+    }
+
+}
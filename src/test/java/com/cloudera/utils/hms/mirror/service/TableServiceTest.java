@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.Environment;
+import com.cloudera.utils.hms.mirror.Pair;
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import com.cloudera.utils.hms.mirror.TableMirror;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/*
+The SQL of a table on the LEFT and RIGHT execution pools (see TableService.runTableSqlAsync).
+ */
+public class TableServiceTest {
+
+    private final ExecutorService left = Executors.newSingleThreadExecutor(r -> new Thread(r, "left-1"));
+    private final ExecutorService right = Executors.newSingleThreadExecutor(r -> new Thread(r, "right-1"));
+    // Where the SQL of each environment ran.
+    private final Map<Environment, String> ranOn = new ConcurrentHashMap<>();
+
+    @After
+    public void tearDown() {
+        left.shutdownNow();
+        right.shutdownNow();
+    }
+
+    private TableService tableService(boolean reenter) {
+        TableService tableService = new TableService() {
+            @Override
+            protected TaskExecutor getExecutionPool(Environment environment) {
+                return environment == Environment.LEFT ? left::execute : right::execute;
+            }
+
+            @Override
+            protected Boolean runTableSqlWork(List<Pair> sqlList, TableMirror tblMirror, Environment environment) {
+                if (reenter && ranOn.isEmpty()) {
+                    ranOn.put(environment, Thread.currentThread().getName());
+                    // Back into the pool this thread is the only one of.
+                    return runTableSql(sqlList, tblMirror, environment);
+                }
+                ranOn.put(environment, Thread.currentThread().getName());
+                return Boolean.TRUE;
+            }
+        };
+        tableService.setRunStatistics(new RunStatistics());
+        return tableService;
+    }
+
+    @Test
+    public void leftThenRight() throws Exception {
+        TableService tableService = tableService(false);
+        TableMirror tableMirror = new TableMirror();
+        List<Pair> sql = Collections.singletonList(new Pair("test", "SELECT 1"));
+
+        CompletableFuture<Boolean> steps = tableService.runTableSqlAsync(sql, tableMirror, Environment.LEFT)
+                .thenCompose(ok -> tableService.runTableSqlAsync(sql, tableMirror, Environment.RIGHT));
+        assertTrue(steps.get(5, TimeUnit.SECONDS));
+        assertEquals("left-1", ranOn.get(Environment.LEFT));
+        assertEquals("right-1", ranOn.get(Environment.RIGHT));
+        assertEquals(2, tableService.getRunStatistics().get("environment.left.steps")
+                + tableService.getRunStatistics().get("environment.right.steps"));
+    }
+
+    /*
+    SQL run from a pool thread doesn't wait on a pool, or a full pool would deadlock on itself.
+     */
+    @Test
+    public void noWaitOnThePoolFromThePool() throws Exception {
+        TableService tableService = tableService(true);
+        TableMirror tableMirror = new TableMirror();
+        List<Pair> sql = Collections.singletonList(new Pair("test", "SELECT 1"));
+
+        assertTrue(tableService.runTableSqlAsync(sql, tableMirror, Environment.LEFT).get(5, TimeUnit.SECONDS));
+        assertEquals("left-1", ranOn.get(Environment.LEFT));
+        assertEquals(1, tableService.getRunStatistics().get("environment.left.steps"));
+    }
+
+}
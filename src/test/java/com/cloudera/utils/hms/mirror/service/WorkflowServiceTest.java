@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2024. Cloudera, Inc. All Rights Reserved
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.cloudera.utils.hms.mirror.service;
+
+import com.cloudera.utils.hms.mirror.DBMirror;
+import com.cloudera.utils.hms.mirror.Environment;
+import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
+import com.cloudera.utils.hms.mirror.Optimization;
+import com.cloudera.utils.hms.mirror.RunStatistics;
+import com.cloudera.utils.hms.mirror.TableMirror;
+import com.cloudera.utils.hms.stage.PrioritizedTask;
+import com.cloudera.utils.hms.stage.ReturnStatus;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class WorkflowServiceTest {
+
+    @Test
+    public void pipelineCapacity() {
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        assertEquals(32, config.getOptimization().pipelineCapacity(4));
+        config.getOptimization().setAdaptiveConcurrencyMax(2);
+        assertEquals(16, config.getOptimization().pipelineCapacity(4));
+        config.getOptimization().setPipelineCapacity(10);
+        assertEquals(10, config.getOptimization().pipelineCapacity(4));
+    }
+
+    @Test
+    public void environmentPools() {
+        Optimization optimization = new Optimization();
+        optimization.setEnvironmentPools(true);
+        optimization.setRightConcurrency(6);
+        assertEquals(4, optimization.environmentConcurrency(Environment.LEFT, 4));
+        assertEquals(6, optimization.environmentConcurrency(Environment.RIGHT, 4));
+        // Enough job threads for both clusters, and the pipeline for those.
+        assertEquals(10, optimization.jobConcurrency(4));
+        assertEquals(80, optimization.pipelineCapacity(4));
+        optimization.setEnvironmentPools(false);
+        assertEquals(4, optimization.jobConcurrency(4));
+    }
+
+    @Test
+    public void pipelineWaitsForRoom() throws InterruptedException {
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        config.getOptimization().setPipelineCapacity(2);
+        WorkflowService service = new WorkflowService();
+        service.setHmsMirrorCfgService(new HmsMirrorCfgService(config));
+        RunStatistics runStatistics = new RunStatistics();
+        service.setRunStatistics(runStatistics);
+
+        CompletableFuture<ReturnStatus> first = new CompletableFuture<>();
+        service.enterPipeline();
+        CompletableFuture<ReturnStatus> left = service.leavePipelineOn(first);
+        service.enterPipeline();
+
+        CountDownLatch entered = new CountDownLatch(1);
+        Thread third = new Thread(() -> {
+            service.enterPipeline();
+            entered.countDown();
+        });
+        third.start();
+        assertFalse(entered.await(200, TimeUnit.MILLISECONDS));
+
+        first.complete(new ReturnStatus());
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        assertTrue(left.isDone());
+        assertEquals(2, runStatistics.get("pipeline.capacity"));
+        assertEquals(2, runStatistics.get("pipeline.inflight.peak"));
+        assertEquals(1, runStatistics.get("pipeline.waits"));
+    }
+
+    private static CompletableFuture<ReturnStatus> metadataDone(String database, String table) {
+        DBMirror dbMirror = new DBMirror();
+        dbMirror.setName(database);
+        TableMirror tableMirror = new TableMirror();
+        tableMirror.setName(table);
+        tableMirror.setParent(dbMirror);
+        ReturnStatus returnStatus = new ReturnStatus();
+        returnStatus.setStatus(ReturnStatus.Status.SUCCESS);
+        returnStatus.setTableMirror(tableMirror);
+        return CompletableFuture.completedFuture(returnStatus);
+    }
+
+    @Test
+    public void fairShareIsOverTheTransfersNotDone() {
+        HmsMirrorConfig config = new HmsMirrorConfig();
+        config.getOptimization().setLargestFirst(true);
+        config.getOptimization().setLargestFirstFairShare(true);
+        WorkflowService service = new WorkflowService();
+        service.setHmsMirrorCfgService(new HmsMirrorCfgService(config));
+        service.setRunStatistics(new RunStatistics());
+        service.setTransferService(new TransferService() {
+            @Override
+            public ReturnStatus transfer(TableMirror tableMirror) {
+                return new ReturnStatus();
+            }
+        });
+        // Holds the transfers, as if waiting for a thread.
+        List<PrioritizedTask> queued = new ArrayList<>();
+        service.setJobThreadPool(task -> queued.add((PrioritizedTask) task));
+
+        service.transferOnMetadata(metadataDone("sales", "orders"));
+        service.transferOnMetadata(metadataDone("sales", "customers"));
+        assertEquals(1.0, queued.get(0).getPriority(), 0.001);
+        assertEquals(0.5, queued.get(1).getPriority(), 0.001);
+
+        // Once a transfer is done, its database's share goes back up.
+        queued.get(0).run();
+        service.transferOnMetadata(metadataDone("sales", "items"));
+        assertEquals(0.5, queued.get(2).getPriority(), 0.001);
+        queued.get(1).run();
+        queued.get(2).run();
+        service.transferOnMetadata(metadataDone("sales", "returns"));
+        assertEquals(1.0, queued.get(3).getPriority(), 0.001);
+    }
+
+    private static TableMirror tableMirror(String database, String table) {
+        DBMirror dbMirror = new DBMirror();
+        dbMirror.setName(database);
+        TableMirror tableMirror = new TableMirror();
+        tableMirror.setName(table);
+        tableMirror.setParent(dbMirror);
+        return tableMirror;
+    }
+
+    /*
+    A workflow on a real pool, with the metadata stage answering from 'metadata' and the transfers noted in
+    'transferred'.
+     */
+    private static WorkflowService workflow(ExecutorService pool, RunStatistics runStatistics,
+                                            Function<TableMirror, ReturnStatus> metadata,
+                                            List<TableMirror> transferred) {
+        WorkflowService service = new WorkflowService();
+        service.setHmsMirrorCfgService(new HmsMirrorCfgService(new HmsMirrorConfig()));
+        service.setRunStatistics(runStatistics);
+        service.setMetadataThreadPool(pool::execute);
+        service.setJobThreadPool(pool::execute);
+        service.setTableService(new TableService() {
+            @Override
+            public ReturnStatus getTableMetadata(TableMirror tableMirror) {
+                return metadata.apply(tableMirror);
+            }
+        });
+        service.setTransferService(new TransferService() {
+            @Override
+            public ReturnStatus transfer(TableMirror tableMirror) {
+                transferred.add(tableMirror);
+                ReturnStatus rtn = new ReturnStatus();
+                rtn.setStatus(ReturnStatus.Status.SUCCESS);
+                rtn.setTableMirror(tableMirror);
+                return rtn;
+            }
+        });
+        return service;
+    }
+
+    private static Function<TableMirror, ReturnStatus> metadataWith(ReturnStatus.Status status) {
+        return tableMirror -> {
+            ReturnStatus rtn = new ReturnStatus();
+            rtn.setStatus(status);
+            rtn.setTableMirror(tableMirror);
+            return rtn;
+        };
+    }
+
+    @Test
+    public void metadataLaunchesTheTransfer() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            RunStatistics runStatistics = new RunStatistics();
+            List<TableMirror> transferred = Collections.synchronizedList(new ArrayList<>());
+            WorkflowService service = workflow(pool, runStatistics, metadataWith(ReturnStatus.Status.SUCCESS), transferred);
+            TableMirror orders = tableMirror("sales", "orders");
+
+            CompletableFuture<ReturnStatus> metadata = service.getTableMetadata(orders);
+            ReturnStatus transfer = service.transferOnMetadata(metadata).get(5, TimeUnit.SECONDS);
+
+            assertEquals(ReturnStatus.Status.NEXTSTEP, metadata.get().getStatus());
+            assertEquals(ReturnStatus.Status.SUCCESS, transfer.getStatus());
+            assertEquals(Collections.singletonList(orders), transferred);
+            assertEquals(1, runStatistics.get("stage.metadata.completed"));
+            assertEquals(1, runStatistics.get("stage.transfer.submitted"));
+            assertEquals(1, runStatistics.get("stage.transfer.completed"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedMetadataHasNoTransfer() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            RunStatistics runStatistics = new RunStatistics();
+            List<TableMirror> transferred = Collections.synchronizedList(new ArrayList<>());
+            for (ReturnStatus.Status status : new ReturnStatus.Status[]{ReturnStatus.Status.ERROR, ReturnStatus.Status.FATAL}) {
+                WorkflowService service = workflow(pool, runStatistics, metadataWith(status), transferred);
+                ReturnStatus rtn = service.transferOnMetadata(service.getTableMetadata(tableMirror("sales", "orders")))
+                        .get(5, TimeUnit.SECONDS);
+                // The metadata status is passed through.
+                assertEquals(status, rtn.getStatus());
+            }
+            assertTrue(transferred.isEmpty());
+            assertEquals(2, runStatistics.get("stage.metadata.errors"));
+            assertEquals(0, runStatistics.get("stage.transfer.submitted"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void throwingTaskIsFatal() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            RunStatistics runStatistics = new RunStatistics();
+            List<TableMirror> transferred = Collections.synchronizedList(new ArrayList<>());
+            WorkflowService service = workflow(pool, runStatistics, tableMirror -> {
+                throw new IllegalStateException("metastore gone");
+            }, transferred);
+
+            ReturnStatus rtn = service.transferOnMetadata(service.getTableMetadata(tableMirror("sales", "orders")))
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals(ReturnStatus.Status.FATAL, rtn.getStatus());
+            assertTrue(rtn.getException() instanceof IllegalStateException);
+            assertTrue(transferred.isEmpty());
+            assertEquals(1, runStatistics.get("stage.metadata.errors"));
+            assertEquals(0, runStatistics.get("stage.metadata.completed"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+}
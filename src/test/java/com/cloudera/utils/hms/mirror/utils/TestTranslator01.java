@@ -18,7 +18,10 @@
 package com.cloudera.utils.hms.mirror.utils;
 
 import com.cloudera.utils.hms.mirror.DBMirror;
+import com.cloudera.utils.hms.mirror.EnvironmentTable;
 import com.cloudera.utils.hms.mirror.HmsMirrorConfig;
+import com.cloudera.utils.hms.mirror.MirrorConf;
+import com.cloudera.utils.hms.mirror.Pair;
 import com.cloudera.utils.hms.mirror.TableMirror;
 import com.cloudera.utils.hms.mirror.Translator;
 import com.cloudera.utils.hms.mirror.service.HmsMirrorCfgService;
@@ -29,8 +32,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.text.MessageFormat;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 
 @Slf4j
@@ -304,4 +309,35 @@ public class TestTranslator01 extends TranslatorTestBase {
 //                " : " + tblExpectedName, tblNewName.equals(tblExpectedName));
 //    }
 
+    @Test
+    public void partitionAddBatches() {
+        TableMirror tableMirror = new TableMirror();
+        EnvironmentTable et = new EnvironmentTable(tableMirror);
+        et.setName("web_sales");
+        for (int i = 0; i < 1201; i++) {
+            et.getPartitions().put("ws_sold_date_sk=" + i, "hdfs://RIGHT/warehouse/web_sales/ws_sold_date_sk=" + i);
+        }
+        translatorService.addPartitionAddSql(et, 500);
+        assertEquals(3, et.getSql().size());
+        assertEquals(MirrorConf.ALTER_TABLE_PARTITION_ADD_LOCATION_DESC + " (1 of 3)", et.getSql().get(0).getDescription());
+        assertTrue(et.getSql().get(0).getAction().startsWith("ALTER TABLE web_sales ADD IF NOT EXISTS\n" +
+                "\tPARTITION (`ws_sold_date_sk`='0') LOCATION 'hdfs://RIGHT/warehouse/web_sales/ws_sold_date_sk=0' \n"));
+        int count = 0;
+        for (Pair pair : et.getSql()) {
+            count += pair.getAction().split("\tPARTITION \\(").length - 1;
+        }
+        assertEquals(1201, count);
+        assertTrue(et.getSql().get(2).getAction().endsWith("LOCATION 'hdfs://RIGHT/warehouse/web_sales/ws_sold_date_sk=1200' \n"));
+
+        // Single statement mode.
+        EnvironmentTable single = new EnvironmentTable(tableMirror);
+        single.setName("web_sales");
+        single.setPartitions(et.getPartitions());
+        translatorService.addPartitionAddSql(single, 0);
+        assertEquals(1, single.getSql().size());
+        assertEquals(MirrorConf.ALTER_TABLE_PARTITION_ADD_LOCATION_DESC, single.getSql().get(0).getDescription());
+        assertEquals(MessageFormat.format(MirrorConf.ALTER_TABLE_PARTITION_ADD_LOCATION, "web_sales",
+                translatorService.buildPartitionAddStatement(et)), single.getSql().get(0).getAction());
+    }
+
 }
\ No newline at end of file